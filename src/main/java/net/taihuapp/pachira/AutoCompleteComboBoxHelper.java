@@ -20,59 +20,89 @@
 
 package net.taihuapp.pachira;
 
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.TextFormatter;
-
-import java.util.function.Predicate;
+import javafx.scene.input.KeyCode;
 
 class AutoCompleteComboBoxHelper<T> {
     private final ComboBox<T> mComboBox;
-    private final FilteredList<T> mFilteredItems;
+    private final ObservableList<T> mAllItems;
+    private final ObservableList<T> mShownItems;
+    private final AutoCompletion.Suggester<T> mSuggester;
     private boolean mKeyEvent;
 
     AutoCompleteComboBoxHelper(final ComboBox<T> comboBox) {
         mKeyEvent = false;
         mComboBox = comboBox;
-        final ObservableList<T> allItems = mComboBox.getItems();
-        mFilteredItems = new FilteredList<>(allItems);
-        mComboBox.setItems(mFilteredItems);
+        mAllItems = mComboBox.getItems();
+        mSuggester = AutoCompletion.indexSuggester(mAllItems, item -> mComboBox.getConverter().toString(item));
+        // only the best matches of the typed text are shown
+        mShownItems = FXCollections.observableArrayList(mAllItems);
+        mAllItems.addListener((ListChangeListener<T>) c -> filter(mComboBox.getEditor().getText()));
+        mComboBox.setItems(mShownItems);
         mComboBox.setEditable(true);
 
         // this line suppose to work around for JavaFX needing an enter to commit combobox edit
         mComboBox.getEditor().setTextFormatter(new TextFormatter<>(TextFormatter.IDENTITY_STRING_CONVERTER));
 
+        final PauseTransition pauseTransition = AutoCompletion.debounce(() -> {
+            // setAll sometime (why?) trigs a change in mComboBox.getEditor().textProperty()
+            // we don't want to process that.  set mKeyEvent to false here
+            mKeyEvent = false;
+            filter(mComboBox.getEditor().getText());
+        });
+
         mComboBox.getEditor().setOnKeyPressed(event -> {
+            // commit with the items filtered for the text typed just before the enter
+            if (event.getCode() == KeyCode.ENTER)
+                flush(pauseTransition);
             // once we are in editing mode, existing selection is not longer valid
             // clear out now.  Otherwise, ComboBox will clear it and causes exception
             mComboBox.getSelectionModel().clearSelection();
             mKeyEvent = true;
         });
         mComboBox.getEditor().setOnKeyReleased(event -> mKeyEvent = false);
+        mComboBox.getEditor().focusedProperty().addListener((obs, ov, nv) -> {
+            if (!nv)
+                flush(pauseTransition);
+        });
 
         mComboBox.getEditor().textProperty().addListener((obs, ov, nv) -> {
             if (!mKeyEvent)
                 return; // if change is not due to keyevent, do nothing
 
-            if (nv == null || nv.isEmpty()) {
-                mFilteredItems.setPredicate(item -> true);
-                return;
-            }
-
-            Predicate<? super T> oldPredicate = mFilteredItems.getPredicate();
-            // setPredicate sometime (why?) trigs a change in mComboBox.getEditor().textProperty()
-            // we don't want to process that.  set mKeyEvent to false here
-            mKeyEvent = false;
-            mFilteredItems.setPredicate(item ->
-                    mComboBox.getConverter().toString(item).toLowerCase().contains(nv.toLowerCase()));
-            if (mFilteredItems.size() == 0) {
+            if (nv != null && !nv.isEmpty() && mSuggester.suggest(nv, 1).isEmpty()) {
                 // nv is not contained in any items, reject it, put back ov.
+                mKeyEvent = false;
                 int c = mComboBox.getEditor().getCaretPosition();
                 mComboBox.getEditor().setText(ov);
                 mComboBox.getEditor().positionCaret(c);
-                mFilteredItems.setPredicate(oldPredicate);
+                return;
             }
+
+            pauseTransition.playFromStart();
         });
     }
+
+    // filter now if the filter for the last keystroke is still pending
+    private void flush(PauseTransition pauseTransition) {
+        if (pauseTransition.getStatus() == Animation.Status.RUNNING) {
+            pauseTransition.stop();
+            mKeyEvent = false;
+            filter(mComboBox.getEditor().getText());
+        }
+    }
+
+    // show the best matches of the text, or all the items if the text is empty
+    private void filter(String text) {
+        if (text == null || text.isEmpty())
+            mShownItems.setAll(mAllItems);
+        else
+            mShownItems.setAll(mSuggester.suggest(text, AutoCompletion.SUGGESTION_LIMIT));
+    }
 }
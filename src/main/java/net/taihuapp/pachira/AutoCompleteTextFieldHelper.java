@@ -20,46 +20,34 @@
 
 package net.taihuapp.pachira;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
+import javafx.animation.PauseTransition;
 import javafx.scene.control.ContextMenu;
-import javafx.scene.control.MenuItem;
 import javafx.scene.control.TextField;
 
 import java.util.Collection;
 
 class AutoCompleteTextFieldHelper {
     private final TextField mTextField;
-    private final FilteredList<MenuItem> mFilteredItems;
     private boolean mKeyEvent;
 
     AutoCompleteTextFieldHelper(final TextField textField, Collection<String> items) {
         mTextField = textField;
-        ObservableList<MenuItem> allItems = FXCollections.observableArrayList();
-        for (String s : items) {
-            MenuItem mi = new MenuItem(s);
-            mi.setOnAction(eh -> mTextField.setText(s));
-            allItems.add(mi);
-        }
-        mFilteredItems = new FilteredList<>(allItems);
+        final AutoCompletion.Suggester<String> suggester = AutoCompletion.indexSuggester(items, s -> s);
         ContextMenu contextMenu = new ContextMenu();
-        contextMenu.getItems().setAll(mFilteredItems);
+        AutoCompletion.showSuggestions(mTextField, contextMenu, suggester);
         mTextField.setContextMenu(contextMenu);
 
+        // only the best matches are put in the context menu, once the typing pauses
+        final PauseTransition pauseTransition = AutoCompletion.debounce(() ->
+                AutoCompletion.showSuggestions(mTextField, mTextField.getContextMenu(), suggester));
+
         mTextField.setOnKeyPressed(e -> mKeyEvent = true);
         mTextField.setOnKeyReleased(e -> mKeyEvent = false);
         mTextField.textProperty().addListener((obs, ov, nv) -> {
             if (!mKeyEvent)
                 return; // if change is not due to keyevent, do nothing
 
-            if (nv == null || nv.isEmpty()) {
-                mFilteredItems.setPredicate(item -> true);
-                return;
-            }
-
-            mFilteredItems.setPredicate(item -> item.getText().toLowerCase().contains(nv.toLowerCase()));
-            mTextField.getContextMenu().getItems().setAll(mFilteredItems);
+            pauseTransition.playFromStart();
         });
     }
 }
@@ -20,10 +20,11 @@
 
 package net.taihuapp.pachira;
 
-import javafx.beans.binding.Bindings;
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.event.EventHandler;
 import javafx.geometry.Side;
 import javafx.scene.control.ComboBox;
@@ -31,39 +32,124 @@ import javafx.scene.control.ContextMenu;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.TextField;
 import javafx.scene.input.KeyEvent;
+import javafx.util.Duration;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class AutoCompletion {
+    // the maximum number of suggestions shown for a typed text
+    static final int SUGGESTION_LIMIT = 10;
+
+    // the suggestions are updated after the typing pauses this long
+    static final Duration DEBOUNCE_DELAY = Duration.millis(150);
+
     public interface AutoCompleteComparator<T> {
         // return true if the object is considered as a match tothe input text
         boolean matches(String text, T object);
     }
 
+    /**
+     * gives the best matches of a typed text
+     * @param <T> - the type of the suggestions
+     */
+    @FunctionalInterface
+    interface Suggester<T> {
+        List<T> suggest(String text, int k);
+    }
+
+    /**
+     * suggester with the default comparator (case insensitive containing) on a completion index
+     * @param items - the suggestions, in the order of preference
+     * @param toString - the text of a suggestion
+     * @return the suggester
+     */
+    static <T> Suggester<T> indexSuggester(Collection<T> items, Function<T, String> toString) {
+        final CompletionIndex<T> completionIndex = new CompletionIndex<>(new ArrayList<>(items), toString);
+        return completionIndex::complete;
+    }
+
+    /**
+     * suggester with the default comparator on a completion index, which is rebuilt on the first
+     * use after the items are changed
+     * @param items - the suggestions, in the order of preference
+     * @param toString - the text of a suggestion
+     * @return the suggester
+     */
+    static <T> Suggester<T> indexSuggester(ObservableList<T> items, Function<T, String> toString) {
+        final List<CompletionIndex<T>> holder = new ArrayList<>(1);
+        items.addListener((ListChangeListener<T>) c -> holder.clear());
+        return (text, k) -> {
+            if (holder.isEmpty())
+                holder.add(new CompletionIndex<>(new ArrayList<>(items), toString));
+            return holder.get(0).complete(text, k);
+        };
+    }
+
+    /**
+     * suggester with a custom comparator, scans the items until k matches are found
+     * @param items - the suggestions, in the order of preference
+     * @param comparator - the comparator
+     * @return the suggester
+     */
+    static <T> Suggester<T> scanSuggester(Collection<T> items, AutoCompleteComparator<T> comparator) {
+        return (text, k) -> items.stream().filter(item -> comparator.matches(text, item)).limit(k)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param action - the action to run once the typing pauses
+     * @return a pause transition to be played from start on each keystroke
+     */
+    static PauseTransition debounce(Runnable action) {
+        final PauseTransition pauseTransition = new PauseTransition(DEBOUNCE_DELAY);
+        pauseTransition.setOnFinished(e -> action.run());
+        return pauseTransition;
+    }
+
+    /**
+     * put the best matches of the text in the text field into the context menu, each sets the text
+     * of the text field when selected
+     * @param textField - the text field
+     * @param contextMenu - the context menu
+     * @param suggester - the suggester
+     */
+    static void showSuggestions(TextField textField, ContextMenu contextMenu, Suggester<String> suggester) {
+        final List<MenuItem> menuItems = new ArrayList<>(SUGGESTION_LIMIT);
+        for (String s : suggester.suggest(textField.getText(), SUGGESTION_LIMIT)) {
+            final MenuItem mi = new MenuItem(s);
+            mi.setOnAction(eh -> textField.setText(s));
+            menuItems.add(mi);
+        }
+        contextMenu.getItems().setAll(menuItems);
+    }
+
     // autoComplete TextField with default comparator (case insensitive containing)
     public static void autoComplete2(TextField textField, Collection<String> suggestions) {
-        autoComplete2(textField, suggestions, (typedText, suggestion) ->
-                suggestion.toLowerCase().contains(typedText.toLowerCase()));
+        autoComplete2With(textField, indexSuggester(suggestions, s -> s));
     }
 
-    // try to use menu item visibility
+    // show the best matches in the context menu
     public static void autoComplete2(TextField textField, Collection<String> suggestions,
                                      AutoCompleteComparator<String> comparator) {
+        autoComplete2With(textField, scanSuggester(suggestions, comparator));
+    }
+
+    private static void autoComplete2With(TextField textField, Suggester<String> suggester) {
         ContextMenu contextMenu = new ContextMenu();
-        for (String s : suggestions) {
-            MenuItem mi = new MenuItem(s);
-            mi.setOnAction(eh -> textField.setText(s));
-            mi.visibleProperty().bind(Bindings.createBooleanBinding(() ->
-                    comparator.matches(textField.textProperty().get(), mi.getText()),
-                    textField.textProperty()));
-            contextMenu.getItems().add(mi);
-        }
+        showSuggestions(textField, contextMenu, suggester);
         textField.setContextMenu(contextMenu);
+        final PauseTransition pauseTransition = debounce(() -> showSuggestions(textField, contextMenu, suggester));
+        textField.textProperty().addListener((obs, ov, nv) -> pauseTransition.playFromStart());
         textField.focusedProperty().addListener((obs, ov, nv) -> {
             // show contextMenu whenever focus is on, hide if not
             if (nv) {
                 contextMenu.show(textField, Side.BOTTOM, 0, 0);
             } else {
+                pauseTransition.stop();
                 contextMenu.hide();
             }
         });
@@ -71,28 +157,27 @@ public class AutoCompletion {
 
     // autoComplete TextField with default comparator (case insensitive containing)
     public static void autoComplete(TextField textField, Collection<String> suggestions) {
-        autoComplete(textField, suggestions, (typedText, suggestion) ->
-                suggestion.toLowerCase().contains(typedText.toLowerCase()));
+        autoCompleteWith(textField, indexSuggester(suggestions, s -> s));
     }
 
-    //  Based on the logic of the code at https://stackoverflow.com/a/27384068/3079849
     public static void autoComplete(TextField textField, Collection<String> suggestions,
                                     AutoCompleteComparator<String> comparator) {
-        ObservableList<MenuItem> allMenuItems = FXCollections.observableArrayList();
-        for (String s : suggestions) {
-            MenuItem mi = new MenuItem(s);
-            mi.setOnAction(eh -> textField.setText(s));
-            allMenuItems.add(mi);
-        }
-        FilteredList<MenuItem> filteredMenuItems = new FilteredList<>(allMenuItems);
+        autoCompleteWith(textField, scanSuggester(suggestions, comparator));
+    }
+
+    //  Based on the logic of the code at https://stackoverflow.com/a/27384068/3079849
+    private static void autoCompleteWith(TextField textField, Suggester<String> suggester) {
         ContextMenu contextMenu = new ContextMenu();
-        contextMenu.getItems().setAll(filteredMenuItems);
+        showSuggestions(textField, contextMenu, suggester);
         textField.setContextMenu(contextMenu);
+        final PauseTransition pauseTransition = debounce(() -> showSuggestions(textField, contextMenu, suggester));
         textField.focusedProperty().addListener((obs, ov, nv) -> {
-            if (nv)
+            if (nv) {
                 contextMenu.show(textField, Side.BOTTOM, 0, 0);
-            else
+            } else {
+                pauseTransition.stop();
                 contextMenu.hide();
+            }
         });
         textField.addEventHandler(KeyEvent.KEY_RELEASED, new EventHandler<>() {
             private boolean mMoveCaretToPos = false;
@@ -125,9 +210,8 @@ public class AutoCompletion {
                             mMoveCaretToPos = true;
                             mCaretPos = textField.getCaretPosition();
                         }
-                        // setup filter
-                        filteredMenuItems.setPredicate(t -> comparator.matches(s1, t.getText()));
-                        contextMenu.getItems().setAll(filteredMenuItems);
+                        // update the suggestions once the typing pauses
+                        pauseTransition.playFromStart();
                         textField.setText(s1);
                         if (!mMoveCaretToPos)
                             mCaretPos = -1;
@@ -141,19 +225,42 @@ public class AutoCompletion {
 
     // default comparator is case insensitive containing
     public static<T> void autoComplete(ComboBox<T> comboBox) {
-        autoComplete(comboBox, (typedText, itemToCompare) ->
-                comboBox.getConverter().toString(itemToCompare).toLowerCase()
-                        .contains(typedText.toLowerCase()));
+        autoCompleteWith(comboBox, indexSuggester(comboBox.getItems(), item -> comboBox.getConverter().toString(item)));
     }
 
-    //  Based on the logic of the code at https://stackoverflow.com/a/27384068/3079849
     public static<T> void autoComplete(ComboBox<T> comboBox, AutoCompleteComparator<T> comparator) {
-        // original items in the comboBox
-        FilteredList<T> filteredList = new FilteredList<>(comboBox.getItems());
-        comboBox.setItems(filteredList);
+        autoCompleteWith(comboBox, scanSuggester(comboBox.getItems(), comparator));
+    }
+
+    //  Based on the logic of the code at https://stackoverflow.com/a/27384068/3079849
+    private static<T> void autoCompleteWith(ComboBox<T> comboBox, Suggester<T> suggester) {
+        // original items in the comboBox, the best matches are shown in place of them
+        final ObservableList<T> allItems = comboBox.getItems();
+        final ObservableList<T> shownItems = FXCollections.observableArrayList(allItems);
+        comboBox.setItems(shownItems);
         comboBox.setEditable(true);
 
+        final Runnable filter = () -> {
+            final String s = comboBox.getEditor().getText();
+            if (s == null || s.isEmpty())
+                shownItems.setAll(allItems);
+            else
+                shownItems.setAll(suggester.suggest(s, SUGGESTION_LIMIT));
+        };
+        allItems.addListener((ListChangeListener<T>) c -> filter.run());
+        final PauseTransition pauseTransition = debounce(() -> {
+            filter.run();
+            final String s = comboBox.getEditor().getText();
+            if (!shownItems.isEmpty() && s != null && !s.isEmpty())
+                comboBox.show();
+        });
+
         comboBox.getEditor().focusedProperty().addListener(obs -> {
+            // filter the items for the text typed just before the focus change
+            if (pauseTransition.getStatus() == Animation.Status.RUNNING) {
+                pauseTransition.stop();
+                filter.run();
+            }
             if (comboBox.getSelectionModel().getSelectedIndex() < 0) {
                 comboBox.getEditor().setText(null);
             }
@@ -179,6 +286,11 @@ public class AutoCompletion {
                         }
                         return;
                     case ENTER:
+                        // select from the items filtered for the text typed just before the enter
+                        if (pauseTransition.getStatus() == Animation.Status.RUNNING) {
+                            pauseTransition.stop();
+                            filter.run();
+                        }
                         if ((comboBox.getSelectionModel().getSelectedIndex() < 0)
                                 && (!comboBox.getItems().isEmpty()))
                             comboBox.getSelectionModel().selectFirst();
@@ -198,15 +310,13 @@ public class AutoCompletion {
                             mMoveCaretToPos = true;
                             mCaretPos = comboBox.getEditor().getCaretPosition();
                         }
-                        // setup filter
-                        filteredList.setPredicate(t -> comparator.matches(s1, t));
+                        // update the shown items once the typing pauses
+                        pauseTransition.playFromStart();
                         comboBox.getEditor().setText(s1);
                         if (!mMoveCaretToPos)
                             mCaretPos = -1;
                         moveCaret(comboBox.getEditor(), mCaretPos, s1.length());
                         mMoveCaretToPos = false;
-                        if (!filteredList.isEmpty() && !s1.isEmpty())
-                            comboBox.show();
                         break;
                 }
             }
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * BalanceIndex keeps the transactions of an account in sorted order with their cash amounts, so the
+ * position of a transaction and the running balance at any position are found in O(log n), and a
+ * transaction is inserted, removed, or changed in O(log n).
+ *
+ * The positions shift when a transaction is inserted or removed, so instead of a Fenwick tree over
+ * fixed positions, it is a randomized balanced search tree (treap) with the size and the sum of the
+ * cash amounts of each subtree.
+ *
+ * @param <K> - the sort key of a transaction, which also carries the transaction id
+ */
+class BalanceIndex<K> {
+
+    private static class Node<K> {
+        private final K key;
+        private final BigDecimal amount;
+        private final int priority;
+        private Node<K> left;
+        private Node<K> right;
+        private int size;
+        private BigDecimal sum;
+
+        Node(K key, BigDecimal amount, int priority) {
+            this.key = key;
+            this.amount = amount;
+            this.priority = priority;
+            this.size = 1;
+            this.sum = amount;
+        }
+    }
+
+    // the two trees of a split
+    private static class Split<K> {
+        private Node<K> before;
+        private Node<K> after;
+
+        Split(Node<K> before, Node<K> after) {
+            this.before = before;
+            this.after = after;
+        }
+    }
+
+    private final Comparator<K> comparator;
+    private final ToIntFunction<K> idFunction;
+    private final BigDecimal zero;
+    private final Map<Integer, K> idKeyMap = new HashMap<>();
+    private final Random random = new Random(0);
+    private Node<K> root = null;
+
+    /**
+     * constructor
+     * @param comparator - the order of the transactions, consistent with equals of the ids
+     * @param idFunction - the transaction id of a key
+     * @param scale - the scale of the cash amounts
+     */
+    BalanceIndex(Comparator<K> comparator, ToIntFunction<K> idFunction, int scale) {
+        this.comparator = comparator;
+        this.idFunction = idFunction;
+        this.zero = BigDecimal.ZERO.setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    private static <K> int size(Node<K> node) { return node == null ? 0 : node.size; }
+
+    private BigDecimal sum(Node<K> node) { return node == null ? zero : node.sum; }
+
+    private Node<K> update(Node<K> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        node.sum = sum(node.left).add(node.amount).add(sum(node.right));
+        return node;
+    }
+
+    private Node<K> merge(Node<K> a, Node<K> b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            return update(a);
+        }
+        b.left = merge(a, b.left);
+        return update(b);
+    }
+
+    // split into the nodes before the key and the nodes on or after the key
+    private Split<K> split(Node<K> node, K key) {
+        if (node == null)
+            return new Split<>(null, null);
+        if (comparator.compare(node.key, key) < 0) {
+            final Split<K> split = split(node.right, key);
+            node.right = split.before;
+            split.before = update(node);
+            return split;
+        }
+        final Split<K> split = split(node.left, key);
+        node.left = split.after;
+        split.after = update(node);
+        return split;
+    }
+
+    // the number of nodes with keys before the key
+    private int rank(K key) {
+        int rank = 0;
+        Node<K> node = root;
+        while (node != null) {
+            if (comparator.compare(node.key, key) < 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return rank;
+    }
+
+    private Node<K> nodeAt(int index) {
+        Objects.checkIndex(index, size());
+        Node<K> node = root;
+        while (true) {
+            final int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * insert a transaction, or move and change it if it is already in the index
+     * @param key - the sort key of the transaction
+     * @param amount - the cash amount of the transaction, at the scale of the index
+     */
+    void put(K key, BigDecimal amount) {
+        remove(idFunction.applyAsInt(key));
+        final Split<K> split = split(root, key);
+        root = merge(merge(split.before, new Node<>(key, amount, random.nextInt())), split.after);
+        idKeyMap.put(idFunction.applyAsInt(key), key);
+    }
+
+    /**
+     * remove a transaction
+     * @param id - the transaction id
+     * @return true if the transaction was in the index
+     */
+    boolean remove(int id) {
+        final K key = idKeyMap.remove(id);
+        if (key == null)
+            return false;
+        final Split<K> split = split(root, key);
+        // the first node on or after the key is the one to be removed
+        root = merge(split.before, removeFirst(split.after));
+        return true;
+    }
+
+    private Node<K> removeFirst(Node<K> node) {
+        if (node.left == null)
+            return node.right;
+        node.left = removeFirst(node.left);
+        return update(node);
+    }
+
+    /**
+     * @param id - the transaction id
+     * @return the position of the transaction, or -1 if it is not in the index
+     */
+    int indexOf(int id) {
+        final K key = idKeyMap.get(id);
+        return key == null ? -1 : rank(key);
+    }
+
+    /**
+     * @param id - the transaction id
+     * @return the key of the transaction, or null if it is not in the index
+     */
+    K getKey(int id) { return idKeyMap.get(id); }
+
+    /**
+     * @param index - the position
+     * @return the id of the transaction at the position
+     */
+    int idAt(int index) { return idFunction.applyAsInt(nodeAt(index).key); }
+
+    /**
+     * @param index - the position
+     * @return the cash amount of the transaction at the position
+     */
+    BigDecimal amountAt(int index) { return nodeAt(index).amount; }
+
+    /**
+     * @param index - the position, from 0 to size, inclusive
+     * @return the sum of the cash amounts of the transactions before the position
+     */
+    BigDecimal balanceBefore(int index) {
+        if (index < 0 || index > size())
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+        BigDecimal balance = zero;
+        Node<K> node = root;
+        while (node != null && index > 0) {
+            final int leftSize = size(node.left);
+            if (index <= leftSize) {
+                node = node.left;
+            } else {
+                balance = balance.add(sum(node.left)).add(node.amount);
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return balance;
+    }
+
+    /**
+     * @param predicate - true for a prefix of the keys in order and false for the rest
+     * @return the length of the prefix
+     */
+    int prefixLength(Predicate<K> predicate) {
+        int length = 0;
+        Node<K> node = root;
+        while (node != null) {
+            if (predicate.test(node.key)) {
+                length += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return length;
+    }
+
+    int size() { return size(root); }
+
+    void clear() {
+        root = null;
+        idKeyMap.clear();
+    }
+}
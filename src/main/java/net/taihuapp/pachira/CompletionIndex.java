@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * CompletionIndex finds the best matches of a typed text among a fixed list of items.
+ *
+ * The case folded text of each item is entered in a sorted array once from the start, and once from
+ * the start of each later word, so the items with a word starting with the typed text are a range
+ * found by binary search.  The matches are ranked by where they match, the start of the text, then
+ * the start of a later word, then anywhere inside a word, and then by the order of the items.  Only
+ * when the word matches are fewer than asked, the items are scanned for the rest.
+ *
+ * @param <T> - the type of the items
+ */
+class CompletionIndex<T> {
+
+    private final List<T> items; // in the order of rank, best first
+    private final String[] foldedTexts; // case folded text of each item
+    private final String[] keys; // sorted case folded text from the start of each word
+    private final int[] codes; // item index * 2, plus 1 if the key is not from the start of the text
+
+    /**
+     * constructor
+     * @param items - the items, best ranked first
+     * @param textFunction - the text of an item to be matched
+     */
+    CompletionIndex(List<T> items, Function<T, String> textFunction) {
+        this.items = List.copyOf(items);
+        final int n = this.items.size();
+        foldedTexts = new String[n];
+        final List<String> keyList = new ArrayList<>();
+        final List<Integer> codeList = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            final String text = textFunction.apply(this.items.get(i));
+            final String folded = fold(text == null ? "" : text);
+            foldedTexts[i] = folded;
+            for (int j = 0; j < folded.length(); j++) {
+                if (j == 0 || (Character.isLetterOrDigit(folded.charAt(j))
+                        && !Character.isLetterOrDigit(folded.charAt(j - 1)))) {
+                    keyList.add(folded.substring(j));
+                    codeList.add(2 * i + (j == 0 ? 0 : 1));
+                }
+            }
+        }
+
+        final Integer[] order = new Integer[keyList.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparing(keyList::get));
+        keys = new String[order.length];
+        codes = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = keyList.get(order[i]);
+            codes[i] = codeList.get(order[i]);
+        }
+    }
+
+    // the position of the first key not less than the text
+    private int lowerBound(String text) {
+        int lo = 0, hi = keys.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (keys[mid].compareTo(text) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * @param text - a text
+     * @return the text in the case used for matching
+     */
+    static String fold(String text) { return text.toLowerCase(Locale.ROOT); }
+
+    /**
+     * @return all the items, best ranked first
+     */
+    List<T> getItems() { return items; }
+
+    /**
+     * find the best matches of a text
+     * @param text - the typed text
+     * @param k - the maximum number of matches
+     * @return up to k items containing the text, case insensitive, best first.  The best k items
+     *         if the text is empty.
+     */
+    List<T> complete(String text, int k) {
+        final String folded = fold(text == null ? "" : text);
+        if (k <= 0)
+            return List.of();
+        if (folded.isEmpty())
+            return items.subList(0, Math.min(k, items.size()));
+
+        // the keys starting with the text are together in the sorted array
+        final int lo = lowerBound(folded);
+        final int end = lowerBound(folded + Character.MAX_VALUE);
+
+        // the items matching at the start of the text, and the other items matching at a word start,
+        // the set bits are in the order of rank
+        final BitSet textStarts = new BitSet(items.size());
+        final BitSet wordStarts = new BitSet(items.size());
+        for (int i = lo; i < end; i++)
+            ((codes[i] & 1) == 0 ? textStarts : wordStarts).set(codes[i] >> 1);
+        wordStarts.andNot(textStarts);
+
+        final List<T> result = new ArrayList<>(Math.min(k, items.size()));
+        for (BitSet bitSet : List.of(textStarts, wordStarts)) {
+            for (int i = bitSet.nextSetBit(0); i >= 0 && result.size() < k; i = bitSet.nextSetBit(i + 1))
+                result.add(items.get(i));
+        }
+
+        // fill up with the matches inside words
+        for (int i = 0; i < foldedTexts.length && result.size() < k; i++) {
+            if (!textStarts.get(i) && !wordStarts.get(i) && foldedTexts[i].contains(folded))
+                result.add(items.get(i));
+        }
+        return result;
+    }
+}
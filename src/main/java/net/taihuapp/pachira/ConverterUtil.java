@@ -38,12 +38,12 @@ public class ConverterUtil {
 
         @Override
         public String toString(Integer tid) {
-            return mainModel.getTag(tag -> tag.getID() == tid).map(Tag::getName).orElse("");
+            return mainModel.getTag(tid).map(Tag::getName).orElse("");
         }
 
         @Override
         public Integer fromString(String tagName) {
-            return mainModel.getTag(tag -> tag.getName().equals(tagName)).map(Tag::getID).orElse(0);
+            return mainModel.getTag(tagName).map(Tag::getID).orElse(0);
         }
     }
 
@@ -57,7 +57,7 @@ public class ConverterUtil {
 
         @Override
         public Account fromString(String s) {
-            return mainModel.getAccount(a -> a.getName().equals(s)).orElse(null);
+            return mainModel.getAccount(s).orElse(null);
         }
     }
 
@@ -68,12 +68,12 @@ public class ConverterUtil {
 
         @Override
         public String toString(Integer aid) {
-            return mainModel.getAccount(a -> a.getID() == aid).map(Account::getName).orElse("");
+            return mainModel.getAccount(aid).map(Account::getName).orElse("");
         }
 
         @Override
         public Integer fromString(String accountName) {
-            return mainModel.getAccount(a -> a.getName().equals(accountName)).map(Account::getID).orElse(0);
+            return mainModel.getAccount(accountName).map(Account::getID).orElse(0);
         }
     }
 
@@ -88,9 +88,9 @@ public class ConverterUtil {
                 return "";
 
             if (id > 0)
-                return mainModel.getCategory(c -> c.getID() == id).map(Category::getName).orElse("");
+                return mainModel.getCategory(id).map(Category::getName).orElse("");
 
-            return mainModel.getAccount(a -> a.getID() == -id).map(a -> "[" + a.getName() + "]").orElse("");
+            return mainModel.getAccount(-id).map(a -> "[" + a.getName() + "]").orElse("");
         }
 
         @Override
@@ -99,10 +99,10 @@ public class ConverterUtil {
                 return 0;
 
             if (name.startsWith("[") && name.endsWith("]"))
-                return mainModel.getAccount(account -> ("[" + account.getName() + "]").equals(name))
+                return mainModel.getAccount(name.substring(1, name.length() - 1))
                                 .map(account -> -account.getID()).orElse(0);
 
-            return mainModel.getCategory(category -> category.getName().equals(name))
+            return mainModel.getCategory(name)
                     .map(Category::getID).orElse(0);
         }
     }
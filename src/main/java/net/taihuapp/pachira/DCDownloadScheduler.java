@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import com.webcohesion.ofx4j.OFXException;
+import com.webcohesion.ofx4j.client.AccountStatement;
+import com.webcohesion.ofx4j.client.net.OFXConnectionException;
+import com.webcohesion.ofx4j.client.net.OFXServerException;
+import com.webcohesion.ofx4j.client.net.OFXV1Connection;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Downloads the statements of several accounts concurrently.  The downloads from the same
+ * financial institution are limited to a few at a time, each download is retried with
+ * exponential backoff on connection failures, and the downloaded statements are handed to
+ * the importer one at a time, on the calling thread or on a given executor such as the FX thread.
+ */
+class DCDownloadScheduler {
+
+    private static final Logger logger = LogManager.getLogger(DCDownloadScheduler.class);
+
+    static final int DEFAULT_MAX_PER_FI = 2;
+    static final int DEFAULT_MAX_THREADS = 8;
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+    static final long DEFAULT_BACKOFF_MILLIS = 1000;
+    static final int DEFAULT_TIMEOUT_MILLIS = 60000;
+
+    // how often the import stage checks that the downloads are still running
+    private static final long POLL_MILLIS = 500;
+
+    /**
+     * fetches the statement of an account, called on a download thread
+     */
+    @FunctionalInterface
+    interface StatementFetcher {
+        AccountStatement fetch() throws OFXException;
+    }
+
+    /**
+     * imports a downloaded statement, called one at a time on the import executor
+     */
+    @FunctionalInterface
+    interface StatementImporter<R> {
+        R importStatement(Account account, AccountStatement statement) throws Exception;
+    }
+
+    /**
+     * an account to be downloaded
+     */
+    static class Job {
+        private final Account account;
+        private final String fiKey;
+        private final StatementFetcher fetcher;
+
+        /**
+         * @param account - the account of the statement
+         * @param fiKey - identifies the financial institution, jobs with the same key share the concurrency cap
+         * @param fetcher - fetches the statement
+         */
+        Job(Account account, String fiKey, StatementFetcher fetcher) {
+            this.account = account;
+            this.fiKey = fiKey;
+            this.fetcher = fetcher;
+        }
+
+        Account getAccount() { return account; }
+    }
+
+    /**
+     * the outcome of a job, either the value from the importer or the exception from download or import
+     */
+    static class Result<R> {
+        private final Account account;
+        private final R value;
+        private final Exception exception;
+        private final int attempts;
+
+        private Result(Account account, R value, Exception exception, int attempts) {
+            this.account = account;
+            this.value = value;
+            this.exception = exception;
+            this.attempts = attempts;
+        }
+
+        Account getAccount() { return account; }
+        R getValue() { return value; }
+        Exception getException() { return exception; }
+        int getAttempts() { return attempts; }
+        boolean isSuccess() { return exception == null; }
+    }
+
+    /**
+     * an OFX connection with connect and read timeouts
+     */
+    static class TimeoutOFXV1Connection extends OFXV1Connection {
+        private final int timeoutMillis;
+
+        TimeoutOFXV1Connection(int timeoutMillis) { this.timeoutMillis = timeoutMillis; }
+
+        @Override
+        protected HttpURLConnection openConnection(URL url) throws IOException {
+            final HttpURLConnection connection = super.openConnection(url);
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            return connection;
+        }
+    }
+
+    // a fetched statement, or the failure, waiting for the import stage
+    private static class Fetched {
+        private final Job job;
+        private final AccountStatement statement;
+        private final Exception exception;
+        private final int attempts;
+
+        Fetched(Job job, AccountStatement statement, Exception exception, int attempts) {
+            this.job = job;
+            this.statement = statement;
+            this.exception = exception;
+            this.attempts = attempts;
+        }
+    }
+
+    private final int maxPerFI;
+    private final int maxThreads;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    DCDownloadScheduler() {
+        this(DEFAULT_MAX_PER_FI, DEFAULT_MAX_THREADS, DEFAULT_MAX_ATTEMPTS, DEFAULT_BACKOFF_MILLIS);
+    }
+
+    /**
+     * @param maxPerFI - the maximum number of concurrent downloads from one financial institution
+     * @param maxThreads - the maximum number of concurrent downloads in total
+     * @param maxAttempts - the maximum number of attempts of each download
+     * @param backoffMillis - the wait before the first retry, doubled for each further retry
+     */
+    DCDownloadScheduler(int maxPerFI, int maxThreads, int maxAttempts, long backoffMillis) {
+        if (maxPerFI < 1 || maxThreads < 1 || maxAttempts < 1 || backoffMillis < 0)
+            throw new IllegalArgumentException("Invalid download scheduler settings " + maxPerFI + ", "
+                    + maxThreads + ", " + maxAttempts + ", " + backoffMillis);
+        this.maxPerFI = maxPerFI;
+        this.maxThreads = maxThreads;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * download the statements of the jobs and import them on this thread.
+     * @param jobs - the accounts to be downloaded
+     * @param importer - imports each downloaded statement, called on this thread one at a time,
+     *                 in the order the downloads finish
+     * @return the results in the order of the jobs
+     * @throws InterruptedException - if interrupted while waiting for the downloads, the remaining
+     *                              downloads are cancelled
+     */
+    <R> List<Result<R>> run(List<Job> jobs, StatementImporter<R> importer) throws InterruptedException {
+        return run(jobs, importer, Runnable::run);
+    }
+
+    /**
+     * download the statements of the jobs and import them on the import executor.
+     * @param jobs - the accounts to be downloaded
+     * @param importer - imports each downloaded statement, called on the import executor one at a time,
+     *                 in the order the downloads finish
+     * @param importExecutor - runs the imports, e.g. Platform::runLater, this thread waits for each
+     * @return the results in the order of the jobs
+     * @throws InterruptedException - if interrupted while waiting for the downloads or an import, the
+     *                              remaining downloads are cancelled
+     */
+    <R> List<Result<R>> run(List<Job> jobs, StatementImporter<R> importer, Executor importExecutor)
+            throws InterruptedException {
+        if (jobs.isEmpty())
+            return new ArrayList<>();
+
+        // the jobs of each financial institution, in order
+        final Map<String, Queue<Job>> fiJobQueueMap = new LinkedHashMap<>();
+        for (Job job : jobs)
+            fiJobQueueMap.computeIfAbsent(job.fiKey, k -> new ConcurrentLinkedQueue<>()).add(job);
+
+        // each financial institution gets up to maxPerFI workers draining its queue
+        final List<Queue<Job>> workerQueueList = new ArrayList<>();
+        for (Queue<Job> queue : fiJobQueueMap.values()) {
+            for (int i = 0; i < Math.min(maxPerFI, queue.size()); i++)
+                workerQueueList.add(queue);
+        }
+
+        final Map<Job, Result<R>> resultMap = new IdentityHashMap<>();
+        final BlockingQueue<Fetched> fetchedQueue = new LinkedBlockingQueue<>();
+        final ExecutorService executorService = Executors.newFixedThreadPool(
+                Math.min(maxThreads, workerQueueList.size()), r -> {
+                    final Thread thread = new Thread(r, "DCDownload");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            final List<Future<?>> workerList = new ArrayList<>();
+            for (Queue<Job> queue : workerQueueList) {
+                workerList.add(executorService.submit(() -> {
+                    Job job;
+                    while ((job = queue.poll()) != null && !Thread.currentThread().isInterrupted()) {
+                        try {
+                            fetchedQueue.add(fetch(job));
+                        } catch (Error e) {
+                            // fail the job instead of losing it, and stop this worker
+                            fetchedQueue.add(new Fetched(job, null, new ExecutionException(e), 1));
+                            throw e;
+                        }
+                    }
+                }));
+            }
+
+            // the serialized import stage
+            while (resultMap.size() < jobs.size()) {
+                final Fetched fetched = fetchedQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (fetched == null) {
+                    // the workers stopped, nothing more to come for the jobs left
+                    if (workerList.stream().allMatch(Future::isDone) && fetchedQueue.isEmpty()) {
+                        for (Job job : jobs)
+                            resultMap.computeIfAbsent(job, k -> new Result<>(k.account, null,
+                                    new ExecutionException("Download of " + k.account.getName()
+                                            + " stopped before it started", null), 0));
+                    }
+                    continue;
+                }
+                final Account account = fetched.job.account;
+                if (fetched.exception != null) {
+                    logger.warn("Download " + account.getName() + " failed after " + fetched.attempts
+                            + " attempt(s)", fetched.exception);
+                    resultMap.put(fetched.job, new Result<>(account, null, fetched.exception, fetched.attempts));
+                    continue;
+                }
+                final CompletableFuture<R> imported = new CompletableFuture<>();
+                importExecutor.execute(() -> {
+                    try {
+                        imported.complete(importer.importStatement(account, fetched.statement));
+                    } catch (Throwable e) {
+                        imported.completeExceptionally(e);
+                    }
+                });
+                try {
+                    resultMap.put(fetched.job, new Result<>(account, imported.get(), null, fetched.attempts));
+                } catch (ExecutionException e) {
+                    final Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    logger.warn("Import downloaded statement for " + account.getName() + " failed", cause);
+                    resultMap.put(fetched.job, new Result<>(account, null, cause, fetched.attempts));
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        final List<Result<R>> resultList = new ArrayList<>();
+        for (Job job : jobs)
+            resultList.add(resultMap.get(job));
+        return resultList;
+    }
+
+    // fetch the statement of a job, retry connection failures with backoff
+    private Fetched fetch(Job job) {
+        long wait = backoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return new Fetched(job, job.fetcher.fetch(), null, attempt);
+            } catch (OFXConnectionException e) {
+                // a rejected request would be rejected again
+                final boolean clientError = e instanceof OFXServerException
+                        && ((OFXServerException) e).getHttpCode() >= 400
+                        && ((OFXServerException) e).getHttpCode() < 500;
+                if (clientError || attempt >= maxAttempts)
+                    return new Fetched(job, null, e, attempt);
+                logger.info("Download " + job.account.getName() + " attempt " + attempt + " failed: "
+                        + e.getMessage() + ", retry in " + wait + " ms");
+            } catch (OFXException | RuntimeException e) {
+                return new Fetched(job, null, e, attempt);
+            }
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Fetched(job, null, e, attempt);
+            }
+            wait *= 2;
+        }
+    }
+}
@@ -92,7 +92,7 @@ public class EditAccountDialogController {
         }
 
         if (((account == null) || (name.compareTo(account.getName()) != 0))
-                && mainModel.getAccount(a -> a.getName().equals(name)).isPresent()) {
+                && mainModel.getAccount(name).isPresent()) {
             // name is used by another account already
             final Alert alert = new Alert(Alert.AlertType.WARNING);
             alert.setTitle("Warning");
@@ -363,7 +363,7 @@ public class EditLoanDialogController {
         stList.add(new SplitTransaction(-1, -loan.getAccountID(), 0, "principal payment",
                 paymentItem.getPrincipalAmount().negate(), 0));
         stList.add(new SplitTransaction(-1,
-                mainModel.getCategory(c -> c.getName().equals("Interest Exp")).map(Category::getID).orElse(0),
+                mainModel.getCategory("Interest Exp").map(Category::getID).orElse(0),
                 0, "interest payment", paymentItem.getInterestAmount().negate(), 0));
         transaction.setSplitTransactionList(stList);
         transaction.setAmount(stList.stream().map(SplitTransaction::getAmount)
@@ -186,7 +186,7 @@ public class EditReminderDialogController {
                     stList.add(new SplitTransaction(-1, n, 0, "principal payment",
                             paymentItemList.get(0).getPrincipalAmount().negate(), 0));
                     // add the interest payment
-                    int cid = mainModel.getCategory(c -> c.getName().equals("Interest Exp"))
+                    int cid = mainModel.getCategory("Interest Exp")
                             .map(Category::getID).orElse(0);
                     stList.add(new SplitTransaction(-1, cid, 0, "interest payment",
                             paymentItemList.get(0).getInterestAmount().negate(), 0));
@@ -247,7 +247,9 @@ public class EditReminderDialogController {
         mTypeChoiceBox.valueProperty().bindBidirectional(mReminder.getTypeProperty());
         mPayeeTextField.textProperty().bindBidirectional(mReminder.getPayeeProperty());
         try {
-            TextFields.bindAutoCompletion(mPayeeTextField, mainModel.getPayeeSet());
+            final PayeeIndex payeeIndex = mainModel.getPayeeIndex();
+            TextFields.bindAutoCompletion(mPayeeTextField, request ->
+                    payeeIndex.getSuggestions(request.getUserText(), AutoCompletion.SUGGESTION_LIMIT));
         } catch (ModelException e) {
             final String msg = "Failed to get payee set";
             logger.error(msg, e);
@@ -26,7 +26,6 @@ import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
-import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
@@ -448,8 +447,9 @@ public class EditTransactionDialogControllerNew {
         allSecurityIDSet.addAll(mainModel.getSecurityList().stream().map(Security::getID).collect(Collectors.toSet()));
         final TreeSet<Integer> accountSecurityIDSet = new TreeSet<>(Comparator.comparing(securityIDConverter::toString));
         try {
-            SortedList<Transaction> defaultAccountTransactions = mainModel.getAccountTransactionList(defaultAccount);
-            List<SecurityHolding> shList = mainModel.computeSecurityHoldings(defaultAccountTransactions,
+            List<TransactionRecord> defaultAccountTransactions =
+                    mainModel.getAccountTransactionRecordList(defaultAccount);
+            List<SecurityHolding> shList = mainModel.computeRecordSecurityHoldings(defaultAccountTransactions,
                     LocalDate.now(), -1);
             accountSecurityIDSet.addAll(mainModel.fromSecurityHoldingList(shList).stream()
                     .map(Security::getID).collect(Collectors.toSet()));
@@ -486,12 +486,15 @@ public class EditTransactionDialogControllerNew {
 
         // payee, same visibility as reference
         try {
-            TextFields.bindAutoCompletion(mPayeeTextField, mainModel.getPayeeSet());
+            final PayeeIndex payeeIndex = mainModel.getPayeeIndex();
+            TextFields.bindAutoCompletion(mPayeeTextField, request ->
+                    payeeIndex.getSuggestions(request.getUserText(), AutoCompletion.SUGGESTION_LIMIT));
             // add a listener to autofill category.
             PayeeTextFocusChangeListener = (obs, o, n) -> {
                 if (!n) {
                     // out of focus, autofill category
-                    Integer categoryID = mainModel.getDefaultCategory(mPayeeTextField.getText());
+                    Integer categoryID = payeeIndex.getDefaultCategory(mTransaction.getAccountID(),
+                            mPayeeTextField.getText());
                     mCategoryComboBox.getSelectionModel().select(categoryID);
                 }
             };
@@ -765,8 +768,8 @@ public class EditTransactionDialogControllerNew {
         final String memo = mTransaction.getMemo().isEmpty() ? "Share class conversion" : mTransaction.getMemo();
         List<SecurityHolding> shList;
         try {
-            SortedList<Transaction> transactions = mainModel.getAccountTransactionList(account);
-            shList = mainModel.computeSecurityHoldings(transactions, tDate, mTransaction.getID());
+            List<TransactionRecord> transactions = mainModel.getAccountTransactionRecordList(account);
+            shList = mainModel.computeRecordSecurityHoldings(transactions, tDate, mTransaction.getID());
         } catch (ModelException e) {
             mLogger.error("Failed to computer Security holdings for Account {}", account.getName(), e);
             return false;
@@ -885,7 +888,7 @@ public class EditTransactionDialogControllerNew {
                         "Please make sure transfer account differs from originating account");
                 return false;
             }
-            if (mainModel.getAccount(a -> a.getID() == -categoryID).isEmpty()
+            if (mainModel.getAccount(-categoryID).isEmpty()
                     && mTransaction.getSplitTransactionList().isEmpty()) {
                 mLogger.warn("Invalid transfer account, ID = {}", -categoryID);
                 showWarningDialog("Invalid transfer account, ID = " + (-categoryID),
@@ -919,16 +922,16 @@ public class EditTransactionDialogControllerNew {
         final String securityName = mainModel.getSecurity(mTransaction.getSecurityID()).
                 map(Security::getName).orElse("");
         if (ta == SELL || ta == SHRSOUT || ta == CVTSHRT) {
-            Account account = mainModel.getAccount(a -> a.getID() == accountID).orElse(null);
+            Account account = mainModel.getAccount(accountID).orElse(null);
             if (account == null) {
                 showWarningDialog("Invalid Account ID", "Account ID " + accountID + " is not valid");
                 return false;
             }
 
             try {
-                SortedList<Transaction> transactions = mainModel.getAccountTransactionList(account);
+                List<TransactionRecord> transactions = mainModel.getAccountTransactionRecordList(account);
                 final List<SecurityHolding> securityHoldingList =
-                        mainModel.computeSecurityHoldings(transactions,
+                        mainModel.computeRecordSecurityHoldings(transactions,
                                 mTransaction.getTDate(), mTransaction.getID());
 
                 boolean hasEnough = false;
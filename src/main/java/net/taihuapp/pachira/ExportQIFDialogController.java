@@ -25,15 +25,18 @@ import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Pair;
 import net.taihuapp.pachira.dao.DaoException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
 import java.time.LocalDate;
-import java.util.List;
+import java.util.ArrayList;
+import java.util.Optional;
 
 public class ExportQIFDialogController {
 
@@ -96,13 +99,13 @@ public class ExportQIFDialogController {
             return;
 
         try {
-            final String output = mainModel.exportToQIF(mAccountCheckBox.isSelected(), mCategoryCheckBox.isSelected(),
-                    mSecurityCheckBox.isSelected(), mTransactionCheckBox.isSelected(),
-                    mFromDatePicker.getValue(), mToDatePicker.getValue(),
-                    mAccountListView.getSelectionModel().getSelectedItems());
-            FileWriter fileWriter = new FileWriter(file);
-            fileWriter.write(output);
-            fileWriter.close();
+            try (Writer writer = Files.newBufferedWriter(file.toPath())) {
+                mainModel.exportToQIF(writer, mAccountCheckBox.isSelected(), mCategoryCheckBox.isSelected(),
+                        mSecurityCheckBox.isSelected(), mTransactionCheckBox.isSelected(),
+                        mFromDatePicker.getValue(), mToDatePicker.getValue(),
+                        new ArrayList<>(mAccountListView.getSelectionModel().getSelectedItems()),
+                        mainModel.getMaxReadSessions());
+            }
 
             getStage().close();
         } catch (IOException | DaoException | ModelException e) {
@@ -168,25 +171,8 @@ public class ExportQIFDialogController {
         mAccountListView.setItems(accountList);
         mAccountListView.getSelectionModel().selectAll();
 
-        LocalDate fromDate = LocalDate.MAX;
-        LocalDate toDate = LocalDate.MIN;
-        for (Account account : accountList) {
-            final List<Transaction> transactionList = mainModel.getAccountTransactionList(account);
-            final int s = transactionList.size();
-            if (s == 0)
-                continue;
-
-            if (transactionList.get(0).getTDate().isBefore(fromDate))
-                fromDate = transactionList.get(0).getTDate();
-            if (transactionList.get(s-1).getTDate().isAfter(toDate))
-                toDate = transactionList.get(s-1).getTDate();
-        }
-        if (fromDate == LocalDate.MAX) {
-            mFromDatePicker.setValue(LocalDate.now());
-            mToDatePicker.setValue(LocalDate.now());
-        } else {
-            mFromDatePicker.setValue(fromDate);
-            mToDatePicker.setValue(toDate);
-        }
+        final Optional<Pair<LocalDate, LocalDate>> dateRange = mainModel.getTransactionDateRange(accountList);
+        mFromDatePicker.setValue(dateRange.map(Pair::getKey).orElse(LocalDate.now()));
+        mToDatePicker.setValue(dateRange.map(Pair::getValue).orElse(LocalDate.now()));
     }
 }
\ No newline at end of file
@@ -22,7 +22,6 @@ package net.taihuapp.pachira;
 
 import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.ListChangeListener;
-import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.AnchorPane;
@@ -44,7 +43,8 @@ public class HoldingsDialogController {
     private static final Logger logger = LogManager.getLogger(HoldingsDialogController.class);
 
     private MainModel mainModel;
-    SortedList<Transaction> accountTransactionList;
+    private Account account;
+    private List<TransactionRecord> accountTransactionRecordList = null; // loaded on demand
 
     @FXML
     private AnchorPane mMainPane;
@@ -72,7 +72,9 @@ public class HoldingsDialogController {
     private void populateTreeTable() {
         try {
             mSecurityHoldingTreeTableView.setRoot(new TreeItem<>(new SecurityHolding(SecurityHolding.TOTAL, 2)));
-            for (SecurityHolding h : mainModel.computeSecurityHoldings(accountTransactionList,
+            if (accountTransactionRecordList == null)
+                accountTransactionRecordList = mainModel.getAccountTransactionRecordList(account);
+            for (SecurityHolding h : mainModel.computeRecordSecurityHoldings(accountTransactionRecordList,
                     mDatePicker.getValue(), -1)) {
                 TreeItem<LotView> t = new TreeItem<>(h);
                 mSecurityHoldingTreeTableView.getRoot().getChildren().add(t);
@@ -96,7 +98,7 @@ public class HoldingsDialogController {
 
         this.mainModel = mainModel;
 
-        accountTransactionList = mainModel.getCurrentAccountTransactionList();
+        account = mainModel.getCurrentAccount();
 
         // javafx DatePicker aren't aware of edited the value in its TextField,
         // this is a work around
@@ -170,7 +172,7 @@ public class HoldingsDialogController {
             try {
                 mainModel.mergeSecurityPrices(List.of(new Pair<>(security.getID(), new Price(date, newPrice))));
                 populateTreeTable();
-                mainModel.updateAccountBalance(a -> a.getType().isGroup(Account.Type.Group.INVESTING));
+                mainModel.revalueAccounts(List.of(security.getID()));
             } catch (ModelException e) {
                 final String msg = "Failed to merge price: " + System.lineSeparator()
                         + "Security Name: " + security.getName() + System.lineSeparator()
@@ -247,17 +249,23 @@ public class HoldingsDialogController {
         mDatePicker.setValue(LocalDate.now());
         populateTreeTable();// setValue doesn't trigger an event, call update manually.
 
-        // set a listener on TransactionList
-        mTransactionListChangeListener = c -> populateTreeTable();
-        accountTransactionList.addListener(mTransactionListChangeListener);
+        // set a listener on the transactions of the account shown in the main window
+        mTransactionListChangeListener = c -> {
+            if (mainModel.getCurrentAccountPagedTransactionList().getAccountID() == account.getID()) {
+                accountTransactionRecordList = null; // reload
+                populateTreeTable();
+            }
+        };
+        mainModel.getCurrentAccountPagedTransactionList().addListener(mTransactionListChangeListener);
     }
 
-    void close() { accountTransactionList.removeListener(mTransactionListChangeListener); }
+    void close() {
+        mainModel.getCurrentAccountPagedTransactionList().removeListener(mTransactionListChangeListener);
+    }
 
     @FXML
     private void handleEnterTransaction() {
         final Stage stage = (Stage) mMainPane.getScene().getWindow();
-        final Account account = mainModel.getCurrentAccount();
         List<Transaction.TradeAction> taList = account.getType().isGroup(Account.Type.Group.INVESTING) ?
                 List.of(Transaction.TradeAction.values()) :
                 List.of(Transaction.TradeAction.WITHDRAW, Transaction.TradeAction.DEPOSIT);
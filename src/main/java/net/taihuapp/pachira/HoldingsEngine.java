@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import javafx.util.Pair;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntFunction;
+
+/**
+ * HoldingsEngine replays the transactions of an account into security holdings (lots).
+ *
+ * It keeps, for each account, snapshots of the holdings at periodic (quarterly) date checkpoints.
+ * A checkpoint at date C is the state after all the transactions dated before C are processed.
+ * Each checkpoint carries a fingerprint of the transactions it covers, so a replay only restarts from
+ * the latest checkpoint whose prefix is unchanged, i.e. an edit dated D only replays from the nearest
+ * checkpoint on or before D.
+ */
+class HoldingsEngine {
+
+    /**
+     * loads the lot match information for a transaction
+     */
+    @FunctionalInterface
+    interface MatchInfoLoader {
+        List<MatchInfo> load(int tid) throws ModelException;
+    }
+
+    // a snapshot of the holdings of an account
+    private static class Checkpoint {
+        private final int count; // number of transactions processed
+        private final long fingerprint; // fingerprint of the processed transactions
+        private final Map<String, SecurityHolding> shMap; // security name and holdings
+
+        Checkpoint(int count, long fingerprint, Map<String, SecurityHolding> shMap) {
+            this.count = count;
+            this.fingerprint = fingerprint;
+            this.shMap = shMap;
+        }
+    }
+
+    // account id and checkpoints keyed by checkpoint dates
+    private final Map<Integer, ConcurrentNavigableMap<LocalDate, Checkpoint>> accountCheckpointMap =
+            new ConcurrentHashMap<>();
+
+    /**
+     * the checkpoint date for a given date, which is the first day of the quarter
+     * @param date - input date
+     * @return the first day of the quarter containing date
+     */
+    static LocalDate checkpointDate(LocalDate date) {
+        return LocalDate.of(date.getYear(), ((date.getMonthValue() - 1) / 3) * 3 + 1, 1);
+    }
+
+    // fingerprint of the fields used in replay
+    private static long fingerprint(long h, TransactionRecord t) {
+        return 31 * h + Objects.hash(t.getID(), t.getTDate(), t.getADate(), t.getStatus(), t.getTradeAction(),
+                t.getSecurityID(), t.getQuantity(), t.getOldQuantity(), t.getAmount(), t.getCommission(),
+                t.getAccruedInterest());
+    }
+
+    // deep copy a map of security holdings
+    private static Map<String, SecurityHolding> copy(Map<String, SecurityHolding> shMap) {
+        final Map<String, SecurityHolding> newMap = new HashMap<>();
+        shMap.forEach((name, sh) -> newMap.put(name, sh.copy()));
+        return newMap;
+    }
+
+    /**
+     * drop the checkpoints of an account which cover transactions dated on or after the given date
+     * @param accountID - the account id
+     * @param date - the date of the changed transaction
+     */
+    void invalidate(int accountID, LocalDate date) {
+        final ConcurrentNavigableMap<LocalDate, Checkpoint> checkpoints = accountCheckpointMap.get(accountID);
+        if (checkpoints != null)
+            checkpoints.tailMap(date, false).clear();
+    }
+
+    /**
+     * drop all the checkpoints of all the accounts
+     */
+    void invalidateAll() { accountCheckpointMap.clear(); }
+
+    /**
+     * the latest checkpoint of an account on or before a date
+     * @param accountID - the account id
+     * @param date - the date
+     * @return the date of the checkpoint and the number of transactions it covers, or null if there is none
+     */
+    Pair<LocalDate, Integer> floorCheckpoint(int accountID, LocalDate date) {
+        final ConcurrentNavigableMap<LocalDate, Checkpoint> checkpoints = accountCheckpointMap.get(accountID);
+        final Map.Entry<LocalDate, Checkpoint> entry = checkpoints == null ? null : checkpoints.floorEntry(date);
+        return entry == null ? null : new Pair<>(entry.getKey(), entry.getValue().count);
+    }
+
+    /**
+     * replay the transactions of an account from a checkpoint up to the given date.  The result is the
+     * same as replaying all the transactions, as long as the transactions dated before the checkpoint
+     * did not change since the checkpoint was taken, which is not checked.
+     * @param accountID - the account id
+     * @param cpDate - the date of the checkpoint, see floorCheckpoint
+     * @param tList - list of transaction records dated on or after cpDate, ordered by date
+     * @param date - the date to compute up to
+     * @param scale - number of decimal places for security holdings
+     * @param securityNameFunction - maps security id to security name, empty string for no security
+     * @param matchInfoLoader - loads lot match information for a transaction
+     * @return a map of security name and security holdings, or null if the checkpoint is gone
+     * @throws ModelException - from matchInfoLoader
+     */
+    Map<String, SecurityHolding> replayFrom(int accountID, LocalDate cpDate, List<TransactionRecord> tList,
+                                            LocalDate date, int scale, IntFunction<String> securityNameFunction,
+                                            MatchInfoLoader matchInfoLoader) throws ModelException {
+        final ConcurrentNavigableMap<LocalDate, Checkpoint> checkpoints = accountCheckpointMap.get(accountID);
+        final Checkpoint start = checkpoints == null ? null : checkpoints.get(cpDate);
+        if (start == null)
+            return null;
+
+        // same as in replay, with the fingerprints continued from the checkpoint
+        final Map<String, SecurityHolding> shMap = copy(start.shMap);
+        long fingerprint = start.fingerprint;
+        LocalDate prevDate = null;
+        for (int i = 0; i < tList.size(); i++) {
+            final TransactionRecord t = tList.get(i);
+            final LocalDate tDate = t.getTDate();
+            if (tDate.isAfter(date))
+                break;
+            if (prevDate != null && !checkpointDate(tDate).equals(checkpointDate(prevDate)))
+                checkpoints.put(checkpointDate(tDate), new Checkpoint(start.count + i, fingerprint, copy(shMap)));
+            fingerprint = fingerprint(fingerprint, t);
+            prevDate = tDate;
+
+            final String name = securityNameFunction.apply(t.getSecurityID());
+            if (!name.isEmpty()) {
+                final SecurityHolding securityHolding = shMap.computeIfAbsent(name,
+                        k -> new SecurityHolding(k, scale));
+                securityHolding.processTransaction(t, matchInfoLoader.load(t.getID()));
+            }
+        }
+        return shMap;
+    }
+
+    /**
+     * replay the transactions in tList up to the given date, excluding a given transaction
+     * the input list should have the same account id and ordered by date.
+     * @param tList - list of transaction records
+     * @param date - the date to compute up to
+     * @param exTid - the id of the transaction to be excluded
+     * @param scale - number of decimal places for security holdings
+     * @param securityNameFunction - maps security id to security name, empty string for no security
+     * @param matchInfoLoader - loads lot match information for a transaction
+     * @return a map of security name and security holdings
+     * @throws ModelException - from matchInfoLoader
+     */
+    Map<String, SecurityHolding> replay(List<TransactionRecord> tList, LocalDate date, int exTid, int scale,
+                                        IntFunction<String> securityNameFunction, MatchInfoLoader matchInfoLoader)
+            throws ModelException {
+        final int n = tList.size();
+        if (n == 0)
+            return new HashMap<>();
+
+        final int accountID = tList.get(0).getAccountID();
+        final ConcurrentNavigableMap<LocalDate, Checkpoint> checkpoints =
+                accountCheckpointMap.computeIfAbsent(accountID, k -> new ConcurrentSkipListMap<>());
+
+        // first pass, compute fingerprints and find the checkpoint to start with.
+        // checkpoints are only usable when the list is ordered by date, all belongs to
+        // the same account, and the excluded transaction is not covered.
+        final long[] prefixFingerprints = new long[n+1];
+        boolean useCheckpoints = true;
+        int limit = 0; // transactions before limit are candidates to be covered by checkpoints
+        Checkpoint start = null;
+        LocalDate prevDate = null;
+        for (int i = 0; i < n; i++) {
+            final TransactionRecord t = tList.get(i);
+            final LocalDate tDate = t.getTDate();
+            if (t.getAccountID() != accountID || (prevDate != null && tDate.isBefore(prevDate))) {
+                useCheckpoints = false;
+                break;
+            }
+            if (tDate.isAfter(date))
+                break;
+            if (prevDate != null && !checkpointDate(tDate).equals(checkpointDate(prevDate))) {
+                final Checkpoint cp = checkpoints.get(checkpointDate(tDate));
+                if (cp != null && cp.count == i && cp.fingerprint == prefixFingerprints[i])
+                    start = cp;
+            }
+            prefixFingerprints[i+1] = fingerprint(prefixFingerprints[i], t);
+            limit = i+1;
+            prevDate = tDate;
+            if (t.getID() == exTid)
+                break; // can't use checkpoints after the excluded transaction
+        }
+
+        if (!useCheckpoints)
+            start = null;
+
+        final Map<String, SecurityHolding> shMap = start == null ? new HashMap<>() : copy(start.shMap);
+        for (int i = start == null ? 0 : start.count; i < n; i++) {
+            final TransactionRecord t = tList.get(i);
+            if (useCheckpoints && i > 0 && i < limit) {
+                final LocalDate cpDate = checkpointDate(t.getTDate());
+                if (!cpDate.equals(checkpointDate(tList.get(i-1).getTDate())))
+                    checkpoints.put(cpDate, new Checkpoint(i, prefixFingerprints[i], copy(shMap)));
+            }
+
+            if ((t.getID() == exTid) || t.getTDate().isAfter(date))
+                continue;
+
+            final String name = securityNameFunction.apply(t.getSecurityID());
+            if (!name.isEmpty()) {
+                // it has a security name
+                final SecurityHolding securityHolding = shMap.computeIfAbsent(name,
+                        k -> new SecurityHolding(k, scale));
+                securityHolding.processTransaction(t, matchInfoLoader.load(t.getID()));
+            }
+        }
+        return shMap;
+    }
+}
@@ -96,11 +96,11 @@ public class LoanListDialogController {
     @FXML
     private void initialize() {
         loanNameColumn.setCellValueFactory(cd ->
-                new ReadOnlyStringWrapper(mainModel.getAccount(a -> a.getID() == cd.getValue().getAccountID())
+                new ReadOnlyStringWrapper(mainModel.getAccount(cd.getValue().getAccountID())
                         .map(Account::getName).orElse("Deleted Account")));
 
         loadDescriptionColumn.setCellValueFactory(cd ->
-                new ReadOnlyStringWrapper(mainModel.getAccount(a -> a.getID() == cd.getValue().getAccountID())
+                new ReadOnlyStringWrapper(mainModel.getAccount(cd.getValue().getAccountID())
                         .map(Account::getDescription).orElse("")));
 
         showButton.disableProperty().bind(loanTableView.getSelectionModel().selectedItemProperty().isNull());
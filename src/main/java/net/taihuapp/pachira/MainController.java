@@ -34,17 +34,20 @@ import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.SortedList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.HPos;
 import javafx.scene.Cursor;
+import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.TextAlignment;
@@ -76,6 +79,7 @@ import java.time.ZoneId;
 import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 import java.util.stream.Collectors;
@@ -94,6 +98,8 @@ public class MainController {
 
     public void setHostServices(HostServices hs) { hostServices = hs; }
 
+    @FXML
+    private Menu mFileMenu;
     @FXML
     private Menu mRecentDBMenu;
     @FXML
@@ -103,6 +109,8 @@ public class MainController {
     @FXML
     private MenuItem mDownloadAccountTransactionMenuItem;
     @FXML
+    private MenuItem mDownloadAllAccountTransactionsMenuItem;
+    @FXML
     private MenuItem mSetAccountDirectConnectionMenuItem;
     @FXML
     private MenuItem mCreateMasterPasswordMenuItem;
@@ -152,6 +160,13 @@ public class MainController {
     @FXML
     private TextField mSearchTextField;
 
+    @FXML
+    private HBox mProgressHBox;
+    @FXML
+    private Label mProgressLabel;
+    @FXML
+    private ProgressBar mProgressBar;
+
     private MainModel getMainModel() { return mainModel; }
     private SortedList<Account> accountList;
     private final ListChangeListener<Account> accountListChangeListener = c -> populateTreeTable();
@@ -312,8 +327,8 @@ public class MainController {
                                                         "Do you want to continue?")) {
                                             // either this transaction doesn't have lot matching information,
                                             // or the user choose to ignore lot matching information
-                                            final Account newAccount = getMainModel().getAccount(act ->
-                                                    act.getName().equals(accountMI.getText())).orElse(null);
+                                            final Account newAccount = getMainModel().getAccount(accountMI.getText())
+                                                    .orElse(null);
                                             if (newAccount != null) {
                                                 final TreeItem<Account> groupNode = mAccountTreeTableView.getRoot()
                                                         .getChildren().stream()
@@ -381,10 +396,10 @@ public class MainController {
                             } catch (IOException | DaoException e) {
                                 logAndDisplayException(e.getClass().getName() + " when opening EditTransactionDialog", e);
                             }
-                            for (int i = 0; i < mTransactionTableView.getItems().size(); i++) {
-                                if (mTransactionTableView.getItems().get(i).getID() == selectedTransactionID)
-                                    mTransactionTableView.getSelectionModel().select(i);
-                            }
+                            final int selectedIdx = getMainModel().getCurrentAccountPagedTransactionList()
+                                    .indexOfID(selectedTransactionID);
+                            if (selectedIdx >= 0)
+                                mTransactionTableView.getSelectionModel().select(selectedIdx);
                         }
                     });
 
@@ -395,6 +410,7 @@ public class MainController {
         }
 
         mDownloadAccountTransactionMenuItem.disableProperty().unbind();
+        mDownloadAllAccountTransactionsMenuItem.disableProperty().unbind();
         mSetAccountDirectConnectionMenuItem.disableProperty().unbind();
         mCreateMasterPasswordMenuItem.disableProperty().unbind();
         mUpdateMasterPasswordMenuItem.disableProperty().unbind();
@@ -406,6 +422,7 @@ public class MainController {
                         final Account account = m.getCurrentAccount();
                         return account == null || m.getAccountDC(account.getID()).isEmpty();
                     }, m.getCurrentAccountProperty(), m.getAccountDCList()));
+            mDownloadAllAccountTransactionsMenuItem.disableProperty().bind(Bindings.isEmpty(m.getAccountDCList()));
             mSetAccountDirectConnectionMenuItem.disableProperty().bind(m.getCurrentAccountProperty().isNull()
                     .or(m.hasMasterPasswordProperty.not()));
             mCreateMasterPasswordMenuItem.disableProperty().bind(m.hasMasterPasswordProperty);
@@ -479,41 +496,51 @@ public class MainController {
                 groupAccountList));
     }
 
-    @FXML
-    private void downloadAccountTransactions() {
+    // make sure the vault master password is available, ask the user if needed
+    private boolean enterMasterPasswordForDownload() {
         try {
             if (!getMainModel().hasMasterPasswordInKeyStore()) {
                 List<String> passwords = DialogUtil.showPasswordDialog(getStage(),
                         "Enter Vault Master Password", PasswordDialogController.MODE.ENTER);
                 if (passwords.isEmpty())
-                    return; // user cancelled, do nothing
+                    return false; // user cancelled, do nothing
                 if (passwords.size() != 2 || !getMainModel().verifyMasterPassword(passwords.get(1))) {
                     // either didn't enter master password or failed to enter a correct one
                     DialogUtil.showWarningDialog(getStage(), "Download Account Transactions",
                             "Failed to input correct Master Password",
                             "Account transactions cannot be downloaded." );
-                    return;
+                    return false;
                 }
             }
+            return true;
         } catch (NoSuchAlgorithmException | InvalidKeySpecException | KeyStoreException
                 | UnrecoverableKeyException e) {
             logAndDisplayException("Verify Master Password throws exception", e);
-            return;
+            return false;
         } catch (IOException e) {
             logAndDisplayException("ShowPasswordDialog throws IOException", e);
-            return;
+            return false;
         }
+    }
+
+    private void showUntestedTransactionTypes(Set<TransactionType> untested) {
+        if (!untested.isEmpty()) {
+            StringBuilder context = new StringBuilder();
+            for (TransactionType tt : untested)
+                context.append(tt.toString()).append(System.lineSeparator());
+            DialogUtil.showWarningDialog(getStage(), "Untested Download Transaction Type",
+                    "The following download transaction types are not fully tested, proceed with caution:",
+                    context.toString());
+        }
+    }
+
+    @FXML
+    private void downloadAccountTransactions() {
+        if (!enterMasterPasswordForDownload())
+            return;
 
         try {
-            Set<TransactionType> untested = getMainModel().DCDownloadAccountStatement(getMainModel().getCurrentAccount());
-            if (!untested.isEmpty()) {
-                StringBuilder context = new StringBuilder();
-                for (TransactionType tt : untested)
-                    context.append(tt.toString()).append(System.lineSeparator());
-                DialogUtil.showWarningDialog(getStage(), "Untested Download Transaction Type",
-                        "The following download transaction types are not fully tested, proceed with caution:",
-                        context.toString());
-            }
+            showUntestedTransactionTypes(getMainModel().DCDownloadAccountStatement(getMainModel().getCurrentAccount()));
         } catch (IllegalArgumentException | MalformedURLException | NoSuchAlgorithmException |
             InvalidKeySpecException | KeyStoreException | UnrecoverableKeyException |
             NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException |
@@ -522,6 +549,66 @@ public class MainController {
         }
     }
 
+    @FXML
+    private void downloadAllAccountTransactions() {
+        if (!enterMasterPasswordForDownload())
+            return;
+
+        final MainModel mainModel = getMainModel();
+        final List<Account> accountList = new ArrayList<>();
+        final MainModel.DCStatementsDownload download;
+        try {
+            for (Account account : mainModel.getAccountList(a -> !a.getHiddenFlag())) {
+                if (mainModel.getAccountDC(account.getID()).isPresent())
+                    accountList.add(account);
+            }
+            download = mainModel.DCDownloadAccountStatements(accountList);
+        } catch (IllegalArgumentException | MalformedURLException | NoSuchAlgorithmException |
+                InvalidKeySpecException | KeyStoreException | UnrecoverableKeyException |
+                NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException |
+                IllegalBlockSizeException | BadPaddingException | OFXException | DaoException | ModelException e) {
+            logAndDisplayException(e.getClass().getName() + " exception when download account statements", e);
+            return;
+        }
+
+        // download in the background, the statements are imported on the FX thread
+        final Task<List<DCDownloadScheduler.Result<Set<TransactionType>>>> task = new Task<>() {
+            @Override
+            protected List<DCDownloadScheduler.Result<Set<TransactionType>>> call() throws InterruptedException {
+                return download.run(new DCDownloadScheduler(), Platform::runLater);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            hideProgress();
+            final List<Account> failedList = new ArrayList<>();
+            final Set<TransactionType> untested = new HashSet<>();
+            for (DCDownloadScheduler.Result<Set<TransactionType>> result : task.getValue()) {
+                if (result.isSuccess())
+                    untested.addAll(result.getValue());
+                else
+                    failedList.add(result.getAccount());
+            }
+            if (!failedList.isEmpty()) {
+                final StringBuilder context = new StringBuilder();
+                for (Account account : failedList)
+                    context.append(account.getName()).append(System.lineSeparator());
+                DialogUtil.showWarningDialog(getStage(), "Download All Account Transactions",
+                        "Failed to download the following accounts, see the log for details:", context.toString());
+            }
+            showUntestedTransactionTypes(untested);
+        });
+        task.setOnFailed(e -> {
+            hideProgress();
+            final Throwable throwable = task.getException();
+            logAndDisplayException("Download account statements failed", throwable instanceof Exception ?
+                    (Exception) throwable : new ExecutionException(throwable));
+        });
+        showProgress("Downloading " + accountList.size() + " account statements", -1);
+        final Thread thread = new Thread(task, "DCDownloadAll");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     @FXML
     private void setAccountDirectConnection() {
         try {
@@ -681,7 +768,7 @@ public class MainController {
             dialogStage.showAndWait();
             Transaction t = srd.getSelectedTransaction();
             if (t != null) {
-                Account a = getMainModel().getAccount(account -> account.getID() == t.getAccountID()).orElse(null);
+                Account a = getMainModel().getAccount(t.getAccountID()).orElse(null);
                 if (a == null) {
                     logAndDisplayException("Invalid account id " + t.getAccountID() + " for Transaction " + t.getID(), null);
                     return;
@@ -698,11 +785,11 @@ public class MainController {
                         for (TreeItem<Account> tia1 : tia.getChildren()) {
                             if (tia1.getValue().getID() == a.getID()) {
                                 mAccountTreeTableView.getSelectionModel().select(tia1);
-                                for (Transaction t1 : mTransactionTableView.getItems()) {
-                                    if (t1.getID() == t.getID()) {
-                                        mTransactionTableView.getSelectionModel().select(t1);
-                                        mTransactionTableView.scrollTo(t1);
-                                    }
+                                final int idx = getMainModel().getCurrentAccountPagedTransactionList()
+                                        .indexOfID(t.getID());
+                                if (idx >= 0) {
+                                    mTransactionTableView.getSelectionModel().select(idx);
+                                    mTransactionTableView.scrollTo(idx);
                                 }
                             }
                         }
@@ -813,17 +900,25 @@ public class MainController {
 
         // it might take some time to open and load db
         stage.getScene().setCursor(Cursor.WAIT);
+        showProgress("Loading accounts", -1);
         CompletableFuture.supplyAsync(() -> {
             MainModel model = null;
             try {
-                model = new MainModel(dbName, passwords.get(1), isNew);
+                model = new MainModel(dbName, passwords.get(1), isNew, (workDone, max) -> Platform.runLater(() ->
+                        showProgress("Loading accounts " + workDone + "/" + max, (double) workDone / max)));
             } catch (DaoException | ModelException e) {
                 Platform.runLater(() -> logAndDisplayException("Failed to open connection or init MainModel", e));
             }
             return model;
         }).thenAccept(m -> Platform.runLater(() -> {
+            hideProgress();
             stage.getScene().setCursor(Cursor.DEFAULT);
-            stage.setOnCloseRequest(e -> handleClose());
+            stage.setOnCloseRequest(e -> {
+                if (mFileMenu.isDisable())
+                    e.consume(); // a background task is still writing the database
+                else
+                    handleClose();
+            });
             if (m == null)
                 return;  // open db failed, don't change the current model
 
@@ -836,6 +931,38 @@ public class MainController {
         }));
     }
 
+    /**
+     * show the progress of a long operation at the bottom of the main window
+     * @param text - the description of the operation
+     * @param progress - between 0 and 1, or negative for indeterminate
+     */
+    void showProgress(String text, double progress) {
+        mProgressLabel.setText(text);
+        mProgressBar.setProgress(progress < 0 ? ProgressIndicator.INDETERMINATE_PROGRESS : progress);
+        mProgressHBox.setManaged(true);
+        mProgressHBox.setVisible(true);
+    }
+
+    /**
+     * disable or enable the menus and the views using the database, while a background task
+     * holds the write connection
+     * @param disable - true to disable
+     */
+    private void setDatabaseActionsDisable(boolean disable) {
+        for (Menu menu : List.of(mFileMenu, mEditMenu, mReportsMenu, mOFXMenu))
+            menu.setDisable(disable);
+        for (Node node : List.of(mAccountTreeTableView, mTransactionVBox, mSearchButton, mSearchTextField))
+            node.setDisable(disable);
+    }
+
+    /**
+     * hide the progress of a long operation
+     */
+    void hideProgress() {
+        mProgressHBox.setVisible(false);
+        mProgressHBox.setManaged(false);
+    }
+
     @FXML
     private void handleOpen() {
         final File dbFile = getDBFileFromUser(false);
@@ -1010,13 +1137,39 @@ public class MainController {
         if (file == null)
             return; // user cancelled
 
-        try {
-            getMainModel().importFromQIF(file, result.orElse(""));
-        } catch (DaoException | ModelException | IOException | ParseException e) {
-            final String msg = e.getClass().getName() + " exception when importing QIF file";
-            mLogger.error(msg, e);
-            DialogUtil.showExceptionDialog(getStage(), e.getClass().getName(), msg, e.toString(), e);
-        }
+        // read the file and write the database in the background, then reload the lists on the FX thread
+        final String defaultAccountName = result.orElse("");
+        final Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws IOException, ParseException, ModelException, DaoException {
+                getMainModel().importQIFToDB(file, defaultAccountName, this::updateProgress);
+                return null;
+            }
+        };
+        task.progressProperty().addListener((obs, o, n) ->
+                showProgress("Importing " + file.getName(), n.doubleValue()));
+        task.setOnSucceeded(e -> {
+            hideProgress();
+            setDatabaseActionsDisable(false);
+            try {
+                getMainModel().reloadAfterQIFImport();
+            } catch (DaoException | ModelException ex) {
+                logAndDisplayException(ex.getClass().getName() + " exception when importing QIF file", ex);
+            }
+        });
+        task.setOnFailed(e -> {
+            hideProgress();
+            setDatabaseActionsDisable(false);
+            final Throwable throwable = task.getException();
+            logAndDisplayException(throwable.getClass().getName() + " exception when importing QIF file",
+                    throwable instanceof Exception ? (Exception) throwable : new ExecutionException(throwable));
+        });
+        // no other edits, downloads, or imports until the import is done
+        setDatabaseActionsDisable(true);
+        showProgress("Importing " + file.getName(), 0);
+        final Thread thread = new Thread(task, "QIFImport");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     @FXML
@@ -1313,6 +1466,12 @@ public class MainController {
         updateSavedReportsMenu();
     }
 
+    @FXML
+    private void handleNAVHistoryReport() {
+        showReportDialog(new ReportDialogController.Setting(ReportDialogController.ReportType.NAVHISTORY));
+        updateSavedReportsMenu();
+    }
+
     @FXML
     private void handleInvestingTransactions() {
         showReportDialog(new ReportDialogController.Setting(ReportDialogController.ReportType.INVESTTRANS));
@@ -1540,7 +1699,7 @@ public class MainController {
 
         //mTransactionTableView.setVisible(true);
 
-        mTransactionTableView.setItems(mainModel.getCurrentAccountTransactionList());
+        mTransactionTableView.setItems(mainModel.getCurrentAccountPagedTransactionList());
 
         int selectedIdx = mTransactionTableView.getSelectionModel().getSelectedIndex();
         int numItems = mTransactionTableView.getItems().size();
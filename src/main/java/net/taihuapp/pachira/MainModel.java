@@ -37,6 +37,7 @@ import com.webcohesion.ofx4j.domain.data.creditcard.CreditCardAccountDetails;
 import com.webcohesion.ofx4j.domain.data.investment.accounts.InvestmentAccountDetails;
 import com.webcohesion.ofx4j.domain.data.signup.AccountProfile;
 import com.webcohesion.ofx4j.io.OFXParseException;
+import javafx.application.Platform;
 import javafx.beans.Observable;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
@@ -54,25 +55,45 @@ import org.apache.logging.log4j.Logger;
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.security.*;
 import java.security.cert.CertificateException;
 import java.security.spec.InvalidKeySpecException;
 import java.text.ParseException;
 import java.time.LocalDate;
+import java.time.Period;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static net.taihuapp.pachira.QIFUtil.EOL;
 import static net.taihuapp.pachira.Transaction.TradeAction.*;
@@ -86,32 +107,62 @@ public class MainModel {
     private static final Logger logger = LogManager.getLogger(MainModel.class);
 
     private final DaoManager daoManager = DaoManager.getInstance();
+    private final HoldingsEngine holdingsEngine = new HoldingsEngine();
+    private final RevaluationIndex revaluationIndex = new RevaluationIndex();
+    // account id and the lot match info of its transactions keyed by transaction id, loaded in bulk
+    private final Map<Integer, Map<Integer, List<MatchInfo>>> accountMatchInfoMapCache = new ConcurrentHashMap<>();
+    // incremented whenever entries of accountMatchInfoMapCache are dropped
+    private final AtomicLong matchInfoCacheGeneration = new AtomicLong(0);
+    // the payee suggestions and default categories, rebuilt when the payee statistics change
+    private volatile PayeeIndex payeeIndex = null;
     private final ObservableList<Account> accountList = FXCollections.observableArrayList(
             a -> new Observable[] { a.getHiddenFlagProperty(), a.getDisplayOrderProperty(), a.getTypeProperty() });
 
     private final ObjectProperty<Account> currentAccountProperty = new SimpleObjectProperty<>(null);
 
-    // we want to expose transaction Status so when it changes it will trig sort.
-    private final ObservableList<Transaction> currentAccountTransactionList = FXCollections.observableArrayList(
-            t -> new Observable[] { t.getStatusProperty() }
-    );
-    SortedList<Transaction> getCurrentAccountTransactionList() {
-        return new SortedList<>(currentAccountTransactionList,
-                getCurrentAccount().getType().isGroup(Account.Type.Group.INVESTING) ?
-                        INVESTING_ACCOUNT_TRANSACTION_COMPARATOR : SPENDING_ACCOUNT_TRANSACTION_COMPARATOR);
-    }
+    // windowed view of the transactions of the current account for the transaction table, the only
+    // list of the current account transactions kept in memory
+    private final PagedTransactionList currentAccountPagedTransactionList =
+            new PagedTransactionList(this::getTransactionList);
+    PagedTransactionList getCurrentAccountPagedTransactionList() { return currentAccountPagedTransactionList; }
 
     private final ObservableList<AccountDC> accountDCList = FXCollections.observableArrayList();
     private final ObservableList<Security> securityList = FXCollections.observableArrayList();
     private final ObservableList<Tag> tagList = FXCollections.observableArrayList();
     private final ObservableList<Category> categoryList = FXCollections.observableArrayList();
 
+    // hash indices of the master lists, for lookups inside loops over transactions
+    private final ObservableListIndex<Integer, Account> accountIDIndex =
+            new ObservableListIndex<>(accountList, Account::getID);
+    private final ObservableListIndex<String, Account> accountNameIndex =
+            new ObservableListIndex<>(accountList, Account::getName);
+    private final ObservableListIndex<Integer, Security> securityIDIndex =
+            new ObservableListIndex<>(securityList, Security::getID);
+    private final ObservableListIndex<String, Security> securityNameIndex =
+            new ObservableListIndex<>(securityList, Security::getName);
+    private final ObservableListIndex<Integer, Tag> tagIDIndex = new ObservableListIndex<>(tagList, Tag::getID);
+    private final ObservableListIndex<String, Tag> tagNameIndex = new ObservableListIndex<>(tagList, Tag::getName);
+    private final ObservableListIndex<Integer, Category> categoryIDIndex =
+            new ObservableListIndex<>(categoryList, Category::getID);
+    private final ObservableListIndex<String, Category> categoryNameIndex =
+            new ObservableListIndex<>(categoryList, Category::getName);
+
     private final Vault vault = new Vault();
     public final BooleanProperty hasMasterPasswordProperty = new SimpleBooleanProperty(false);
     private final ObservableList<DirectConnection> dcInfoList = FXCollections.observableArrayList();
     private final ObservableList<DirectConnection.FIData> fiDataList = FXCollections.observableArrayList();
     ObservableList<DirectConnection> getDCInfoList() { return dcInfoList; }
 
+    /**
+     * receives the progress of a long operation
+     */
+    @FunctionalInterface
+    interface ProgressListener {
+        void update(long workDone, long max);
+    }
+
+    private static final ProgressListener NO_PROGRESS = (workDone, max) -> {};
+
     /**
      * Constructor - build up the MainModel object and load the accounts and transactions from database
      * @throws DaoException - from database operations
@@ -133,6 +184,20 @@ public class MainModel {
     }
 
     public MainModel(final String dbName, final String password, boolean isNew) throws DaoException, ModelException {
+        this(dbName, password, isNew, NO_PROGRESS);
+    }
+
+    /**
+     * Constructor - open the database, load the accounts and transactions
+     * @param dbName - the database file name without postfix
+     * @param password - the password of the database
+     * @param isNew - true for a new database
+     * @param progressListener - receives the number of accounts loaded, called from the loading threads
+     * @throws DaoException - from database operations
+     * @throws ModelException - from computing the account balances
+     */
+    MainModel(final String dbName, final String password, boolean isNew, ProgressListener progressListener)
+            throws DaoException, ModelException {
         daoManager.openConnection(dbName, password, isNew);
 
         categoryList.setAll(((CategoryDao) daoManager.getDao(DaoManager.DaoType.CATEGORY)).getAll());
@@ -140,7 +205,7 @@ public class MainModel {
 
         initSecurityList();
 
-        initAccountList();
+        initAccountList(progressListener);
 
         // initialize AccountDCList
         accountDCList.setAll(((AccountDCDao) daoManager.getDao(DaoManager.DaoType.ACCOUNT_DC)).getAll());
@@ -158,6 +223,9 @@ public class MainModel {
 
     String getDBFileName() throws DaoException { return daoManager.getDBFileName(); }
 
+    // the number of queries which can run in parallel on the read only sessions
+    int getMaxReadSessions() { return daoManager.getMaxReadSessions(); }
+
     String backup() throws DaoException { return daoManager.backup(); }
 
     void changeDBPassword(List<String> passwords) throws DaoException { daoManager.changeDBPassword(passwords); }
@@ -188,22 +256,6 @@ public class MainModel {
         }
     }
 
-    int getDefaultCategory(String payee) {
-        LocalDate threeYearsAgo = LocalDate.now().minusYears(3);
-        // first filter transactions in recent 3 years with the same payee
-        // then grouping by category id into a map
-        Map<Integer, Long> categoryFreq = currentAccountTransactionList.stream()
-                .filter(t -> t.getTDate().isAfter(threeYearsAgo) && payee.equals(t.getPayee()))
-                .collect(Collectors.groupingBy(Transaction::getCategoryID, Collectors.counting()));
-
-        // get the map entry with the highest count
-        Optional<Map.Entry<Integer, Long>> optEntry = categoryFreq.entrySet().stream()
-                .max((a, b) -> (int) (a.getValue() - b.getValue()));
-
-        // return
-        return optEntry.map(Map.Entry::getKey).orElse(0);
-    }
-
     /**
      * get a list of saved reports sorted in display order
      * @return list
@@ -293,7 +345,9 @@ public class MainModel {
         securityList.setAll(((SecurityDao) daoManager.getDao(DaoManager.DaoType.SECURITY)).getAll());
     }
 
-    private void initAccountList() throws ModelException {
+    private void initAccountList() throws ModelException { initAccountList(NO_PROGRESS); }
+
+    private void initAccountList(ProgressListener progressListener) throws ModelException {
         AccountDao accountDao = (AccountDao) daoManager.getDao(DaoManager.DaoType.ACCOUNT);
         try {
             accountList.setAll(((AccountDao) daoManager.getDao(DaoManager.DaoType.ACCOUNT)).getAll());
@@ -326,19 +380,126 @@ public class MainModel {
             currentDisplayOrder++;
         }
 
-        for (Account account : accountList) {
-            initAccount(account);
-        }
+        // uncommitted changes are not visible to the read only connections
+        initAccountBalances(new ArrayList<>(accountList),
+                daoManager.isInTransaction() ? 1 : daoManager.getMaxReadSessions(), progressListener);
     }
 
     private void initAccount(Account account) throws ModelException {
-        // transaction comparator for investing accounts
-        SortedList<Transaction> sortedList = getAccountTransactionList(account);
-        // computer security holding list and update account balance for each transaction
-        // and set account balance
-        final List<SecurityHolding> shList = computeSecurityHoldings(sortedList, LocalDate.now(), -1);
-        //account.getCurrentSecurityList().setAll(fromSecurityHoldingList(shList));
-        account.setCurrentBalance(shList.get(shList.size()-1).getMarketValue());
+        account.setCurrentBalance(computeAccountBalance(account, daoManager::getDao));
+    }
+
+    // compute the current balance of the account with the daos
+    private BigDecimal computeAccountBalance(Account account, Function<DaoManager.DaoType, Dao<?,?>> daos)
+            throws ModelException {
+        return computeAccountBalance(account, getAccountTransactionRecordList(account, daos), daos);
+    }
+
+    // compute the current balance of the account from its transaction records, and record its valuation
+    private BigDecimal computeAccountBalance(Account account, List<TransactionRecord> tList,
+                                             Function<DaoManager.DaoType, Dao<?,?>> daos) throws ModelException {
+        final RevaluationIndex.Valuation valuation = new RevaluationIndex.Valuation(LocalDate.now());
+        final List<SecurityHolding> shList = computeRecordSecurityHoldings(tList, valuation.getDate(), -1, daos,
+                valuation);
+        revaluationIndex.put(account.getID(), valuation);
+        return shList.get(shList.size()-1).getMarketValue();
+    }
+
+    /**
+     * a query with the daos from the write connection or a read only session
+     * @param <R> - the type of the result
+     */
+    @FunctionalInterface
+    private interface DaoQuery<R> {
+        R query(Function<DaoManager.DaoType, Dao<?,?>> daos) throws ModelException;
+    }
+
+    /**
+     * run a query on a read only session, so it does not wait for or interfere with a transaction
+     * on the write connection.  If the current thread is in a transaction, the query runs on the
+     * write connection to see the uncommitted changes.
+     * @param query - the query
+     * @param <R> - the type of the result
+     * @return the result of the query
+     * @throws ModelException - from the query, or failed to get a read only session
+     */
+    private <R> R read(DaoQuery<R> query) throws ModelException {
+        if (daoManager.isInTransaction())
+            return query.query(daoManager::getDao);
+        try (ReadSession readSession = daoManager.openReadSession()) {
+            return query.query(readSession::getDao);
+        } catch (DaoException e) {
+            throw new ModelException(ModelException.ErrorCode.DB_ACCESS_FAILURE, "Failed to open read session", e);
+        }
+    }
+
+    /**
+     * compute and set the current balances of the accounts.  With parallelism more than one, the
+     * transactions of each account are loaded on a read only session and the holdings are computed
+     * on a fork join pool, the balances are set on the FX thread as the accounts are done.
+     * @param accounts - the accounts
+     * @param parallelism - the number of accounts computed at the same time
+     * @param progressListener - receives the number of accounts done
+     * @throws ModelException - from computing the balances
+     */
+    void initAccountBalances(List<Account> accounts, int parallelism, ProgressListener progressListener)
+            throws ModelException {
+        holdingsEngine.invalidateAll(); // replay all from scratch
+        matchInfoCacheGeneration.incrementAndGet();
+        accountMatchInfoMapCache.clear();
+
+        final int n = accounts.size();
+        if (parallelism <= 1 || n <= 1) {
+            for (int i = 0; i < n; i++) {
+                initAccount(accounts.get(i));
+                progressListener.update(i + 1, n);
+            }
+            return;
+        }
+
+        final boolean isFXThread = Platform.isFxApplicationThread();
+        final AtomicInteger counter = new AtomicInteger(0);
+        final ForkJoinPool forkJoinPool = new ForkJoinPool(Math.min(parallelism, n));
+        try {
+            final List<Future<BigDecimal>> futureList = new ArrayList<>();
+            for (Account account : accounts) {
+                futureList.add(forkJoinPool.submit(() -> {
+                    final BigDecimal balance;
+                    try (ReadSession readSession = daoManager.openReadSession()) {
+                        balance = computeAccountBalance(account, readSession::getDao);
+                    }
+                    if (!isFXThread)
+                        runOnFXThread(() -> account.setCurrentBalance(balance));
+                    progressListener.update(counter.incrementAndGet(), n);
+                    return balance;
+                }));
+            }
+            for (int i = 0; i < n; i++) {
+                final BigDecimal balance = futureList.get(i).get();
+                if (isFXThread)
+                    accounts.get(i).setCurrentBalance(balance);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_ACCOUNT_TRANSACTION,
+                    "Interrupted while computing account balances", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ModelException)
+                throw (ModelException) e.getCause();
+            throw new ModelException(ModelException.ErrorCode.DB_ACCESS_FAILURE,
+                    "Failed to compute account balances", e.getCause());
+        } finally {
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+    // run on the FX thread, or on the current thread if the FX toolkit is not running
+    private static void runOnFXThread(Runnable runnable) {
+        try {
+            Platform.runLater(runnable);
+        } catch (IllegalStateException e) {
+            runnable.run();
+        }
     }
 
     private static final Comparator<Transaction> SPENDING_ACCOUNT_TRANSACTION_COMPARATOR = Comparator
@@ -351,14 +512,214 @@ public class MainModel {
             .thenComparing(Transaction::getStatus, Comparator.reverseOrder())
             .thenComparing(Transaction::getID);
 
+    // the sort and balance keys of a transaction
+    private static class TransactionKey {
+        private final int id;
+        private final LocalDate tDate;
+        private final Transaction.Status status;
+        private final BigDecimal cashFlow;
+        private final BigDecimal cashAmount;
+
+        TransactionKey(int id, LocalDate tDate, Transaction.Status status, BigDecimal cashFlow,
+                       BigDecimal cashAmount) {
+            this.id = id;
+            this.tDate = tDate;
+            this.status = status;
+            this.cashFlow = cashFlow;
+            this.cashAmount = cashAmount;
+        }
+    }
+
+    // same orders as the transaction comparators above
+    private static final Comparator<TransactionKey> SPENDING_ACCOUNT_TRANSACTION_KEY_COMPARATOR = Comparator
+            .comparing((TransactionKey k) -> k.tDate)
+            .thenComparing(k -> k.status, Comparator.reverseOrder())
+            .thenComparing(k -> k.cashFlow, Comparator.reverseOrder())
+            .thenComparingInt(k -> k.id);
+    private static final Comparator<TransactionKey> INVESTING_ACCOUNT_TRANSACTION_KEY_COMPARATOR = Comparator
+            .comparing((TransactionKey k) -> k.tDate)
+            .thenComparing(k -> k.status, Comparator.reverseOrder())
+            .thenComparingInt(k -> k.id);
+
+    // the balance index of the current account transactions, shared with the paged transaction list
+    private BalanceIndex<TransactionKey> currentAccountBalanceIndex = null;
+
+    private static boolean sameBalanceKey(TransactionKey k0, TransactionKey k1) {
+        return k0.tDate.equals(k1.tDate) && k0.status == k1.status && k0.cashFlow.compareTo(k1.cashFlow) == 0
+                && k0.cashAmount.compareTo(k1.cashAmount) == 0;
+    }
+
+    private static TransactionKey newTransactionKey(int accountID, int tid, LocalDate tDate,
+                                                    Transaction.Status status, Transaction.TradeAction ta,
+                                                    int cid, BigDecimal amount, int fractionDigits) {
+        return new TransactionKey(tid, tDate, status, Transaction.cashFlow(ta, amount),
+                Transaction.cashAmount(accountID, ta, cid, amount).setScale(fractionDigits, RoundingMode.HALF_UP));
+    }
+
+    /**
+     * rebuild the balance index of the account into the current account paged transaction list,
+     * without loading the transactions.
+     * @param account - the account
+     * @throws ModelException - from database operations
+     */
+    private void refreshCurrentAccountPagedTransactionList(Account account) throws ModelException {
+        final TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
+        final int fractionDigits = Currency.getInstance("USD").getDefaultFractionDigits();
+        final int accountID = account.getID();
+        final List<TransactionKey> keyList = new ArrayList<>();
+        try {
+            transactionDao.scanAccountTransactionKeys(accountID, (tid, tDate, status, ta, cid, amount) ->
+                    keyList.add(newTransactionKey(accountID, tid, tDate, status, ta, cid, amount, fractionDigits)));
+        } catch (DaoException e) {
+            throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_ACCOUNT_TRANSACTION,
+                    account.toString(), e);
+        }
+        final Comparator<TransactionKey> comparator = account.getType().isGroup(Account.Type.Group.INVESTING) ?
+                INVESTING_ACCOUNT_TRANSACTION_KEY_COMPARATOR : SPENDING_ACCOUNT_TRANSACTION_KEY_COMPARATOR;
+        keyList.sort(comparator);
+
+        final BalanceIndex<TransactionKey> index = new BalanceIndex<>(comparator, k -> k.id, fractionDigits);
+        for (TransactionKey key : keyList)
+            index.put(key, key.cashAmount);
+        currentAccountBalanceIndex = index;
+        currentAccountPagedTransactionList.reset(accountID, index, fractionDigits);
+    }
+
+    /**
+     * apply the changes of some transactions of the current account to its balance index and the paged
+     * transaction list, without reloading the others.
+     * Each changed transaction costs O(log n) in the index, only the running balances from the first
+     * changed position on are republished.  It falls back to a full reload if the index is not for
+     * the account.
+     * @param account - the current account
+     * @param tids - the ids of the changed, inserted, or deleted transactions, of any accounts
+     * @return the earliest date of the changed transactions of the account, before or after the changes,
+     *         LocalDate.MAX if none is in the account, or null if the account was fully reloaded
+     * @throws ModelException - from database operations
+     */
+    private LocalDate updateCurrentAccountTransactions(Account account, Collection<Integer> tids)
+            throws ModelException {
+        final int accountID = account.getID();
+        final BalanceIndex<TransactionKey> index = currentAccountBalanceIndex;
+        if (index == null || currentAccountPagedTransactionList.getAccountID() != accountID) {
+            refreshCurrentAccountPagedTransactionList(account);
+            return null;
+        }
+
+        final TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
+        final int fractionDigits = Currency.getInstance("USD").getDefaultFractionDigits();
+        final Map<Integer, TransactionKey> keyMap = new HashMap<>();
+        try {
+            transactionDao.scanTransactionKeys(accountID, tids, (tid, tDate, status, ta, cid, amount) ->
+                    keyMap.put(tid, newTransactionKey(accountID, tid, tDate, status, ta, cid, amount,
+                            fractionDigits)));
+        } catch (DaoException e) {
+            throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_ACCOUNT_TRANSACTION,
+                    account.toString(), e);
+        }
+
+        final List<PagedTransactionList.Move> moves = new ArrayList<>();
+        LocalDate changeDate = LocalDate.MAX;
+        for (Integer tid : new TreeSet<>(tids)) {
+            final TransactionKey oldKey = index.getKey(tid);
+            final TransactionKey newKey = keyMap.get(tid);
+            if (oldKey == null && newKey == null)
+                continue; // not in this account
+            for (TransactionKey key : new TransactionKey[] { oldKey, newKey }) {
+                if (key != null && key.tDate.isBefore(changeDate))
+                    changeDate = key.tDate;
+            }
+            final int from = index.indexOf(tid);
+            final int to;
+            if (newKey == null) {
+                index.remove(tid);
+                to = -1;
+            } else if (oldKey != null && sameBalanceKey(oldKey, newKey)) {
+                to = from; // changes not affecting the order or the balances
+            } else {
+                index.put(newKey, newKey.cashAmount);
+                to = index.indexOf(tid);
+            }
+            moves.add(new PagedTransactionList.Move(tid, from, to));
+        }
+
+        if (!moves.isEmpty())
+            currentAccountPagedTransactionList.update(moves);
+        return changeDate;
+    }
+
+    // the cash balance of the current account today, from the balance index
+    private BigDecimal getCurrentAccountCashBalance() {
+        final LocalDate today = LocalDate.now();
+        final BalanceIndex<TransactionKey> index = currentAccountBalanceIndex;
+        return index.balanceBefore(index.prefixLength(k -> !k.tDate.isAfter(today)));
+    }
+
+    // load the transactions with the given ids, used by the paged transaction list
+    private List<Transaction> getTransactionList(List<Integer> tidList) throws ModelException {
+        return read(daos -> {
+            TransactionDao transactionDao = (TransactionDao) daos.apply(DaoManager.DaoType.TRANSACTION);
+            try {
+                return transactionDao.getTransactionList(tidList);
+            } catch (DaoException e) {
+                throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_TRANSACTION,
+                        tidList.size() + " transactions", e);
+            }
+        });
+    }
+
+    /**
+     * get the transactions of an account not yet reconciled, for reconciling the account.  Only the
+     * keys of the reconciled transactions are read.
+     * @param account - the account
+     * @return - ordered list of the unreconciled transactions
+     * @throws ModelException - from database operations
+     */
+    List<Transaction> getUnreconciledTransactionList(Account account) throws ModelException {
+        final List<Integer> tidList = read(daos -> {
+            final TransactionDao transactionDao = (TransactionDao) daos.apply(DaoManager.DaoType.TRANSACTION);
+            final List<Integer> tids = new ArrayList<>();
+            try {
+                transactionDao.scanAccountTransactionKeys(account.getID(), (tid, tDate, status, ta, cid, amount) -> {
+                    if (status != Transaction.Status.RECONCILED)
+                        tids.add(tid);
+                });
+            } catch (DaoException e) {
+                throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_ACCOUNT_TRANSACTION,
+                        account.toString(), e);
+            }
+            return tids;
+        });
+        final List<Transaction> tList = getTransactionList(tidList);
+        tList.sort(account.getType().isGroup(Account.Type.Group.INVESTING) ?
+                INVESTING_ACCOUNT_TRANSACTION_COMPARATOR : SPENDING_ACCOUNT_TRANSACTION_COMPARATOR);
+        return tList;
+    }
+
+    /**
+     * @param accounts - the accounts
+     * @return the first and the last dates of the transactions in the accounts, empty if there is none
+     * @throws ModelException - from database operations
+     */
+    Optional<Pair<LocalDate, LocalDate>> getTransactionDateRange(Collection<Account> accounts)
+            throws ModelException {
+        final List<Integer> accountIDs = accounts.stream().map(Account::getID).collect(Collectors.toList());
+        return read(daos -> {
+            try {
+                return ((TransactionDao) daos.apply(DaoManager.DaoType.TRANSACTION))
+                        .getTransactionDateRange(accountIDs);
+            } catch (DaoException e) {
+                throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_ACCOUNT_TRANSACTION,
+                        accounts.size() + " accounts", e);
+            }
+        });
+    }
+
     SortedList<Transaction> getAccountTransactionList(Account account) throws ModelException {
         try {
             TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
             ObservableList<Transaction> tList = FXCollections
                     .observableArrayList(transactionDao.getAccountTransactionList(account.getID()));
-            if (account == getCurrentAccount()) {
-                currentAccountTransactionList.setAll(tList);
-            }
             return new SortedList<>(tList,
                     account.getType().isGroup(Account.Type.Group.INVESTING) ?
                     INVESTING_ACCOUNT_TRANSACTION_COMPARATOR : SPENDING_ACCOUNT_TRANSACTION_COMPARATOR);
@@ -368,6 +729,43 @@ public class MainModel {
         }
     }
 
+    // same orders as the transaction comparators above
+    private static final Comparator<TransactionRecord> SPENDING_ACCOUNT_TRANSACTION_RECORD_COMPARATOR = Comparator
+            .comparing(TransactionRecord::getTDate)
+            .thenComparing(TransactionRecord::getStatus, Comparator.reverseOrder())
+            .thenComparing(TransactionRecord::cashFlow, Comparator.reverseOrder())
+            .thenComparingInt(TransactionRecord::getID);
+    private static final Comparator<TransactionRecord> INVESTING_ACCOUNT_TRANSACTION_RECORD_COMPARATOR = Comparator
+            .comparing(TransactionRecord::getTDate)
+            .thenComparing(TransactionRecord::getStatus, Comparator.reverseOrder())
+            .thenComparingInt(TransactionRecord::getID);
+
+    /**
+     * get the transactions of an account as records, for computations which don't need
+     * JavaFX properties.  The list is ordered the same way as getAccountTransactionList.
+     * @param account - the account
+     * @return - ordered list of transaction records
+     * @throws ModelException - from database operations
+     */
+    List<TransactionRecord> getAccountTransactionRecordList(Account account) throws ModelException {
+        return read(daos -> getAccountTransactionRecordList(account, daos));
+    }
+
+    private List<TransactionRecord> getAccountTransactionRecordList(Account account,
+                                                                    Function<DaoManager.DaoType, Dao<?,?>> daos)
+            throws ModelException {
+        try {
+            TransactionDao transactionDao = (TransactionDao) daos.apply(DaoManager.DaoType.TRANSACTION);
+            final List<TransactionRecord> rList = transactionDao.getAccountTransactionRecordList(account.getID());
+            rList.sort(account.getType().isGroup(Account.Type.Group.INVESTING) ?
+                    INVESTING_ACCOUNT_TRANSACTION_RECORD_COMPARATOR : SPENDING_ACCOUNT_TRANSACTION_RECORD_COMPARATOR);
+            return rList;
+        } catch (DaoException e) {
+            throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_ACCOUNT_TRANSACTION,
+                    account.toString(), e);
+        }
+    }
+
     Optional<Transaction> getTransactionByID(int tid) throws ModelException {
         TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
         try {
@@ -396,7 +794,7 @@ public class MainModel {
         try {
             daoManager.beginTransaction();
 
-            final Security newSecurity = getSecurity(s -> s.getName().equals(newSecurityName)).orElseGet(Security::new);
+            final Security newSecurity = getSecurity(newSecurityName).orElseGet(Security::new);
             if (newSecurity.getID() <= 0) {
                 newSecurityCreated = true;
                 newSecurity.setName(newSecurityName);
@@ -407,8 +805,8 @@ public class MainModel {
 
             List<Transaction> newTransactionList = new ArrayList<>();
             for (Account account : getAccountList(a -> a.getType().isGroup(Account.Type.Group.INVESTING))) {
-                final SortedList<Transaction> accountTransactionList = getAccountTransactionList(account);
-                final List<SecurityHolding> shList = computeSecurityHoldings(accountTransactionList, date, -1);
+                final List<SecurityHolding> shList = computeRecordSecurityHoldings(
+                        getAccountTransactionRecordList(account), date, -1);
                 SecurityHolding oldSH = null;
                 boolean hasNew = false;
                 for (SecurityHolding sh : shList) {
@@ -497,7 +895,7 @@ public class MainModel {
     public Optional<Security> getSecurity(Integer sid) {
         if (sid == null || sid <= 0)
             return Optional.empty();
-        return getSecurity(s -> s.getID() == sid);
+        return securityIDIndex.get(sid);
     }
 
     /**
@@ -506,7 +904,7 @@ public class MainModel {
     public Optional<Security> getSecurity(String name) {
         if (name == null || name.isEmpty())
             return Optional.empty();
-        return getSecurity(s -> s.getName().equals(name));
+        return securityNameIndex.get(name);
     }
 
     /**
@@ -522,6 +920,7 @@ public class MainModel {
                 getSecurityList().add(security);
             } else {
                 securityDao.update(security);
+                holdingsEngine.invalidateAll(); // holdings are keyed by security names
                 for (int i = 0; i < getSecurityList().size(); i++) {
                     Security s = getSecurityList().get(i);
                     if (s.getID() == security.getID()) {
@@ -555,7 +954,7 @@ public class MainModel {
             if (sName.equals(SecurityHolding.TOTAL) || sName.equals(SecurityHolding.CASH))
                 continue; // skip total and cash lines
 
-            getSecurity(security -> security.getName().equals(sName)).ifPresent(securityList::add);
+            getSecurity(sName).ifPresent(securityList::add);
         }
         return securityList;
     }
@@ -761,10 +1160,165 @@ public class MainModel {
     public void updateAccountBalance(Predicate<Account> predicate) throws ModelException {
         final FilteredList<Account> filteredList = new FilteredList<>(accountList, predicate);
         for (Account account : filteredList) {
-            SortedList<Transaction> transactionList = getAccountTransactionList(account);
-            List<SecurityHolding> shList = computeSecurityHoldings(transactionList, LocalDate.now(), -1);
-            account.setCurrentBalance(shList.get(shList.size() - 1).getMarketValue());
+            // the current account transactions are shown in the UI from the paged transaction list
+            if (account == getCurrentAccount())
+                refreshCurrentAccountPagedTransactionList(account);
+            final List<TransactionRecord> tList = getAccountTransactionRecordList(account);
+            account.setCurrentBalance(read(daos -> computeAccountBalance(account, tList, daos)));
+        }
+    }
+
+    /**
+     * update account balances for the account fit the criteria after some transactions changed.
+     * The transactions of the current account are updated incrementally instead of reloaded.
+     * @param predicate - selecting criteria
+     * @param tids - the ids of the changed, inserted, or deleted transactions
+     * @throws ModelException - from computeSecurityHoldings
+     */
+    void updateAccountBalance(Predicate<Account> predicate, Collection<Integer> tids) throws ModelException {
+        final Account currentAccount = getCurrentAccount();
+        if (currentAccount == null || !predicate.test(currentAccount)) {
+            updateAccountBalance(predicate);
+            return;
+        }
+
+        final LocalDate changeDate = updateCurrentAccountTransactions(currentAccount, tids);
+        if (currentAccount.getType().isGroup(Account.Type.Group.INVESTING)) {
+            if (changeDate == null || !updateCurrentInvestingAccountBalance(currentAccount, changeDate)) {
+                final List<TransactionRecord> tList = getAccountTransactionRecordList(currentAccount);
+                currentAccount.setCurrentBalance(read(daos -> computeAccountBalance(currentAccount, tList, daos)));
+            }
+        } else {
+            // no securities, the balance is the cash balance
+            final RevaluationIndex.Valuation valuation = new RevaluationIndex.Valuation(LocalDate.now());
+            valuation.setCash(getCurrentAccountCashBalance());
+            revaluationIndex.put(currentAccount.getID(), valuation);
+            currentAccount.setCurrentBalance(valuation.getTotal());
+        }
+        updateAccountBalance(predicate.and(a -> a != currentAccount));
+    }
+
+    /**
+     * update the balance of the current account, an investing account, after the transactions dated on
+     * or after the change date changed.  The holdings are replayed from the latest checkpoint before
+     * the change date, reading only the transactions from the checkpoint on and the stock splits, and
+     * the cash is from the balance index.
+     * @param account - the current account
+     * @param changeDate - the earliest date of the changed transactions
+     * @return false if there is no usable checkpoint, and the balance is not updated
+     * @throws ModelException - from database operations
+     */
+    private boolean updateCurrentInvestingAccountBalance(Account account, LocalDate changeDate)
+            throws ModelException {
+        final int accountID = account.getID();
+        holdingsEngine.invalidate(accountID, changeDate);
+        final Pair<LocalDate, Integer> checkpoint = holdingsEngine.floorCheckpoint(accountID, changeDate);
+        if (checkpoint == null)
+            return false;
+        final LocalDate cpDate = checkpoint.getKey();
+        // a transaction inserted or deleted before the checkpoint without invalidating it
+        if (checkpoint.getValue() != currentAccountBalanceIndex.prefixLength(k -> k.tDate.isBefore(cpDate)))
+            return false;
+
+        final LocalDate today = LocalDate.now();
+        final int fractionDigits = Currency.getInstance("USD").getDefaultFractionDigits();
+        final BigDecimal cash = getCurrentAccountCashBalance();
+        final RevaluationIndex.Valuation valuation = new RevaluationIndex.Valuation(today);
+        final List<SecurityHolding> shList = read(daos -> {
+            final List<TransactionRecord> rList;
+            try {
+                rList = ((TransactionDao) daos.apply(DaoManager.DaoType.TRANSACTION))
+                        .getAccountTransactionRecordList(accountID, cpDate);
+            } catch (DaoException e) {
+                throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_ACCOUNT_TRANSACTION,
+                        account.toString(), e);
+            }
+            rList.sort(INVESTING_ACCOUNT_TRANSACTION_RECORD_COMPARATOR);
+
+            final Map<Integer, String> securityID2NameMap = new HashMap<>();
+            final IntFunction<String> securityNameFunction = sid -> securityID2NameMap.computeIfAbsent(sid,
+                    k -> getSecurity(k).map(Security::getName).orElse(""));
+            final Map<String, List<TransactionRecord>> stockSplitTransactionListMap = new HashMap<>();
+            final List<TransactionRecord> tList = new ArrayList<>(); // the transactions from the checkpoint on
+            for (TransactionRecord t : rList) {
+                if (t.getTDate().isAfter(today))
+                    break;
+                if (!t.getTDate().isBefore(cpDate))
+                    tList.add(t);
+                if (t.getTradeAction() == STKSPLIT) {
+                    final String name = securityNameFunction.apply(t.getSecurityID());
+                    if (!name.isEmpty())
+                        stockSplitTransactionListMap.computeIfAbsent(name, k -> new ArrayList<>()).add(t);
+                }
+            }
+
+            final Map<String, SecurityHolding> shMap = holdingsEngine.replayFrom(accountID, cpDate, tList, today,
+                    fractionDigits, securityNameFunction, matchInfoLoader(tList, daos));
+            return shMap == null ? null : priceSecurityHoldings(shMap, stockSplitTransactionListMap, cash, today,
+                    fractionDigits, daos, valuation);
+        });
+        if (shList == null)
+            return false;
+
+        revaluationIndex.put(accountID, valuation);
+        account.setCurrentBalance(shList.get(shList.size()-1).getMarketValue());
+        return true;
+    }
+
+    /**
+     * revalue the balances of the accounts holding the securities after their prices changed.  The
+     * market values are recomputed from the quantities recorded with the last balance computation,
+     * without loading or replaying any transactions.  An account holding the securities with a
+     * valuation from an earlier day, or an investing account without any valuation, is recomputed in
+     * full.  The other accounts valued on an earlier day are not touched, they are re-dated when they
+     * are recomputed next, on a change of their transactions or the prices of their securities, or
+     * when they are selected.
+     * @param securityIDs - the ids of the securities with changed prices
+     * @throws ModelException - from database operations
+     */
+    void revalueAccounts(Collection<Integer> securityIDs) throws ModelException {
+        final LocalDate today = LocalDate.now();
+        final Set<Integer> accountIDSet = revaluationIndex.getAccountIDs(securityIDs);
+        final Set<Integer> fullAccountIDSet = new HashSet<>();
+        for (Account account : getAccountList(a -> a.getType().isGroup(Account.Type.Group.INVESTING))) {
+            final RevaluationIndex.Valuation valuation = revaluationIndex.get(account.getID());
+            if (valuation == null
+                    || (accountIDSet.contains(account.getID()) && !valuation.getDate().equals(today)))
+                fullAccountIDSet.add(account.getID());
         }
+        accountIDSet.removeAll(fullAccountIDSet);
+
+        final int fractionDigits = Currency.getInstance("USD").getDefaultFractionDigits();
+        final Map<Integer, BigDecimal> balanceMap = read(daos -> {
+            final SecurityIDPriceDao securityIDPriceDao =
+                    (SecurityIDPriceDao) daos.apply(DaoManager.DaoType.SECURITYID_PRICE);
+            final Map<Integer, BigDecimal> map = new HashMap<>();
+            for (Integer accountID : accountIDSet) {
+                final RevaluationIndex.Valuation valuation = revaluationIndex.get(accountID);
+                for (Integer securityID : securityIDs) {
+                    final RevaluationIndex.Position position = valuation.getPosition(securityID);
+                    if (position == null)
+                        continue;
+                    try {
+                        position.setMarketValue(securityIDPriceDao.getLastPrice(new Pair<>(securityID, today))
+                                .map(pair -> splitAdjustedPrice(pair.getValue(), today, position.getSplitList())
+                                        .multiply(position.getQuantity())
+                                        .setScale(fractionDigits, RoundingMode.HALF_UP))
+                                .orElse(null));
+                    } catch (DaoException e) {
+                        throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_SECURITY_PRICE,
+                                "Failed to get price for security (" + securityID + ") on " + today, e);
+                    }
+                }
+                map.put(accountID, valuation.getTotal());
+            }
+            return map;
+        });
+        for (Map.Entry<Integer, BigDecimal> entry : balanceMap.entrySet())
+            getAccount(entry.getKey()).ifPresent(a -> a.setCurrentBalance(entry.getValue()));
+
+        if (!fullAccountIDSet.isEmpty())
+            updateAccountBalance(a -> fullAccountIDSet.contains(a.getID()));
     }
 
     /**
@@ -877,12 +1431,7 @@ public class MainModel {
         // now ready to insert to database
         mergeSecurityPrices(priceList);
 
-        for (Account account : getAccountList(a -> a.getType().isGroup(Account.Type.Group.INVESTING))) {
-
-            final List<SecurityHolding> shList = computeSecurityHoldings(getAccountTransactionList(account),
-                    LocalDate.now(), -1);
-            account.setCurrentBalance(shList.get(shList.size()-1).getMarketValue());
-        }
+        revalueAccounts(priceList.stream().map(Pair::getKey).collect(Collectors.toSet()));
 
         return new Pair<>(priceList, skippedLines);
     }
@@ -957,6 +1506,16 @@ public class MainModel {
         return accountList.stream().filter(predicate).findAny();
     }
 
+    /**
+     * get account by its id
+     */
+    Optional<Account> getAccount(int accountID) { return accountIDIndex.get(accountID); }
+
+    /**
+     * get account by its name
+     */
+    Optional<Account> getAccount(String name) { return accountNameIndex.get(name); }
+
     ObservableList<DirectConnection.FIData> getFIDataList() { return fiDataList; }
 
     Optional<DirectConnection.FIData> getFIData(Predicate<DirectConnection.FIData> predicate) {
@@ -1023,6 +1582,8 @@ public class MainModel {
                 if (a.getID() == account.getID()) {
                     if (a != account)
                         accountList.set(i, account);
+                    else
+                        accountNameIndex.invalidate(); // the name might be changed in place
                     break;
                 }
             }
@@ -1040,40 +1601,107 @@ public class MainModel {
      */
     List<SecurityHolding> computeSecurityHoldings(List<Transaction> tList, LocalDate date, int exTid)
             throws ModelException {
+        return computeRecordSecurityHoldings(setRunningBalances(tList), date, exTid);
+    }
+
+    // set the cash balance of each transaction in the list, return the list of the transaction records
+    private static List<TransactionRecord> setRunningBalances(List<Transaction> tList) {
+        final int fractionDigits = Currency.getInstance("USD").getDefaultFractionDigits();
+        BigDecimal totalCash = BigDecimal.ZERO.setScale(fractionDigits, RoundingMode.HALF_UP);
+        final List<TransactionRecord> rList = new ArrayList<>(tList.size());
+        for (Transaction t : tList) {
+            totalCash = totalCash.add(t.getCashAmount().setScale(fractionDigits, RoundingMode.HALF_UP));
+            t.setBalance(totalCash); // set the cash balance for the transaction
+            rList.add(new TransactionRecord(t));
+        }
+        return rList;
+    }
+
+    /**
+     * compute security holdings for a given transaction record list up to the given date, excluding
+     * a given transaction.  the input list should have the same account id and ordered according to
+     * the rule by the account type
+     * @param tList - a list of transaction records
+     * @param date - the date to compute up to
+     * @param exTid - the id of the transaction to be excluded.
+     * @return - list of security holdings for the given date
+     */
+    List<SecurityHolding> computeRecordSecurityHoldings(List<TransactionRecord> tList, LocalDate date, int exTid)
+            throws ModelException {
+        return read(daos -> computeRecordSecurityHoldings(tList, date, exTid, daos));
+    }
+
+    // same as above, the prices and the lot matches are read with the daos
+    private List<SecurityHolding> computeRecordSecurityHoldings(List<TransactionRecord> tList, LocalDate date,
+                                                                int exTid, Function<DaoManager.DaoType, Dao<?,?>> daos)
+            throws ModelException {
+        return computeRecordSecurityHoldings(tList, date, exTid, daos, null);
+    }
+
+    // the price on a date from the last price before it, adjusted by the stock splits in between
+    private static BigDecimal splitAdjustedPrice(Price price, LocalDate date, List<TransactionRecord> splitList) {
+        BigDecimal p = price.getPrice();
+        if (price.getDate().isBefore(date) && splitList != null) {
+            // the price is not on the date, need to check if there are any
+            // stock split between the date of the price and the date
+            // since this list is ordered by date, we start from the end
+            for (int i = splitList.size(); i-- > 0; ) {
+                final TransactionRecord t = splitList.get(i);
+                if (t.getTDate().isBefore(price.getDate()))
+                    break; // we're done
+                p = p.multiply(t.getOldQuantity()).divide(t.getQuantity(),
+                        PRICE_QUANTITY_FRACTION_LEN, RoundingMode.HALF_UP);
+            }
+        }
+        return p;
+    }
+
+    // same as above, also records the cash and the positions in the valuation if it is not null
+    private List<SecurityHolding> computeRecordSecurityHoldings(List<TransactionRecord> tList, LocalDate date,
+                                                                int exTid, Function<DaoManager.DaoType, Dao<?,?>> daos,
+                                                                RevaluationIndex.Valuation valuation)
+            throws ModelException {
         // 'total cash' is the cash amount for the account to the last transaction in the tList
         // 'total cash now' is the cash amount for the account up to the 'date'
         final int fractionDigits = Currency.getInstance("USD").getDefaultFractionDigits();
         BigDecimal totalCash = BigDecimal.ZERO.setScale(fractionDigits, RoundingMode.HALF_UP);
         BigDecimal totalCashNow = totalCash;
         final Map<Integer, String> securityID2NameMap = new HashMap<>();
-        final Map<String, SecurityHolding> shMap = new HashMap<>();  // map of security name and securityHolding
-        final Map<String, List<Transaction>> stockSplitTransactionListMap = new HashMap<>();
+        final Map<String, List<TransactionRecord>> stockSplitTransactionListMap = new HashMap<>();
+        final IntFunction<String> securityNameFunction = sid -> securityID2NameMap.computeIfAbsent(sid,
+                k -> getSecurity(k).map(Security::getName).orElse(""));
 
         // now loop through the sorted and filtered list
-        for (Transaction t : tList) {
+        for (TransactionRecord t : tList) {
             totalCash = totalCash.add(t.getCashAmount().setScale(fractionDigits, RoundingMode.HALF_UP));
             if (!t.getTDate().isAfter(date) && (t.getID() != exTid))
                 totalCashNow = totalCash;
 
-            t.setBalance(totalCash); // set the cash balance for the transaction
-
             if ((t.getID() == exTid) || t.getTDate().isAfter(date))
                 continue;
 
-            final String name = securityID2NameMap.computeIfAbsent(t.getSecurityID(),
-                    k -> getSecurity(s -> s.getID() == t.getSecurityID())
-                            .map(Security::getName).orElse(""));
-            if (!name.isEmpty()) {
-                // it has a security name
-                final SecurityHolding securityHolding = shMap.computeIfAbsent(name,
-                        n -> new SecurityHolding(n, fractionDigits));
-                final List<MatchInfo> matchInfoList = getMatchInfoList(t.getID());
-                securityHolding.processTransaction(t, matchInfoList);
-                if (t.getTradeAction() == STKSPLIT) // we need to keep track of stock splits
+            if (t.getTradeAction() == STKSPLIT) {
+                // we need to keep track of stock splits
+                final String name = securityNameFunction.apply(t.getSecurityID());
+                if (!name.isEmpty())
                     stockSplitTransactionListMap.computeIfAbsent(name, k -> new ArrayList<>()).add(t);
             }
         }
 
+        // map of security name and securityHolding, replayed from the nearest valid checkpoint
+        final Map<String, SecurityHolding> shMap = holdingsEngine.replay(tList, date, exTid, fractionDigits,
+                securityNameFunction, matchInfoLoader(tList, daos));
+        return priceSecurityHoldings(shMap, stockSplitTransactionListMap, totalCashNow, date, fractionDigits, daos,
+                valuation);
+    }
+
+    // price the security holdings on the date, and add the cash and the total holdings.  Also records the
+    // cash and the positions in the valuation if it is not null
+    private List<SecurityHolding> priceSecurityHoldings(Map<String, SecurityHolding> shMap,
+                                                        Map<String, List<TransactionRecord>> stockSplitTransactionListMap,
+                                                        BigDecimal totalCashNow, LocalDate date, int fractionDigits,
+                                                        Function<DaoManager.DaoType, Dao<?,?>> daos,
+                                                        RevaluationIndex.Valuation valuation) throws ModelException {
         BigDecimal totalMarketValue = totalCashNow;
         BigDecimal totalCostBasis = totalCashNow;
         final List<SecurityHolding> securityHoldingList = shMap.values().stream()
@@ -1081,37 +1709,25 @@ public class MainModel {
                 .sorted(Comparator.comparing(SecurityHolding::getSecurityName))
                 .collect(Collectors.toList());
         for (SecurityHolding securityHolding : securityHoldingList) {
-            Optional<Security> securityOptional = getSecurity(s ->
-                    s.getName().equals(securityHolding.getSecurityName()));
+            Optional<Security> securityOptional = getSecurity(securityHolding.getSecurityName());
             if (securityOptional.isPresent()) {
                 final Security security = securityOptional.get();
                 try {
                     Optional<Pair<Integer, Price>> optionalSecurityPricePair =
-                            getSecurityLastPrice(new Pair<>(security.getID(), date));
+                            ((SecurityIDPriceDao) daos.apply(DaoManager.DaoType.SECURITYID_PRICE))
+                                    .getLastPrice(new Pair<>(security.getID(), date));
+                    final List<TransactionRecord> splitList = stockSplitTransactionListMap.get(security.getName());
                     if (optionalSecurityPricePair.isPresent()) {
-                        final Price price = optionalSecurityPricePair.get().getValue();
-                        BigDecimal p = price.getPrice();
-                        if (price.getDate().isBefore(date)) {
-                            // the price is not on the date, need to check if there are any
-                            // stock split between the date of the price and the date
-                            final List<Transaction> splitList = stockSplitTransactionListMap.get(security.getName());
-                            if (splitList != null) {
-                                // we have a list splits, check now
-                                // since this list is ordered by date, we start from the end
-                                for (int i = splitList.size(); i-- > 0; ) {
-                                    final Transaction t = splitList.get(i);
-                                    if (t.getTDate().isBefore(price.getDate()))
-                                        break; // we're done
-                                    p = p.multiply(t.getOldQuantity()).divide(t.getQuantity(),
-                                            PRICE_QUANTITY_FRACTION_LEN, RoundingMode.HALF_UP);
-                                }
-                            }
-                        }
-                        securityHolding.setPrice(p);
+                        securityHolding.setPrice(splitAdjustedPrice(optionalSecurityPricePair.get().getValue(),
+                                date, splitList));
 
                         totalMarketValue = totalMarketValue.add(securityHolding.getMarketValue());
                         totalCostBasis = totalCostBasis.add(securityHolding.getCostBasis());
                     }
+                    if (valuation != null)
+                        valuation.putPosition(security.getID(), new RevaluationIndex.Position(
+                                securityHolding.getQuantity(), splitList, optionalSecurityPricePair.isPresent() ?
+                                securityHolding.getMarketValue() : null));
                 } catch (DaoException e) {
                     throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_SECURITY_PRICE,
                             "Failed to get price for security (" + security + ") on " + date, e);
@@ -1119,56 +1735,256 @@ public class MainModel {
             }
         }
 
+        if (valuation != null)
+            valuation.setCash(totalCashNow);
+
+        // sort holding according to the security names
+        securityHoldingList.sort(Comparator.comparing(SecurityHolding::getSecurityName));
+        addCashAndTotalHoldings(securityHoldingList, totalCashNow, totalMarketValue, totalCostBasis, fractionDigits);
+        return securityHoldingList;
+    }
+
+    // add the cash holding, if not zero, and the total holding to the end of a list of security holdings
+    private static void addCashAndTotalHoldings(List<SecurityHolding> securityHoldingList, BigDecimal totalCash,
+                                                BigDecimal totalMarketValue, BigDecimal totalCostBasis,
+                                                int fractionDigits) {
         SecurityHolding cashHolding = new SecurityHolding(SecurityHolding.CASH, fractionDigits);
-        cashHolding.setCostBasis(totalCashNow);
-        cashHolding.setMarketValue(totalCashNow);
+        cashHolding.setCostBasis(totalCash);
+        cashHolding.setMarketValue(totalCash);
         cashHolding.setPrice(BigDecimal.ONE);
 
         SecurityHolding totalHolding = new SecurityHolding(SecurityHolding.TOTAL, fractionDigits);
         totalHolding.setMarketValue(totalMarketValue);
         totalHolding.setCostBasis(totalCostBasis);
 
-        // sort holding according to the security names
-        securityHoldingList.sort(Comparator.comparing(SecurityHolding::getSecurityName));
-        // then add cash if needed
-        if (totalCashNow.signum() != 0)
+        // add cash if needed
+        if (totalCash.signum() != 0)
             securityHoldingList.add(cashHolding);
         // add total
         securityHoldingList.add(totalHolding);
-        return securityHoldingList;
     }
 
     /**
-     * get MatchInfoList for a given transaction id
-     * @param tid transaction id
-     * @return list of MatchInfo for the transaction with id tid
-     * @throws ModelException - from Dao operations
+     * receives the security holdings of an account on a date
      */
-    List<MatchInfo> getMatchInfoList(int tid) throws ModelException {
-        try {
-            return ((PairTidMatchInfoListDao) daoManager.getDao(DaoManager.DaoType.PAIR_TID_MATCH_INFO))
-                    .get(tid).map(Pair::getValue).orElse(new ArrayList<>());
-        } catch (DaoException e) {
-            throw new ModelException(ModelException.ErrorCode.FAIL_TO_RETRIEVE_MATCH_INFO_LIST,
-                    "Failed to retrieve match info list for Transaction id " + tid, e);
-        }
+    @FunctionalInterface
+    interface HoldingsConsumer {
+        void accept(LocalDate date, List<SecurityHolding> securityHoldingList) throws ModelException;
     }
 
-    public ObjectProperty<Account> getCurrentAccountProperty() { return currentAccountProperty; }
-    public void setCurrentAccount(Account account) throws ModelException {
-        getCurrentAccountProperty().set(account);
-        updateAccountBalance(a -> a.getID() == account.getID());
+    /**
+     * compute security holdings for a given transaction record list on each of the given dates, with a
+     * single pass over the transactions and one price load for each security.  The holdings on a date
+     * are the same as computeRecordSecurityHoldings(tList, date, -1).  The positions are carried from
+     * one date to the next, so they are only valid in the call to the consumer.
+     * @param tList - a list of transaction records of an account, ordered by date
+     * @param dates - the dates, in ascending order
+     * @param consumer - takes the security holdings on each date
+     * @throws ModelException - from database operations or the consumer
+     */
+    void computeRecordSecurityHoldingsSeries(List<TransactionRecord> tList, List<LocalDate> dates,
+                                             HoldingsConsumer consumer) throws ModelException {
+        read(daos -> {
+            computeRecordSecurityHoldingsSeries(tList, dates, consumer, daos);
+            return null;
+        });
     }
-    public Account getCurrentAccount() { return getCurrentAccountProperty().get(); }
-
-    public ObservableList<AccountDC> getAccountDCList() { return accountDCList; }
 
-    public ObservableList<Category> getCategoryList() { return categoryList; }
+    private void computeRecordSecurityHoldingsSeries(List<TransactionRecord> tList, List<LocalDate> dates,
+                                                     HoldingsConsumer consumer,
+                                                     Function<DaoManager.DaoType, Dao<?,?>> daos)
+            throws ModelException {
+        final int fractionDigits = Currency.getInstance("USD").getDefaultFractionDigits();
+        final Map<Integer, String> securityID2NameMap = new HashMap<>();
+        final IntFunction<String> securityNameFunction = sid -> securityID2NameMap.computeIfAbsent(sid,
+                k -> getSecurity(k).map(Security::getName).orElse(""));
+        final SecurityIDPriceDao securityIDPriceDao =
+                (SecurityIDPriceDao) daos.apply(DaoManager.DaoType.SECURITYID_PRICE);
+        final Map<Integer, NavigableMap<LocalDate, Price>> securityPriceMap = new HashMap<>();
+        final Map<String, SecurityHolding> shMap = new HashMap<>();
+        final Map<String, List<TransactionRecord>> stockSplitTransactionListMap = new HashMap<>();
+        final HoldingsEngine.MatchInfoLoader matchInfoLoader = matchInfoLoader(tList, daos);
+
+        BigDecimal totalCash = BigDecimal.ZERO.setScale(fractionDigits, RoundingMode.HALF_UP);
+        int i = 0;
+        for (LocalDate date : dates) {
+            // move the transactions up to the date into the holdings
+            for (; i < tList.size() && !tList.get(i).getTDate().isAfter(date); i++) {
+                final TransactionRecord t = tList.get(i);
+                totalCash = totalCash.add(t.getCashAmount().setScale(fractionDigits, RoundingMode.HALF_UP));
+                final String name = securityNameFunction.apply(t.getSecurityID());
+                if (!name.isEmpty()) {
+                    // we need to keep track of stock splits
+                    if (t.getTradeAction() == STKSPLIT)
+                        stockSplitTransactionListMap.computeIfAbsent(name, k -> new ArrayList<>()).add(t);
+                    // lot matches are only used by the transactions with quantities
+                    shMap.computeIfAbsent(name, k -> new SecurityHolding(k, fractionDigits))
+                            .processTransaction(t, Transaction.hasQuantity(t.getTradeAction()) ?
+                                    matchInfoLoader.load(t.getID()) : List.of());
+                }
+            }
+
+            BigDecimal totalMarketValue = totalCash;
+            BigDecimal totalCostBasis = totalCash;
+            final List<SecurityHolding> securityHoldingList = shMap.values().stream()
+                    .filter(sh -> sh.getQuantity().signum() != 0)
+                    .sorted(Comparator.comparing(SecurityHolding::getSecurityName))
+                    .collect(Collectors.toList());
+            for (SecurityHolding securityHolding : securityHoldingList) {
+                final Security security = getSecurity(securityHolding.getSecurityName()).orElse(null);
+                if (security == null)
+                    continue;
+                NavigableMap<LocalDate, Price> priceMap = securityPriceMap.get(security.getID());
+                if (priceMap == null) {
+                    priceMap = new TreeMap<>();
+                    try {
+                        for (Price price : securityIDPriceDao.get(security.getID()))
+                            priceMap.put(price.getDate(), price);
+                    } catch (DaoException e) {
+                        throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_SECURITY_PRICE,
+                                "Failed to get prices for security (" + security + ")", e);
+                    }
+                    securityPriceMap.put(security.getID(), priceMap);
+                }
+                // the last price on or before the date, same as SecurityIDPriceDao.getLastPrice,
+                // adjusted by the stock splits after it
+                final Map.Entry<LocalDate, Price> priceEntry = priceMap.floorEntry(date);
+                if (priceEntry != null) {
+                    securityHolding.setPrice(splitAdjustedPrice(priceEntry.getValue(), date,
+                            stockSplitTransactionListMap.get(security.getName())));
+                    totalMarketValue = totalMarketValue.add(securityHolding.getMarketValue());
+                    totalCostBasis = totalCostBasis.add(securityHolding.getCostBasis());
+                }
+            }
+            addCashAndTotalHoldings(securityHoldingList, totalCash, totalMarketValue, totalCostBasis,
+                    fractionDigits);
+            consumer.accept(date, securityHoldingList);
+        }
+    }
+
+    /**
+     * compute the realized gains of the selected closing trades of an account with a single pass over its
+     * transactions.  The closed lots of a trade are the same as from processTransaction on its security
+     * holding from computeRecordSecurityHoldings(tList, t.getTDate(), t.getID()).
+     * @param tList - a list of transaction records of an account, ordered by date
+     * @param endDate - the transactions after the end date are not used
+     * @param closingTradeFilter - selects the closing trades
+     * @param consumer - takes the closed lots of each selected closing trade, in the order of tList
+     * @throws ModelException - from database operations, the consumer, or no holding for a selected trade
+     */
+    void computeRealizedGains(List<TransactionRecord> tList, LocalDate endDate,
+                              Predicate<TransactionRecord> closingTradeFilter,
+                              RealizedGainEngine.ClosingTradeConsumer consumer) throws ModelException {
+        final int fractionDigits = Currency.getInstance("USD").getDefaultFractionDigits();
+        final Map<Integer, String> securityID2NameMap = new HashMap<>();
+        final IntFunction<String> securityNameFunction = sid -> securityID2NameMap.computeIfAbsent(sid,
+                k -> getSecurity(k).map(Security::getName).orElse(""));
+        read(daos -> {
+            new RealizedGainEngine(fractionDigits, securityNameFunction, matchInfoLoader(tList, daos))
+                    .run(tList, endDate, closingTradeFilter, consumer);
+            return null;
+        });
+    }
+
+    /**
+     * get MatchInfoList for a given transaction id
+     * @param tid transaction id
+     * @return list of MatchInfo for the transaction with id tid
+     * @throws ModelException - from Dao operations
+     */
+    List<MatchInfo> getMatchInfoList(int tid) throws ModelException {
+        return read(daos -> getMatchInfoList(tid, daos));
+    }
+
+    private static List<MatchInfo> getMatchInfoList(int tid, Function<DaoManager.DaoType, Dao<?,?>> daos)
+            throws ModelException {
+        try {
+            return ((PairTidMatchInfoListDao) daos.apply(DaoManager.DaoType.PAIR_TID_MATCH_INFO))
+                    .get(tid).map(Pair::getValue).orElse(new ArrayList<>());
+        } catch (DaoException e) {
+            throw new ModelException(ModelException.ErrorCode.FAIL_TO_RETRIEVE_MATCH_INFO_LIST,
+                    "Failed to retrieve match info list for Transaction id " + tid, e);
+        }
+    }
+
+    /**
+     * get the lot match info of all the transactions of an account.  It is loaded with one query
+     * and cached until the transactions of the account are altered.
+     * @param accountID - the account id
+     * @return a map of transaction id and its list of MatchInfo, without the transactions with no MatchInfo
+     * @throws ModelException - from Dao operations
+     */
+    Map<Integer, List<MatchInfo>> getAccountMatchInfoMap(int accountID) throws ModelException {
+        return read(daos -> getAccountMatchInfoMap(accountID, daos));
+    }
+
+    private Map<Integer, List<MatchInfo>> getAccountMatchInfoMap(int accountID,
+                                                                 Function<DaoManager.DaoType, Dao<?,?>> daos)
+            throws ModelException {
+        // the cache doesn't have the uncommitted changes of the current thread
+        if (!daoManager.isInTransaction()) {
+            final Map<Integer, List<MatchInfo>> matchInfoMap = accountMatchInfoMapCache.get(accountID);
+            if (matchInfoMap != null)
+                return matchInfoMap;
+        }
+        try {
+            // uncommitted changes on any thread might be rolled back, don't cache them, and don't cache
+            // what was loaded before a change was committed and dropped from the cache
+            final long generation = matchInfoCacheGeneration.get();
+            final boolean cacheable = !daoManager.hasOpenTransaction();
+            final Map<Integer, List<MatchInfo>> matchInfoMap =
+                    ((PairTidMatchInfoListDao) daos.apply(DaoManager.DaoType.PAIR_TID_MATCH_INFO))
+                            .getAccountMatchInfoMap(accountID);
+            if (cacheable && !daoManager.hasOpenTransaction() && matchInfoCacheGeneration.get() == generation)
+                accountMatchInfoMapCache.putIfAbsent(accountID, matchInfoMap);
+            return matchInfoMap;
+        } catch (DaoException e) {
+            throw new ModelException(ModelException.ErrorCode.FAIL_TO_RETRIEVE_MATCH_INFO_LIST,
+                    "Failed to retrieve match info list for account " + accountID, e);
+        }
+    }
+
+    // loads the MatchInfo of the transactions in the list from the account match info map, which
+    // is only fetched on the first call.  A list mixing accounts is loaded one transaction at a time.
+    private HoldingsEngine.MatchInfoLoader matchInfoLoader(List<TransactionRecord> tList,
+                                                           Function<DaoManager.DaoType, Dao<?,?>> daos) {
+        final int accountID = tList.isEmpty() ? 0 : tList.get(0).getAccountID();
+        if (tList.stream().anyMatch(t -> t.getAccountID() != accountID))
+            return tid -> getMatchInfoList(tid, daos);
+
+        final List<Map<Integer, List<MatchInfo>>> holder = new ArrayList<>(1);
+        return tid -> {
+            if (holder.isEmpty())
+                holder.add(getAccountMatchInfoMap(accountID, daos));
+            return holder.get(0).getOrDefault(tid, List.of());
+        };
+    }
+
+    public ObjectProperty<Account> getCurrentAccountProperty() { return currentAccountProperty; }
+    public void setCurrentAccount(Account account) throws ModelException {
+        getCurrentAccountProperty().set(account);
+        updateAccountBalance(a -> a.getID() == account.getID());
+    }
+    public Account getCurrentAccount() { return getCurrentAccountProperty().get(); }
+
+    public ObservableList<AccountDC> getAccountDCList() { return accountDCList; }
+
+    public ObservableList<Category> getCategoryList() { return categoryList; }
 
     public Optional<Category> getCategory(Predicate<Category> predicate) {
         return categoryList.stream().filter(predicate).findAny();
     }
 
+    /**
+     * get category by its id
+     */
+    public Optional<Category> getCategory(int categoryID) { return categoryIDIndex.get(categoryID); }
+
+    /**
+     * get category by its name
+     */
+    public Optional<Category> getCategory(String name) { return categoryNameIndex.get(name); }
+
     public void insertCategory(Category category) throws DaoException {
         int id = ((CategoryDao) daoManager.getDao(DaoManager.DaoType.CATEGORY)).insert(category);
         category.setID(id);
@@ -1177,13 +1993,24 @@ public class MainModel {
 
     public void updateCategory(Category category) throws DaoException {
         ((CategoryDao) daoManager.getDao(DaoManager.DaoType.CATEGORY)).update(category);
-        getCategory(c -> c.getID() == category.getID()).ifPresent(c -> c.copy(category));
+        getCategory(category.getID()).ifPresent(c -> c.copy(category));
+        categoryNameIndex.invalidate(); // the name might be changed in place
     }
 
     public ObservableList<Tag> getTagList() { return tagList; }
 
     public Optional<Tag> getTag(Predicate<Tag> predicate) { return tagList.stream().filter(predicate).findAny(); }
 
+    /**
+     * get tag by its id
+     */
+    public Optional<Tag> getTag(int tagID) { return tagIDIndex.get(tagID); }
+
+    /**
+     * get tag by its name
+     */
+    public Optional<Tag> getTag(String name) { return tagNameIndex.get(name); }
+
     List<Loan> getLoanList() throws DaoException {
         return ((LoanDao) daoManager.getDao(DaoManager.DaoType.LOAN)).getAll();
     }
@@ -1217,7 +2044,8 @@ public class MainModel {
         // update database
         ((TagDao) daoManager.getDao(DaoManager.DaoType.TAG)).update(tag);
         // update master list
-        getTag(t -> t.getID() == tag.getID()).ifPresent(t -> t.copy(tag));
+        getTag(tag.getID()).ifPresent(t -> t.copy(tag));
+        tagNameIndex.invalidate(); // the name might be changed in place
     }
 
     // loan is immutable, only insert, no update, unless delete
@@ -1256,17 +2084,32 @@ public class MainModel {
     }
     
     /**
-     *
-     * @return all payees in a sorted set with case-insensitive ordering.
+     * get the payee index for the payee suggestions and the default categories.  It is built from the
+     * payee statistics and cached until the statistics are changed.
+     * @return the payee index of the payees used in the last 3 years, counted by whole years
+     * @throws ModelException - from Dao operations
      */
-    public SortedSet<String> getPayeeSet() throws ModelException {
-        try {
-            TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
-            // we care only 3 years of transactions
-            return transactionDao.getPayeeSet(LocalDate.now().minusYears(3));
-        } catch (DaoException e) {
-            throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_PAYEE_SET, "", e);
-        }
+    PayeeIndex getPayeeIndex() throws ModelException {
+        return read(daos -> {
+            final TransactionDao transactionDao = (TransactionDao) daos.apply(DaoManager.DaoType.TRANSACTION);
+            final long version = transactionDao.getPayeeStatsVersion();
+            final PayeeIndex cached = payeeIndex;
+            if (version >= 0 && cached != null && cached.getVersion() == version)
+                return cached;
+            try {
+                // we care only 3 years of transactions
+                final PayeeIndex.Builder builder = new PayeeIndex.Builder(LocalDate.now().minusYears(3));
+                transactionDao.scanPayeeStats(builder::add);
+                final PayeeIndex index = builder.build(version);
+                // don't cache if the statistics might have changed during the scan
+                if (version >= 0 && transactionDao.getPayeeStatsVersion() == version)
+                    payeeIndex = index;
+                return index;
+            } catch (DaoException e) {
+                throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_PAYEE_SET,
+                        "Failed to get payee statistics", e);
+            }
+        });
     }
 
     void setTransactionStatus(int tid, Transaction.Status newStatus) throws ModelException {
@@ -1277,7 +2120,7 @@ public class MainModel {
         try {
             ((TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION)).update(t);
             // change of status may trigger sort, need to update balance after sort
-            updateAccountBalance(a -> a.getID() == t.getAccountID());
+            updateAccountBalance(a -> a.getID() == t.getAccountID(), List.of(tid));
         } catch (ModelException | DaoException e) {
             t.setStatus(oldStatus);
             if (e instanceof ModelException)
@@ -1303,6 +2146,7 @@ public class MainModel {
 
         final Set<Transaction> updateTSet = new HashSet<>(); // transactions updated in DB
         final Set<Integer> accountIDSet = new HashSet<>(); // IDs of accounts need to update balance
+        final Set<Integer> tidSet = new HashSet<>(); // IDs of transactions inserted, updated, or deleted in DB
 
         final int newTID;
         final int newTMatchID;
@@ -1322,14 +2166,14 @@ public class MainModel {
         PairTidMatchInfoListDao pairTidMatchInfoListDao =
                 (PairTidMatchInfoListDao) daoManager.getDao(DaoManager.DaoType.PAIR_TID_MATCH_INFO);
         SecurityIDPriceDao securityIDPriceDao = (SecurityIDPriceDao) daoManager.getDao(DaoManager.DaoType.SECURITYID_PRICE);
-        final int DELETE_ACCOUNT_ID = getAccount(a -> a.getName().equals(DELETED_ACCOUNT_NAME)).orElseThrow(() ->
+        final int DELETE_ACCOUNT_ID = getAccount(DELETED_ACCOUNT_NAME).orElseThrow(() ->
                 new ModelException(ModelException.ErrorCode.MISSING_DELETED_ACCOUNT, "Cannot find DELETED_ACCOUNT",
                         null)).getID();
         try {
             // start a dao transaction
             daoManager.beginTransaction();
             if (newT != null) {
-                Account account = getAccount(a -> a.getID() == newT.getAccountID()).orElseThrow(() ->
+                Account account = getAccount(newT.getAccountID()).orElseThrow(() ->
                         new ModelException(ModelException.ErrorCode.INVALID_TRANSACTION,
                                 "Transaction '" + newT.getID() + "' has an invalid account ID ("
                                         + newT.getAccountID() + ")", null));
@@ -1337,11 +2181,11 @@ public class MainModel {
                 // check quantity
                 if (newTTA == SELL || newTTA == SHRSOUT || newTTA == CVTSHRT) {
                     // get account transaction list
-                    final ObservableList<Transaction> transactions = getAccountTransactionList(account);
-                    final String newTSecurityName = getSecurity(s -> s.getID() == newT.getSecurityID())
+                    final List<TransactionRecord> transactions = getAccountTransactionRecordList(account);
+                    final String newTSecurityName = getSecurity(newT.getSecurityID())
                             .map(Security::getName).orElse("");
                     // compute security holdings
-                    final BigDecimal quantity = computeSecurityHoldings(transactions, newT.getTDate(),
+                    final BigDecimal quantity = computeRecordSecurityHoldings(transactions, newT.getTDate(),
                             newT.getID())
                             .stream().filter(sh -> sh.getSecurityName().equals(newTSecurityName))
                             .map(SecurityHolding::getQuantity).reduce(BigDecimal.ZERO, BigDecimal::add);
@@ -1442,6 +2286,7 @@ public class MainModel {
                             } else {
                                 stXferT.setID(transactionDao.insert(stXferT));
                             }
+                            tidSet.add(stXferT.getID());
                             st.setMatchID(stXferT.getID());
 
                             // we need to update the transfer account
@@ -1510,7 +2355,7 @@ public class MainModel {
                             }
                         } else if (!xferT.isCash()) {
                             // non-cash, first check transfer account type
-                            final Optional<Account> xferAcctOpt = getAccount(a -> a.getID() == -newT.getCategoryID());
+                            final Optional<Account> xferAcctOpt = getAccount(-newT.getCategoryID());
                             if (xferAcctOpt.isEmpty()) {
                                 throw new ModelException(ModelException.ErrorCode.INVALID_TRANSACTION,
                                         "Transfer account " + (-newT.getCategoryID()) + " does not exist", null);
@@ -1566,6 +2411,7 @@ public class MainModel {
                     } else {
                         xferT.setID(transactionDao.insert(xferT));
                     }
+                    tidSet.add(xferT.getID());
                     newT.setMatchID(xferT.getID(), newT.getMatchSplitID());
 
                     // update newT MatchID in DB
@@ -1582,7 +2428,7 @@ public class MainModel {
                 final Security security;
                 final BigDecimal price;
                 if (!newT.isCash()) {
-                    security = getSecurity(s -> s.getID() == newT.getSecurityID()).orElse(null);
+                    security = getSecurity(newT.getSecurityID()).orElse(null);
                     price = security == null ? null : newT.getPrice();
                 } else {
                     security = null;
@@ -1600,6 +2446,7 @@ public class MainModel {
                 }
 
                 accountIDSet.add(newT.getAccountID());
+                tidSet.add(newT.getID());
             }
 
             if (oldT != null) {
@@ -1622,6 +2469,7 @@ public class MainModel {
                             if (updateTSet.stream().noneMatch(t -> t.getID() == st.getMatchID())) {
                                 // not being updated
                                 transactionDao.delete(st.getMatchID());
+                                tidSet.add(st.getMatchID());
                             }
 
                             // need to update the account later
@@ -1693,6 +2541,7 @@ public class MainModel {
                         } else {
                             // oldT linked to non-split transaction
                             transactionDao.delete(oldT.getMatchID());
+                            tidSet.add(oldT.getMatchID());
                         }
                     }
 
@@ -1707,6 +2556,7 @@ public class MainModel {
 
                 // need to update account
                 accountIDSet.add(oldT.getAccountID());
+                tidSet.add(oldT.getID());
             }
 
             // commit to database
@@ -1714,8 +2564,19 @@ public class MainModel {
 
             // done with database work, update MasterList now
 
+            // drop the holdings checkpoints affected by the change, lot matching may
+            // change without changing the transactions, so the fingerprints are not enough
+            final LocalDate changeDate = Stream.of(oldT, newT).filter(Objects::nonNull).map(Transaction::getTDate)
+                    .min(LocalDate::compareTo).orElse(LocalDate.MIN);
+            accountIDSet.forEach(aid -> {
+                holdingsEngine.invalidate(aid, changeDate);
+                matchInfoCacheGeneration.incrementAndGet();
+                accountMatchInfoMapCache.remove(aid);
+            });
+
             // update account balances
-            updateAccountBalance(account -> accountIDSet.contains(account.getID()));
+            updateTSet.forEach(t -> tidSet.add(t.getID()));
+            updateAccountBalance(account -> accountIDSet.contains(account.getID()), tidSet);
 
             // we are done
         } catch (DaoException | ModelException e) {
@@ -1734,7 +2595,7 @@ public class MainModel {
 
     ObservableList<Transaction> getMergeCandidateTransactionList(final Transaction transaction)
             throws ModelException {
-        final Optional<Account> accountOptional = getAccount(a -> a.getID() == transaction.getAccountID());
+        final Optional<Account> accountOptional = getAccount(transaction.getAccountID());
         if (accountOptional.isEmpty())
             throw new IllegalArgumentException("Transaction (" + transaction.getID() + ") has an invalid account ID ("
                     + transaction.getAccountID() + ")");
@@ -1759,13 +2620,15 @@ public class MainModel {
      * mark all cleared transaction for the current account as reconciled
      * and update account reconciled date
      * @param d - the date
+     * @param transactionList - the unreconciled transactions of the current account, see
+     *                        getUnreconciledTransactionList, the cleared ones are reconciled
      */
-    void reconcileCurrentAccount(LocalDate d) throws ModelException {
+    void reconcileCurrentAccount(LocalDate d, List<Transaction> transactionList) throws ModelException {
         Account account = getCurrentAccount();
 
         // create a local list of relevant transactions
-        final List<Transaction> tList = new ArrayList<>(getCurrentAccountTransactionList()
-                .filtered(t -> t.getStatus().equals(Transaction.Status.CLEARED)));
+        final List<Transaction> tList = transactionList.stream()
+                .filter(t -> t.getStatus().equals(Transaction.Status.CLEARED)).collect(Collectors.toList());
         LocalDate oldReconcileDate = account.getLastReconcileDate();
 
         tList.forEach(t -> t.setStatus(Transaction.Status.RECONCILED));
@@ -1797,6 +2660,9 @@ public class MainModel {
             throw new ModelException(ModelException.ErrorCode.RECONCILE_ACCOUNT_FAILURE,
                     "Failed to reconcile account " + account, e);
         }
+
+        // the status changes move the transactions in the current account
+        updateAccountBalance(a -> a == account, tList.stream().map(Transaction::getID).collect(Collectors.toList()));
     }
 
     /**
@@ -1821,37 +2687,31 @@ public class MainModel {
                 .filtered(t -> t.getName().toLowerCase().contains(lowerSearchString))
                 .stream().map(Tag::getID).collect(Collectors.toCollection(HashSet<Integer>::new));
 
-        Predicate<Transaction> predicate = t -> {
-            if (categoryOrTransferAccountNameMatchIDSet.contains(t.getCategoryID()))
-                return true;
-
-            if (tagNameMatchIDSet.contains(t.getTagID()))
-                return true;
-
-            final String payee = t.getPayee();
-            if (payee != null && payee.toLowerCase().contains(lowerSearchString))
-                return true;
-
-            final String securityName = getSecurity(s -> s.getID() == t.getSecurityID())
-                    .map(Security::getName).orElse(null);
-            if (securityName != null && securityName.toLowerCase().contains(lowerSearchString))
-                return true;
-
-            final String memo = t.getMemo();
-            if (memo != null && memo.toLowerCase().contains(lowerSearchString))
-                return true;
+        // security name
+        final Set<Integer> securityNameMatchIDSet = getSecurityList().stream()
+                .filter(s -> s.getName() != null && s.getName().toLowerCase().contains(lowerSearchString))
+                .map(Security::getID).collect(Collectors.toCollection(HashSet<Integer>::new));
 
-            return t.getTradeAction().toString().toLowerCase().contains(lowerSearchString);
-        };
+        // trade action
+        final Set<Transaction.TradeAction> tradeActionMatchSet = Arrays.stream(Transaction.TradeAction.values())
+                .filter(ta -> ta.toString().toLowerCase().contains(lowerSearchString))
+                .collect(Collectors.toCollection(() -> EnumSet.noneOf(Transaction.TradeAction.class)));
 
-        try {
-            TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
-            ObservableList<Transaction> transactions = FXCollections.observableArrayList(transactionDao.getAll());
-            return new FilteredList<>(transactions, predicate);
-        } catch (DaoException e) {
-            throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_TRANSACTION,
-                    "Failed to get all transactions", e);
-        }
+        // payee and memo are searched in the index, then only the matching transactions are loaded
+        return read(daos -> {
+            TransactionDao transactionDao = (TransactionDao) daos.apply(DaoManager.DaoType.TRANSACTION);
+            try {
+                final List<Integer> tidList = new ArrayList<>(transactionDao.getStringSearchTransactionIDSet(
+                        lowerSearchString, categoryOrTransferAccountNameMatchIDSet, tagNameMatchIDSet,
+                        securityNameMatchIDSet, tradeActionMatchSet));
+                final List<Transaction> transactions = transactionDao.getTransactionList(tidList);
+                transactions.sort(Comparator.comparing(Transaction::getID));
+                return FXCollections.observableArrayList(transactions);
+            } catch (DaoException e) {
+                throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_TRANSACTION,
+                        "Failed to search transactions for '" + searchString + "'", e);
+            }
+        });
     }
 
     /**
@@ -1912,7 +2772,8 @@ public class MainModel {
     // Later.
     private FinancialInstitution DCGetFinancialInstitution(DirectConnection directConnection)
             throws MalformedURLException, ModelException {
-        OFXV1Connection connection = new OFXV1Connection();
+        OFXV1Connection connection =
+                new DCDownloadScheduler.TimeoutOFXV1Connection(DCDownloadScheduler.DEFAULT_TIMEOUT_MILLIS);
         DirectConnection.FIData fiData = getFIData(fd -> fd.getID() == directConnection.getFIID())
                 .orElseThrow(() -> new ModelException(ModelException.ErrorCode.INVALID_DIRECT_CONNECTION,
                         "DirectConnection " + directConnection.getName() + " doesn't have valid FIID",
@@ -1927,9 +2788,28 @@ public class MainModel {
         return fi;
     }
 
-    // download account statement from DirectConnection
-    // currently only support SPENDING account type
-    Set<TransactionType> DCDownloadAccountStatement(Account account)
+    // a direct connect download of an account, ready to fetch the statement
+    private static class DCDownload {
+        private final AccountDC accountDC;
+        private final DirectConnection directConnection;
+        private final FinancialInstitutionAccount fiAccount;
+        private final java.util.Date startDate;
+        private final java.util.Date endDate;
+
+        DCDownload(AccountDC accountDC, DirectConnection directConnection, FinancialInstitutionAccount fiAccount,
+                   java.util.Date startDate, java.util.Date endDate) {
+            this.accountDC = accountDC;
+            this.directConnection = directConnection;
+            this.fiAccount = fiAccount;
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+
+        AccountStatement fetch() throws OFXException { return fiAccount.readStatement(startDate, endDate); }
+    }
+
+    // resolve the direct connection, decrypt the credentials, and compute the download period of an account
+    private DCDownload prepareDCDownload(Account account)
             throws IllegalArgumentException, MalformedURLException, NoSuchAlgorithmException,
             InvalidKeySpecException, KeyStoreException, UnrecoverableKeyException,
             NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException,
@@ -1979,9 +2859,14 @@ public class MainModel {
         if (lastReconcileDatePlusOneDay != null && startDate.compareTo(lastReconcileDatePlusOneDay) < 0)
             startDate = lastReconcileDatePlusOneDay;
 
+        return new DCDownload(adc, directConnection, fiAccount, startDate, endDate);
+    }
+
+    // import a downloaded statement and record the download info
+    private Set<TransactionType> importDCStatement(Account account, AccountDC adc, AccountStatement statement)
+            throws DaoException, ModelException {
         daoManager.beginTransaction();
         try {
-            AccountStatement statement = fiAccount.readStatement(startDate, endDate);
             Set<TransactionType> unTested = importAccountStatement(account, statement);
             adc.setLastDownloadInfo(statement.getLedgerBalance().getAsOfDate(),
                     BigDecimal.valueOf(statement.getLedgerBalance().getAmount())
@@ -1999,6 +2884,57 @@ public class MainModel {
         }
     }
 
+    // download account statement from DirectConnection
+    // currently only support SPENDING account type
+    Set<TransactionType> DCDownloadAccountStatement(Account account)
+            throws IllegalArgumentException, MalformedURLException, NoSuchAlgorithmException,
+            InvalidKeySpecException, KeyStoreException, UnrecoverableKeyException,
+            NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException,
+            IllegalBlockSizeException, BadPaddingException, OFXException, DaoException, ModelException {
+        final DCDownload dcDownload = prepareDCDownload(account);
+        return importDCStatement(account, dcDownload.accountDC, dcDownload.fetch());
+    }
+
+    /**
+     * the downloads of the statements of some accounts, prepared by DCDownloadAccountStatements
+     */
+    @FunctionalInterface
+    interface DCStatementsDownload {
+        /**
+         * download the statements concurrently, and import them one at a time on the import executor.
+         * a failed download or import of an account doesn't stop the others.
+         * @param scheduler - runs the downloads
+         * @param importExecutor - runs the imports, Platform::runLater when not on the FX thread
+         * @return the results in the order of the accounts, each with the untested transaction types
+         * @throws InterruptedException - if interrupted while waiting for the downloads
+         */
+        List<DCDownloadScheduler.Result<Set<TransactionType>>> run(DCDownloadScheduler scheduler,
+                                                                   Executor importExecutor)
+                throws InterruptedException;
+    }
+
+    /**
+     * prepare the downloads of the statements of the accounts, the credentials are decrypted up front.
+     * @param accountList - the accounts with direct connections
+     * @return the downloads, which can run on any thread
+     * @throws ModelException - if an account has no valid direct connection
+     */
+    DCStatementsDownload DCDownloadAccountStatements(List<Account> accountList)
+            throws IllegalArgumentException, MalformedURLException, NoSuchAlgorithmException,
+            InvalidKeySpecException, KeyStoreException, UnrecoverableKeyException,
+            NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException,
+            IllegalBlockSizeException, BadPaddingException, OFXException, DaoException, ModelException {
+        final Map<Integer, AccountDC> accountDCMap = new HashMap<>();
+        final List<DCDownloadScheduler.Job> jobList = new ArrayList<>();
+        for (Account account : accountList) {
+            final DCDownload dcDownload = prepareDCDownload(account);
+            accountDCMap.put(account.getID(), dcDownload.accountDC);
+            jobList.add(new DCDownloadScheduler.Job(account,
+                    String.valueOf(dcDownload.directConnection.getFIID()), dcDownload::fetch));
+        }
+        return (scheduler, importExecutor) -> scheduler.run(jobList, (account, statement) ->
+                importDCStatement(account, accountDCMap.get(account.getID()), statement), importExecutor);
+    }
 
     /**
      * read account statement from OFX file
@@ -2009,8 +2945,8 @@ public class MainModel {
      */
     BankStatementResponse readOFXStatement(final File file) throws IOException, ModelException {
         final OFXBankStatementReader reader = new OFXBankStatementReader();
-        try {
-            final BankStatementResponse statement = reader.readOFXStatement(new FileInputStream(file));
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            final BankStatementResponse statement = reader.readOFXStatement(inputStream);
 
             final String warning = reader.getWarning();
             if (warning != null)
@@ -2028,8 +2964,19 @@ public class MainModel {
         if (statement.getTransactionList() == null)
             return Collections.emptySet();  // didn't download any transaction, do nothing
 
-        Set<String> downloadedIDSet = getAccountTransactionList(account).stream().map(Transaction::getFITID)
-                .filter(s -> !s.isEmpty()).collect(Collectors.toSet());
+        final TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
+
+        // look up only the FITIDs in the statement, through the FITID index
+        final Set<String> downloadedIDSet;
+        try {
+            downloadedIDSet = transactionDao.getExistingFITIDSet(account.getID(),
+                    statement.getTransactionList().getTransactions().stream()
+                            .map(com.webcohesion.ofx4j.domain.data.common.Transaction::getId)
+                            .filter(s -> s != null && !s.isEmpty()).collect(Collectors.toSet()));
+        } catch (DaoException e) {
+            throw new ModelException(ModelException.ErrorCode.DB_ACCESS_FAILURE,
+                    "Failed to get downloaded transaction ids for " + account.getName(), e);
+        }
 
         Set<TransactionType> testedTransactionType = new HashSet<>(Arrays.asList(TransactionType.OTHER,
                 TransactionType.CREDIT, TransactionType.DEBIT, TransactionType.CHECK, TransactionType.INT));
@@ -2062,16 +3009,16 @@ public class MainModel {
                     break;
                 case INT:
                     ta = Transaction.TradeAction.DEPOSIT;
-                    category = getCategory(c -> c.getName().equals("Interest Inc")).orElse(null);
+                    category = getCategory("Interest Inc").orElse(null);
                     break;
                 case DIV:
                     ta = Transaction.TradeAction.DEPOSIT;
-                    category = getCategory(c -> c.getName().equals("Div Income")).orElse(null);
+                    category = getCategory("Div Income").orElse(null);
                     break;
                 case FEE:
                 case SRVCHG:
                     ta = Transaction.TradeAction.WITHDRAW;
-                    category = getCategory(c -> c.getName().equals("Fees & Charges")).orElse(null);
+                    category = getCategory("Fees & Charges").orElse(null);
                     break;
                 case XFER:
                     if (amount.compareTo(BigDecimal.ZERO) >= 0)
@@ -2140,8 +3087,7 @@ public class MainModel {
 
         try {
             daoManager.beginTransaction();
-            for (Transaction t : tobeImported)
-                insertTransaction(t);
+            transactionDao.insertBatch(tobeImported);
             daoManager.commit();
             updateAccountBalance(a -> a.getID() == account.getID());
             return unTestedTransactionType;
@@ -2207,21 +3153,76 @@ public class MainModel {
         return -1;
     }
 
-    private void fixDB() throws DaoException {
-        // load all transactions
-        TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
-        ObservableList<Transaction> transactionList = FXCollections.observableArrayList(transactionDao.getAll());
-        final SortedList<Transaction> sortedList = new SortedList<>(transactionList,
-                Comparator.comparing(Transaction::getTDate)
-                        .reversed().thenComparing(Transaction::isSplit).reversed()  // put split first
-                        .thenComparing(Transaction::getAccountID));
-        final int nTrans = sortedList.size();
-        logger.info("Total {} transactions", nTrans);
+    // the span of the dates of the transactions loaded at a time to link up the transfers
+    private static final Period LINK_TRANSFER_WINDOW = Period.ofMonths(1);
 
-        if (nTrans == 0)
+    /**
+     * link up the transfers not matched to the other side yet.  The two sides of a transfer are on
+     * the same date, so the candidates are loaded and linked one date window at a time, and the
+     * writer lock is only held for the updates of each window.
+     * @throws DaoException - from database operations
+     */
+    private void fixDB() throws DaoException {
+        final TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
+        final List<Integer> accountIDList = ((AccountDao) daoManager.getDao(DaoManager.DaoType.ACCOUNT)).getAll()
+                .stream().map(Account::getID).collect(Collectors.toList());
+        final Optional<Pair<LocalDate, LocalDate>> dateRangeOptional =
+                transactionDao.getTransactionDateRange(accountIDList);
+        if (dateRangeOptional.isEmpty())
             return; // nothing to do
 
-        final List<Transaction> updateList = new ArrayList<>();  // transactions need to be updated in DB
+        int nTrans = 0;
+        int nMatched = 0;
+        int nUnMatched = 0;
+        int cnt = 0;
+        final LocalDate lastDate = dateRangeOptional.get().getValue();
+        for (LocalDate fromDate = dateRangeOptional.get().getKey(); !fromDate.isAfter(lastDate);
+             fromDate = fromDate.plus(LINK_TRANSFER_WINDOW)) {
+            final List<Transaction> sortedList = transactionDao.getUnmatchedTransferList(fromDate,
+                    fromDate.plus(LINK_TRANSFER_WINDOW).minusDays(1));
+            sortedList.sort(Comparator.comparing(Transaction::getTDate)
+                    .reversed().thenComparing(Transaction::isSplit).reversed()  // put split first
+                    .thenComparing(Transaction::getAccountID));
+            final List<Transaction> updateList = new ArrayList<>();  // transactions need to be updated in DB
+            nUnMatched += linkTransfers(sortedList, updateList);
+            nTrans += sortedList.size();
+            nMatched += updateList.size();
+            if (updateList.isEmpty())
+                continue;
+
+            try {
+                daoManager.beginTransaction();
+                for (Transaction t : updateList) {
+                    transactionDao.update(t);
+                    cnt++;
+                }
+                daoManager.commit();
+            } catch (DaoException e) {
+                try {
+                    daoManager.rollback();
+                } catch (DaoException e1) {
+                    e.addSuppressed(e1);
+                }
+                throw e;
+            }
+        }
+
+        String message = "Total " + nTrans + " transactions processed." + "\n"
+                + "Found " + nMatched + " matching transactions." + "\n"
+                + "Updated " + cnt + " transactions." + "\n"
+                + "Remain " + nUnMatched + " unmatched transactions.";
+
+        logger.info(message);
+    }
+
+    /**
+     * link up the unmatched transfers in a list
+     * @param sortedList - the transactions, sorted by date, split first, then by account id
+     * @param updateList - the transactions linked up are added to it
+     * @return the number of (partially) unmatched transfers
+     */
+    private int linkTransfers(List<Transaction> sortedList, List<Transaction> updateList) {
+        final int nTrans = sortedList.size();
         final List<Transaction> unMatchedList = new ArrayList<>(); // (partially) unmatched transactions
 
         for (int i = 0; i < nTrans; i++) {
@@ -2300,155 +3301,175 @@ public class MainModel {
                 }
             }
         }
+        return unMatchedList.size();
+    }
 
-        int cnt = 0;
-        try {
-            daoManager.beginTransaction();
-            for (Transaction t : updateList) {
-                transactionDao.update(t);
-                cnt++;
-            }
-            daoManager.commit();
-        } catch (DaoException e) {
-            try {
-                daoManager.rollback();
-            } catch (DaoException e1) {
-                e.addSuppressed(e1);
-            }
-            throw e;
-        }
+    // the maximum number of transactions or prices held in memory when importing a QIF file
+    private static final int QIF_IMPORT_BATCH_SIZE = 1000;
 
-        String message = "Total " + nTrans + " transactions processed." + "\n"
-                + "Found " + updateList.size() + " matching transactions." + "\n"
-                + "Updated " + cnt + " transactions." + "\n"
-                + "Remain " + unMatchedList.size() + " unmatched transactions.";
+    /**
+     * writes the records parsed so far by a QIF parser
+     */
+    @FunctionalInterface
+    private interface QIFBatchWriter {
+        void write(QIFParser qifParser) throws DaoException, ModelException;
+    }
 
-        logger.info(message);
+    /**
+     * import a QIF file, see importQIFToDB and reloadAfterQIFImport
+     * @param file - the QIF file
+     * @param defaultAccountName - the account for the transactions before any account record
+     * @param batchSize - the maximum number of transactions or prices in a batch
+     * @param progressListener - see importQIFToDB
+     * @throws IOException - from reading the file
+     * @throws ParseException - from parsing the numbers
+     * @throws ModelException - for bad formatted records, or unknown account names or tickers
+     * @throws DaoException - from database operations
+     */
+    void importFromQIF(File file, String defaultAccountName, int batchSize, ProgressListener progressListener)
+            throws IOException, ParseException, ModelException, DaoException {
+        importQIFToDB(file, defaultAccountName, batchSize, progressListener);
+        reloadAfterQIFImport();
     }
 
-    void importFromQIF(File file, String defaultAccountName)
+    void importQIFToDB(File file, String defaultAccountName, ProgressListener progressListener)
             throws IOException, ParseException, ModelException, DaoException {
-        final QIFParser qifParser = new QIFParser(defaultAccountName);
-        if (qifParser.parseFile(file) < 0)
-            throw new ModelException(ModelException.ErrorCode.QIF_PARSE_EXCEPTION,
-                    file.getAbsolutePath(), null);
+        importQIFToDB(file, defaultAccountName, QIF_IMPORT_BATCH_SIZE, progressListener);
+    }
 
+    /**
+     * import a QIF file in one database transaction.  The file is read three times, one record at a time,
+     * first for the tags, the categories, the accounts and the securities, then for the transactions, and
+     * last for the prices, which overwrite the trade prices.  The names in the transactions are resolved
+     * to the ids as they are read, and the transactions and the prices are written in batches, so the
+     * memory used does not grow with the size of the file.  The transfers are linked up after the commit.
+     * It only works on the database, so it can run off the FX thread, the lists of the model are
+     * refreshed afterwards by reloadAfterQIFImport on the FX thread.
+     * @param file - the QIF file
+     * @param defaultAccountName - the account for the transactions before any account record
+     * @param batchSize - the maximum number of transactions or prices in a batch
+     * @param progressListener - receives the number of bytes read in the three passes, out of three times
+     *                         the file size
+     * @throws IOException - from reading the file
+     * @throws ParseException - from parsing the numbers
+     * @throws ModelException - for bad formatted records, or unknown account names or tickers
+     * @throws DaoException - from database operations
+     */
+    void importQIFToDB(File file, String defaultAccountName, int batchSize, ProgressListener progressListener)
+            throws IOException, ParseException, ModelException, DaoException {
+        final long fileSize = file.length();
         daoManager.beginTransaction();
         try {
+            final QIFParser listParser = new QIFParser(defaultAccountName, EnumSet.of(QIFParser.RecordType.TAG,
+                    QIFParser.RecordType.CAT, QIFParser.RecordType.ACCOUNT, QIFParser.RecordType.SECURITY));
+            readQIF(file, listParser, Integer.MAX_VALUE, qifParser -> {},
+                    position -> progressListener.update(position, 3 * fileSize));
+
             final AccountDao accountDao = (AccountDao) daoManager.getDao(DaoManager.DaoType.ACCOUNT);
-            for (Account account : qifParser.getAccountList()) {
-                if (getAccount(a -> a.getName().equals(account.getName())).isEmpty()) {
+            final Set<String> accountNameSet = accountDao.getAll().stream().map(Account::getName)
+                    .collect(Collectors.toSet());
+            for (Account account : listParser.getAccountList()) {
+                if (accountNameSet.add(account.getName())) {
                     accountDao.insert(account);
                 }
             }
-            initAccountList();
 
             final SecurityDao securityDao = (SecurityDao) daoManager.getDao(DaoManager.DaoType.SECURITY);
-            for (Security security : qifParser.getSecurityList()) {
+            for (Security security : listParser.getSecurityList()) {
                 securityDao.insert(security);
             }
-            initSecurityList();
-
-            final Map<String, Security> tickerSecurityMap = new HashMap<>();
 
             final CategoryDao categoryDao = (CategoryDao) daoManager.getDao(DaoManager.DaoType.CATEGORY);
-            for (Category category : qifParser.getCategorySet()) {
+            for (Category category : listParser.getCategorySet()) {
                 categoryDao.insert(category);
             }
-            categoryList.setAll(categoryDao.getAll());
 
             final TagDao tagDao = (TagDao) daoManager.getDao(DaoManager.DaoType.TAG);
-            for (Tag tag : qifParser.getTagSet()) {
+            for (Tag tag : listParser.getTagSet()) {
                 tagDao.insert(tag);
             }
-            tagList.setAll(((TagDao) daoManager.getDao(DaoManager.DaoType.TAG)).getAll());
-
-            Map<String, Integer> categoryNameIDMap = new HashMap<>();
-            getCategoryList().forEach(c -> categoryNameIDMap.put(c.getName(), c.getID()));
-            getAccountList(a -> true).forEach(a -> categoryNameIDMap.put("[" + a.getName() + "]", -a.getID()));
-            for (Map.Entry<String, List<Transaction>> entry : qifParser.getCategoryNameTransactionMap().entrySet()) {
-                final int categoryID = categoryNameIDMap.getOrDefault(entry.getKey(), 0);
-                entry.getValue().forEach(t -> t.setCategoryID(categoryID));
-            }
 
+            // the lists of the model belong to the FX thread, read the names from the database
+            final List<Account> accountList = accountDao.getAll();
+            final List<Security> securityList = securityDao.getAll();
+            final Map<String, Integer> categoryNameIDMap = new HashMap<>();
+            categoryDao.getAll().forEach(c -> categoryNameIDMap.put(c.getName(), c.getID()));
+            accountList.forEach(a -> categoryNameIDMap.put("[" + a.getName() + "]", -a.getID()));
             final Map<String, Integer> securityNameIDMap = new HashMap<>();
-            getSecurityList().forEach(s -> securityNameIDMap.put(s.getName(), s.getID()));
-            for (Map.Entry<String, List<Transaction>> entry : qifParser.getSecurityNameTransactionMap().entrySet()) {
-                final int securityID = securityNameIDMap.getOrDefault(entry.getKey(), 0);
-                entry.getValue().forEach(t -> t.setSecurityID(securityID));
-            }
-
-            for (Map.Entry<String, List<SplitTransaction>> entry :
-                    qifParser.getCategoryNameSplitTransactionMap().entrySet()) {
-                final int categoryID = categoryNameIDMap.getOrDefault(entry.getKey(), 0);
-                entry.getValue().forEach(st -> st.setCategoryID(categoryID));
-            }
-
-            Map<String, Integer> tagNameIDMap = new HashMap<>();
-            getTagList().forEach(t -> tagNameIDMap.put(t.getName(), t.getID()));
-            for (Map.Entry<String, List<Transaction>> entry : qifParser.getTagNameTransactionMap().entrySet()) {
-                final int tagID = tagNameIDMap.getOrDefault(entry.getKey(), 0);
-                entry.getValue().forEach(t -> t.setTagID(tagID));
-            }
-
-            for (Map.Entry<String, List<SplitTransaction>> entry :
-                    qifParser.getTagNameSplitTransactionMap().entrySet()) {
-                final int tagID = tagNameIDMap.getOrDefault(entry.getKey(), 0);
-                entry.getValue().forEach(st -> st.setTagID(tagID));
-            }
+            securityList.forEach(s -> securityNameIDMap.put(s.getName(), s.getID()));
+            final Set<Integer> securityIDSet = new HashSet<>(securityNameIDMap.values());
+            final Map<String, Integer> tagNameIDMap = new HashMap<>();
+            tagDao.getAll().forEach(t -> tagNameIDMap.put(t.getName(), t.getID()));
+            final Map<String, Integer> accountNameIDMap = new HashMap<>();
+            accountList.forEach(a -> accountNameIDMap.put(a.getName(), a.getID()));
+
+            final TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
+            final SecurityIDPriceDao securityPriceDao =
+                    (SecurityIDPriceDao) daoManager.getDao(DaoManager.DaoType.SECURITYID_PRICE);
+            final QIFParser transactionParser = new QIFParser(defaultAccountName,
+                    EnumSet.of(QIFParser.RecordType.BANK, QIFParser.RecordType.INVITEM));
+            readQIF(file, transactionParser, batchSize, qifParser -> {
+                for (Map.Entry<String, List<Transaction>> entry : qifParser.getCategoryNameTransactionMap().entrySet()) {
+                    final int categoryID = categoryNameIDMap.getOrDefault(entry.getKey(), 0);
+                    entry.getValue().forEach(t -> t.setCategoryID(categoryID));
+                }
+                for (Map.Entry<String, List<Transaction>> entry : qifParser.getSecurityNameTransactionMap().entrySet()) {
+                    final int securityID = securityNameIDMap.getOrDefault(entry.getKey(), 0);
+                    entry.getValue().forEach(t -> t.setSecurityID(securityID));
+                }
+                for (Map.Entry<String, List<SplitTransaction>> entry :
+                        qifParser.getCategoryNameSplitTransactionMap().entrySet()) {
+                    final int categoryID = categoryNameIDMap.getOrDefault(entry.getKey(), 0);
+                    entry.getValue().forEach(st -> st.setCategoryID(categoryID));
+                }
+                for (Map.Entry<String, List<Transaction>> entry : qifParser.getTagNameTransactionMap().entrySet()) {
+                    final int tagID = tagNameIDMap.getOrDefault(entry.getKey(), 0);
+                    entry.getValue().forEach(t -> t.setTagID(tagID));
+                }
+                for (Map.Entry<String, List<SplitTransaction>> entry :
+                        qifParser.getTagNameSplitTransactionMap().entrySet()) {
+                    final int tagID = tagNameIDMap.getOrDefault(entry.getKey(), 0);
+                    entry.getValue().forEach(st -> st.setTagID(tagID));
+                }
 
-            TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
-            Map<String, Integer> accountNameIDMap = new HashMap<>();
-            getAccountList(a -> true).forEach(a -> accountNameIDMap.put(a.getName(), a.getID()));
-            Map<String, List<Transaction>> accountNameTransactionMap = qifParser.getAccountNameTransactionMap();
-            final Map<Integer, Security> securityIDMap = new HashMap<>();
-            getSecurityList().forEach(s -> securityIDMap.put(s.getID(), s));
-            List<Pair<Integer, Price>> tradePriceList = new ArrayList<>();
-            for (Map.Entry<String, List<Transaction>> entry : accountNameTransactionMap.entrySet()) {
-                final int accountID = accountNameIDMap.getOrDefault(entry.getKey(), 0);
-                if (accountID <= 0)
-                    throw new ModelException(ModelException.ErrorCode.INVALID_TRANSACTION,
-                            "Bad account name " + entry.getKey(), null);
-                for (Transaction t : entry.getValue()) {
-                    t.setAccountID(accountID);
-                    transactionDao.insert(t);
-
-                    // save trade price
-                    Security security = securityIDMap.get(t.getSecurityID());
-                    if (security != null) {
-                        BigDecimal p = t.getPrice();
-                        LocalDate d = t.getTDate();
-                        if (p != null && p.signum() > 0) {
-                            tradePriceList.add(new Pair<>(security.getID(), new Price(d, p)));
-                        }
+                final List<Pair<Integer, Price>> tradePriceList = new ArrayList<>();
+                for (Map.Entry<String, List<Transaction>> entry : qifParser.getAccountNameTransactionMap().entrySet()) {
+                    final int accountID = accountNameIDMap.getOrDefault(entry.getKey(), 0);
+                    if (accountID <= 0)
+                        throw new ModelException(ModelException.ErrorCode.INVALID_TRANSACTION,
+                                "Bad account name " + entry.getKey(), null);
+                    entry.getValue().forEach(t -> t.setAccountID(accountID));
+                    transactionDao.insertBatch(entry.getValue());
+                    for (Transaction t : entry.getValue()) {
+                        // save trade price
+                        final BigDecimal p = t.getPrice();
+                        if (securityIDSet.contains(t.getSecurityID()) && p != null && p.signum() > 0)
+                            tradePriceList.add(new Pair<>(t.getSecurityID(), new Price(t.getTDate(), p)));
                     }
                 }
-            }
-
-            SecurityIDPriceDao securityPriceDao = (SecurityIDPriceDao) daoManager.getDao(DaoManager.DaoType.SECURITYID_PRICE);
-            securityPriceDao.mergePricesToDB(tradePriceList); // need to add trade price before the other prices
+                securityPriceDao.mergePricesToDB(tradePriceList); // need to add trade price before the other prices
+            }, position -> progressListener.update(fileSize + position, 3 * fileSize));
 
             // save imported prices last
-            final List<Pair<Integer, Price>> priceList = new ArrayList<>();
-            for (Pair<String, Price> ticker_price : qifParser.getPriceList()) {
-                final String ticker = ticker_price.getKey();
-                final Price p = ticker_price.getValue();
-                final Security security = tickerSecurityMap.computeIfAbsent(ticker,
-                        k -> getSecurity(s -> s.getTicker().equals(ticker)).orElse(null));
-                if (security == null)
-                    throw new ModelException(ModelException.ErrorCode.QIF_PARSE_EXCEPTION, "Bad ticker " + ticker, null);
-                priceList.add(new Pair<>(security.getID(), p));
-            }
-            securityPriceDao.mergePricesToDB(priceList);  // this may overwrite trade prices
+            final Map<String, Security> tickerSecurityMap = new HashMap<>();
+            final QIFParser priceParser = new QIFParser(defaultAccountName, EnumSet.of(QIFParser.RecordType.PRICES));
+            readQIF(file, priceParser, batchSize, qifParser -> {
+                final List<Pair<Integer, Price>> priceList = new ArrayList<>();
+                for (Pair<String, Price> ticker_price : qifParser.getPriceList()) {
+                    final String ticker = ticker_price.getKey();
+                    final Price p = ticker_price.getValue();
+                    final Security security = tickerSecurityMap.computeIfAbsent(ticker,
+                            k -> securityList.stream().filter(s -> s.getTicker().equals(ticker))
+                                    .findFirst().orElse(null));
+                    if (security == null)
+                        throw new ModelException(ModelException.ErrorCode.QIF_PARSE_EXCEPTION, "Bad ticker " + ticker, null);
+                    priceList.add(new Pair<>(security.getID(), p));
+                }
+                securityPriceDao.mergePricesToDB(priceList);  // this may overwrite trade prices
+            }, position -> progressListener.update(2 * fileSize + position, 3 * fileSize));
 
             daoManager.commit();
-
-            // reload transaction list
-            initAccountList();
-
-            // link up linked transactions
-            fixDB();
-        } catch (DaoException e) {
+        } catch (IOException | ParseException | ModelException | DaoException | RuntimeException e) {
             try {
                 daoManager.rollback();
             } catch (DaoException e1) {
@@ -2456,49 +3477,144 @@ public class MainModel {
             }
             throw e;
         }
+
+        // link up linked transactions
+        fixDB();
     }
 
-    String exportToQIF(boolean exportAccount, boolean exportCategory, boolean exportSecurity,
-                       boolean exportTransaction, LocalDate fromDate, LocalDate toDate, List<Account> accountList)
-            throws DaoException, ModelException {
-        final StringBuilder stringBuilder = new StringBuilder();
+    /**
+     * refresh the accounts, the securities, the categories and the tags after importQIFToDB
+     * @throws ModelException - from loading the accounts
+     * @throws DaoException - from database operations
+     */
+    void reloadAfterQIFImport() throws ModelException, DaoException {
+        initAccountList();
+        initSecurityList();
+        categoryList.setAll(((CategoryDao) daoManager.getDao(DaoManager.DaoType.CATEGORY)).getAll());
+        tagList.setAll(((TagDao) daoManager.getDao(DaoManager.DaoType.TAG)).getAll());
+    }
+
+    /**
+     * read a QIF file one record at a time, and write the records in batches
+     * @param file - the QIF file
+     * @param qifParser - parses the records of the selected types
+     * @param batchSize - the number of records in a batch
+     * @param batchWriter - writes the records parsed so far, which are then cleared from the parser
+     * @param positionListener - receives the number of bytes read after each batch
+     */
+    private static void readQIF(File file, QIFParser qifParser, int batchSize, QIFBatchWriter batchWriter,
+                                LongConsumer positionListener)
+            throws IOException, ParseException, ModelException, DaoException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(Channels.newReader(channel,
+                     StandardCharsets.UTF_8.newDecoder(), -1))) {
+            int n = 0;
+            QIFParser.RecordType recordType;
+            while ((recordType = qifParser.parseNext(reader)) != null) {
+                if (recordType == QIFParser.RecordType.BANK || recordType == QIFParser.RecordType.INVITEM
+                        || recordType == QIFParser.RecordType.PRICES) {
+                    if (++n == batchSize) {
+                        batchWriter.write(qifParser);
+                        qifParser.clearTransactionsAndPrices();
+                        n = 0;
+                        positionListener.accept(channel.position());
+                    }
+                }
+            }
+            batchWriter.write(qifParser);
+            qifParser.clearTransactionsAndPrices();
+            positionListener.accept(channel.size());
+        }
+    }
 
+    /**
+     * write the selected parts of the database to a writer in QIF format.  The transactions of each
+     * account are read through a forward only cursor and sorted one date at a time.  With parallelism
+     * more than one, the transactions of several accounts are formatted at the same time on read only
+     * sessions into per account chunks, which are written in the order of the accounts, with at most
+     * two chunks per thread held in memory.
+     * @param writer - the output, a buffered one is preferred
+     * @param exportAccount - export the account list
+     * @param exportCategory - export the tags and the categories
+     * @param exportSecurity - export the securities and their prices
+     * @param exportTransaction - export the transactions of the accounts in the accountList
+     * @param fromDate - the first date of the transactions
+     * @param toDate - the last date of the transactions
+     * @param accountList - the accounts of the transactions
+     * @param parallelism - the number of accounts formatted at the same time
+     * @throws IOException - from the writer
+     * @throws DaoException - from database operations
+     * @throws ModelException - from formatting the transactions
+     */
+    void exportToQIF(Writer writer, boolean exportAccount, boolean exportCategory, boolean exportSecurity,
+                     boolean exportTransaction, LocalDate fromDate, LocalDate toDate, List<Account> accountList,
+                     int parallelism) throws IOException, DaoException, ModelException {
         if (exportCategory) {
             // export Tags first
-            stringBuilder.append("!Type:Tag").append(EOL);
-            getTagList().forEach(t -> stringBuilder.append(t.toQIF()));
+            writer.append("!Type:Tag").append(EOL);
+            for (Tag t : getTagList())
+                writer.append(t.toQIF());
 
-            stringBuilder.append("!Type:Cat").append(EOL);
-            getCategoryList().forEach(c -> stringBuilder.append(c.toQIF()));
+            writer.append("!Type:Cat").append(EOL);
+            for (Category c : getCategoryList())
+                writer.append(c.toQIF());
         }
 
         if (exportAccount || accountList.size() > 1) {
             // need to export account information
-            stringBuilder.append("!Option:AutoSwitch").append(EOL);
-            stringBuilder.append("!Account").append(EOL);
-            getAccountList(a -> !a.getName().equals(MainModel.DELETED_ACCOUNT_NAME))
-                    .forEach(a -> stringBuilder.append(a.toQIF(false)));
-            stringBuilder.append("!Clear:AutoSwitch").append(EOL);
+            writer.append("!Option:AutoSwitch").append(EOL);
+            writer.append("!Account").append(EOL);
+            for (Account a : getAccountList(a -> !a.getName().equals(MainModel.DELETED_ACCOUNT_NAME)))
+                writer.append(a.toQIF(false));
+            writer.append("!Clear:AutoSwitch").append(EOL);
         }
 
         if (exportSecurity) {
-            stringBuilder.append("!Type:Security").append(EOL);
-            getSecurityList().forEach(s -> stringBuilder.append(s.toQIF()));
+            writer.append("!Type:Security").append(EOL);
+            for (Security s : getSecurityList())
+                writer.append(s.toQIF());
         }
 
         if (exportTransaction) {
-            stringBuilder.append("!Option:AutoSwitch").append(EOL);
-            for (Account account : accountList) {
-                stringBuilder.append("!Account").append(EOL);
-                stringBuilder.append(account.toQIF(true));
-                stringBuilder.append("!Type:").append(account.getType().toQIF(true)).append(EOL);
-
-                for (Transaction transaction : getAccountTransactionList(account)) {
-                    if (transaction.getTDate().isBefore(fromDate))
-                        continue;
-                    if (transaction.getTDate().isAfter(toDate))
-                        break;
-                    stringBuilder.append(transaction.toQIF(this));
+            writer.append("!Option:AutoSwitch").append(EOL);
+            final int n = accountList.size();
+            if (parallelism <= 1 || n <= 1) {
+                try (ReadSession readSession = daoManager.openReadSession()) {
+                    for (Account account : accountList)
+                        appendAccountQIF(writer, account, fromDate, toDate, readSession::getDao);
+                }
+            } else {
+                final int nThreads = Math.min(parallelism, n);
+                final ForkJoinPool forkJoinPool = new ForkJoinPool(nThreads);
+                try {
+                    final Deque<Future<String>> chunkFutures = new ArrayDeque<>();
+                    int next = 0;
+                    while (next < n || !chunkFutures.isEmpty()) {
+                        while (next < n && chunkFutures.size() < 2 * nThreads) {
+                            final Account account = accountList.get(next++);
+                            chunkFutures.add(forkJoinPool.submit(() -> {
+                                final StringBuilder chunk = new StringBuilder();
+                                try (ReadSession readSession = daoManager.openReadSession()) {
+                                    appendAccountQIF(chunk, account, fromDate, toDate, readSession::getDao);
+                                }
+                                return chunk.toString();
+                            }));
+                        }
+                        writer.append(chunkFutures.removeFirst().get());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ModelException(ModelException.ErrorCode.FAIL_TO_GET_ACCOUNT_TRANSACTION,
+                            "Interrupted while exporting transactions", e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof ModelException)
+                        throw (ModelException) e.getCause();
+                    if (e.getCause() instanceof DaoException)
+                        throw (DaoException) e.getCause();
+                    throw new ModelException(ModelException.ErrorCode.DB_ACCESS_FAILURE,
+                            "Failed to export transactions", e.getCause());
+                } finally {
+                    forkJoinPool.shutdownNow();
                 }
             }
         }
@@ -2510,12 +3626,47 @@ public class MainModel {
                     continue; // we don't export prices for security without a ticker
                 for (Price p : getSecurityPriceList(s.getID())) {
                     final String ticker = s.getTicker();
-                    stringBuilder.append(p.toQIF(ticker));
+                    writer.append(p.toQIF(ticker));
                 }
             }
         }
+        writer.flush();
+    }
+
+    // append the account header and the transactions of the account between fromDate and toDate,
+    // in the same order as getAccountTransactionList.
+    private void appendAccountQIF(Appendable out, Account account, LocalDate fromDate, LocalDate toDate,
+                                  Function<DaoManager.DaoType, Dao<?,?>> daos)
+            throws IOException, DaoException, ModelException {
+        out.append("!Account").append(EOL);
+        out.append(account.toQIF(true));
+        out.append("!Type:").append(account.getType().toQIF(true)).append(EOL);
+
+        final Comparator<TransactionRecord> comparator = account.getType().isGroup(Account.Type.Group.INVESTING) ?
+                INVESTING_ACCOUNT_TRANSACTION_RECORD_COMPARATOR : SPENDING_ACCOUNT_TRANSACTION_RECORD_COMPARATOR;
+        final List<TransactionRecord> dateGroup = new ArrayList<>(); // the transactions on the same date
+        try (TransactionDao.TransactionRecordCursor cursor = ((TransactionDao) daos.apply(
+                DaoManager.DaoType.TRANSACTION)).openAccountTransactionCursor(account.getID())) {
+            TransactionRecord r;
+            while ((r = cursor.next()) != null && !r.getTDate().isAfter(toDate)) {
+                if (r.getTDate().isBefore(fromDate))
+                    continue;
+                if (!dateGroup.isEmpty() && !dateGroup.get(0).getTDate().equals(r.getTDate()))
+                    appendTransactionsQIF(out, dateGroup, comparator);
+                dateGroup.add(r);
+            }
+        }
+        appendTransactionsQIF(out, dateGroup, comparator);
+    }
 
-        return stringBuilder.toString();
+    // sort and append the transactions, then clear the list
+    private void appendTransactionsQIF(Appendable out, List<TransactionRecord> rList,
+                                       Comparator<TransactionRecord> comparator)
+            throws IOException, ModelException {
+        rList.sort(comparator);
+        for (TransactionRecord r : rList)
+            out.append(new Transaction(r).toQIF(this));
+        rList.clear();
     }
 
     enum ImportTransactionField {
@@ -2542,145 +3693,245 @@ public class MainModel {
         }
     }
 
-    // return
-    Pair<List<String[]>, List<String[]>> importTransactionsCSV(File csvFile)
-            throws IOException, CsvException, ModelException {
-        final CSVReader reader = new CSVReader(new FileReader(csvFile));
-        final List<String[]> lines = reader.readAll();
-        final List<String[]> skippedLines = new ArrayList<>();
-        final List<String[]> importedLines = new ArrayList<>();
-        final List<Transaction> toBeImported = new ArrayList<>();
+    // the trade actions supported in CSV import, and the message for the others
+    private static final Set<Transaction.TradeAction> CSV_SUPPORTED_TRADE_ACTIONS = EnumSet.of(BUY, SELL, DIV,
+            REINVDIV, INTINC, REINVINT, CGLONG, CGMID, CGSHORT, REINVLG, REINVMD, REINVSH, DEPOSIT, WITHDRAW);
+    private static final String CSV_SUPPORTED_TRADE_ACTION_MESSAGE = "Supported action:" + System.lineSeparator()
+            + CSV_SUPPORTED_TRADE_ACTIONS.stream().map(ta -> ta.name() + System.lineSeparator())
+            .collect(Collectors.joining());
+    // the date formats in CSV import, tried in order
+    private static final List<DateTimeFormatter> CSV_DATE_FORMATTERS = List.of(
+            DateTimeFormatter.ofPattern("M/d/yyyy"), DateTimeFormatter.ofPattern("M/d/yy"));
+    // the number of CSV lines validated in parallel at a time
+    private static final int CSV_IMPORT_BATCH_SIZE = 4096;
 
-        if (lines.size() < 2) {
-            return new Pair<>(importedLines, skippedLines);
-        }
+    // a validated CSV line, the transaction is null if the line is skipped or has an unsupported action
+    private static class CSVImportRow {
+        private final String[] line;
+        private final Transaction transaction;
+        private final ModelException exception;
 
-        // parse header
-        final Map<ImportTransactionField, Integer> columnMap = new HashMap<>();
-        try {
-            int i = 0;
-            for (String s : lines.get(0)) {
-                columnMap.put(ImportTransactionField.fromString(s), i++);
-            }
-        } catch (IllegalArgumentException e) {
-            throw new ModelException(ModelException.ErrorCode.ILL_FORMATTED_TRANSACTION_CSV, "Bad column name", e);
+        CSVImportRow(String[] line, Transaction transaction, ModelException exception) {
+            this.line = line;
+            this.transaction = transaction;
+            this.exception = exception;
         }
+    }
 
-        for (ImportTransactionField itf : ImportTransactionField.values()) {
-            if (columnMap.get(itf) == null) {
-                throw new ModelException(ModelException.ErrorCode.ILL_FORMATTED_TRANSACTION_CSV,
-                        "Missing " + itf + " column", null);
-            }
-        }
+    // the key to match an imported transaction with an existing one
+    private static class TradeKey {
+        private final int accountID;
+        private final LocalDate tDate;
+        private final Transaction.TradeAction tradeAction;
+        private final BigDecimal amount;
 
-        final Set<Transaction.TradeAction> supported = Set.of(BUY, SELL, DIV, REINVDIV, INTINC, REINVINT,
-                CGLONG, CGMID, CGSHORT, REINVLG, REINVMD, REINVSH,
-                DEPOSIT, WITHDRAW);
-        final List<String> datePatterns = Arrays.asList("M/d/yyyy", "M/d/yy");
-        for (String[] line : lines.subList(1, lines.size())) { // skip the header line
-            final int accountID = getAccount(a -> a.getName()
-                    .equals(line[columnMap.get(ImportTransactionField.ACCOUNT)]))
-                    .map(Account::getID).orElse(0);
+        TradeKey(int accountID, LocalDate tDate, Transaction.TradeAction tradeAction, BigDecimal amount) {
+            this.accountID = accountID;
+            this.tDate = tDate;
+            this.tradeAction = tradeAction;
+            this.amount = amount.stripTrailingZeros();
+        }
 
-            if (accountID <= 0) {
-                skippedLines.add(line);
-                continue;
-            }
-            LocalDate date = null;
-            for (String pattern : datePatterns) {
-                try {
-                    date = LocalDate.parse(line[columnMap.get(ImportTransactionField.DATE)],
-                            DateTimeFormatter.ofPattern(pattern));
-                    break;
-                } catch (DateTimeParseException ignored) {
-                    // do nothing
-                }
-            }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof TradeKey))
+                return false;
+            final TradeKey tradeKey = (TradeKey) o;
+            return accountID == tradeKey.accountID && tDate.equals(tradeKey.tDate)
+                    && tradeAction == tradeKey.tradeAction && amount.equals(tradeKey.amount);
+        }
 
-            if (date == null) {
-                skippedLines.add(line);
-                continue;
-            }
+        @Override
+        public int hashCode() { return Objects.hash(accountID, tDate, tradeAction, amount); }
+    }
 
-            final Transaction.TradeAction tradeAction;
-            final StringBuilder sb = new StringBuilder();
-            sb.append("Supported action:").append(System.lineSeparator());
-            for (Transaction.TradeAction ta : supported) {
-                sb.append(ta.name()).append(System.lineSeparator());
-            }
+    // validate a CSV line, only reads the account, security and category indexes, safe to run in parallel
+    private CSVImportRow validateCSVLine(String[] line, Map<ImportTransactionField, Integer> columnMap) {
+        final int accountID = getAccount(line[columnMap.get(ImportTransactionField.ACCOUNT)])
+                .map(Account::getID).orElse(0);
+        if (accountID <= 0)
+            return new CSVImportRow(line, null, null);
 
+        LocalDate date = null;
+        for (DateTimeFormatter formatter : CSV_DATE_FORMATTERS) {
             try {
-                tradeAction = Transaction.TradeAction.valueOf(line[columnMap.get(ImportTransactionField.ACTION)]);
-            } catch (IllegalArgumentException e) {
-                throw new ModelException(ModelException.ErrorCode.ILL_FORMATTED_TRANSACTION_CSV, sb.toString(), e);
-            }
-            if (!supported.contains(tradeAction)) {
-                throw new ModelException(ModelException.ErrorCode.ILL_FORMATTED_TRANSACTION_CSV, sb.toString(), null);
+                date = LocalDate.parse(line[columnMap.get(ImportTransactionField.DATE)], formatter);
+                break;
+            } catch (DateTimeParseException ignored) {
+                // do nothing
             }
+        }
+        if (date == null)
+            return new CSVImportRow(line, null, null);
 
-            final int securityID = getSecurity(s -> s.getName()
-                    .equals(line[columnMap.get(ImportTransactionField.SECURITY)]))
-                    .map(Security::getID).orElse(0);
+        final Transaction.TradeAction tradeAction;
+        try {
+            tradeAction = Transaction.TradeAction.valueOf(line[columnMap.get(ImportTransactionField.ACTION)]);
+        } catch (IllegalArgumentException e) {
+            return new CSVImportRow(line, null, new ModelException(
+                    ModelException.ErrorCode.ILL_FORMATTED_TRANSACTION_CSV, CSV_SUPPORTED_TRADE_ACTION_MESSAGE, e));
+        }
+        if (!CSV_SUPPORTED_TRADE_ACTIONS.contains(tradeAction))
+            return new CSVImportRow(line, null, new ModelException(
+                    ModelException.ErrorCode.ILL_FORMATTED_TRANSACTION_CSV, CSV_SUPPORTED_TRADE_ACTION_MESSAGE, null));
+
+        final int securityID = getSecurity(line[columnMap.get(ImportTransactionField.SECURITY)])
+                .map(Security::getID).orElse(0);
+        final int categoryID = getCategory(line[columnMap.get(ImportTransactionField.CATEGORY)])
+                .map(Category::getID).orElse(0);
+
+        final Transaction t = new Transaction(accountID, date, tradeAction, categoryID);
+
+        final String amtStr = line[columnMap.get(ImportTransactionField.AMOUNT)];
+        if (amtStr.isEmpty())
+            return new CSVImportRow(line, null, null); // don't have an amount, skip
+        t.setAmount(new BigDecimal(amtStr));
+
+        final String quantityStr = line[columnMap.get(ImportTransactionField.QUANTITY)];
+        if (quantityStr.isEmpty()) {
+            // no quantity
+            if (Transaction.hasQuantity(tradeAction))
+                return new CSVImportRow(line, null, null); // quantity is needed but not available, skip the line
+        } else {
+            t.setQuantity(new BigDecimal(quantityStr));
+        }
+        final String payeeStr = line[columnMap.get(ImportTransactionField.PAYEE)];
+        if (!payeeStr.isEmpty())
+            t.setPayee(payeeStr);
 
-            final int categoryID = getCategory(c -> c.getName()
-                    .equals(line[columnMap.get(ImportTransactionField.CATEGORY)]))
-                    .map(Category::getID).orElse(0);
+        if (securityID > 0)
+            t.setSecurityID(securityID);
+        return new CSVImportRow(line, t, null);
+    }
 
+    /**
+     * import transactions from a CSV file.  The lines are read and validated in parallel a batch at a time,
+     * in the order of the file.  A line matching an existing transaction in the account, date, trade action,
+     * and amount is skipped as a duplicate, each existing transaction matches at most one line.
+     * @param csvFile - the CSV file with a header line of ImportTransactionField labels
+     * @return the imported lines and the skipped lines
+     * @throws IOException - from reading the file
+     * @throws CsvException - from parsing the file
+     * @throws ModelException - for bad header or unsupported trade action, or from database operations
+     */
+    Pair<List<String[]>, List<String[]>> importTransactionsCSV(File csvFile)
+            throws IOException, CsvException, ModelException {
+        final long startTime = System.nanoTime();
+        final List<String[]> skippedLines = new ArrayList<>();
+        final List<String[]> importedLines = new ArrayList<>();
+        final List<Transaction> toBeImported = new ArrayList<>();
+        int nLines = 0;
 
-            final Transaction t = new Transaction(accountID, date, tradeAction, categoryID);
+        try (CSVReader reader = new CSVReader(new FileReader(csvFile))) {
+            final String[] header = reader.readNext();
+            String[] line = header == null ? null : reader.readNext();
+            if (line == null)
+                return new Pair<>(importedLines, skippedLines);
 
-            final String amtStr = line[columnMap.get(ImportTransactionField.AMOUNT)];
-            if (amtStr.isEmpty()) {
-                // don't have an amount, skip
-                skippedLines.add(line);
-                continue;
-            } else {
-                // set amount
-                t.setAmount(new BigDecimal(amtStr));
+            // parse header
+            final Map<ImportTransactionField, Integer> columnMap = new HashMap<>();
+            try {
+                int i = 0;
+                for (String s : header) {
+                    columnMap.put(ImportTransactionField.fromString(s), i++);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new ModelException(ModelException.ErrorCode.ILL_FORMATTED_TRANSACTION_CSV, "Bad column name", e);
             }
 
-            final String quantityStr = line[columnMap.get(ImportTransactionField.QUANTITY)];
-            if (quantityStr.isEmpty()) {
-                // no quantity
-                if (Transaction.hasQuantity(tradeAction)) {
-                    // quantity is needed but not available, skip the line
-                    skippedLines.add(line);
-                    continue;
+            for (ImportTransactionField itf : ImportTransactionField.values()) {
+                if (columnMap.get(itf) == null) {
+                    throw new ModelException(ModelException.ErrorCode.ILL_FORMATTED_TRANSACTION_CSV,
+                            "Missing " + itf + " column", null);
                 }
-            } else {
-                // set quantity
-                t.setQuantity(new BigDecimal(quantityStr));
             }
-            final String payeeStr = line[columnMap.get(ImportTransactionField.PAYEE)];
-            if (!payeeStr.isEmpty())
-                t.setPayee(payeeStr);
 
-            if (securityID > 0)
-                t.setSecurityID(securityID);
-            toBeImported.add(t);
-            importedLines.add(line);
+            final List<String[]> batch = new ArrayList<>();
+            while (line != null) {
+                batch.add(line);
+                line = reader.readNext();
+                if (line != null && batch.size() < CSV_IMPORT_BATCH_SIZE)
+                    continue;
+
+                nLines += batch.size();
+                final List<CSVImportRow> rows = batch.parallelStream().map(l -> validateCSVLine(l, columnMap))
+                        .collect(Collectors.toList());
+                for (CSVImportRow row : rows) {
+                    if (row.exception != null)
+                        throw row.exception;
+                    if (row.transaction == null) {
+                        skippedLines.add(row.line);
+                    } else {
+                        toBeImported.add(row.transaction);
+                        importedLines.add(row.line);
+                    }
+                }
+                batch.clear();
+            }
         }
 
         try {
-            final Set<Integer> accountIDSet = new HashSet<>();
-            daoManager.beginTransaction();
+            // existing transactions in the accounts and date ranges of the imported ones
+            final Map<Integer, LocalDate[]> accountDateRangeMap = new HashMap<>();
             for (Transaction t : toBeImported) {
-                insertTransaction(t);
-                accountIDSet.add(t.getAccountID());
+                final LocalDate[] range = accountDateRangeMap.computeIfAbsent(t.getAccountID(),
+                        k -> new LocalDate[] { t.getTDate(), t.getTDate() });
+                if (t.getTDate().isBefore(range[0]))
+                    range[0] = t.getTDate();
+                if (t.getTDate().isAfter(range[1]))
+                    range[1] = t.getTDate();
+            }
+            final Map<TradeKey, Integer> existingCountMap = new HashMap<>();
+            final TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
+            for (Map.Entry<Integer, LocalDate[]> entry : accountDateRangeMap.entrySet()) {
+                final int accountID = entry.getKey();
+                transactionDao.scanAccountTradeKeys(accountID, entry.getValue()[0], entry.getValue()[1],
+                        (tDate, tradeAction, amount) -> existingCountMap.merge(
+                                new TradeKey(accountID, tDate, tradeAction, amount), 1, Integer::sum));
+            }
+
+            // move the duplicates to the skipped lines
+            int j = 0;
+            for (int i = 0; i < toBeImported.size(); i++) {
+                final Transaction t = toBeImported.get(i);
+                final TradeKey tradeKey = new TradeKey(t.getAccountID(), t.getTDate(), t.getTradeAction(),
+                        t.getAmount());
+                if (existingCountMap.computeIfPresent(tradeKey, (k, v) -> v - 1) != null) {
+                    existingCountMap.remove(tradeKey, 0);
+                    skippedLines.add(importedLines.get(i));
+                    continue;
+                }
+                toBeImported.set(j, t);
+                importedLines.set(j++, importedLines.get(i));
             }
+            toBeImported.subList(j, toBeImported.size()).clear();
+            importedLines.subList(j, importedLines.size()).clear();
+
+            final Set<Integer> accountIDSet = new HashSet<>();
+            daoManager.beginTransaction();
+            transactionDao.insertBatch(toBeImported);
+            toBeImported.forEach(t -> accountIDSet.add(t.getAccountID()));
             daoManager.commit();
 
             updateAccountBalance(a -> accountIDSet.contains(a.getID()));
         } catch (DaoException e) {
-            try {
-                daoManager.rollback();
-            } catch (DaoException e1) {
-                e.addSuppressed(e1);
+            if (daoManager.isInTransaction()) {
+                try {
+                    daoManager.rollback();
+                } catch (DaoException e1) {
+                    e.addSuppressed(e1);
+                }
             }
             throw new ModelException(ModelException.ErrorCode.FAIL_TO_UPDATE_TRANSACTION,
                     "Failed to insert transaction", e);
         }
 
+        final long millis = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+        logger.info("Imported " + importedLines.size() + " and skipped " + skippedLines.size() + " of " + nLines
+                + " lines from " + csvFile.getName() + " in " + millis + " ms, " + (nLines * 1000L / millis)
+                + " lines/s");
         return new Pair<>(importedLines, skippedLines);
     }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * A hash map from a key of the elements to the elements of an observable list.
+ *
+ * The map is kept in sync with the list through a list change listener.  The key of an element
+ * may be changed in place without a list change, for example, renaming a category.  A stale
+ * entry found by a lookup causes the map to be rebuilt, and the code changing a key in place
+ * should call invalidate() so the element can be found by the new key.
+ *
+ * @param <K> - the type of the key
+ * @param <E> - the type of the elements
+ */
+class ObservableListIndex<K, E> {
+
+    private final ObservableList<E> list;
+    private final Function<E, K> keyFunction;
+    private final Map<K, E> map = new HashMap<>();
+    private boolean dirty = true; // the map needs to be rebuilt
+    private boolean hasDuplicateKeys = false;
+
+    /**
+     * constructor
+     * @param list - the observable list to be indexed
+     * @param keyFunction - computes the key of an element
+     */
+    ObservableListIndex(ObservableList<E> list, Function<E, K> keyFunction) {
+        this.list = list;
+        this.keyFunction = keyFunction;
+        list.addListener((ListChangeListener<E>) this::onChanged);
+    }
+
+    private synchronized void onChanged(ListChangeListener.Change<? extends E> c) {
+        while (c.next() && !dirty) {
+            if (c.wasPermutated())
+                continue; // same elements, same keys
+            if (c.wasUpdated()) {
+                dirty = true; // keys might have changed
+                continue;
+            }
+            for (E e : c.getRemoved()) {
+                if (!map.remove(keyFunction.apply(e), e) || hasDuplicateKeys)
+                    dirty = true; // the key was changed in place, or another element has the same key
+            }
+            for (E e : c.getAddedSubList()) {
+                final E old = map.put(keyFunction.apply(e), e);
+                if (old != null && old != e)
+                    hasDuplicateKeys = true;
+            }
+        }
+    }
+
+    private void rebuild() {
+        map.clear();
+        hasDuplicateKeys = false;
+        for (E e : list) {
+            final E old = map.put(keyFunction.apply(e), e);
+            if (old != null && old != e)
+                hasDuplicateKeys = true;
+        }
+        dirty = false;
+    }
+
+    /**
+     * mark the map to be rebuilt on the next lookup, should be called after the key of
+     * an element is changed in place.
+     */
+    synchronized void invalidate() { dirty = true; }
+
+    /**
+     * find an element with the key
+     * @param key - the key
+     * @return an element with the key, or empty if not found
+     */
+    synchronized Optional<E> get(K key) {
+        if (dirty)
+            rebuild();
+        E e = map.get(key);
+        if (e != null && !Objects.equals(keyFunction.apply(e), key)) {
+            // the key was changed in place
+            rebuild();
+            e = map.get(key);
+        }
+        return Optional.ofNullable(e);
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import javafx.collections.ObservableListBase;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * A read only observable list of the transactions of an account, for the transaction table view.
+ *
+ * Only the balance index of the transactions is kept in memory.  The transactions are loaded in
+ * pages when they are accessed, together with the neighboring pages, and a bounded number of pages
+ * are cached.  The cash balance before a page comes from the balance index, so the running balances
+ * of the transactions in a page are set when the page is loaded.  Changes made to the balance index
+ * are published incrementally, only the rows from the first changed position on are refreshed.
+ */
+class PagedTransactionList extends ObservableListBase<Transaction> {
+
+    private static final Logger logger = LogManager.getLogger(PagedTransactionList.class);
+
+    static final int PAGE_SIZE = 200;
+    private static final int PREFETCH_PAGES = 1; // number of pages to load on each side of a requested page
+    private static final int MAX_CACHED_PAGES = 16;
+
+    /**
+     * loads the transactions with the given ids
+     */
+    @FunctionalInterface
+    interface PageLoader {
+        List<Transaction> load(List<Integer> tidList) throws ModelException;
+    }
+
+    /**
+     * the change of one transaction in the balance index
+     */
+    static class Move {
+        private final int tid;
+        private final int from; // the position before the change, -1 if inserted
+        private final int to; // the position after the change, -1 if removed
+
+        Move(int tid, int from, int to) {
+            this.tid = tid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public String toString() { return "Move{" + tid + ": " + from + " -> " + to + "}"; }
+    }
+
+    // the balance index of the transactions with cached pages of loaded transactions
+    private static class Snapshot extends AbstractList<Transaction> {
+        private final int accountID;
+        private final BalanceIndex<?> index;
+        private final int scale;
+        private final PageLoader pageLoader;
+        private final Map<Integer, Transaction[]> pageMap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Transaction[]> eldest) {
+                return size() > MAX_CACHED_PAGES;
+            }
+        };
+
+        Snapshot(int accountID, BalanceIndex<?> index, int scale, PageLoader pageLoader) {
+            this.accountID = accountID;
+            this.index = index;
+            this.scale = scale;
+            this.pageLoader = pageLoader;
+        }
+
+        @Override
+        public int size() { return index.size(); }
+
+        @Override
+        public Transaction get(int i) {
+            Objects.checkIndex(i, size());
+            final int page = i / PAGE_SIZE;
+            Transaction[] transactions = pageMap.get(page);
+            if (transactions == null) {
+                loadPages(page);
+                transactions = pageMap.get(page);
+                if (transactions == null)
+                    return placeholder(index.idAt(i)); // failed to load
+            }
+            return transactions[i % PAGE_SIZE];
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return (o instanceof Transaction) ? index.indexOf(((Transaction) o).getID()) : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) { return indexOf(o); }
+
+        @Override
+        public boolean contains(Object o) { return indexOf(o) >= 0; }
+
+        // load the page and the neighboring pages not in the cache with one query
+        private void loadPages(int page) {
+            final int size = size();
+            final int firstPage = Math.max(0, page - PREFETCH_PAGES);
+            final int lastPage = Math.min((size - 1) / PAGE_SIZE, page + PREFETCH_PAGES);
+            final List<Integer> pageList = new ArrayList<>();
+            final List<Integer> tidList = new ArrayList<>();
+            for (int p = firstPage; p <= lastPage; p++) {
+                if (p != page && pageMap.containsKey(p))
+                    continue;
+                pageList.add(p);
+                for (int i = p * PAGE_SIZE; i < Math.min(size, (p + 1) * PAGE_SIZE); i++)
+                    tidList.add(index.idAt(i));
+            }
+
+            final Map<Integer, Transaction> tMap = new HashMap<>();
+            try {
+                for (Transaction t : pageLoader.load(tidList))
+                    tMap.put(t.getID(), t);
+            } catch (ModelException e) {
+                logger.error("Failed to load " + tidList.size() + " transactions for account " + accountID, e);
+                return;
+            }
+
+            int k = 0;
+            for (int p : pageList) {
+                final int start = p * PAGE_SIZE;
+                final Transaction[] transactions = new Transaction[Math.min(PAGE_SIZE, size - start)];
+                for (int i = 0; i < transactions.length; i++) {
+                    final int tid = tidList.get(k++);
+                    final Transaction t = tMap.get(tid);
+                    // removed after the index was built
+                    transactions[i] = t == null ? placeholder(tid) : t;
+                }
+                setBalances(start, transactions);
+                pageMap.put(p, transactions);
+            }
+        }
+
+        // set the running balances of the transactions of a page
+        private void setBalances(int start, Transaction[] transactions) {
+            BigDecimal balance = index.balanceBefore(start);
+            for (Transaction t : transactions) {
+                balance = balance.add(t.getCashAmount().setScale(scale, RoundingMode.HALF_UP));
+                t.setBalance(balance);
+            }
+        }
+
+        // drop the cached pages changed by the moves, and refresh the balances of the later cached pages
+        private void update(List<Move> moves) {
+            int first = Integer.MAX_VALUE;
+            boolean shifted = false;
+            final Set<Integer> changedPageSet = new HashSet<>();
+            for (Move move : moves) {
+                if (move.from >= 0) {
+                    first = Math.min(first, move.from);
+                    changedPageSet.add(move.from / PAGE_SIZE);
+                }
+                if (move.to >= 0) {
+                    first = Math.min(first, move.to);
+                    changedPageSet.add(move.to / PAGE_SIZE);
+                }
+                shifted |= move.from != move.to;
+            }
+            if (first == Integer.MAX_VALUE)
+                return;
+            final int firstPage = first / PAGE_SIZE;
+
+            final Iterator<Map.Entry<Integer, Transaction[]>> iterator = pageMap.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<Integer, Transaction[]> entry = iterator.next();
+                final int p = entry.getKey();
+                if (p < firstPage)
+                    continue; // nothing changed before the first changed position
+                if (shifted || changedPageSet.contains(p)) {
+                    // the rows moved or changed, reload when accessed
+                    iterator.remove();
+                } else {
+                    // only the balances changed, the table cells are bound to them
+                    setBalances(p * PAGE_SIZE, entry.getValue());
+                }
+            }
+        }
+
+        private Transaction placeholder(int tid) {
+            final Transaction t = new Transaction(accountID, LocalDate.MIN, Transaction.TradeAction.DEPOSIT, 0);
+            t.setID(tid);
+            return t;
+        }
+    }
+
+    private final PageLoader pageLoader;
+    private Snapshot snapshot;
+
+    /**
+     * constructor
+     * @param pageLoader - loads the transactions of a page
+     */
+    PagedTransactionList(PageLoader pageLoader) {
+        this.pageLoader = pageLoader;
+        this.snapshot = emptySnapshot();
+    }
+
+    private Snapshot emptySnapshot() {
+        return new Snapshot(0, new BalanceIndex<Integer>(Comparator.naturalOrder(), i -> i, 0), 0, pageLoader);
+    }
+
+    /**
+     * replace the content of the list
+     * @param accountID - the account id of the transactions
+     * @param index - the balance index of the transactions, the cash amounts are rounded to scale.
+     *              The index is owned by this list afterwards, it should only be changed
+     *              together with a call to update.
+     * @param scale - the scale of the cash balances
+     */
+    void reset(int accountID, BalanceIndex<?> index, int scale) {
+        final Snapshot oldSnapshot = snapshot;
+        snapshot = new Snapshot(accountID, index, scale, pageLoader);
+
+        beginChange();
+        if (!oldSnapshot.isEmpty())
+            nextRemove(0, oldSnapshot);
+        if (!snapshot.isEmpty())
+            nextAdd(0, snapshot.size());
+        endChange();
+    }
+
+    /**
+     * clear the content of the list
+     */
+    void reset() { reset(0, emptySnapshot().index, 0); }
+
+    /**
+     * publish the changes already made to the balance index.  The moved, inserted, and removed
+     * rows are fired as list changes, the transactions from the first changed position on are
+     * reloaded or have their running balances refreshed, the ones before are untouched.
+     * @param moves - the changes in the order they were made to the index
+     */
+    void update(List<Move> moves) {
+        if (moves.isEmpty())
+            return;
+
+        snapshot.update(moves);
+
+        beginChange();
+        for (Move move : moves) {
+            if (move.from >= 0 && move.from == move.to) {
+                nextSet(move.from, snapshot.placeholder(move.tid));
+            } else {
+                if (move.from >= 0)
+                    nextRemove(move.from, snapshot.placeholder(move.tid));
+                if (move.to >= 0)
+                    nextAdd(move.to, move.to + 1);
+            }
+        }
+        endChange();
+    }
+
+    /**
+     * @return the account id of the transactions in the list
+     */
+    int getAccountID() { return snapshot.accountID; }
+
+    /**
+     * find the index of a transaction by id without loading any transactions
+     * @param tid - the transaction id
+     * @return the index of the transaction, or -1 if not found
+     */
+    int indexOfID(int tid) { return snapshot.index.indexOf(tid); }
+
+    @Override
+    public Transaction get(int index) { return snapshot.get(index); }
+
+    @Override
+    public int size() { return snapshot.size(); }
+
+    @Override
+    public int indexOf(Object o) { return snapshot.indexOf(o); }
+
+    @Override
+    public int lastIndexOf(Object o) { return snapshot.lastIndexOf(o); }
+
+    @Override
+    public boolean contains(Object o) { return snapshot.contains(o); }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * PayeeIndex is an in memory snapshot of the payee statistics, for the payee suggestions and the
+ * default categories in the edit dialogs.  Only the usage in a window of recent years is counted, and
+ * payees not used in the window are left out.  Suggestions are ranked by the number of uses in the
+ * window, then by the last year used, and the default category of a payee in an account is the one
+ * used the most in the window.
+ */
+class PayeeIndex {
+
+    // the usage count and the last year
+    private static class Stats {
+        private int count = 0;
+        private int lastYear = 0;
+
+        void add(int year, int count) {
+            this.count += count;
+            lastYear = Math.max(lastYear, year);
+        }
+    }
+
+    /**
+     * collects the rows of the payee statistics, see TransactionDao.scanPayeeStats
+     */
+    static class Builder {
+        private final int cutoffYear;
+        private final Map<String, Stats> payeeStatsMap = new HashMap<>();
+        // account id, payee, category id, and the stats
+        private final Map<Integer, Map<String, Map<Integer, Stats>>> accountPayeeMap = new HashMap<>();
+
+        /**
+         * constructor.  The statistics are counted by year, the window starts on the first day of the
+         * year of the cutoff date.
+         * @param cutoffDate - the usage in the years before the year of the date is left out
+         */
+        Builder(LocalDate cutoffDate) { this.cutoffYear = cutoffDate.getYear(); }
+
+        void add(int accountID, String payee, int categoryID, int year, int count) {
+            if (payee == null || payee.isEmpty() || year < cutoffYear || count <= 0)
+                return;
+            payeeStatsMap.computeIfAbsent(payee, p -> new Stats()).add(year, count);
+            accountPayeeMap.computeIfAbsent(accountID, a -> new HashMap<>())
+                    .computeIfAbsent(payee, p -> new HashMap<>())
+                    .computeIfAbsent(categoryID, c -> new Stats()).add(year, count);
+        }
+
+        PayeeIndex build(long version) {
+            final Comparator<Stats> statsComparator = Comparator.comparingInt((Stats s) -> s.count)
+                    .thenComparingInt(s -> s.lastYear);
+            final List<String> payeeList = new ArrayList<>(payeeStatsMap.keySet());
+            payeeList.sort(Comparator.comparing((String p) -> payeeStatsMap.get(p), statsComparator.reversed())
+                    .thenComparing(String.CASE_INSENSITIVE_ORDER));
+
+            // payees differing only in case are suggested once, the most used one
+            final Set<String> foldedSet = new HashSet<>();
+            payeeList.removeIf(p -> !foldedSet.add(CompletionIndex.fold(p)));
+
+            final Map<Integer, Map<String, Integer>> defaultCategoryMap = new HashMap<>();
+            accountPayeeMap.forEach((accountID, payeeMap) -> {
+                final Map<String, Integer> categoryMap = new HashMap<>();
+                payeeMap.forEach((payee, categoryStatsMap) -> categoryStatsMap.entrySet().stream()
+                        .max(Map.Entry.comparingByValue(statsComparator))
+                        .ifPresent(e -> categoryMap.put(payee, e.getKey())));
+                defaultCategoryMap.put(accountID, categoryMap);
+            });
+            return new PayeeIndex(version, new CompletionIndex<>(payeeList, p -> p), defaultCategoryMap);
+        }
+    }
+
+    private final long version;
+    private final CompletionIndex<String> completionIndex;
+    private final Map<Integer, Map<String, Integer>> defaultCategoryMap; // account id, payee, category id
+
+    private PayeeIndex(long version, CompletionIndex<String> completionIndex,
+                       Map<Integer, Map<String, Integer>> defaultCategoryMap) {
+        this.version = version;
+        this.completionIndex = completionIndex;
+        this.defaultCategoryMap = defaultCategoryMap;
+    }
+
+    /**
+     * @return the version of the payee statistics the index is built from
+     */
+    long getVersion() { return version; }
+
+    /**
+     * @return all the payees, most used first
+     */
+    List<String> getPayeeList() { return completionIndex.getItems(); }
+
+    /**
+     * @param text - the typed text
+     * @param k - the maximum number of suggestions
+     * @return up to k payees containing the text, case insensitive, best first, empty for an empty text
+     */
+    List<String> getSuggestions(String text, int k) {
+        if (text == null || text.isEmpty())
+            return List.of();
+        return completionIndex.complete(text, k);
+    }
+
+    /**
+     * @param accountID - the account id
+     * @param payee - the payee
+     * @return the category id most used with the payee in the account in the window, 0 if the payee
+     * is not used
+     */
+    int getDefaultCategory(int accountID, String payee) {
+        return defaultCategoryMap.getOrDefault(accountID, Map.of()).getOrDefault(payee, 0);
+    }
+}
@@ -24,11 +24,10 @@ import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.File;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.nio.file.Files;
 import java.text.DecimalFormat;
 import java.text.ParseException;
 import java.time.LocalDate;
@@ -43,7 +42,7 @@ class QIFParser {
 
     // These are the exportable lists show in the QIF99 spec
     // CLASS and TEMPLATE are not being used
-    private enum RecordType { CLASS, CAT, MEMORIZED, SECURITY, PRICES, BANK, INVITEM, TEMPLATE, ACCOUNT, TAG }
+    enum RecordType { CLASS, CAT, MEMORIZED, SECURITY, PRICES, BANK, INVITEM, TEMPLATE, ACCOUNT, TAG }
 
     private final Map<String, List<Transaction>> accountNameTransactionMap = new HashMap<>();
     private final Map<String, List<Transaction>> categoryNameTransactionMap = new HashMap<>();
@@ -108,18 +107,6 @@ class QIFParser {
         return category;
     }
 
-    // starting from lines.get(startIdx) seek the line number of the next line
-    // equals match
-    // if not found, -1 is returned
-    private static int findNextMatch(List<String> lines, int startIdx) {
-        for (int i = startIdx; i < lines.size(); i++) {
-            if (lines.get(i).equals("^")) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
     static Security parseSecurityFromQIFLines(List<String> lines) {
         Security security = new Security();
         for (String l : lines) {
@@ -436,15 +423,36 @@ class QIFParser {
     }
 
     private final String mDefaultAccountName;
+    private final Set<RecordType> mRecordTypes; // the record types to be parsed, the others are skipped
     private final List<Account> mAccountList;
     private final Set<Category> mCategorySet;
     private final Set<Tag> mTagSet;
     private final List<Security> mSecurityList;
     private final List<Pair<String, Price>> mPriceList;
 
-    // public constructor
-    QIFParser(String dan) {
+    // the state of the parser between the records
+    // About AutoSwitch
+    // It occurs in these cases:
+    // 1.  none
+    // 2.  Option:AutoSwitch and then Clear:AutoSwitch
+    // 3.  2 + another Option:AutoSwitch, but no more Clea:AutoSwitch
+    // The accounts bracketed in Option:AutoSwitch and Clear:AutoSwitch are meant for import
+    // set boolean autoSwitch to be true at start, do nothing when encounters Option!AutoSwitch
+    // set autoSwitch to be false when encounters Clear:AutoSwitch.
+    private boolean mAutoSwitch = true;
+    private RecordType mCurrentRecordType = null;
+    private Account mAccount = null; // the account of the transactions
+    private int mLineNumber = 0;
+
+    /**
+     * constructor
+     * @param dan - the name of the default account for the transactions before any account record
+     * @param recordTypes - the types of the records to be parsed, the account records are always parsed
+     *                    to keep track of the account of the transactions
+     */
+    QIFParser(String dan, Set<RecordType> recordTypes) {
         mDefaultAccountName = dan;
+        mRecordTypes = recordTypes;
         mAccountList = new ArrayList<>();
         mCategorySet = new HashSet<>();
         mTagSet = new HashSet<>();
@@ -461,160 +469,168 @@ class QIFParser {
         return LocalDate.parse(s.replace(' ', '0').replace('\'', '/'), dtf);
     }
 
-    // return -1 for some sort of failure
-    //         0 for success
-    int parseFile(File qif) throws IOException, ModelException, ParseException {
-        List<String> allLines = Files.readAllLines(qif.toPath());
-        int nLines = allLines.size();
-        if (nLines == 0)
-            return 0;
-
-        // trim white spaces
-        for (int i = 0; i < nLines; i++) {
-            String s = allLines.get(i).trim();
-            allLines.set(i, s);
+    // set the current record type if the line is a header line, return false otherwise
+    private boolean parseHeader(String line) {
+        switch (line) {
+            case "!Type:Tag":
+                mCurrentRecordType = RecordType.TAG;
+                return true;
+            case "!Type:Cat":
+                mCurrentRecordType = RecordType.CAT;
+                return true;
+            case "!Type:Bank":
+            case "!Type:Cash":
+            case "!Type:CCard":
+            case "!Type:Oth A":
+            case "!Type:Oth L":
+                mCurrentRecordType = RecordType.BANK;
+                return true;
+            case "!Type:Invst":
+                mCurrentRecordType = RecordType.INVITEM;
+                return true;
+            case "!Account":
+                mCurrentRecordType = RecordType.ACCOUNT;
+                return true;
+            case "!Clear:AutoSwitch":
+                mCurrentRecordType = null;
+                mAutoSwitch = false;
+                return true;
+            case "!Option:AutoSwitch":
+                mCurrentRecordType = null;
+                return true;
+            case "!Type:Memorized":
+                mCurrentRecordType = RecordType.MEMORIZED;
+                return true;
+            case "!Type:Prices":
+                mCurrentRecordType = RecordType.PRICES;
+                return true;
+            case "!Type:Security":
+                mCurrentRecordType = RecordType.SECURITY;
+                return true;
+            default:
+                return false;
         }
+    }
 
-        // About AutoSwitch
-        // It occurs in these cases:
-        // 1.  none
-        // 2.  Option:AutoSwitch and then Clear:AutoSwitch
-        // 3.  2 + another Option:AutoSwitch, but no more Clea:AutoSwitch
-        // The accounts bracketed in Option:AutoSwitch and Clear:AutoSwitch are meant for import
-        // set boolean autoSwitch to be true at start, do nothing when encounters Option!AutoSwitch
-        // set autoSwitch to be false when encounters Clear:AutoSwitch.
-        boolean autoSwitch = true;
-        RecordType currentRecordType = null;
-        int i = 0;
-        Account account = null;
-        while (i < nLines) {
-            String line = allLines.get(i);
-            switch (line) {
-                case "!Type:Tag":
-                    currentRecordType = RecordType.TAG;
-                    break;
-                case "!Type:Cat":
-                    currentRecordType = RecordType.CAT;
-                    break;
-                case "!Type:Bank":
-                case "!Type:Cash":
-                case "!Type:CCard":
-                case "!Type:Oth A":
-                case "!Type:Oth L":
-                    currentRecordType = RecordType.BANK;
-                    break;
-                case "!Type:Invst":
-                    currentRecordType = RecordType.INVITEM;
-                    break;
-                case "!Account":
-                    currentRecordType = RecordType.ACCOUNT;
-                    break;
-                case "!Clear:AutoSwitch":
-                    currentRecordType = null;
-                    autoSwitch = false;
-                    break;
-                case "!Option:AutoSwitch":
-                    currentRecordType = null;
-                    break;
-                case "!Type:Memorized":
-                    currentRecordType = RecordType.MEMORIZED;
-                    break;
-                case "!Type:Prices":
-                    currentRecordType = RecordType.PRICES;
-                    break;
-                case "!Type:Security":
-                    currentRecordType = RecordType.SECURITY;
-                    break;
-                default:
-                    // this is a content line, find the end of the record
-                    int j = findNextMatch(allLines, i);
-                    if (j == -1) {
-                        mLogger.error("Bad formatted file.  Can't find '^'");
-                        return -1;
-                    }
-                    if (currentRecordType == null) {
-                        throw new ModelException(ModelException.ErrorCode.QIF_PARSE_EXCEPTION,
-                                "Bad RecordType at line " + i + " " + j, null);
-                    }
-                    switch (currentRecordType) {
-                        case CAT:
-                            Category category = parseCategoryFromQIFLines(allLines.subList(i, j));
-                            if (category != null) {
-                                mCategorySet.add(category);
-                            } else {
-                                mLogger.error("Bad formatted Category text: "
-                                        + allLines.subList(i, j));
-                            }
-                            i = j;
-                            break;
-                        case TAG:
-                            Tag tag = parseTagFromQIFLines(allLines.subList(i,j));
-                            if (tag != null) {
-                                mTagSet.add(tag);
-                            } else {
-                                mLogger.error("Bad formatted Tag text: " + allLines.subList(i, j));
-                            }
-                            i = j;
-                            break;
-                        case ACCOUNT:
-                            account = parseAccountFromQIFLines(allLines.subList(i, j));
-                            if (account != null) {
-                                if (autoSwitch) {
-                                    mAccountList.add(account);
-                                }
-                            } else {
-                                mLogger.error("Bad formatted Account record: "
-                                        + allLines.subList(i,j));
-                            }
-                            i = j;
-                            break;
-                        case SECURITY:
-                            Security security = parseSecurityFromQIFLines(allLines.subList(i,j));
-                            if (security != null) {
-                                mSecurityList.add(security);
-                            } else {
-                                mLogger.error("Bad formatted Security record: "
-                                        + allLines.subList(i,j));
-                            }
-                            i = j;
-                            break;
-                        case BANK:
-                            Transaction bt = parseTransactionFromBTLines(allLines.subList(i,j));
-                            accountNameTransactionMap.computeIfAbsent(account == null ?
-                                    getDefaultAccountName() : account.getName(),k -> new ArrayList<>()).add(bt);
-                            i = j;
-                            break;
-                        case INVITEM:
-                            Transaction tt = parseTransactionFromTTLines(allLines.subList(i,j));
-                            accountNameTransactionMap.computeIfAbsent(account == null ?
-                                    getDefaultAccountName() : account.getName(),k -> new ArrayList<>()).add(tt);
-                            i = j;
-                            break;
-                        case MEMORIZED:
-                            i = j;
-                            break;
-                        case PRICES:
-                            Pair<String, Price> ticker_price = parsePriceFromQIFLines(allLines.subList(i,j));
-                            if (ticker_price != null) {
-                                mPriceList.add(ticker_price);
-                            } else {
-                                mLogger.error("Bad formatted Price record: "
-                                        + allLines.subList(i, j));
-                            }
-                            i = j;
-                            break;
-                        default:
-                            mLogger.error(currentRecordType + " Not implemented yet");
-                            return -1;
-                    }
-                    break;  // break out the switch
+    /**
+     * read the next record from a QIF file, one line at a time, and add it to the lists and the maps of
+     * this parser.  The records of the types not selected are read and dropped.  Only the current record
+     * is held in memory, so a large file can be parsed a batch at a time, see clearTransactionsAndPrices.
+     * @param reader - the reader of the QIF file
+     * @return the type of the record added, or null at the end of the file
+     * @throws IOException - from reading the file
+     * @throws ModelException - for bad formatted records
+     * @throws ParseException - from parsing the numbers
+     */
+    RecordType parseNext(BufferedReader reader) throws IOException, ModelException, ParseException {
+        final List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            mLineNumber++;
+            if (lines.isEmpty()) {
+                if (parseHeader(line))
+                    continue;
+                if (mCurrentRecordType == null)
+                    throw new ModelException(ModelException.ErrorCode.QIF_PARSE_EXCEPTION,
+                            "Bad RecordType at line " + mLineNumber, null);
             }
-            i++;
+            if (!line.equals("^")) {
+                lines.add(line);
+                continue;
+            }
+
+            // the end of the record
+            final RecordType recordType = mCurrentRecordType;
+            if (parseRecord(lines))
+                return recordType;
+            lines.clear();
+        }
+        if (!lines.isEmpty())
+            throw new ModelException(ModelException.ErrorCode.QIF_PARSE_EXCEPTION,
+                    "Bad formatted file.  Can't find '^' after line " + mLineNumber, null);
+        return null;
+    }
+
+    // parse the lines of a record of the current type, return true if it is added
+    private boolean parseRecord(List<String> lines) throws ModelException, ParseException {
+        if (mCurrentRecordType == RecordType.ACCOUNT) {
+            mAccount = parseAccountFromQIFLines(lines);
+            if (mAccount == null) {
+                mLogger.error("Bad formatted Account record: " + lines);
+                return false;
+            }
+            if (mAutoSwitch && mRecordTypes.contains(RecordType.ACCOUNT)) {
+                mAccountList.add(mAccount);
+                return true;
+            }
+            return false;
+        }
+
+        if (!mRecordTypes.contains(mCurrentRecordType))
+            return false;
+
+        switch (mCurrentRecordType) {
+            case CAT:
+                final Category category = parseCategoryFromQIFLines(lines);
+                if (category == null) {
+                    mLogger.error("Bad formatted Category text: " + lines);
+                    return false;
+                }
+                mCategorySet.add(category);
+                return true;
+            case TAG:
+                final Tag tag = parseTagFromQIFLines(lines);
+                if (tag == null) {
+                    mLogger.error("Bad formatted Tag text: " + lines);
+                    return false;
+                }
+                mTagSet.add(tag);
+                return true;
+            case SECURITY:
+                final Security security = parseSecurityFromQIFLines(lines);
+                if (security == null) {
+                    mLogger.error("Bad formatted Security record: " + lines);
+                    return false;
+                }
+                mSecurityList.add(security);
+                return true;
+            case BANK:
+            case INVITEM:
+                final Transaction t = mCurrentRecordType == RecordType.BANK ?
+                        parseTransactionFromBTLines(lines) : parseTransactionFromTTLines(lines);
+                if (t == null)
+                    return false; // the offending line is logged
+                accountNameTransactionMap.computeIfAbsent(mAccount == null ?
+                        getDefaultAccountName() : mAccount.getName(), k -> new ArrayList<>()).add(t);
+                return true;
+            case MEMORIZED:
+                return false;
+            case PRICES:
+                final Pair<String, Price> tickerPrice = parsePriceFromQIFLines(lines);
+                if (tickerPrice == null) {
+                    mLogger.error("Bad formatted Price record: " + lines);
+                    return false;
+                }
+                mPriceList.add(tickerPrice);
+                return true;
+            default:
+                throw new ModelException(ModelException.ErrorCode.QIF_PARSE_EXCEPTION,
+                        mCurrentRecordType + " Not implemented yet", null);
         }
+    }
 
-        // done with the file, now match Transfer Transactions
-        // matchTransferTransaction();
-        return 0;
+    /**
+     * drop the transactions and the prices parsed so far, together with their name maps
+     */
+    void clearTransactionsAndPrices() {
+        accountNameTransactionMap.clear();
+        categoryNameTransactionMap.clear();
+        securityNameTransactionMap.clear();
+        tagNameTransactionMap.clear();
+        categoryNameSplitTransactionMap.clear();
+        tagNameSplitTransactionMap.clear();
+        mPriceList.clear();
     }
 
     List<Account> getAccountList() { return mAccountList; }
@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * RealizedGainEngine computes the realized gains of the closing trades of an account in a single pass
+ * over its transactions.
+ *
+ * The lots of each security are plain objects kept in a list ordered by the lot dates, and they are
+ * matched with the same arithmetic as SecurityHolding.processTransaction, in FIFO order or by the lot
+ * match information.  A closing trade is matched against the lots of all the other transactions dated
+ * on or before it, which is the holdings on its date excluding itself, so the transactions after it on
+ * the same date are included.
+ */
+class RealizedGainEngine {
+
+    private static final Logger logger = LogManager.getLogger(RealizedGainEngine.class);
+
+    /**
+     * the part of a closing trade matched with one lot
+     */
+    static class ClosedLot {
+        private final LocalDate date; // the date of the lot
+        private final BigDecimal selectedShares; // always non-negative
+        private final BigDecimal proceeds;
+        private final BigDecimal realizedPNL;
+
+        ClosedLot(LocalDate date, BigDecimal selectedShares, BigDecimal proceeds, BigDecimal realizedPNL) {
+            this.date = date;
+            this.selectedShares = selectedShares;
+            this.proceeds = proceeds;
+            this.realizedPNL = realizedPNL;
+        }
+
+        LocalDate getDate() { return date; }
+        BigDecimal getSelectedShares() { return selectedShares; }
+        BigDecimal getProceeds() { return proceeds; }
+        BigDecimal getRealizedPNL() { return realizedPNL; }
+
+        boolean isShortTerm(LocalDate coverDate) { return coverDate.isBefore(getDate().plusYears(1)); }
+    }
+
+    /**
+     * receives the closed lots of a closing trade
+     */
+    @FunctionalInterface
+    interface ClosingTradeConsumer {
+        void accept(TransactionRecord t, String securityName, List<ClosedLot> closedLotList) throws ModelException;
+    }
+
+    // an open lot, only the fields used in matching
+    private static class Lot {
+        private final int transactionID;
+        private final LocalDate date;
+        private BigDecimal quantity;
+        private BigDecimal costBasis;
+
+        Lot(int transactionID, LocalDate date, BigDecimal quantity, BigDecimal costBasis) {
+            this.transactionID = transactionID;
+            this.date = date;
+            this.quantity = quantity;
+            this.costBasis = costBasis;
+        }
+
+        Lot copy() { return new Lot(transactionID, date, quantity, costBasis); }
+    }
+
+    // the open lots of a security
+    private static class Position {
+        private final ArrayList<Lot> lotList = new ArrayList<>(); // ordered by lot date
+        private BigDecimal quantity = BigDecimal.ZERO; // sum of the lot quantities
+
+        Position copy() {
+            final Position position = new Position();
+            position.lotList.ensureCapacity(lotList.size());
+            for (Lot lot : lotList)
+                position.lotList.add(lot.copy());
+            position.quantity = quantity;
+            return position;
+        }
+
+        // insert after the lots dated on or before the lot, usually at the end
+        void addLot(Lot lot) {
+            int index = lotList.size();
+            while (index > 0 && lotList.get(index-1).date.isAfter(lot.date))
+                index--;
+            lotList.add(index, lot);
+            quantity = quantity.add(lot.quantity);
+        }
+    }
+
+    private final int scale;
+    private final IntFunction<String> securityNameFunction;
+    private final HoldingsEngine.MatchInfoLoader matchInfoLoader;
+
+    /**
+     * constructor
+     * @param scale - number of decimal places for the cost basis
+     * @param securityNameFunction - maps security id to security name, empty string for no security
+     * @param matchInfoLoader - loads lot match information for a transaction
+     */
+    RealizedGainEngine(int scale, IntFunction<String> securityNameFunction,
+                       HoldingsEngine.MatchInfoLoader matchInfoLoader) {
+        this.scale = scale;
+        this.securityNameFunction = securityNameFunction;
+        this.matchInfoLoader = matchInfoLoader;
+    }
+
+    /**
+     * go through the transactions of an account once, and pass the closed lots of each selected
+     * closing trade to the consumer
+     * @param tList - the transaction records of an account, ordered by date
+     * @param endDate - the transactions after the end date are not processed
+     * @param closingTradeFilter - selects the closing trades to be passed to the consumer
+     * @param consumer - takes the closed lots of the selected closing trades
+     * @throws ModelException - from matchInfoLoader or consumer, or there is no holding for a selected trade
+     */
+    void run(List<TransactionRecord> tList, LocalDate endDate, Predicate<TransactionRecord> closingTradeFilter,
+             ClosingTradeConsumer consumer) throws ModelException {
+        final Map<String, Position> positionMap = new HashMap<>();
+        final int n = tList.size();
+        int groupStart = 0;
+        while (groupStart < n && !tList.get(groupStart).getTDate().isAfter(endDate)) {
+            // the transactions on the same date
+            final LocalDate date = tList.get(groupStart).getTDate();
+            int groupEnd = groupStart + 1;
+            while (groupEnd < n && tList.get(groupEnd).getTDate().equals(date))
+                groupEnd++;
+
+            for (int i = groupStart; i < groupEnd; i++) {
+                final TransactionRecord t = tList.get(i);
+                final String name = securityNameFunction.apply(t.getSecurityID());
+                final boolean selected = closingTradeFilter.test(t);
+                if (name.isEmpty() && !selected)
+                    continue;
+                final Position position = positionMap.computeIfAbsent(name, k -> new Position());
+                if (!selected) {
+                    process(position, t);
+                    continue;
+                }
+
+                // the later transactions of the same security on the same date are matched before t
+                Position matchPosition = position;
+                for (int j = i + 1; j < groupEnd; j++) {
+                    final TransactionRecord u = tList.get(j);
+                    if (!name.isEmpty() && name.equals(securityNameFunction.apply(u.getSecurityID()))) {
+                        if (matchPosition == position)
+                            matchPosition = position.copy();
+                        process(matchPosition, u);
+                    }
+                }
+                if (matchPosition.quantity.signum() == 0)
+                    throw new ModelException(ModelException.ErrorCode.INVALID_TRANSACTION,
+                            "No holding of " + name + " for " + t.getTradeAction() + " " + t.getQuantity()
+                                    + " on " + t.getTDate() + " in account " + t.getAccountID(), null);
+                final List<ClosedLot> closedLotList = process(matchPosition, t);
+                if (matchPosition != position)
+                    process(position, t);
+                consumer.accept(t, name, closedLotList);
+            }
+            groupStart = groupEnd;
+        }
+    }
+
+    // same as SecurityHolding.processTransaction, returns the closed lots
+    private List<ClosedLot> process(Position position, TransactionRecord t) throws ModelException {
+        if (t.getTradeAction() == Transaction.TradeAction.STKSPLIT) {
+            adjustStockSplit(position, t.getQuantity(), t.getOldQuantity());
+            return List.of();
+        }
+
+        if (!Transaction.hasQuantity(t.getTradeAction()))
+            return List.of();
+
+        final BigDecimal tradedQuantity = t.getSignedQuantity();
+        final BigDecimal tradedCostBasis = t.getCostBasis();
+        if (tradedCostBasis.signum() == 0 && tradedQuantity.signum() == 0)
+            return List.of();
+
+        final List<MatchInfo> matchInfoList = matchInfoLoader.load(t.getID());
+        final Lot tradedLot = new Lot(t.getID(), t.getADate() != null ? t.getADate() : t.getTDate(),
+                tradedQuantity, tradedCostBasis.setScale(scale, RoundingMode.HALF_UP));
+        if (tradedQuantity.signum() * position.quantity.signum() >= 0) {
+            // either a new open trade, or adding to the same position
+            position.addLot(tradedLot);
+            if (!matchInfoList.isEmpty())
+                logger.warn("Can't find offsetting lots for " + t.getTradeAction() + " " + tradedQuantity
+                        + " shares of " + t.getSecurityID() + " on " + t.getTDate()
+                        + " with transaction id = " + t.getID() + ", account id = " + t.getAccountID());
+            return List.of();
+        }
+
+        // it's a closing trade, match lots
+        final Map<Integer, MatchInfo> matchMap = new HashMap<>();
+        for (MatchInfo mi : matchInfoList)
+            matchMap.put(mi.getMatchTransactionID(), mi);
+
+        final List<ClosedLot> closedLotList = new ArrayList<>();
+        final ArrayList<Lot> lotList = position.lotList;
+        final int n = lotList.size();
+        int kept = 0; // lots kept are moved to the front
+        int i = 0;
+        boolean filled = false;
+        for (; i < n && !filled; i++) {
+            final Lot lot = lotList.get(i);
+            final BigDecimal matchQuantity;
+            if (matchInfoList.isEmpty()) { // FIFO
+                matchQuantity = lot.quantity.abs().min(tradedLot.quantity.abs());
+            } else {
+                final MatchInfo mi = matchMap.get(lot.transactionID);
+                if (mi == null) {
+                    lotList.set(kept++, lot);
+                    continue; // this one is not in the match
+                }
+                matchQuantity = mi.getMatchQuantity();
+            }
+
+            final BigDecimal lotOldQ = lot.quantity;
+            closedLotList.add(match(lot, tradedLot, matchQuantity));
+            position.quantity = position.quantity.add(lot.quantity.subtract(lotOldQ));
+            if (lot.quantity.signum() != 0)
+                lotList.set(kept++, lot);
+            filled = tradedLot.quantity.signum() == 0;
+        }
+        for (; i < n; i++)
+            lotList.set(kept++, lotList.get(i));
+        lotList.subList(kept, n).clear();
+        if (filled)
+            return closedLotList;
+
+        lotList.removeIf(lot -> lot.costBasis.signum() == 0 && lot.quantity.signum() == 0);
+        logger.warn("Can't find enough offset for " + t.getTradeAction() + " " + t.getQuantity()
+                + " shares of " + t.getSecurityID() + " on " + t.getTDate()
+                + " with transaction id = " + t.getID() + ", account id = " + t.getAccountID());
+        position.addLot(tradedLot);
+        return closedLotList;
+    }
+
+    // same as SpecifyLotInfo.updateSelectedShares on a new selection followed by SecurityLot.matchLots
+    private ClosedLot match(Lot lot, Lot tradedLot, BigDecimal matchQuantity) {
+        final BigDecimal lotOldC = lot.costBasis.setScale(scale, RoundingMode.HALF_UP);
+        final BigDecimal tradedOldC = tradedLot.costBasis;
+        final BigDecimal lotOldQ = lot.quantity;
+        final BigDecimal tradedOldQ = tradedLot.quantity;
+
+        final int lotOldQSign = lotOldQ.signum();
+        if (lotOldQSign == 0) {
+            // the lot has a cost basis but zero quantity, empty the cost basis
+            lot.costBasis = BigDecimal.ZERO;
+            return new ClosedLot(lot.date, matchQuantity, BigDecimal.ZERO.setScale(tradedOldC.scale()),
+                    lotOldC.negate());
+        }
+
+        final BigDecimal lotNewQ;
+        final BigDecimal tradedNewQ;
+        if (lotOldQSign > 0) {
+            lotNewQ = lotOldQ.subtract(matchQuantity);
+            tradedNewQ = tradedOldQ.add(matchQuantity);
+        } else {
+            lotNewQ = lotOldQ.add(matchQuantity);
+            tradedNewQ = tradedOldQ.subtract(matchQuantity);
+        }
+
+        final BigDecimal lotNewC = lotOldC.multiply(lotNewQ).divide(lotOldQ, lotOldC.scale(), RoundingMode.HALF_UP);
+        final BigDecimal tradedNewC = tradedOldC.multiply(tradedNewQ)
+                .divide(tradedOldQ, tradedOldC.scale(), RoundingMode.HALF_UP);
+        lot.quantity = lotNewQ;
+        lot.costBasis = lotNewC;
+        tradedLot.quantity = tradedNewQ;
+        tradedLot.costBasis = tradedNewC;
+        return new ClosedLot(lot.date, matchQuantity, tradedNewC.subtract(tradedOldC),
+                lotOldC.subtract(lotNewC).add(tradedOldC).subtract(tradedNewC).negate());
+    }
+
+    // same as SecurityHolding.adjustStockSplit
+    private static void adjustStockSplit(Position position, BigDecimal newQ, BigDecimal oldQ) {
+        final BigDecimal newHoldingQ = position.quantity.multiply(newQ)
+                .divide(oldQ, MainModel.PRICE_QUANTITY_FRACTION_LEN, RoundingMode.HALF_UP);
+        Lot maxLot = null; // the rounding error goes to the lot with most quantity
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Lot lot : position.lotList) {
+            lot.quantity = lot.quantity.multiply(newQ)
+                    .divide(oldQ, MainModel.PRICE_QUANTITY_FRACTION_LEN, RoundingMode.HALF_UP);
+            sum = sum.add(lot.quantity);
+            if (maxLot == null || maxLot.quantity.abs().compareTo(lot.quantity.abs()) < 0)
+                maxLot = lot;
+        }
+        final BigDecimal diff = newHoldingQ.subtract(sum);
+        if (maxLot != null && diff.signum() != 0) {
+            maxLot.quantity = maxLot.quantity.add(diff);
+            sum = sum.add(diff);
+        }
+        position.quantity = sum;
+    }
+}
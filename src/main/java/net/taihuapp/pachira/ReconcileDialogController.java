@@ -89,7 +89,10 @@ public class ReconcileDialogController {
 
     private MainModel mainModel;
 
+    // the unreconciled transactions, copies of their own, the statuses are saved on finish
     private final ObservableList<Transaction> transactionList = FXCollections.observableArrayList();
+    // the reconciled transactions and the unreconciled ones, with the statuses saved in the database
+    private List<TransactionRecord> recordList;
     @FXML
     private VBox mVBox;
     @FXML
@@ -115,7 +118,6 @@ public class ReconcileDialogController {
     private BigDecimal mDownloadedLedgeBalance = null;
 
     private TransactionTableView mTransactionTableView;
-    private final Map<Integer, Transaction.Status> mOriginalStatusMap = new HashMap<>();
 
     // Mark all unreconciled transaction as cleared
     private void handleMarkAll() {
@@ -131,7 +133,7 @@ public class ReconcileDialogController {
         LocalDate d = mEndDatePicker.getValue();
         Account account = mainModel.getCurrentAccount();
         try {
-            mainModel.reconcileCurrentAccount(d);
+            mainModel.reconcileCurrentAccount(d, transactionList);
         } catch (ModelException e) {
             final String msg = "ModelException " + e.getErrorCode() + " when reconcile account " + account.getName();
             logger.error(msg);
@@ -142,7 +144,7 @@ public class ReconcileDialogController {
     }
 
     void handleCancel() {
-        mTransactionTableView.getItems().forEach(t -> t.setStatus(mOriginalStatusMap.get(t.getID())));
+        // the status changes are only in the dialog copies of the transactions
         ((Stage) mVBox.getScene().getWindow()).close();
     }
 
@@ -150,8 +152,13 @@ public class ReconcileDialogController {
     // Obviously, it should be called after the table is populated.
     private void updateClearedBalance() {
         try {
-            final List<SecurityHolding> holdings = mainModel.computeSecurityHoldings(transactionList
-                    .filtered(t -> !t.getStatus().equals(Transaction.Status.UNCLEARED)), LocalDate.MAX, -1);
+            final Set<Integer> clearedIDSet = transactionList.stream()
+                    .filter(t -> t.getStatus().equals(Transaction.Status.CLEARED))
+                    .map(Transaction::getID).collect(Collectors.toSet());
+            final List<SecurityHolding> holdings = mainModel.computeRecordSecurityHoldings(recordList.stream()
+                    .filter(r -> r.getStatus().equals(Transaction.Status.RECONCILED)
+                            || clearedIDSet.contains(r.getID()))
+                    .collect(Collectors.toList()), LocalDate.MAX, -1);
             for (SecurityBalance sb : mSecurityBalanceTableView.getItems()) {
                 if (sb.getName().equals(SecurityHolding.CASH)) {
                     // cash doesn't have quantity, get market value
@@ -187,22 +194,16 @@ public class ReconcileDialogController {
         }
 
         // process transaction list and calculate balances
-        // make sure we are observing STATUS property
-        transactionList.addAll(mainModel.getCurrentAccountTransactionList());
-
-        // keep original Status in case we want to undo
-        for (Transaction t : transactionList) {
-            if (!t.getStatus().equals(Transaction.Status.RECONCILED)) {
-                mOriginalStatusMap.put(t.getID(), t.getStatus());
-            }
-        }
+        // only the unreconciled transactions are loaded as transactions, the rest are records
+        transactionList.setAll(mainModel.getUnreconciledTransactionList(account));
+        recordList = mainModel.getAccountTransactionRecordList(account);
 
         // count all RECONCILED transactions as opening position
-        final List<Transaction> reconciledTransactionList = transactionList
-                .filtered(t -> t.getStatus().equals(Transaction.Status.RECONCILED));
+        final List<TransactionRecord> reconciledRecordList = recordList.stream()
+                .filter(r -> r.getStatus().equals(Transaction.Status.RECONCILED)).collect(Collectors.toList());
         final List<SecurityHolding> reconciledHoldings;
         reconciledHoldings = mainModel
-                .computeSecurityHoldings(reconciledTransactionList, LocalDate.MAX, -1).stream()
+                .computeRecordSecurityHoldings(reconciledRecordList, LocalDate.MAX, -1).stream()
                 .filter(h -> !h.getLabel().equals(SecurityHolding.TOTAL)) // exclude TOTAL
                 .collect(Collectors.toList());
 
@@ -211,7 +212,6 @@ public class ReconcileDialogController {
                 .map(SecurityHolding::getSecurityName).collect(Collectors.toSet());
 
         final Set<Integer> unreconciledSecurityIDSet = transactionList.stream()
-                .filter(t -> !t.getStatus().equals(Transaction.Status.RECONCILED))
                 .map(Transaction::getSecurityID).filter(i -> i > 0).collect(Collectors.toSet());
         final Set<String> unreconciledSecurityNameSet = new HashSet<>();
         for (Integer id : unreconciledSecurityIDSet) {
@@ -251,8 +251,7 @@ public class ReconcileDialogController {
         // calculated initial cleared balance
         updateClearedBalance();
 
-        mTransactionTableView = new TransactionTableView(mainModel,
-                transactionList.filtered(t -> !t.getStatus().equals(Transaction.Status.RECONCILED)));
+        mTransactionTableView = new TransactionTableView(mainModel, transactionList);
 
         for (TableColumn<Transaction, ?> tc : Arrays.asList(
                 mTransactionTableView.mTransactionAccountColumn,
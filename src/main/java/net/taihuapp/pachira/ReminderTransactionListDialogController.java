@@ -155,7 +155,7 @@ public class ReminderTransactionListDialogController {
             int tid = DialogUtil.showEditTransactionDialog(mainModel, getStage(), transaction,
                     mainModel.getAccountList(a ->
                             (!a.getHiddenFlag() && a.getType().isGroup(Account.Type.Group.SPENDING))),
-                    mainModel.getAccount(a -> a.getID() == transaction.getAccountID()).orElse(null),
+                    mainModel.getAccount(transaction.getAccountID()).orElse(null),
                     Collections.singletonList(transaction.getTradeAction()));
             if (tid >= 0) {
                 rt.setTransactionID(tid);
@@ -376,7 +376,7 @@ public class ReminderTransactionListDialogController {
                 if (item == null || empty) {
                     setText(null);
                 } else {
-                    setText(reminderModel.getMainModel().getTag(tag -> tag.getID() == item).map(Tag::getName)
+                    setText(reminderModel.getMainModel().getTag(item).map(Tag::getName)
                             .orElse(null));
                 }
             }
@@ -397,7 +397,7 @@ public class ReminderTransactionListDialogController {
                     try {
                         accountID = mainModel.getTransactionByID(rt.getTransactionID())
                                 .map(Transaction::getAccountID).orElse(reminder.getAccountID());
-                        return mainModel.getAccount(a -> a.getID() == accountID).map(Account::getNameProperty)
+                        return mainModel.getAccount(accountID).map(Account::getNameProperty)
                                 .orElse(new ReadOnlyStringWrapper(""));
                     } catch (ModelException e) {
                         logger.error("Exception on retrieve reminder transaction {}", rt.getTransactionID(), e);
@@ -20,6 +20,8 @@
 
 package net.taihuapp.pachira;
 
+import com.opencsv.CSVWriter;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.ObjectBinding;
 import javafx.beans.property.*;
@@ -27,9 +29,11 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.CheckBoxTableCell;
+import javafx.scene.layout.HBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.Pair;
@@ -43,8 +47,15 @@ import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
 import java.time.temporal.WeekFields;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -53,7 +64,7 @@ public class ReportDialogController {
 
     private static final Logger mLogger = LogManager.getLogger(ReportDialogController.class);
 
-    public enum ReportType { NAV, INVESTINCOME, INVESTTRANS, BANKTRANS, CAPITALGAINS, COSTBASIS }
+    public enum ReportType { NAV, INVESTINCOME, INVESTTRANS, BANKTRANS, CAPITALGAINS, COSTBASIS, NAVHISTORY }
     public enum Frequency { DAILY, MONTHLY, QUARTERLY, ANNUAL }
     public enum DatePeriod {
         TODAY("Today"), YESTERDAY("Yesterday"), LASTEOM("End of Last Month"),
@@ -122,6 +133,7 @@ public class ReportDialogController {
                     mDatePeriod = DatePeriod.LASTMONTH;
                     break;
                 case CAPITALGAINS:
+                case NAVHISTORY:
                     mDatePeriod = DatePeriod.LASTYEAR;
                     break;
                 default:
@@ -131,7 +143,7 @@ public class ReportDialogController {
 
             mStartDate = LocalDate.now();
             mEndDate = LocalDate.now();
-            mFrequency = Frequency.DAILY;
+            mFrequency = type == ReportType.NAVHISTORY ? Frequency.MONTHLY : Frequency.DAILY;
         }
 
         // getters
@@ -267,8 +279,138 @@ public class ReportDialogController {
     Button setAllButton;
     @FXML
     Button clearAllButton;
+    @FXML
+    HBox mProgressHBox;
+    @FXML
+    ProgressBar mProgressBar;
+    @FXML
+    Label mProgressLabel;
 
     private MainModel mainModel;
+    private ReportTask mReportTask = null; // the report being generated
+    private List<String[]> mReportTable = null; // the shown report as a table, can be saved as csv
+
+    // computes the part of a report for one account
+    @FunctionalInterface
+    private interface AccountPart<R> {
+        R compute(Account account) throws ModelException;
+    }
+
+    /**
+     * Generates a report in the background.  The parts of the report for the accounts are
+     * computed in parallel on the read only sessions, the progress is updated as the accounts
+     * are done, and the task checks for cancellation between accounts.
+     */
+    private class ReportTask extends Task<String> {
+        private final ReportType reportType;
+        private final List<Account> accounts; // the selected accounts
+        private volatile List<String[]> table = null; // the report as a table, if it is one
+
+        ReportTask(ReportType reportType, List<Account> accounts) {
+            this.reportType = reportType;
+            this.accounts = accounts;
+        }
+
+        @Override
+        protected String call() throws ModelException {
+            switch (reportType) {
+                case NAV:
+                    return NAVReport(this, accounts);
+                case INVESTINCOME:
+                    return InvestIncomeReport(this, accounts);
+                case INVESTTRANS:
+                    return InvestTransReport(this, accounts);
+                case BANKTRANS:
+                    return BankTransReport(this, accounts);
+                case CAPITALGAINS:
+                    return CapitalGainsReport(this, accounts);
+                case COSTBASIS:
+                    return CostBasisReport(this, accounts);
+                case NAVHISTORY:
+                    return NAVHistoryReport(this, accounts);
+                default:
+                    return "Report type " + reportType + " not implemented yet";
+            }
+        }
+
+        List<String[]> getTable() { return table; }
+        void setTable(List<String[]> table) { this.table = table; }
+
+        // append partial output to the report text area, it is replaced by the full report when done
+        void appendOutput(String output) {
+            Platform.runLater(() -> {
+                if (!isDone())
+                    mReportTextArea.appendText(output);
+            });
+        }
+
+        /**
+         * compute the parts of the report for the accounts
+         * @param accounts - the accounts
+         * @param accountPart - computes the part for an account
+         * @param consumer - takes the parts in the order of the accounts, as soon as a part
+         *                 and all the ones before it are done
+         * @param <R> - the type of the parts
+         * @return the list of the parts, in the order of the accounts
+         * @throws ModelException - from accountPart
+         */
+        <R> List<R> computeAccountParts(List<Account> accounts, AccountPart<R> accountPart, Consumer<R> consumer)
+                throws ModelException {
+            final int n = accounts.size();
+            final AtomicInteger counter = new AtomicInteger(0);
+            final List<R> parts = new ArrayList<>();
+            final int parallelism = Math.min(mainModel.getMaxReadSessions(), n);
+            if (parallelism <= 1) {
+                for (Account account : accounts) {
+                    if (isCancelled())
+                        throw new CancellationException();
+                    updateMessage(account.getName());
+                    final R part = accountPart.compute(account);
+                    updateProgress(counter.incrementAndGet(), n);
+                    parts.add(part);
+                    consumer.accept(part);
+                }
+                return parts;
+            }
+
+            final ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+            try {
+                final List<Future<R>> futureList = new ArrayList<>();
+                for (Account account : accounts) {
+                    futureList.add(forkJoinPool.submit(() -> {
+                        if (isCancelled())
+                            throw new CancellationException();
+                        final R part = accountPart.compute(account);
+                        updateMessage(account.getName());
+                        updateProgress(counter.incrementAndGet(), n);
+                        return part;
+                    }));
+                }
+                for (Future<R> future : futureList) {
+                    final R part = future.get();
+                    parts.add(part);
+                    consumer.accept(part);
+                }
+                return parts;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ModelException)
+                    throw (ModelException) e.getCause();
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new ModelException(ModelException.ErrorCode.DB_ACCESS_FAILURE,
+                        "Failed to compute report", e.getCause());
+            } finally {
+                forkJoinPool.shutdownNow();
+            }
+        }
+
+        <R> List<R> computeAccountParts(List<Account> accounts, AccountPart<R> accountPart) throws ModelException {
+            return computeAccountParts(accounts, accountPart, part -> {});
+        }
+    }
 
     private Stage getStage() { return (Stage) mTabPane.getScene().getWindow(); }
 
@@ -304,6 +446,11 @@ public class ReportDialogController {
             case COSTBASIS:
                 stage.setTitle("Cost Basis Report");
                 setupCostBasisReport();
+                break;
+            case NAVHISTORY:
+                stage.setTitle("NAV History Report");
+                setupNAVHistoryReport();
+                break;
             default:
                 break;
         }
@@ -341,6 +488,17 @@ public class ReportDialogController {
         mTextMatchTab.setDisable(true);
     }
 
+    private void setupNAVHistoryReport() {
+        setupDatesTab(true);
+        mFrequencyLabel.setVisible(true);
+        mFrequencyChoiceBox.setVisible(true);
+        setupAccountsTab(Set.of(Account.Type.Group.values())); // show all accounts
+        mCategoriesTab.setDisable(true);
+        mSecuritiesTab.setDisable(true);
+        mTradeActionTab.setDisable(true);
+        mTextMatchTab.setDisable(true);
+    }
+
     private void setupInvestIncomeReport() {
         setupDatesTab(true);
         setupAccountsTab(Set.of(Account.Type.Group.INVESTING)); // show investing accounts only
@@ -580,39 +738,69 @@ public class ReportDialogController {
     @FXML
     private void handleShowReport() {
         updateSetting();
-        try {
-            switch (mSetting.getType()) {
-                case NAV:
-                    mReportTextArea.setText(NAVReport());
-                    break;
-                case INVESTINCOME:
-                    mReportTextArea.setText(InvestIncomeReport());
-                    break;
-                case INVESTTRANS:
-                    mReportTextArea.setText(InvestTransReport());
-                    break;
-                case BANKTRANS:
-                    mReportTextArea.setText(BankTransReport());
-                    break;
-                case CAPITALGAINS:
-                    mReportTextArea.setText(CapitalGainsReport());
-                    break;
-                case COSTBASIS:
-                    mReportTextArea.setText(CostBasisReport());
-                    break;
-                default:
-                    mReportTextArea.setText("Report type " + mSetting.getType() + " not implemented yet");
-                    break;
-            }
-            mReportTextArea.setVisible(true);
-            mShowReportButton.setDisable(true);
+
+        // capital gains goes through all selected accounts, the others only the ones of the right type
+        final List<Account> accounts = mSetting.getType() == ReportType.CAPITALGAINS ?
+                mSetting.getSelectedAccountIDSet().stream().map(mainModel::getAccount)
+                        .flatMap(Optional::stream).collect(Collectors.toList()) :
+                new ArrayList<>(mSetting.getSelectedAccountList(mainModel));
+        final ReportTask reportTask = new ReportTask(mSetting.getType(), accounts);
+        mReportTask = reportTask;
+
+        mReportTextArea.clear();
+        mReportTextArea.setVisible(true);
+        mShowReportButton.setDisable(true);
+        mSaveReportButton.setDisable(true);
+        mShowSettingButton.setDisable(true);
+        mSaveSettingButton.setDisable(true);
+        mProgressBar.progressProperty().bind(reportTask.progressProperty());
+        mProgressLabel.textProperty().bind(reportTask.messageProperty());
+        mProgressHBox.setManaged(true);
+        mProgressHBox.setVisible(true);
+
+        mReportTable = null;
+        reportTask.setOnSucceeded(e -> {
+            reportDone();
+            mReportTextArea.setText(reportTask.getValue());
+            mReportTable = reportTask.getTable();
             mSaveReportButton.setDisable(false);
-            mShowSettingButton.setDisable(false);
-        } catch (DaoException | ModelException e) {
-            final String msg =  e.getClass().getName() + " when showing report";
-            mLogger.error(msg, e);
-            DialogUtil.showExceptionDialog(getStage(), e.getClass().getName(), msg, e.toString(), e);
-        }
+        });
+        reportTask.setOnCancelled(e -> {
+            reportDone();
+            mReportTextArea.appendText(System.lineSeparator() + "Report cancelled." + System.lineSeparator());
+        });
+        reportTask.setOnFailed(e -> {
+            reportDone();
+            handleShowSetting();
+            final Throwable throwable = reportTask.getException();
+            final Exception exception = throwable instanceof Exception ?
+                    (Exception) throwable : new RuntimeException(throwable);
+            final String msg =  exception.getClass().getName() + " when showing report";
+            mLogger.error(msg, exception);
+            DialogUtil.showExceptionDialog(getStage(), exception.getClass().getName(), msg, exception.toString(),
+                    exception);
+        });
+
+        final Thread thread = new Thread(reportTask, "Report " + mSetting.getType());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @FXML
+    private void handleCancelReport() {
+        if (mReportTask != null)
+            mReportTask.cancel();
+    }
+
+    // restore the controls after the report task is done
+    private void reportDone() {
+        mReportTask = null;
+        mProgressBar.progressProperty().unbind();
+        mProgressLabel.textProperty().unbind();
+        mProgressHBox.setVisible(false);
+        mProgressHBox.setManaged(false);
+        mShowSettingButton.setDisable(false);
+        mSaveSettingButton.setDisable(false);
     }
 
     @FXML
@@ -622,6 +810,10 @@ public class ReportDialogController {
             final FileChooser.ExtensionFilter txtFilter = new FileChooser.ExtensionFilter("Text file",
                     "*.TXT", "*.TXt", "*.TxT", "*.Txt", "*.tXT", "*.tXt", "*.txT", "*.txt");
             fileChooser.getExtensionFilters().add(txtFilter);
+            final FileChooser.ExtensionFilter csvFilter = new FileChooser.ExtensionFilter("CSV file",
+                    "*.CSV", "*.CSv", "*.CsV", "*.Csv", "*.cSV", "*.cSv", "*.csV", "*.csv");
+            if (mReportTable != null)
+                fileChooser.getExtensionFilters().add(csvFilter);
             fileChooser.setInitialFileName(mSetting.getName()+".txt");
 
             final String PATH_ID = "RPT";
@@ -631,8 +823,17 @@ public class ReportDialogController {
                 fileChooser.setInitialDirectory(dir);
             File reportFile = fileChooser.showSaveDialog(mTabPane.getScene().getWindow());
             if (reportFile != null) {
+                final boolean saveCSV = mReportTable != null
+                        && (fileChooser.getSelectedExtensionFilter() == csvFilter
+                        || reportFile.getName().toLowerCase().endsWith(".csv"));
                 try (PrintWriter pw = new PrintWriter(reportFile.getCanonicalPath())) {
-                    pw.print(mReportTextArea.getText());
+                    if (saveCSV) {
+                        final CSVWriter csvWriter = new CSVWriter(pw);
+                        csvWriter.writeAll(mReportTable);
+                        csvWriter.flush();
+                    } else {
+                        pw.print(mReportTextArea.getText());
+                    }
                     mainModel.putDefaultPath(PATH_ID, reportFile.getAbsolutePath());
                 } catch (IOException e) {
                     mLogger.error("IOException", e);
@@ -741,9 +942,12 @@ public class ReportDialogController {
         }
     }
 
-    void close() { getStage().close(); }
+    void close() {
+        handleCancelReport();
+        getStage().close();
+    }
 
-    private String InvestIncomeReport() throws DaoException, ModelException {
+    private String InvestIncomeReport(ReportTask task, List<Account> accounts) throws ModelException {
         StringBuilder reportStr = new StringBuilder("Investment Income Report from "
                 + mSetting.getStartDate() + " to " + mSetting.getEndDate() + "\n");
 
@@ -772,17 +976,23 @@ public class ReportDialogController {
             }
         }
 
-        Income fieldUsed = new Income(); // use this to keep track the field being used
-        List<Map<String, Income>> accountSecurityIncomeList = new ArrayList<>();
-        for (Account account : mainModel.getAccountList(a -> a.getType().isGroup(Account.Type.Group.INVESTING)
-                && !a.getName().equals(MainModel.DELETED_ACCOUNT_NAME))) {
-
-            if (!mSetting.getSelectedAccountIDSet().contains(account.getID()))
-                continue;
-
-            Map<String, Income> securityIncomeMap = new TreeMap<>();
-            accountSecurityIncomeList.add(securityIncomeMap);
-            for (Transaction t : mainModel.getAccountTransactionList(account)) {
+        // the income of each security in each account, together with the fields used in the account
+        final List<Pair<Map<String, Income>, Income>> accountSecurityIncomeList =
+                task.computeAccountParts(accounts, account -> {
+            final Income fieldUsed = new Income(); // use this to keep track the field being used
+            final Map<String, Income> securityIncomeMap = new TreeMap<>();
+            final List<TransactionRecord> accountTransactions = mainModel.getAccountTransactionRecordList(account);
+            // realized gains of the closing trades in the report, keyed by transaction id
+            final Map<Integer, BigDecimal> realizedMap = new HashMap<>();
+            mainModel.computeRealizedGains(accountTransactions, mSetting.getEndDate(), p ->
+                    (p.getTradeAction() == Transaction.TradeAction.SELL
+                            || p.getTradeAction() == Transaction.TradeAction.CVTSHRT)
+                            && !p.getTDate().isBefore(mSetting.getStartDate())
+                            && !p.getTDate().isAfter(mSetting.getEndDate())
+                            && mSetting.getSelectedSecurityIDSet().contains(Math.max(p.getSecurityID(), 0)),
+                    (t, sName, closedLotList) -> realizedMap.put(t.getID(), closedLotList.stream()
+                            .map(RealizedGainEngine.ClosedLot::getRealizedPNL).reduce(BigDecimal.ZERO, BigDecimal::add)));
+            for (TransactionRecord t : accountTransactions) {
                 LocalDate tDate = t.getTDate();
                 if (tDate.isBefore(mSetting.getStartDate()))
                     continue;
@@ -802,17 +1012,7 @@ public class ReportDialogController {
                     case SELL:
                     case CVTSHRT:
                         fieldUsed.realized = BigDecimal.ONE;
-                        final SecurityHolding securityHolding =
-                                mainModel.computeSecurityHoldings(mainModel.getAccountTransactionList(account),
-                                                tDate, t.getID())
-                                        .stream().filter(sh -> sh.getSecurityName().equals(sName)).findAny()
-                                        .orElseThrow(() ->
-                                                new ModelException(ModelException.ErrorCode.INVALID_TRANSACTION,
-                                                "Cannot find security holding for " + t.getTradeAction() + " "
-                                                        + t.getQuantity() + " of " + sName, null));
-                        final BigDecimal realized = securityHolding.processTransaction(t,
-                                mainModel.getMatchInfoList(t.getID())).stream().map(SpecifyLotInfo::getRealizedPNL)
-                                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                        final BigDecimal realized = realizedMap.get(t.getID());
                         securityIncomeMap.put(sName, income);
                         income.realized = income.realized.add(realized);
                         if (t.getAccruedInterest().signum() != 0) {
@@ -885,7 +1085,11 @@ public class ReportDialogController {
                         break;
                 }
             }
-        }
+            return new Pair<>(securityIncomeMap, fieldUsed);
+        });
+        Income fieldUsed = new Income();
+        for (Pair<Map<String, Income>, Income> securityIncomeMapFieldUsed : accountSecurityIncomeList)
+            fieldUsed = fieldUsed.add(securityIncomeMapFieldUsed.getValue());
 
         class Line {
             private String sName = "";
@@ -945,8 +1149,8 @@ public class ReportDialogController {
         final DecimalFormat dcFormat = new DecimalFormat("#,##0.00"); // formatter for dollar & cents
         Income totalTotal = new Income();
         int accountIdx = 0;
-        for (Account account : mSetting.getSelectedAccountList(mainModel)) {
-            final Map<String, Income> securityIncomeMap = accountSecurityIncomeList.get(accountIdx++);
+        for (Account account : accounts) {
+            final Map<String, Income> securityIncomeMap = accountSecurityIncomeList.get(accountIdx++).getKey();
 
             final Line accountLine = new Line();
             accountLine.sName = account.getName();
@@ -1030,7 +1234,7 @@ public class ReportDialogController {
         return reportStr.toString();
     }
 
-    private String InvestTransReport() throws ModelException {
+    private String InvestTransReport(ReportTask task, List<Account> accounts) throws ModelException {
         StringBuilder reportStr = new StringBuilder("Investment Transaction Report from "
                 + mSetting.getStartDate() + " to " + mSetting.getEndDate() + "\n");
         if (mSetting.getSelectedTradeActionSet().isEmpty()) {
@@ -1071,11 +1275,23 @@ public class ReportDialogController {
         final DecimalFormat dcFormat = new DecimalFormat("#,##0.00"); // formatter for dollar & cents
         final DecimalFormat qpFormat = new DecimalFormat("#,##0.000"); // formatter for quantity and price
 
+        // the lines and the totals of an account
+        class AccountLines {
+            private final List<Line> lineList = new ArrayList<>();
+            private BigDecimal commissionAmt = BigDecimal.ZERO;
+            private BigDecimal cashAmt = BigDecimal.ZERO;
+            private BigDecimal invAmt = BigDecimal.ZERO;
+        }
+
         BigDecimal totalCommissionAmt = BigDecimal.ZERO;
         BigDecimal totalCashAmt = BigDecimal.ZERO;
         BigDecimal totalInvAmt = BigDecimal.ZERO;
-        for (Account account : mSetting.getSelectedAccountList(mainModel)) {
-            for (Transaction t : mainModel.getAccountTransactionList(account)) {
+        for (AccountLines accountLines : task.computeAccountParts(accounts, account -> {
+            // DecimalFormat is not thread safe
+            final DecimalFormat accountDCFormat = (DecimalFormat) dcFormat.clone();
+            final DecimalFormat accountQPFormat = (DecimalFormat) qpFormat.clone();
+            final AccountLines accountLines = new AccountLines();
+            for (TransactionRecord t : mainModel.getAccountTransactionRecordList(account)) {
                 LocalDate tDate = t.getTDate();
                 if (tDate.isBefore(mSetting.getStartDate()))
                     continue;
@@ -1092,26 +1308,32 @@ public class ReportDialogController {
                     line.ta = t.getTradeAction().name();
                     line.sName = sName;
                     line.memo = t.getMemo() == null ? "" : t.getMemo();
-                    line.price = t.getPrice() == null ? "" : qpFormat.format(t.getPrice());
-                    line.quantity = t.getQuantity() == null ? "" : qpFormat.format(t.getQuantity());
+                    line.price = t.getPrice() == null ? "" : accountQPFormat.format(t.getPrice());
+                    line.quantity = t.getQuantity() == null ? "" : accountQPFormat.format(t.getQuantity());
                     BigDecimal comm = t.getCommission();
                     if (comm != null) {
-                        line.commission = dcFormat.format(t.getCommission());
-                        totalCommissionAmt = totalCommissionAmt.add(comm);
+                        line.commission = accountDCFormat.format(t.getCommission());
+                        accountLines.commissionAmt = accountLines.commissionAmt.add(comm);
                     }
                     BigDecimal cash = t.cashFlow();
                     if (cash != null) {
-                        line.cashAmt = dcFormat.format(cash);
-                        totalCashAmt = totalCashAmt.add(cash);
+                        line.cashAmt = accountDCFormat.format(cash);
+                        accountLines.cashAmt = accountLines.cashAmt.add(cash);
                     }
                     BigDecimal inv = t.getInvestAmount();
                     if (inv != null) {
-                        line.invAmt = dcFormat.format(inv);
-                        totalInvAmt = totalInvAmt.add(inv);
+                        line.invAmt = accountDCFormat.format(inv);
+                        accountLines.invAmt = accountLines.invAmt.add(inv);
                     }
-                    lineList.add(line);
+                    accountLines.lineList.add(line);
                 }
             }
+            return accountLines;
+        })) {
+            lineList.addAll(accountLines.lineList);
+            totalCommissionAmt = totalCommissionAmt.add(accountLines.commissionAmt);
+            totalCashAmt = totalCashAmt.add(accountLines.cashAmt);
+            totalInvAmt = totalInvAmt.add(accountLines.invAmt);
         }
         Line total = new Line();
         total.date = "Total";
@@ -1170,7 +1392,7 @@ public class ReportDialogController {
         return reportStr.toString();
     }
 
-    private String CapitalGainsReport() throws DaoException, ModelException {
+    private String CapitalGainsReport(ReportTask task, List<Account> accounts) throws ModelException {
         class Line {
             private String aName = "";  // account name
             private String sName = "";  // security name
@@ -1214,35 +1436,39 @@ public class ReportDialogController {
         // convert ID's to names
         final Set<String> securityNameSet = mapSecurityIDSetToNameSet(mSetting.getSelectedSecurityIDSet());
 
-        for (int accountID : mSetting.getSelectedAccountIDSet()) {
-            final Account account = mainModel.getAccount(a -> a.getID() == accountID).orElse(null);
-            if (account == null)
-                continue;
-            ObservableList<Transaction> accountTransactions = mainModel.getAccountTransactionList(account);
-            for (Transaction t : new FilteredList<>(accountTransactions, p -> {
+        // the lines and the totals of an account
+        class AccountGains {
+            private BigDecimal stCostBasis = BigDecimal.ZERO;
+            private BigDecimal stPnL = BigDecimal.ZERO;
+            private BigDecimal ltCostBasis = BigDecimal.ZERO;
+            private BigDecimal ltPnL = BigDecimal.ZERO;
+            private final List<Line> detailLTGLines = new ArrayList<>();
+            private final List<Line> detailSTGLines = new ArrayList<>();
+            private final List<Line> transactionLTGLines = new ArrayList<>();
+            private final List<Line> transactionSTGLines = new ArrayList<>();
+        }
+
+        for (AccountGains accountGains : task.computeAccountParts(accounts, account -> {
+            // DecimalFormat is not thread safe
+            final DecimalFormat accountDCFormat = (DecimalFormat) dcFormat.clone();
+            final DecimalFormat accountQPFormat = (DecimalFormat) qpFormat.clone();
+            final AccountGains accountGains = new AccountGains();
+            final List<TransactionRecord> accountTransactions = mainModel.getAccountTransactionRecordList(account);
+            mainModel.computeRealizedGains(accountTransactions, mSetting.getEndDate(), p -> {
                 final String sName = mainModel.getSecurity(p.getSecurityID())
                                 .map(Security::getName).orElse(NO_SECURITY);
                 return ((p.getTradeAction() == Transaction.TradeAction.SELL ||
                         p.getTradeAction() == Transaction.TradeAction.CVTSHRT) && securityNameSet.contains(sName) &&
                         (!p.getTDate().isBefore(mSetting.getStartDate())) &&
                         (!p.getTDate().isAfter(mSetting.getEndDate())));
-            })) {
-                final String sName = mainModel.getSecurity(t.getSecurityID())
-                        .map(Security::getName).orElse("");
-                final SecurityHolding securityHolding = mainModel.computeSecurityHoldings(accountTransactions,
-                        t.getTDate(), t.getID()).stream().filter(sh -> sh.getSecurityName().equals(sName))
-                        .findAny().orElseThrow(() -> new ModelException(ModelException.ErrorCode.INVALID_TRANSACTION,
-                                account.getName() + " " + t.getTradeAction() + " " + t.getQuantity() + " on "
-                                        + t.getTDate(), null));
-                final List<SpecifyLotInfo> matchLotList =
-                        securityHolding.processTransaction(t, mainModel.getMatchInfoList(t.getID()));
-                final List<SpecifyLotInfo> stgLotList = new ArrayList<>();
-                final List<SpecifyLotInfo> ltgLotList = new ArrayList<>();
-                for (SpecifyLotInfo sli : matchLotList) {
+            }, (t, sName, matchLotList) -> {
+                final List<RealizedGainEngine.ClosedLot> stgLotList = new ArrayList<>();
+                final List<RealizedGainEngine.ClosedLot> ltgLotList = new ArrayList<>();
+                for (RealizedGainEngine.ClosedLot sli : matchLotList) {
                     Line line = new Line();
                     line.aName = account.getName();
                     line.sName = sName;
-                    line.quantity = qpFormat.format(sli.getSelectedShares());
+                    line.quantity = accountQPFormat.format(sli.getSelectedShares());
                     final BigDecimal costBasis, proceeds;
                     final BigDecimal realizedPNL = sli.getRealizedPNL();
                     if (t.getTradeAction().equals(Transaction.TradeAction.SELL)) {
@@ -1257,21 +1483,21 @@ public class ReportDialogController {
                         costBasis = sli.getProceeds().negate();
                         proceeds = costBasis.add(realizedPNL);
                     }
-                    line.proceeds = dcFormat.format(proceeds);
-                    line.costBasis = dcFormat.format(costBasis);
-                    line.realizedGL = dcFormat.format(realizedPNL);
+                    line.proceeds = accountDCFormat.format(proceeds);
+                    line.costBasis = accountDCFormat.format(costBasis);
+                    line.realizedGL = accountDCFormat.format(realizedPNL);
                     if (sli.isShortTerm(t.getTDate())) {
-                        detailSTGLines.add(line);
+                        accountGains.detailSTGLines.add(line);
                         stgLotList.add(sli);
 
-                        totalSTCostBasis = totalSTCostBasis.add(costBasis);
-                        totalSTPnL = totalSTPnL.add(realizedPNL);
+                        accountGains.stCostBasis = accountGains.stCostBasis.add(costBasis);
+                        accountGains.stPnL = accountGains.stPnL.add(realizedPNL);
                     } else {
-                        detailLTGLines.add(line);
+                        accountGains.detailLTGLines.add(line);
                         ltgLotList.add(sli);
 
-                        totalLTCostBasis = totalLTCostBasis.add(costBasis);
-                        totalLTPnL = totalLTPnL.add(realizedPNL);
+                        accountGains.ltCostBasis = accountGains.ltCostBasis.add(costBasis);
+                        accountGains.ltPnL = accountGains.ltPnL.add(realizedPNL);
                     }
                 }
                 if (!stgLotList.isEmpty()) {
@@ -1282,7 +1508,7 @@ public class ReportDialogController {
                     BigDecimal costBasis = BigDecimal.ZERO;
                     BigDecimal pnl = BigDecimal.ZERO;
                     BigDecimal quantity = BigDecimal.ZERO;
-                    for (SpecifyLotInfo sli : stgLotList) {
+                    for (RealizedGainEngine.ClosedLot sli : stgLotList) {
                         if (!sli.getDate().isEqual(stgLotList.get(0).getDate()))
                             lotDateStr = "Various"; // more than one date
 
@@ -1294,18 +1520,18 @@ public class ReportDialogController {
                         // The covering transaction is a sell
                         line.sDate = t.getTDate().toString();
                         line.bDate = lotDateStr;
-                        line.costBasis = dcFormat.format(costBasis);
-                        line.proceeds = dcFormat.format(pnl.add(costBasis));
+                        line.costBasis = accountDCFormat.format(costBasis);
+                        line.proceeds = accountDCFormat.format(pnl.add(costBasis));
                     } else {
                         // The covering transaction is a short covering buy
                         line.bDate = t.getTDate().toString();
                         line.sDate = lotDateStr;
-                        line.costBasis = dcFormat.format(pnl.add(costBasis).negate());
-                        line.proceeds = dcFormat.format(costBasis.negate());
+                        line.costBasis = accountDCFormat.format(pnl.add(costBasis).negate());
+                        line.proceeds = accountDCFormat.format(costBasis.negate());
                     }
-                    line.quantity = qpFormat.format(quantity);
-                    line.realizedGL = dcFormat.format(pnl);
-                    transactionSTGLines.add(line);
+                    line.quantity = accountQPFormat.format(quantity);
+                    line.realizedGL = accountDCFormat.format(pnl);
+                    accountGains.transactionSTGLines.add(line);
                 }
                 if (!ltgLotList.isEmpty()) {
                     Line line = new Line();
@@ -1315,7 +1541,7 @@ public class ReportDialogController {
                     BigDecimal costBasis = BigDecimal.ZERO;
                     BigDecimal pnl = BigDecimal.ZERO;
                     BigDecimal quantity = BigDecimal.ZERO;
-                    for (SpecifyLotInfo sli : ltgLotList) {
+                    for (RealizedGainEngine.ClosedLot sli : ltgLotList) {
                         if (!sli.getDate().isEqual(ltgLotList.get(0).getDate()))
                             lotDateStr = "Various"; // more than one date
 
@@ -1327,20 +1553,30 @@ public class ReportDialogController {
                         // the covering transaction is a sell
                         line.sDate = t.getTDate().toString();
                         line.bDate = lotDateStr;
-                        line.costBasis = dcFormat.format(costBasis);
-                        line.proceeds = dcFormat.format(costBasis.add(pnl));
+                        line.costBasis = accountDCFormat.format(costBasis);
+                        line.proceeds = accountDCFormat.format(costBasis.add(pnl));
                     } else {
                         // short covering buy
                         line.bDate = t.getTDate().toString();
                         line.sDate = lotDateStr;
-                        line.costBasis = dcFormat.format(costBasis.add(pnl).negate());
-                        line.proceeds = dcFormat.format(costBasis.negate());
+                        line.costBasis = accountDCFormat.format(costBasis.add(pnl).negate());
+                        line.proceeds = accountDCFormat.format(costBasis.negate());
                     }
-                    line.quantity = qpFormat.format(quantity);
-                    line.realizedGL = dcFormat.format(pnl);
-                    transactionLTGLines.add(line);
+                    line.quantity = accountQPFormat.format(quantity);
+                    line.realizedGL = accountDCFormat.format(pnl);
+                    accountGains.transactionLTGLines.add(line);
                 }
-            }
+            });
+            return accountGains;
+        })) {
+            totalSTCostBasis = totalSTCostBasis.add(accountGains.stCostBasis);
+            totalSTPnL = totalSTPnL.add(accountGains.stPnL);
+            totalLTCostBasis = totalLTCostBasis.add(accountGains.ltCostBasis);
+            totalLTPnL = totalLTPnL.add(accountGains.ltPnL);
+            detailLTGLines.addAll(accountGains.detailLTGLines);
+            detailSTGLines.addAll(accountGains.detailSTGLines);
+            transactionLTGLines.addAll(accountGains.transactionLTGLines);
+            transactionSTGLines.addAll(accountGains.transactionSTGLines);
         }
 
         Line totalSTGLine = new Line();
@@ -1457,7 +1693,7 @@ public class ReportDialogController {
         return reportSB.toString();
     }
 
-    private String BankTransReport() throws ModelException {
+    private String BankTransReport(ReportTask task, List<Account> accounts) throws ModelException {
         StringBuilder reportStr = new StringBuilder("Banking Transaction Report from "
                 + mSetting.getStartDate() + " to " + mSetting.getEndDate() + "\n");
 
@@ -1504,8 +1740,17 @@ public class ReportDialogController {
         final Pattern memoPattern = mSetting.getMemoContains().isEmpty() ?
                 null : Pattern.compile(mSetting.getMemoRegEx() ?
                 mSetting.getMemoContains() : "(?i)" + Pattern.quote(mSetting.getMemoContains()));
-        for (Account account : mSetting.getSelectedAccountList(mainModel)) {
-            for (Transaction t : mainModel.getAccountTransactionList(account)) {
+        // the lines and the total of an account
+        class AccountLines {
+            private final List<Line> lineList = new ArrayList<>();
+            private BigDecimal amount = BigDecimal.ZERO;
+        }
+
+        for (AccountLines accountLines : task.computeAccountParts(accounts, account -> {
+            // DecimalFormat is not thread safe
+            final DecimalFormat accountDCFormat = (DecimalFormat) dcFormat.clone();
+            final AccountLines accountLines = new AccountLines();
+            for (TransactionRecord t : mainModel.getAccountTransactionRecordList(account)) {
                 LocalDate tDate = t.getTDate();
                 if (tDate.isAfter(mSetting.getEndDate()))
                     break; // we are done with this account
@@ -1529,9 +1774,9 @@ public class ReportDialogController {
                             line.aName = account.getName();
                             line.memo = st.getMemo() == null ? "" : st.getMemo();
                             line.category = categoryIDConverter.toString(st.getCategoryID());
-                            line.amount = dcFormat.format(st.getAmount());
-                            totalAmount = totalAmount.add(st.getAmount());
-                            lineList.add(line);
+                            line.amount = accountDCFormat.format(st.getAmount());
+                            accountLines.amount = accountLines.amount.add(st.getAmount());
+                            accountLines.lineList.add(line);
                         }
                     }
                 } else if (mSetting.getSelectedCategoryIDSet().contains(t.getCategoryID())
@@ -1551,12 +1796,16 @@ public class ReportDialogController {
                     } else {
                         line.desc = t.getPayee() == null ? "" : t.getPayee();
                     }
-                    line.amount = dcFormat.format(amount);
-                    totalAmount = totalAmount.add(amount);
+                    line.amount = accountDCFormat.format(amount);
+                    accountLines.amount = accountLines.amount.add(amount);
 
-                    lineList.add(line);
+                    accountLines.lineList.add(line);
                 }
             }
+            return accountLines;
+        })) {
+            lineList.addAll(accountLines.lineList);
+            totalAmount = totalAmount.add(accountLines.amount);
         }
         Line total = new Line();
         total.date = "Total";
@@ -1599,7 +1848,7 @@ public class ReportDialogController {
         return reportStr.toString();
     }
 
-    private String CostBasisReport() throws ModelException {
+    private String CostBasisReport(ReportTask task, List<Account> accounts) throws ModelException {
         final LocalDate date = mSetting.getEndDate();
         final String EOL = System.lineSeparator();
         final StringBuilder outputSB = new StringBuilder("Cost Basis as of " + date + EOL + EOL);
@@ -1621,13 +1870,12 @@ public class ReportDialogController {
         final DecimalFormat pqFormatter = ConverterUtil.getPriceQuantityFormatInstance();
 
         // compute holdings and calculate column width
-        final Map<Integer, List<SecurityHolding>> accountSecurityHoldingMap = new HashMap<>();
+        final List<List<SecurityHolding>> accountSecurityHoldingList = task.computeAccountParts(accounts, account ->
+                mainModel.computeRecordSecurityHoldings(mainModel.getAccountTransactionRecordList(account),
+                                date, -1).stream().filter(sh -> securityNameSet.contains(sh.getSecurityName()))
+                        .collect(Collectors.toList()));
         final DecimalFormat decimalFormat = ConverterUtil.getDollarCentFormatInstance();
-        for (Account account : mSetting.getSelectedAccountList(mainModel)) {
-            final List<SecurityHolding> shList =
-                    mainModel.computeSecurityHoldings(mainModel.getAccountTransactionList(account), date, -1)
-                            .stream().filter(sh -> securityNameSet.contains(sh.getSecurityName()))
-                            .collect(Collectors.toList());
+        for (List<SecurityHolding> shList : accountSecurityHoldingList) {
             for (SecurityHolding sh : shList) {
                 final int len = sh.getSecurityName().length();
                 if (len > nameLen)
@@ -1665,7 +1913,6 @@ public class ReportDialogController {
                         pnlLen = lotPnLString.length();
                 }
             }
-            accountSecurityHoldingMap.put(account.getID(), shList);
         }
 
         // prepare report
@@ -1680,9 +1927,9 @@ public class ReportDialogController {
 
                 .append(EOL);
         outputSB.append(separator).append(EOL).append(EOL);
-        for (Account account : mSetting.getSelectedAccountList(mainModel)) {
-            outputSB.append(account.getName()).append(EOL);
-            final List<SecurityHolding> shList = accountSecurityHoldingMap.get(account.getID());
+        for (int i = 0; i < accounts.size(); i++) {
+            outputSB.append(accounts.get(i).getName()).append(EOL);
+            final List<SecurityHolding> shList = accountSecurityHoldingList.get(i);
             for (SecurityHolding sh : shList) {
                 outputSB.append(String.format("  %-" + nameLen + "s", sh.getLabel()))
                         .append(String.format("  %" + pLen + "s", pqFormatter.format(sh.getPrice())))
@@ -1708,24 +1955,24 @@ public class ReportDialogController {
         return outputSB.toString();
     }
 
-    private String NAVReport() throws ModelException {
+    private String NAVReport(ReportTask task, List<Account> accounts) throws ModelException {
         final LocalDate date = mSetting.getEndDate();
-        StringBuilder outputStr = new StringBuilder("NAV Report as of " + date + "\n\n");
+        final String header = "NAV Report as of " + date + "\n\n";
+        task.appendOutput(header);
 
-        BigDecimal total = BigDecimal.ZERO;
-        String separator0 = new String(new char[90]).replace("\0", "-");
-        String separator1 = new String(new char[90]).replace("\0", "=");
-        final DecimalFormat dcFormat = new DecimalFormat("#,##0.00"); // formatter for dollar & cents
-        final DecimalFormat qpFormat = new DecimalFormat("#,##0.000"); // formatter for quantity and price
+        final String separator0 = new String(new char[90]).replace("\0", "-");
+        final String separator1 = new String(new char[90]).replace("\0", "=");
 
-        for (Account account : mSetting.getSelectedAccountList(mainModel)) {
+        // the section of each account has fixed column widths, so it is streamed out once it is done
+        final List<Pair<String, BigDecimal>> accountOutputList = task.computeAccountParts(accounts, account -> {
+            final DecimalFormat dcFormat = new DecimalFormat("#,##0.00"); // formatter for dollar & cents
+            final DecimalFormat qpFormat = new DecimalFormat("#,##0.000"); // formatter for quantity and price
+            final StringBuilder outputStr = new StringBuilder();
             List<SecurityHolding> shList =
-                    mainModel.computeSecurityHoldings(mainModel.getAccountTransactionList(account), date, -1);
+                    mainModel.computeRecordSecurityHoldings(mainModel.getAccountTransactionRecordList(account),
+                            date, -1);
             int shListLen = shList.size();
 
-            // aggregate total
-            total = total.add(shList.get(shListLen-1).getMarketValue());
-
             // print account total
             outputStr.append(String.format("%-55s%35s\n", account.getName(),
                     dcFormat.format(shList.get(shListLen - 1).getMarketValue())));
@@ -1744,14 +1991,138 @@ public class ReportDialogController {
             }
             outputStr.append(separator1).append("\n");
             outputStr.append("\n");
+            return new Pair<>(outputStr.toString(), shList.get(shListLen - 1).getMarketValue());
+        }, accountOutput -> task.appendOutput(accountOutput.getKey()));
+
+        final StringBuilder outputStr = new StringBuilder(header);
+        BigDecimal total = BigDecimal.ZERO;
+        for (Pair<String, BigDecimal> accountOutput : accountOutputList) {
+            outputStr.append(accountOutput.getKey());
+            total = total.add(accountOutput.getValue()); // aggregate total
         }
 
         // print out total
+        final DecimalFormat dcFormat = new DecimalFormat("#,##0.00"); // formatter for dollar & cents
         outputStr.append(String.format("%-55s%35s\n", "Total", dcFormat.format(total)));
 
         return outputStr.toString();
     }
 
+    /**
+     * the dates of the ends of the periods of a frequency between the start date and the end date,
+     * the end date is always included as the end of the last, possibly partial, period.
+     * @param startDate - the start date
+     * @param endDate - the end date
+     * @param frequency - the frequency
+     * @return the list of dates in ascending order, empty if the end date is before the start date
+     */
+    static List<LocalDate> periodEndDates(LocalDate startDate, LocalDate endDate, Frequency frequency) {
+        final List<LocalDate> dates = new ArrayList<>();
+        if (endDate.isBefore(startDate))
+            return dates;
+        for (LocalDate date = periodEndDate(startDate, frequency); date.isBefore(endDate);
+             date = periodEndDate(date.plusDays(1), frequency))
+            dates.add(date);
+        dates.add(endDate);
+        return dates;
+    }
+
+    // the last day of the period containing the date
+    private static LocalDate periodEndDate(LocalDate date, Frequency frequency) {
+        switch (frequency) {
+            case MONTHLY:
+                return date.with(TemporalAdjusters.lastDayOfMonth());
+            case QUARTERLY:
+                return LocalDate.of(date.getYear(), ((date.getMonthValue() - 1) / 3) * 3 + 3, 1)
+                        .with(TemporalAdjusters.lastDayOfMonth());
+            case ANNUAL:
+                return date.with(TemporalAdjusters.lastDayOfYear());
+            case DAILY:
+            default:
+                return date;
+        }
+    }
+
+    private String NAVHistoryReport(ReportTask task, List<Account> accounts) throws ModelException {
+        // load the transactions first, the history starts no earlier than the first transaction
+        final Map<Integer, List<TransactionRecord>> accountTransactionsMap = new HashMap<>();
+        LocalDate startDate = mSetting.getEndDate();
+        for (List<TransactionRecord> tList : task.computeAccountParts(accounts,
+                mainModel::getAccountTransactionRecordList)) {
+            if (tList.isEmpty())
+                continue;
+            accountTransactionsMap.put(tList.get(0).getAccountID(), tList);
+            if (tList.get(0).getTDate().isBefore(startDate))
+                startDate = tList.get(0).getTDate();
+        }
+        if (mSetting.getStartDate().isAfter(startDate))
+            startDate = mSetting.getStartDate();
+        final List<LocalDate> dates = periodEndDates(startDate, mSetting.getEndDate(), mSetting.getFrequency());
+
+        // the net asset values of each account on each of the dates, one pass for each account
+        final List<List<BigDecimal>> accountNAVList = task.computeAccountParts(accounts, account -> {
+            final List<BigDecimal> navList = new ArrayList<>(dates.size());
+            mainModel.computeRecordSecurityHoldingsSeries(
+                    accountTransactionsMap.getOrDefault(account.getID(), List.of()), dates,
+                    (date, shList) -> navList.add(shList.get(shList.size() - 1).getMarketValue()));
+            return navList;
+        });
+
+        // a table of dates by accounts, with the total at the end
+        final List<String[]> table = new ArrayList<>();
+        final String[] header = new String[accounts.size() + 2];
+        header[0] = "Date";
+        for (int j = 0; j < accounts.size(); j++)
+            header[j+1] = accounts.get(j).getName();
+        header[accounts.size()+1] = "Total";
+        table.add(header);
+
+        final DecimalFormat dcFormat = new DecimalFormat("#,##0.00"); // formatter for dollar & cents
+        final List<String[]> lineList = new ArrayList<>();
+        lineList.add(header);
+        final int[] columnLen = new int[header.length];
+        for (int j = 0; j < header.length; j++)
+            columnLen[j] = Math.max(j == 0 ? 10 : 12, header[j].length());
+        for (int i = 0; i < dates.size(); i++) {
+            final String[] row = new String[header.length];
+            final String[] line = new String[header.length];
+            row[0] = line[0] = dates.get(i).toString();
+            BigDecimal total = BigDecimal.ZERO;
+            for (int j = 0; j < accounts.size(); j++) {
+                final BigDecimal nav = accountNAVList.get(j).get(i);
+                total = total.add(nav);
+                row[j+1] = nav.toPlainString();
+                line[j+1] = dcFormat.format(nav);
+            }
+            row[header.length-1] = total.toPlainString();
+            line[header.length-1] = dcFormat.format(total);
+            table.add(row);
+            lineList.add(line);
+            for (int j = 0; j < header.length; j++)
+                columnLen[j] = Math.max(columnLen[j], line[j].length());
+        }
+        task.setTable(table);
+
+        final int gap = 2;
+        final StringBuilder formatSB = new StringBuilder("%-" + columnLen[0] + "s");
+        int lineLen = columnLen[0];
+        for (int j = 1; j < header.length; j++) {
+            formatSB.append("%").append(gap + columnLen[j]).append("s");
+            lineLen += gap + columnLen[j];
+        }
+        final String formatStr = formatSB.append("\n").toString();
+        final String separator = new String(new char[lineLen]).replace("\0", "=");
+
+        final StringBuilder outputSB = new StringBuilder("NAV History from " + startDate + " to "
+                + mSetting.getEndDate() + " (" + mSetting.getFrequency() + ")\n\n");
+        for (int i = 0; i < lineList.size(); i++) {
+            outputSB.append(String.format(formatStr, (Object[]) lineList.get(i)));
+            if (i == 0)
+                outputSB.append(separator).append("\n");
+        }
+        return outputSB.toString();
+    }
+
     private Pair<LocalDate, LocalDate> mapDatePeriod(DatePeriod dp) {
         LocalDate startDate, endDate, today = LocalDate.now();
         int year, month;
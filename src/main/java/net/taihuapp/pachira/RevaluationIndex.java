@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * RevaluationIndex keeps, for each account, the cash and the security positions behind its current
+ * balance, and for each security, the accounts with a position in it.  When a price changes, only the
+ * accounts holding the security are revalued, from the cached quantities and without replaying any
+ * transactions.
+ *
+ * The valuations are recorded whenever an account balance is computed from the transactions, so any
+ * transaction change, which always recomputes the balance, also refreshes the valuation.
+ */
+class RevaluationIndex {
+
+    /**
+     * the position of an account in a security
+     */
+    static class Position {
+        private final BigDecimal quantity;
+        private final List<TransactionRecord> splitList; // stock splits up to the valuation date, date ordered
+        private BigDecimal marketValue; // null if the security has no price
+
+        Position(BigDecimal quantity, List<TransactionRecord> splitList, BigDecimal marketValue) {
+            this.quantity = quantity;
+            this.splitList = splitList == null ? List.of() : splitList;
+            this.marketValue = marketValue;
+        }
+
+        BigDecimal getQuantity() { return quantity; }
+        List<TransactionRecord> getSplitList() { return splitList; }
+        BigDecimal getMarketValue() { return marketValue; }
+        void setMarketValue(BigDecimal marketValue) { this.marketValue = marketValue; }
+    }
+
+    /**
+     * the cash and positions of an account on a date
+     */
+    static class Valuation {
+        private final LocalDate date;
+        private BigDecimal cash = BigDecimal.ZERO;
+        private final Map<Integer, Position> positionMap = new HashMap<>(); // keyed by security id
+
+        Valuation(LocalDate date) { this.date = date; }
+
+        LocalDate getDate() { return date; }
+        void setCash(BigDecimal cash) { this.cash = cash; }
+        void putPosition(int securityID, Position position) { positionMap.put(securityID, position); }
+        Position getPosition(int securityID) { return positionMap.get(securityID); }
+
+        // cash plus the market values of the positions with prices
+        BigDecimal getTotal() {
+            BigDecimal total = cash;
+            for (Position position : positionMap.values()) {
+                if (position.getMarketValue() != null)
+                    total = total.add(position.getMarketValue());
+            }
+            return total;
+        }
+    }
+
+    // account id and its valuation
+    private final Map<Integer, Valuation> accountValuationMap = new HashMap<>();
+    // security id and the ids of the accounts with a position in it
+    private final Map<Integer, Set<Integer>> securityAccountIDMap = new HashMap<>();
+
+    /**
+     * record the valuation of an account, replacing the previous one
+     * @param accountID - the account id
+     * @param valuation - the valuation
+     */
+    synchronized void put(int accountID, Valuation valuation) {
+        remove(accountID);
+        accountValuationMap.put(accountID, valuation);
+        for (Integer securityID : valuation.positionMap.keySet())
+            securityAccountIDMap.computeIfAbsent(securityID, k -> new HashSet<>()).add(accountID);
+    }
+
+    /**
+     * forget the valuation of an account
+     * @param accountID - the account id
+     */
+    synchronized void remove(int accountID) {
+        final Valuation old = accountValuationMap.remove(accountID);
+        if (old == null)
+            return;
+        for (Integer securityID : old.positionMap.keySet()) {
+            final Set<Integer> accountIDSet = securityAccountIDMap.get(securityID);
+            if (accountIDSet != null) {
+                accountIDSet.remove(accountID);
+                if (accountIDSet.isEmpty())
+                    securityAccountIDMap.remove(securityID);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        accountValuationMap.clear();
+        securityAccountIDMap.clear();
+    }
+
+    synchronized Valuation get(int accountID) { return accountValuationMap.get(accountID); }
+
+    /**
+     * @param securityIDs - the security ids
+     * @return the ids of the accounts with a position in any of the securities
+     */
+    synchronized Set<Integer> getAccountIDs(Collection<Integer> securityIDs) {
+        final Set<Integer> accountIDSet = new HashSet<>();
+        for (Integer securityID : securityIDs)
+            accountIDSet.addAll(securityAccountIDMap.getOrDefault(securityID, Set.of()));
+        return accountIDSet;
+    }
+}
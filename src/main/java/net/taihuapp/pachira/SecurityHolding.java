@@ -100,6 +100,19 @@ public class SecurityHolding implements LotView {
                     getMarketValueProperty(), getCostBasisProperty()));
     }
 
+    /**
+     * make a copy with a deep copy of the lots, the price is not copied
+     * @return a copy of the security holding
+     */
+    SecurityHolding copy() {
+        final SecurityHolding securityHolding = new SecurityHolding(securityName, decimalScale);
+        final List<SecurityLot> lotList = new ArrayList<>(securityLotList.size());
+        for (SecurityLot lot : securityLotList)
+            lotList.add(new SecurityLot(lot));
+        securityHolding.securityLotList.addAll(lotList);
+        return securityHolding;
+    }
+
     /**
      * adjust stock split for each lot, and attribute the rounding error to the lot
      * with most quantity.
@@ -148,7 +161,7 @@ public class SecurityHolding implements LotView {
     // assume the security name of the transaction matches securityName
     // for transaction of trade action being SELL or CVTSHRT, return the matched (either via MatchInfo or FIFO)
     // SpecifyLotInfo list.
-    List<SpecifyLotInfo> processTransaction(final Transaction t, final List<MatchInfo> matchInfoList) {
+    List<SpecifyLotInfo> processTransaction(final TransactionRecord t, final List<MatchInfo> matchInfoList) {
         final List<SpecifyLotInfo> specifyLotInfoList = new ArrayList<>();
         // handle stock split
         if (t.getTradeAction() == Transaction.TradeAction.STKSPLIT) {
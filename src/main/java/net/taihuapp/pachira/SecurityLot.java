@@ -49,6 +49,18 @@ public class SecurityLot implements LotView {
                 t.getSignedQuantity(), t.getCostBasis(), t.getPrice(), scale);
     }
 
+    SecurityLot(TransactionRecord t, int scale) {
+        this(t.getID(), t.getTradeAction(), t.getADate() != null ? t.getADate() : t.getTDate(),
+                t.getSignedQuantity(), t.getCostBasis(), t.getPrice(), scale);
+    }
+
+    // copy constructor, market price is not copied
+    SecurityLot(SecurityLot lot) {
+        this(lot.getTransactionID(), lot.getTradeAction(), lot.getDate(), lot.getQuantity(), lot.getCostBasis(),
+                lot.getPrice(), lot.getScale());
+        setCostBasis(lot.getCostBasis()); // keep the scale of the original cost basis
+    }
+
     // d should be the acquired date
     SecurityLot(int tid, Transaction.TradeAction ta, LocalDate d, BigDecimal q, BigDecimal c, BigDecimal p, int scale) {
         transactionID = tid;
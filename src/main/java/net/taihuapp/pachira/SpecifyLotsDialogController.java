@@ -171,13 +171,13 @@ public class SpecifyLotsDialogController {
         }
         mTotalSharesLabel.setText(qStr);
 
-        Account account = mainModel.getAccount(a -> a.getID() == t.getAccountID()).orElse(null);
+        Account account = mainModel.getAccount(t.getAccountID()).orElse(null);
         if (account == null) {
             mLogger.error("Invalid account ID {}", t.getAccountID());
             return;
         }
-        List<SecurityHolding> shList = mainModel.computeSecurityHoldings(mainModel.getAccountTransactionList(account),
-                t.getTDate(), t.getID());
+        List<SecurityHolding> shList = mainModel.computeRecordSecurityHoldings(
+                mainModel.getAccountTransactionRecordList(account), t.getTDate(), t.getID());
         mSpecifyLotInfoList.clear(); // make sure nothing in the list
         for (SecurityHolding s : shList) {
             if (s.getSecurityName().equals(securityName)) {
@@ -44,7 +44,7 @@ public class Transaction {
 
         final StringBuilder stringBuilder = new StringBuilder();
 
-        final Account account = mainModel.getAccount(a -> a.getID() == getAccountID())
+        final Account account = mainModel.getAccount(getAccountID())
                 .orElseThrow(() -> new ModelException(ModelException.ErrorCode.INVALID_TRANSACTION,
                         "Transaction " + this + " has an invalid account ID", null));
         final boolean isBanking = !account.getType().isGroup(Account.Type.Group.INVESTING);
@@ -338,38 +338,8 @@ public class Transaction {
 
     private void bindProperties() {
         // SignedQuantity depends on TradeAction and Quantity
-        mSignedQuantityProperty.bind(Bindings.createObjectBinding(() -> {
-            switch (getTradeAction()) {
-                case SELL:
-                case SHTSELL:
-                case SHRSOUT:
-                    return getQuantity() == null ? BigDecimal.ZERO : getQuantity().negate();
-                case BUY:
-                case CVTSHRT:
-                case DEPOSIT:
-                case DIV:
-                case CGLONG:
-                case CGMID:
-                case CGSHORT:
-                case INTINC:
-                case MISCINC:
-                case MISCEXP:
-                case REINVDIV:
-                case REINVINT:
-                case REINVSH:
-                case REINVMD:
-                case REINVLG:
-                case RTRNCAP:
-                case SHRSIN:
-                case WITHDRAW:
-                case MARGINT:
-                case STKSPLIT:
-                    return getQuantity();
-                default:
-                    mLogger.error("getSignedQuantity not implemented for {}", getTradeAction());
-                    return getQuantity();
-            }
-        }, mTradeActionProperty, mQuantityProperty));
+        mSignedQuantityProperty.bind(Bindings.createObjectBinding(() ->
+                signedQuantity(getTradeAction(), getQuantity()), mTradeActionProperty, mQuantityProperty));
 
         mPaymentProperty.bind(Bindings.createObjectBinding(() ->
             getTradeAction() == TradeAction.WITHDRAW ? getAmount() : BigDecimal.ZERO,
@@ -380,66 +350,110 @@ public class Transaction {
                 getTradeActionProperty(), getAmountProperty()));
 
         // mCashAmountProperty depends on TradeAction, Deposit, Payment
-        mCashAmountProperty.bind(Bindings.createObjectBinding(() -> isTransfer() ?
-                getDeposit().subtract(getPayment()) : cashFlow(),
+        mCashAmountProperty.bind(Bindings.createObjectBinding(() ->
+                        cashAmount(getAccountID(), getTradeAction(), getCategoryID(), getAmount()),
                 getTradeActionProperty(), getDepositProperty(), getPaymentProperty()));
 
         // mInvestAmountProperty depends on mTradeActionProperty and mAmountProperty
-        mInvestAmountProperty.bind(Bindings.createObjectBinding(() -> {
-            switch (getTradeAction()) {
-                case BUY:
-                case CVTSHRT:
-                case REINVDIV:
-                case REINVINT:
-                case REINVLG:
-                case REINVMD:
-                case REINVSH:
-                case SHRSIN:
-                    return getAmount().subtract(getAccruedInterest());
-                case SELL:
-                case SHTSELL:
-                case SHRSOUT:
-                case RTRNCAP:
-                    return getAmount().subtract(getAccruedInterest()).negate();
-                case CGLONG:
-                case CGMID:
-                case CGSHORT:
-                case DIV:
-                case INTINC:
-                case MARGINT:
-                case MISCEXP:
-                case MISCINC:
-                case STKSPLIT:
-                case DEPOSIT:
-                case WITHDRAW:
-                    return BigDecimal.ZERO;
-                default:
-                    mLogger.error("Investment Amount for TradingAction {} not implement yet", getTradeAction());
-                    return BigDecimal.ZERO;
-            }
-        }, getTradeActionProperty(), getAmountProperty(), getCategoryIDProperty()));
+        mInvestAmountProperty.bind(Bindings.createObjectBinding(() ->
+                investAmount(getTradeAction(), getAmount(), getAccruedInterest()),
+                getTradeActionProperty(), getAmountProperty(), getCategoryIDProperty()));
 
         // calculate prices
-        mPriceProperty.bind(Bindings.createObjectBinding(() -> {
-            // don't compute price for SHRSOUT, or any trade action without quantity.
-            if (!hasQuantity(getTradeAction()) || getTradeAction() == TradeAction.SHRSOUT)
-                return BigDecimal.ZERO;
+        mPriceProperty.bind(Bindings.createObjectBinding(() ->
+                price(getTradeAction(), getAmount(), getQuantity(), getCommission(), getAccruedInterest()),
+                getTradeActionProperty(), getAmountProperty(), getQuantityProperty(), getCommissionProperty(),
+                getAccruedInterestProperty()));
+    }
+
+    // signed quantity of a transaction with the given trade action and quantity
+    static BigDecimal signedQuantity(TradeAction ta, BigDecimal quantity) {
+        switch (ta) {
+            case SELL:
+            case SHTSELL:
+            case SHRSOUT:
+                return quantity == null ? BigDecimal.ZERO : quantity.negate();
+            case BUY:
+            case CVTSHRT:
+            case DEPOSIT:
+            case DIV:
+            case CGLONG:
+            case CGMID:
+            case CGSHORT:
+            case INTINC:
+            case MISCINC:
+            case MISCEXP:
+            case REINVDIV:
+            case REINVINT:
+            case REINVSH:
+            case REINVMD:
+            case REINVLG:
+            case RTRNCAP:
+            case SHRSIN:
+            case WITHDRAW:
+            case MARGINT:
+            case STKSPLIT:
+                return quantity;
+            default:
+                mLogger.error("getSignedQuantity not implemented for {}", ta);
+                return quantity;
+        }
+    }
 
-            final BigDecimal amount = getAmount();
-            final BigDecimal quantity = getQuantity() == null ? BigDecimal.ZERO : getQuantity();
-            final BigDecimal commission = getCommission() == null ? BigDecimal.ZERO : getCommission();
-            final BigDecimal accruedInterest = getAccruedInterest() == null ? BigDecimal.ZERO : getAccruedInterest();
-            if (quantity.signum() == 0)
+    // invest amount (cost basis) of a transaction with the given trade action, amount, and accrued interest
+    static BigDecimal investAmount(TradeAction ta, BigDecimal amount, BigDecimal accruedInterest) {
+        switch (ta) {
+            case BUY:
+            case CVTSHRT:
+            case REINVDIV:
+            case REINVINT:
+            case REINVLG:
+            case REINVMD:
+            case REINVSH:
+            case SHRSIN:
+                return amount.subtract(accruedInterest);
+            case SELL:
+            case SHTSELL:
+            case SHRSOUT:
+            case RTRNCAP:
+                return amount.subtract(accruedInterest).negate();
+            case CGLONG:
+            case CGMID:
+            case CGSHORT:
+            case DIV:
+            case INTINC:
+            case MARGINT:
+            case MISCEXP:
+            case MISCINC:
+            case STKSPLIT:
+            case DEPOSIT:
+            case WITHDRAW:
+                return BigDecimal.ZERO;
+            default:
+                mLogger.error("Investment Amount for TradingAction {} not implement yet", ta);
                 return BigDecimal.ZERO;
+        }
+    }
 
-            final BigDecimal subTotal;
-            if (getTradeAction() == TradeAction.SELL || getTradeAction() == TradeAction.SHTSELL)
-                subTotal = amount.add(commission).add(accruedInterest);
-            else
-                subTotal = amount.subtract(commission).subtract(accruedInterest);
-            return subTotal.divide(quantity, MainModel.PRICE_QUANTITY_FRACTION_LEN, RoundingMode.HALF_UP);
-        }, getTradeActionProperty(), getAmountProperty(), getQuantityProperty(), getCommissionProperty(),
-                getAccruedInterestProperty()));
+    // price of a transaction with the given fields
+    static BigDecimal price(TradeAction ta, BigDecimal amount, BigDecimal quantity, BigDecimal commission,
+                            BigDecimal accruedInterest) {
+        // don't compute price for SHRSOUT, or any trade action without quantity.
+        if (!hasQuantity(ta) || ta == TradeAction.SHRSOUT)
+            return BigDecimal.ZERO;
+
+        final BigDecimal q = quantity == null ? BigDecimal.ZERO : quantity;
+        final BigDecimal c = commission == null ? BigDecimal.ZERO : commission;
+        final BigDecimal ai = accruedInterest == null ? BigDecimal.ZERO : accruedInterest;
+        if (q.signum() == 0)
+            return BigDecimal.ZERO;
+
+        final BigDecimal subTotal;
+        if (ta == TradeAction.SELL || ta == TradeAction.SHTSELL)
+            subTotal = amount.add(c).add(ai);
+        else
+            subTotal = amount.subtract(c).subtract(ai);
+        return subTotal.divide(q, MainModel.PRICE_QUANTITY_FRACTION_LEN, RoundingMode.HALF_UP);
     }
 
     ValidationStatus validate() {
@@ -561,13 +575,18 @@ public class Transaction {
     // return 0 if a tradeAction has zero impact on cash balance
 
     public BigDecimal cashFlow() {
-        switch (getTradeAction()) {
+        return cashFlow(getTradeAction(), getAmount());
+    }
+
+    // cash flow of a transaction with the given trade action and amount
+    static BigDecimal cashFlow(TradeAction ta, BigDecimal amount) {
+        switch (ta) {
             case BUY:
             case CVTSHRT:
             case MARGINT:
             case MISCEXP:
             case WITHDRAW:
-                return getAmount().negate();
+                return amount.negate();
             case DIV:
             case INTINC:
             case CGLONG:
@@ -578,7 +597,7 @@ public class Transaction {
             case SELL:
             case SHTSELL:
             case DEPOSIT:
-                return getAmount();
+                return amount;
             case REINVDIV:
             case REINVINT:
             case REINVLG:
@@ -589,7 +608,7 @@ public class Transaction {
             case SHRSOUT:
                 return BigDecimal.ZERO;
             default:
-                mLogger.error("cash flow for TradingAction {} not implement yet", getTradeAction());
+                mLogger.error("cash flow for TradingAction {} not implement yet", ta);
                 return BigDecimal.ZERO;
         }
     }
@@ -678,6 +697,14 @@ public class Transaction {
         bindDescriptionProperty();
     }
 
+    // construct a transaction with properties from a transaction record
+    public Transaction(TransactionRecord r) {
+        this(r.getID(), r.getAccountID(), r.getTDate(), r.getADate(), r.getTradeAction(), r.getStatus(),
+                r.getSecurityID(), r.getReference(), r.getPayee(), r.getQuantity(), r.getOldQuantity(),
+                r.getMemo(), r.getCommission(), r.getAccruedInterest(), r.getAmount(), r.getCategoryID(),
+                r.getTagID(), r.getMatchID(), r.getMatchSplitID(), r.getSplitTransactionList(), r.getFITID());
+    }
+
     // copy constructor
     public Transaction(Transaction t0) {
         this(t0.getID(), t0.getAccountID(), t0.getTDate(), t0.getADate(), t0.getTradeAction(), t0.getStatus(),
@@ -692,9 +719,26 @@ public class Transaction {
     // also return false if this is a transfer to exAccountID
     // return true if this transaction is a transfer transaction to another account
     boolean isTransfer() {
-        int cid = getCategoryID();
+        return isTransfer(getAccountID(), getCategoryID());
+    }
 
-        return !(cid > -MainApp.MIN_ACCOUNT_ID || cid == -getAccountID());
+    // return true if a transaction with the category id in the account is a transfer to another account
+    static boolean isTransfer(int accountID, int categoryID) {
+        return !(categoryID > -MainApp.MIN_ACCOUNT_ID || categoryID == -accountID);
+    }
+
+    // cash amount of a transaction with the given fields, same as getCashAmount()
+    static BigDecimal cashAmount(int accountID, TradeAction ta, int categoryID, BigDecimal amount) {
+        if (!isTransfer(accountID, categoryID))
+            return cashFlow(ta, amount);
+        switch (ta) {
+            case DEPOSIT:
+                return amount;
+            case WITHDRAW:
+                return amount.negate();
+            default:
+                return BigDecimal.ZERO;
+        }
     }
 
     // return true if it is a cash transaction
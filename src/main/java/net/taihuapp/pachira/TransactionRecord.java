@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable transaction without any JavaFX properties, for computations which only
+ * read the transactions, such as holdings and reports.  The getters have the same
+ * meanings as those in Transaction.  Use new Transaction(record) to get a transaction
+ * for the UI.
+ */
+public final class TransactionRecord {
+
+    private final int id;
+    private final int accountID;
+    private final LocalDate tDate;
+    private final LocalDate aDate;
+    private final Transaction.TradeAction tradeAction;
+    private final Transaction.Status status;
+    private final int securityID;
+    private final String reference;
+    private final String payee;
+    private final BigDecimal quantity;
+    private final BigDecimal oldQuantity;
+    private final String memo;
+    private final BigDecimal commission;
+    private final BigDecimal accruedInterest;
+    private final BigDecimal amount;
+    private final int categoryID;
+    private final int tagID;
+    private final int matchID;
+    private final int matchSplitID;
+    private final List<SplitTransaction> splitTransactionList;
+    private final String fitid;
+
+    public TransactionRecord(int id, int accountID, LocalDate tDate, LocalDate aDate,
+                             Transaction.TradeAction ta, Transaction.Status s, int securityID, String reference,
+                             String payee, BigDecimal quantity, BigDecimal oldQuantity, String memo,
+                             BigDecimal commission, BigDecimal accruedInterest, BigDecimal amount,
+                             int categoryID, int tagID, int matchID, int matchSplitID,
+                             List<SplitTransaction> stList, String fitid) {
+        this.id = id;
+        this.accountID = accountID;
+        this.tDate = tDate;
+        this.aDate = aDate;
+        this.tradeAction = ta;
+        this.status = s;
+        this.securityID = securityID;
+        this.reference = reference;
+        this.payee = payee;
+        this.quantity = quantity;
+        this.oldQuantity = oldQuantity;
+        this.memo = memo;
+        this.commission = commission;
+        this.accruedInterest = accruedInterest == null ? BigDecimal.ZERO : accruedInterest;
+        this.amount = amount;
+        this.categoryID = categoryID;
+        this.tagID = tagID;
+        this.matchID = matchID;
+        this.matchSplitID = matchSplitID;
+        this.splitTransactionList = stList == null ?
+                Collections.emptyList() : Collections.unmodifiableList(stList);
+        this.fitid = fitid;
+    }
+
+    // snapshot of a transaction
+    TransactionRecord(Transaction t) {
+        this(t.getID(), t.getAccountID(), t.getTDate(), t.getADate(), t.getTradeAction(), t.getStatus(),
+                t.getSecurityID(), t.getReference(), t.getPayee(), t.getQuantity(), t.getOldQuantity(),
+                t.getMemo(), t.getCommission(), t.getAccruedInterest(), t.getAmount(), t.getCategoryID(),
+                t.getTagID(), t.getMatchID(), t.getMatchSplitID(), new ArrayList<>(t.getSplitTransactionList()),
+                t.getFITID());
+    }
+
+    public int getID() { return id; }
+    public int getAccountID() { return accountID; }
+    public LocalDate getTDate() { return tDate; }
+    public LocalDate getADate() { return aDate; }
+    public Transaction.TradeAction getTradeAction() { return tradeAction; }
+    public Transaction.Status getStatus() { return status; }
+    public int getSecurityID() { return securityID; }
+    public String getReference() { return reference; }
+    public String getPayee() { return payee; }
+    public BigDecimal getQuantity() { return quantity; }
+    public BigDecimal getOldQuantity() { return oldQuantity; }
+    public String getMemo() { return memo; }
+    public BigDecimal getCommission() { return commission; }
+    public BigDecimal getAccruedInterest() { return accruedInterest; }
+    public BigDecimal getAmount() { return amount; }
+    public int getCategoryID() { return categoryID; }
+    public int getTagID() { return tagID; }
+    public int getMatchID() { return matchID; }
+    public int getMatchSplitID() { return matchSplitID; }
+    public List<SplitTransaction> getSplitTransactionList() { return splitTransactionList; }
+    public boolean isSplit() { return !splitTransactionList.isEmpty(); }
+    public String getFITID() { return fitid; }
+
+    // the derived values, same as the bound properties in Transaction
+    public BigDecimal getSignedQuantity() { return Transaction.signedQuantity(tradeAction, quantity); }
+    public BigDecimal getCostBasis() { return getInvestAmount(); }
+    public BigDecimal getInvestAmount() { return Transaction.investAmount(tradeAction, amount, accruedInterest); }
+    public BigDecimal getPrice() {
+        return Transaction.price(tradeAction, amount, quantity, commission, accruedInterest);
+    }
+    public BigDecimal getCashAmount() { return Transaction.cashAmount(accountID, tradeAction, categoryID, amount); }
+    public BigDecimal cashFlow() { return Transaction.cashFlow(tradeAction, amount); }
+}
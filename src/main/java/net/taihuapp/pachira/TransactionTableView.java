@@ -139,7 +139,7 @@ class TransactionTableView extends TableView<Transaction> {
 
         mTransactionDateColumn.setCellValueFactory(cd -> cd.getValue().getTDateProperty());
         mTransactionAccountColumn.setCellValueFactory(cd ->
-                mainModel.getAccount(a -> a.getID() == cd.getValue().getAccountID())
+                mainModel.getAccount(cd.getValue().getAccountID())
                         .map(Account::getNameProperty).orElse(new ReadOnlyStringWrapper("")));
         mTransactionTradeActionColumn.setCellValueFactory(cd -> cd.getValue().getTradeActionProperty());
         mTransactionSecurityNameColumn.setCellValueFactory(cd -> mainModel.getSecurity(cd.getValue().getSecurityID())
@@ -166,8 +166,8 @@ class TransactionTableView extends TableView<Transaction> {
             if (t.getSplitTransactionList().size() > 0)
                 return new ReadOnlyStringWrapper("--Split--");
             final int categoryID = t.getCategoryID();
-            final Optional<Category> categoryOptional = mainModel.getCategory(c -> c.getID() == categoryID);
-            final Optional<Account> accountOptional = mainModel.getAccount(a -> a.getID() == -categoryID);
+            final Optional<Category> categoryOptional = mainModel.getCategory(categoryID);
+            final Optional<Account> accountOptional = mainModel.getAccount(-categoryID);
             if (categoryOptional.isPresent())
                 return categoryOptional.get().getNameProperty();
 
@@ -191,7 +191,7 @@ class TransactionTableView extends TableView<Transaction> {
             }
         });
         mTransactionDescriptionColumn.setCellValueFactory(cd -> cd.getValue().getDescriptionProperty());
-        mTransactionTagColumn.setCellValueFactory(cd -> mainModel.getTag(t -> t.getID() == cd.getValue().getTagID())
+        mTransactionTagColumn.setCellValueFactory(cd -> mainModel.getTag(cd.getValue().getTagID())
                 .map(Tag::getNameProperty).orElse(new ReadOnlyStringWrapper("")));
         mTransactionQuantityColumn.setCellValueFactory(cd -> cd.getValue().getQuantityProperty());
         mTransactionInvestAmountColumn.setCellValueFactory(cd -> cd.getValue().getInvestAmountProperty());
@@ -96,12 +96,15 @@ public class AccountDCDao extends Dao<AccountDC, Integer> {
                 Arrays.stream(getKeyColumnNames())).toArray(String[]::new)) + ") VALUES ("
                 +  String.join(", ",
                 Collections.nCopies(getColumnNames().length + getKeyColumnNames().length, "?")) + ")";
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
             setPreparedStatement(preparedStatement, accountDC, true);
 
             preparedStatement.executeUpdate();
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_MERGE, "Merge AccountDC failed", e);
+        } finally {
+            unlockConnection();
         }
     }
 }
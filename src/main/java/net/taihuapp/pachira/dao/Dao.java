@@ -41,6 +41,27 @@ public abstract class Dao<T, K> {
      */
     Connection connection;
 
+    /**
+     * the read session owning the dao, null for the daos on the write connection
+     */
+    ReadSession readSession = null;
+
+    /**
+     * default number of statements sent to the database in one batch
+     */
+    static final int DEFAULT_BATCH_SIZE = 500;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * set the values of an element in a preparedStatement, used in batch operations
+     * @param <E> the type of the element
+     */
+    @FunctionalInterface
+    interface BatchSetter<E> {
+        void set(PreparedStatement preparedStatement, E e) throws SQLException;
+    }
+
     /** the table name, key column name(s), and other column names for storing T in database     */
     abstract String getTableName();
     abstract String[] getKeyColumnNames();
@@ -142,6 +163,87 @@ public abstract class Dao<T, K> {
         }
     }
 
+    /**
+     * take the writer lock of DaoManager before using the write connection, so the operation waits for a
+     * transaction on another thread, and no other thread uses the connection or its cached statements
+     * until the result sets are closed and unlockConnection is called.  A read session is used by a
+     * single thread, its daos do not take the lock.
+     */
+    void lockConnection() {
+        if (readSession == null)
+            DaoManager.getInstance().lockWriteConnection();
+    }
+
+    /**
+     * release the lock taken by lockConnection
+     */
+    void unlockConnection() {
+        if (readSession == null)
+            DaoManager.getInstance().unlockWriteConnection();
+    }
+
+    /**
+     * get a prepared statement for the sql command from the cache in DaoManager, or in the read session.
+     * The prepared statement is owned by the cache and should not be closed by the caller.  On the write
+     * connection, the caller should hold the lock from lockConnection.
+     * @param sqlCmd the sql command
+     * @param returnGeneratedKeys if true, the prepared statement returns generated keys
+     * @return the prepared statement with parameters cleared
+     * @throws SQLException from database operations
+     */
+    PreparedStatement getPreparedStatement(String sqlCmd, boolean returnGeneratedKeys) throws SQLException {
+        if (readSession != null)
+            return readSession.getPreparedStatement(this, sqlCmd, returnGeneratedKeys);
+        return DaoManager.getInstance().getPreparedStatement(this, sqlCmd, returnGeneratedKeys);
+    }
+
+    /**
+     * @return the number of statements sent to the database in one batch
+     */
+    public int getBatchSize() { return batchSize; }
+
+    /**
+     * set the number of statements sent to the database in one batch
+     * @param batchSize - a positive number
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Batch size should be positive, got " + batchSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * add a batch to the preparedStatement for each element, and execute in chunks of at most getBatchSize()
+     * @param preparedStatement the preparedStatement to be executed
+     * @param elements list of elements
+     * @param batchSetter set the preparedStatement for each element
+     * @param withGeneratedKeys if true, collect the generated keys.  The preparedStatement should be
+     *                          created with Statement.RETURN_GENERATED_KEYS
+     * @param <E> type of the elements
+     * @return list of generated keys in the order of the elements, or an empty list if withGeneratedKeys is false
+     * @throws SQLException from database operations
+     */
+    <E> List<Object> executeBatch(PreparedStatement preparedStatement, List<E> elements,
+                                  BatchSetter<E> batchSetter, boolean withGeneratedKeys) throws SQLException {
+        final List<Object> keyList = new ArrayList<>();
+        final int n = elements.size();
+        for (int start = 0; start < n; start += batchSize) {
+            final int end = Math.min(start + batchSize, n);
+            for (int i = start; i < end; i++) {
+                batchSetter.set(preparedStatement, elements.get(i));
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            if (withGeneratedKeys) {
+                try (ResultSet resultSet = preparedStatement.getGeneratedKeys()) {
+                    while (resultSet.next())
+                        keyList.add(resultSet.getObject(1));
+                }
+            }
+        }
+        return keyList;
+    }
+
     /**
      * get the object matches the key
      * @param key - the search key
@@ -149,7 +251,9 @@ public abstract class Dao<T, K> {
      * @throws DaoException from Dao operations
      */
     public Optional<T> get(K key) throws DaoException {
-        try (PreparedStatement preparedStatement = connection.prepareStatement(getSQLString(SQLCommand.GET))) {
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(getSQLString(SQLCommand.GET), false);
             setPreparedStatement(preparedStatement, key);
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
                 if (resultSet.next()) {
@@ -159,6 +263,8 @@ public abstract class Dao<T, K> {
             }
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "", e);
+        } finally {
+            unlockConnection();
         }
     }
 
@@ -169,11 +275,15 @@ public abstract class Dao<T, K> {
      * @throws DaoException from Dao operations
      */
     public int delete(K key) throws DaoException {
-        try (PreparedStatement preparedStatement = connection.prepareStatement(getSQLString(SQLCommand.DELETE))) {
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(getSQLString(SQLCommand.DELETE), false);
             setPreparedStatement(preparedStatement, key);
             return preparedStatement.executeUpdate();
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_DELETE, "", e);
+        } finally {
+            unlockConnection();
         }
     }
 
@@ -183,6 +293,7 @@ public abstract class Dao<T, K> {
      * @throws DaoException from Dao operations
      */
     public List<T> getAll() throws DaoException {
+        lockConnection();
         try (Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(getSQLString(SQLCommand.GET_ALL))) {
             List<T> tList = new ArrayList<>();
@@ -193,6 +304,8 @@ public abstract class Dao<T, K> {
         } catch (SQLException e) {
             // should log error first before re-throw
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "", e);
+        } finally {
+            unlockConnection();
         }
     }
 
@@ -204,8 +317,9 @@ public abstract class Dao<T, K> {
      */
     @SuppressWarnings("unchecked")
     public K insert(T t) throws DaoException {
-        try (PreparedStatement preparedStatement = connection.prepareStatement(getSQLString(SQLCommand.INSERT),
-                Statement.RETURN_GENERATED_KEYS)) {
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(getSQLString(SQLCommand.INSERT), true);
             setPreparedStatement(preparedStatement, t, !autoGenKey());
 
             preparedStatement.executeUpdate();
@@ -219,6 +333,47 @@ public abstract class Dao<T, K> {
                 return getKeyValue(t);
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_INSERT, "", e);
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    /**
+     * insert a list of objects in batches, all or none are inserted.
+     * @param tList - the list of objects to be inserted
+     * @return - the list of keys, in the order of tList
+     * @throws DaoException from Dao operations
+     */
+    @SuppressWarnings("unchecked")
+    public List<K> insertBatch(List<T> tList) throws DaoException {
+        final DaoManager daoManager = DaoManager.getInstance();
+        try {
+            daoManager.beginTransaction();
+            final List<K> keyList = new ArrayList<>();
+            try (PreparedStatement preparedStatement = connection.prepareStatement(getSQLString(SQLCommand.INSERT),
+                    Statement.RETURN_GENERATED_KEYS)) {
+                final List<Object> generatedKeyList = executeBatch(preparedStatement, tList,
+                        (ps, t) -> setPreparedStatement(ps, t, !autoGenKey()), autoGenKey());
+                if (autoGenKey()) {
+                    if (generatedKeyList.size() != tList.size())
+                        throw new DaoException(DaoException.ErrorCode.FAIL_TO_INSERT, "Expect "
+                                + tList.size() + " generated keys, got " + generatedKeyList.size(), null);
+                    generatedKeyList.forEach(k -> keyList.add((K) k));
+                } else {
+                    tList.forEach(t -> keyList.add(getKeyValue(t)));
+                }
+            } catch (SQLException e) {
+                throw new DaoException(DaoException.ErrorCode.FAIL_TO_INSERT, "Batch insert failed", e);
+            }
+            daoManager.commit();
+            return keyList;
+        } catch (DaoException e) {
+            try {
+                daoManager.rollback();
+            } catch (DaoException e1) {
+                e.addSuppressed(e1);
+            }
+            throw e;
         }
     }
 
@@ -229,12 +384,16 @@ public abstract class Dao<T, K> {
      * @throws DaoException from Dao operations
      */
     public int update(T t) throws DaoException {
-        try (PreparedStatement preparedStatement = connection.prepareStatement(getSQLString(SQLCommand.UPDATE))) {
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(getSQLString(SQLCommand.UPDATE), false);
             setPreparedStatement(preparedStatement, t, true);
 
             return preparedStatement.executeUpdate();
         } catch (SQLException e) {
             throw (new DaoException(DaoException.ErrorCode.FAIL_TO_UPDATE, "", e));
+        } finally {
+            unlockConnection();
         }
     }
 
@@ -243,10 +402,13 @@ public abstract class Dao<T, K> {
      * @throws DaoException from database operation
      */
     public void deleteAll() throws DaoException {
+        lockConnection();
         try (Statement statement = connection.createStatement()){
             statement.executeUpdate("DELETE FROM " + getTableName());
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_DELETE, "", e);
+        } finally {
+            unlockConnection();
         }
     }
 }
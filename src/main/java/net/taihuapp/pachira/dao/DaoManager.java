@@ -39,6 +39,8 @@ import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 /**
  * DaoManager class for file based H2 databases
@@ -47,7 +49,7 @@ public class DaoManager {
 
     // constants
     private static final String DB_VERSION_NAME = "DBVERSION";
-    private static final int DB_VERSION_VALUE = 22; // required DB_VERSION
+    private static final int DB_VERSION_VALUE = 27; // required DB_VERSION
     private static final String DB_OWNER = "ADMPACHIRA";
     private static final String DB_POSTFIX = ".mv.db";
     private static final String URL_PREFIX = "jdbc:h2:";
@@ -88,15 +90,68 @@ public class DaoManager {
 
     private static final int QUANTITY_TOTAL_LEN = 20;
 
+    // indexes for frequent lookups, each entry is index name, table name, and column list
+    private static final String[][] INDEX_DEFINITIONS = {
+            { "IDX_TRANSACTIONS_TRADEKEY", "TRANSACTIONS", "ACCOUNTID, DATE, TRADEACTION, AMOUNT" },
+            { "IDX_TRANSACTIONS_DATE", "TRANSACTIONS", "DATE" },
+            { "IDX_TRANSACTIONS_FITID", "TRANSACTIONS", "FITID" },
+            { "IDX_LOTMATCH_MATCHID", "LOTMATCH", "MATCHID" },
+            { "IDX_SPLITTRANSACTIONS_TYPE_TYPEID", "SPLITTRANSACTIONS", "TYPE, TYPE_ID" }
+    };
+
     // the logger
     private static final Logger logger = LogManager.getLogger(DaoManager.class);
 
-    // the connection to the database
+    // the connection to the database, only used by the thread holding writeLock
     private Connection connection = null;
 
-    // nested transaction levels
+    // the single writer.  A thread holds the lock from beginTransaction to the matching commit or rollback,
+    // and the daos hold it for each operation on the write connection, see Dao.lockConnection.
+    // Other threads wait for it, so the statements on the write connection never interleave.
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // nested transaction levels, only accessed by the thread holding writeLock
     private int transactionLevel = 0;
 
+    // maximum number of read only connections
+    private static final int MAX_READ_SESSIONS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    // pool of read only connections, open when the connection is open
+    private ReadSessionPool readSessionPool = null;
+
+    // price history cache shared by the price daos on all the connections
+    private final SecurityPriceCache priceCache = new SecurityPriceCache(SecurityIDPriceDao.MAX_CACHED_SECURITIES);
+
+    // key for cached prepared statements
+    static class StatementKey {
+        private final Class<?> daoClass;
+        private final String sqlCmd;
+        private final boolean returnGeneratedKeys;
+
+        StatementKey(Class<?> daoClass, String sqlCmd, boolean returnGeneratedKeys) {
+            this.daoClass = daoClass;
+            this.sqlCmd = sqlCmd;
+            this.returnGeneratedKeys = returnGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final StatementKey that = (StatementKey) o;
+            return daoClass.equals(that.daoClass) && sqlCmd.equals(that.sqlCmd)
+                    && returnGeneratedKeys == that.returnGeneratedKeys;
+        }
+
+        @Override
+        public int hashCode() { return Objects.hash(daoClass, sqlCmd, returnGeneratedKeys); }
+    }
+
+    // prepared statements on the connection, keyed by the dao type and the sql command
+    private final Map<StatementKey, PreparedStatement> preparedStatementMap = new HashMap<>();
+    private long preparedStatementCacheHits = 0;
+    private long preparedStatementCacheMisses = 0;
+
     // private constructor
     private DaoManager() {}
 
@@ -109,15 +164,71 @@ public class DaoManager {
     // postfix for H2 database file
     public static String getDBPostfix() { return DB_POSTFIX; }
 
+    /**
+     * @return true if the current thread is in a jdbc transaction on the write connection
+     */
+    public boolean isInTransaction() { return writeLock.isHeldByCurrentThread() && transactionLevel > 0; }
+
+    /**
+     * @return true if any thread is in a jdbc transaction, or running a statement, on the write connection
+     */
+    public boolean hasOpenTransaction() { return writeLock.isLocked(); }
+
+    /**
+     * take the writer lock for an operation on the write connection, wait if another thread holds it.
+     * Each call should be paired with unlockWriteConnection.
+     */
+    void lockWriteConnection() { writeLock.lock(); }
+
+    /**
+     * release the writer lock taken by lockWriteConnection
+     */
+    void unlockWriteConnection() { writeLock.unlock(); }
+
+    // make sure the current thread is the one in the transaction
+    private void checkWriterThread(String operation) {
+        if (!isInTransaction())
+            throw new IllegalStateException(operation + " expects positive transactionLevel on "
+                    + Thread.currentThread().getName() + ", got "
+                    + (writeLock.isLocked() && !writeLock.isHeldByCurrentThread() ?
+                    "a transaction on another thread" : String.valueOf(transactionLevel)));
+    }
+
+    /**
+     * borrow a read only session from the pool, for queries on threads other than the one
+     * using the write connection.  The session should be closed after use.
+     * @return a read only session
+     * @throws DaoException - if the connection is not open, or failed to open a read only connection
+     */
+    public ReadSession openReadSession() throws DaoException {
+        if (readSessionPool == null)
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_OPEN_CONNECTION, "Database is not open");
+        return readSessionPool.borrow();
+    }
+
+    /**
+     * @return the maximum number of read only sessions open at the same time
+     */
+    public int getMaxReadSessions() { return MAX_READ_SESSIONS; }
+
+    // open the pool of read only connections to the database of the write connection
+    private void openReadSessionPool(String fileName, String password) {
+        readSessionPool = new ReadSessionPool(URL_PREFIX + fileName + ";" + CIPHER_CLAUSE + IF_EXIST_CLAUSE,
+                DB_OWNER, password + " " + password, MAX_READ_SESSIONS, this::newDao);
+    }
+
     /**
      * begin a jdbc transaction (transactions can be nested)
      * @throws DaoException - from jdbc operations
      */
     public void beginTransaction() throws DaoException {
+        writeLock.lock(); // wait for the transaction on another thread to finish
         if (transactionLevel++ == 0) {
             try {
                 connection.setAutoCommit(false);
             } catch (SQLException e) {
+                transactionLevel--;
+                writeLock.unlock();
                 throw new DaoException(DaoException.ErrorCode.FAIL_TO_SET_AUTOCOMMIT, "setAutoCommit failure", e);
             }
         }
@@ -128,8 +239,7 @@ public class DaoManager {
      * @throws DaoException - jdbc operations
      */
     public void commit() throws DaoException {
-        if (transactionLevel <= 0)
-            throw new IllegalStateException("commit expects positive transactionLevel, got " + transactionLevel);
+        checkWriterThread("commit");
 
         if (transactionLevel == 1) {
             // setAutoCommit(true) includes commit operation
@@ -138,10 +248,13 @@ public class DaoManager {
             } catch (SQLException e) {
                 throw new DaoException(DaoException.ErrorCode.FAIL_TO_SET_AUTOCOMMIT, "setAutoCommit failure", e);
             }
+            // the prices loaded on the read only connections before the commit might be stale
+            priceCache.newGeneration();
         }
 
         // decrement transaction level, if we didn't experience an exception during commit
         transactionLevel--;
+        writeLock.unlock();
     }
 
     /**
@@ -149,18 +262,19 @@ public class DaoManager {
      * @throws DaoException - from jdbc operations
      */
     public void rollback() throws DaoException {
-        if (transactionLevel <= 0)
-            throw new IllegalStateException("rollback expects positive transactionLevel, got " + transactionLevel);
+        checkWriterThread("rollback");
 
         // if we're here, that means some sql before commit failed, or commit failed,
         // decrement transactionLevel first, then rollback
-        if (--transactionLevel == 0) {
-            try {
+        try {
+            if (--transactionLevel == 0) {
                 connection.rollback();
                 connection.setAutoCommit(true);
-            } catch (SQLException e) {
-                throw new DaoException(DaoException.ErrorCode.FAIL_TO_ROLLBACK, "rollback failure", e);
             }
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_ROLLBACK, "rollback failure", e);
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -234,6 +348,7 @@ public class DaoManager {
      * @throws DaoException from database operations
      */
     public String backup() throws DaoException {
+        writeLock.lock();
         try (PreparedStatement preparedStatement = connection.prepareStatement("Backup to ?")) {
             // dbFileName doesn't have postfix
             final String dbFileName = getDBFileName();
@@ -244,6 +359,8 @@ public class DaoManager {
             return backupDBFileName;
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_BACKUP, "", e);
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -257,6 +374,7 @@ public class DaoManager {
      * @throws DaoException - from DB operations
      */
     public void openConnection(String fileName, String password, boolean isNew) throws DaoException {
+        writeLock.lock();
         try {
             Class.forName("org.h2.Driver");
             String url = URL_PREFIX + fileName + ";" + CIPHER_CLAUSE;
@@ -315,27 +433,103 @@ public class DaoManager {
                             "Database update failed.  Please restore from " + backupFileName
                                     + " and use previous version of Pachira", e);
                 }
+
+                // make sure the indexes are in place
+                verifyIndexes();
             }
+
+            openReadSessionPool(fileName, password);
         } catch (ClassNotFoundException e) {
             throw new DaoException(DaoException.ErrorCode.DB_DRIVER_NOT_FOUND, "Can't find h2 driver", e);
         } catch (SQLException e) {
             throw DaoException.fromSQLException(e);
+        } finally {
+            writeLock.unlock();
         }
     }
 
     /**
-     * close the connection and clear daoMap
-     * @throws DaoException - db operations
+     * get a prepared statement for the dao and the sql command from the cache, prepare a new one if not found.
+     * The returned prepared statement is owned by the cache, the caller should close the result sets,
+     * but not the prepared statement.  The caller should hold the writer lock until the result sets are
+     * closed, see Dao.lockConnection.
+     * @param dao - the dao using the prepared statement
+     * @param sqlCmd - the sql command
+     * @param returnGeneratedKeys - if true, the statement returns generated keys
+     * @return a prepared statement with parameters cleared
+     * @throws SQLException - from database operations
      */
-    public void closeConnection() throws DaoException {
-        if (connection != null) {
+    PreparedStatement getPreparedStatement(Dao<?, ?> dao, String sqlCmd, boolean returnGeneratedKeys)
+            throws SQLException {
+        if (!writeLock.isHeldByCurrentThread())
+            throw new IllegalStateException("Statement on the write connection without the writer lock on "
+                    + Thread.currentThread().getName());
+        final StatementKey key = new StatementKey(dao.getClass(), sqlCmd, returnGeneratedKeys);
+        PreparedStatement preparedStatement = preparedStatementMap.get(key);
+        if (preparedStatement != null && !preparedStatement.isClosed()) {
+            preparedStatementCacheHits++;
+            preparedStatement.clearParameters();
+            return preparedStatement;
+        }
+        preparedStatementCacheMisses++;
+        preparedStatement = returnGeneratedKeys ?
+                connection.prepareStatement(sqlCmd, Statement.RETURN_GENERATED_KEYS) :
+                connection.prepareStatement(sqlCmd);
+        preparedStatementMap.put(key, preparedStatement);
+        return preparedStatement;
+    }
+
+    /**
+     * @return the number of prepared statements found in the cache
+     */
+    public long getPreparedStatementCacheHits() { return preparedStatementCacheHits; }
+
+    /**
+     * @return the number of prepared statements not found in the cache
+     */
+    public long getPreparedStatementCacheMisses() { return preparedStatementCacheMisses; }
+
+    // close all cached prepared statements and clear the cache
+    private void clearPreparedStatementCache() {
+        for (PreparedStatement preparedStatement : preparedStatementMap.values()) {
             try {
-                connection.close();
-                daoMap.clear();
+                preparedStatement.close();
             } catch (SQLException e) {
-                throw new DaoException(DaoException.ErrorCode.FAIL_TO_CLOSE_CONNECTION, "close connection failure", e);
+                logger.warn("Failed to close prepared statement", e);
             }
         }
+        preparedStatementMap.clear();
+        logger.debug("Prepared statement cache hits: {}, misses: {}",
+                preparedStatementCacheHits, preparedStatementCacheMisses);
+    }
+
+    /**
+     * close the connection and clear daoMap and the prepared statement cache
+     * @throws DaoException - db operations
+     */
+    public void closeConnection() throws DaoException {
+        writeLock.lock();
+        try {
+            if (readSessionPool != null) {
+                readSessionPool.close();
+                readSessionPool = null;
+            }
+            priceCache.invalidateAll();
+            if (connection != null) {
+                try {
+                    clearPreparedStatementCache();
+                    connection.close();
+                    synchronized (daoMap) {
+                        daoMap.clear();
+                    }
+                } catch (SQLException e) {
+                    throw new DaoException(DaoException.ErrorCode.FAIL_TO_CLOSE_CONNECTION,
+                            "close connection failure", e);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     // returns true if SETTINGS table exists, false otherwise
@@ -427,18 +621,24 @@ public class DaoManager {
     }
 
     public Optional<UUID> getClientUID() throws DaoException {
+        writeLock.lock();
         try {
             return getSetting(CLIENT_UID_NAME).map(UUID::fromString);
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed to get Client UID", e);
+        } finally {
+            writeLock.unlock();
         }
     }
 
     public void putClientUID(UUID uuid) throws DaoException {
+        writeLock.lock();
         try {
             putSetting(CLIENT_UID_NAME, uuid.toString());
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_INSERT, "Failed to put Client UID", e);
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -465,6 +665,7 @@ public class DaoManager {
     }
 
     public String getDefaultPath(String pathID) throws DaoException {
+        writeLock.lock();
         try (Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery("select * from SETTINGS where SETTING_NAME like '"
                      + pathID + "%' order by length(SETTING_NAME), SETTING_NAME")) {
@@ -475,6 +676,8 @@ public class DaoManager {
             return sb.toString();
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed to get default path " + pathID, e);
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -691,6 +894,12 @@ public class DaoManager {
         executeUpdateQuery(sqlCmd);
 
         createLoanTables();
+
+        createSearchIndexTables();
+
+        createPayeeStatsTable();
+
+        createIndexes();
     }
 
     // bring database to the latest version
@@ -707,7 +916,27 @@ public class DaoManager {
             updateDB(oldV, newV-1); // recursively bring from oldV up.
 
         // need to run this to update DBVERSION
-        if (newV == 22) {
+        if (newV == 27) {
+            // the payee statistics are counted by year, rebuild them
+            executeUpdateQuery("drop table if exists " + PayeeStatsIndex.TABLE_NAME);
+            createPayeeStatsTable();
+            PayeeStatsIndex.build(connection);
+        } else if (newV == 26) {
+            // the trade key index covers account id and date, the old index on them is redundant
+            createIndexes();
+            executeUpdateQuery("drop index if exists IDX_TRANSACTIONS_ACCOUNTID_DATE");
+        } else if (newV == 25) {
+            // add the payee statistics and populate it
+            createPayeeStatsTable();
+            PayeeStatsIndex.build(connection);
+        } else if (newV == 24) {
+            // add the transaction search index and populate it
+            createSearchIndexTables();
+            TransactionSearchIndex.build(connection, Dao.DEFAULT_BATCH_SIZE);
+        } else if (newV == 23) {
+            // add indexes on frequently searched columns
+            createIndexes();
+        } else if (newV == 22) {
             // update from 21 to 22
             // first drop not null on TICKER column in SECURITY table
             executeUpdateQuery("alter table SECURITIES alter column TICKER varchar("
@@ -944,6 +1173,63 @@ public class DaoManager {
         executeUpdateQuery(sqlCmd);
     }
 
+    // tables for the inverted index of transaction payee and memo, see TransactionSearchIndex
+    private void createSearchIndexTables() throws SQLException {
+        executeUpdateQuery("create table " + TransactionSearchIndex.TOKEN_TABLE_NAME + " ("
+                + "TOKEN varchar(" + TRANSACTION_MEMO_LEN + ") NOT NULL, "
+                + "primary key (TOKEN))");
+        executeUpdateQuery("create table " + TransactionSearchIndex.POSTING_TABLE_NAME + " ("
+                + "TOKEN varchar(" + TRANSACTION_MEMO_LEN + ") NOT NULL, "
+                + "TRANSACTIONID integer NOT NULL, "
+                + "primary key (TOKEN, TRANSACTIONID))");
+        executeUpdateQuery("create index IDX_" + TransactionSearchIndex.POSTING_TABLE_NAME + "_TRANSACTIONID on "
+                + TransactionSearchIndex.POSTING_TABLE_NAME + " (TRANSACTIONID)");
+    }
+
+    // table for the usage statistics of the payees, see PayeeStatsIndex
+    private void createPayeeStatsTable() throws SQLException {
+        executeUpdateQuery("create table " + PayeeStatsIndex.TABLE_NAME + " ("
+                + "ACCOUNTID integer NOT NULL, "
+                + "PAYEE varchar(" + TRANSACTION_PAYEE_LEN + ") NOT NULL, "
+                + "CATEGORYID integer NOT NULL, "
+                + "USEYEAR integer NOT NULL, "
+                + "USECOUNT integer NOT NULL, "
+                + "primary key (ACCOUNTID, PAYEE, CATEGORYID, USEYEAR))");
+    }
+
+    // create the indexes in INDEX_DEFINITIONS if they don't exist
+    private void createIndexes() throws SQLException {
+        for (String[] indexDefinition : INDEX_DEFINITIONS) {
+            executeUpdateQuery("create index if not exists " + indexDefinition[0] + " on " + indexDefinition[1]
+                    + " (" + indexDefinition[2] + ")");
+        }
+    }
+
+    // check the indexes in INDEX_DEFINITIONS exist, recreate missing ones
+    private void verifyIndexes() throws SQLException {
+        final Set<String> indexNameSet = new HashSet<>();
+        final Set<String> tableNameSet = new HashSet<>();
+        for (String[] indexDefinition : INDEX_DEFINITIONS)
+            tableNameSet.add(indexDefinition[1]);
+        for (String tableName : tableNameSet) {
+            try (ResultSet resultSet = connection.getMetaData().getIndexInfo(null, "PUBLIC", tableName,
+                    false, false)) {
+                while (resultSet.next())
+                    indexNameSet.add(resultSet.getString("INDEX_NAME"));
+            }
+        }
+
+        boolean missing = false;
+        for (String[] indexDefinition : INDEX_DEFINITIONS) {
+            if (!indexNameSet.contains(indexDefinition[0])) {
+                logger.warn("Index {} on {} is missing", indexDefinition[0], indexDefinition[1]);
+                missing = true;
+            }
+        }
+        if (missing)
+            createIndexes();
+    }
+
     // create settings table and populate database version
     private void createSettingsTable() throws SQLException {
         executeUpdateQuery("create table SETTINGS (" +
@@ -966,6 +1252,7 @@ public class DaoManager {
      */
     public void changeDBPassword(List<String> passwords) throws DaoException {
         int numberOfPasswordsChanged = 0;
+        writeLock.lock();
         try {
             String url = connection.getMetaData().getURL();
             final File dbFile = new File(getDBFileName());
@@ -985,6 +1272,7 @@ public class DaoManager {
                 preparedStatement.execute();
                 numberOfPasswordsChanged++;
             }
+            openReadSessionPool(dbFile.getPath(), passwords.get(1));
         } catch (SQLException e) {
             final String msg;
             if (numberOfPasswordsChanged == 1)
@@ -992,6 +1280,8 @@ public class DaoManager {
             else
                 msg = "";
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_CHANGE_PASSWORD, msg, e);
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -1004,52 +1294,60 @@ public class DaoManager {
 
     private final Map<DaoType, Dao<?,?>> daoMap = new HashMap<>();
 
+    /**
+     * get the dao of the type on the write connection
+     * @param daoType - the type of the dao
+     * @return the dao
+     */
     public Dao<?,?> getDao(DaoType daoType) {
+        synchronized (daoMap) {
+            Dao<?,?> dao = daoMap.get(daoType);
+            if (dao == null) {
+                dao = newDao(daoType, connection, this::getDao);
+                daoMap.put(daoType, dao);
+            }
+            return dao;
+        }
+    }
+
+    // create a dao of the type on the connection, the daos it depends on are from getDao
+    private Dao<?,?> newDao(DaoType daoType, Connection connection, Function<DaoType, Dao<?,?>> getDao) {
         switch (daoType) {
             case ACCOUNT:
-                return daoMap.computeIfAbsent(daoType, o -> new AccountDao(connection));
+                return new AccountDao(connection);
             case SECURITY:
-                return daoMap.computeIfAbsent(daoType, o -> new SecurityDao(connection));
-            case TRANSACTION: {
-                final SplitTransactionListDao splitTransactionListDao =
-                        (SplitTransactionListDao) getDao(DaoType.SPLIT_TRANSACTION);
-                return daoMap.computeIfAbsent(daoType,
-                        o -> new TransactionDao(connection, splitTransactionListDao));
-            }
+                return new SecurityDao(connection);
+            case TRANSACTION:
+                return new TransactionDao(connection,
+                        (SplitTransactionListDao) getDao.apply(DaoType.SPLIT_TRANSACTION));
             case SPLIT_TRANSACTION:
-                return daoMap.computeIfAbsent(daoType, o -> new SplitTransactionListDao(connection));
+                return new SplitTransactionListDao(connection);
             case PAIR_TID_MATCH_INFO:
-                return daoMap.computeIfAbsent(daoType, o -> new PairTidMatchInfoListDao(connection));
+                return new PairTidMatchInfoListDao(connection);
             case SECURITYID_PRICE:
-                return daoMap.computeIfAbsent(daoType, o -> new SecurityIDPriceDao(connection));
+                return new SecurityIDPriceDao(connection, priceCache);
             case FIDATA:
-                return daoMap.computeIfAbsent(daoType, o -> new FIDataDao(connection));
+                return new FIDataDao(connection);
             case ACCOUNT_DC:
-                return daoMap.computeIfAbsent(daoType, o -> new AccountDCDao(connection));
+                return new AccountDCDao(connection);
             case DIRECT_CONNECTION:
-                return daoMap.computeIfAbsent(daoType, o -> new DirectConnectionDao(connection));
+                return new DirectConnectionDao(connection);
             case TAG:
-                return daoMap.computeIfAbsent(daoType, o -> new TagDao(connection));
+                return new TagDao(connection);
             case CATEGORY:
-                return daoMap.computeIfAbsent(daoType, o -> new CategoryDao(connection));
-            case REMINDER: {
-                final SplitTransactionListDao splitTransactionListDao =
-                        (SplitTransactionListDao) getDao(DaoType.SPLIT_TRANSACTION);
-                return daoMap.computeIfAbsent(daoType, o -> new ReminderDao(connection,
-                        splitTransactionListDao));
-            }
+                return new CategoryDao(connection);
+            case REMINDER:
+                return new ReminderDao(connection, (SplitTransactionListDao) getDao.apply(DaoType.SPLIT_TRANSACTION));
             case REMINDER_TRANSACTION:
-                return daoMap.computeIfAbsent(daoType, o -> new ReminderTransactionDao(connection));
+                return new ReminderTransactionDao(connection);
             case REPORT_SETTING:
-                ReportDetailDao reportDetailDao = (ReportDetailDao) getDao(DaoType.REPORT_DETAIL);
-                return daoMap.computeIfAbsent(daoType, o -> new ReportSettingDao(connection, reportDetailDao));
+                return new ReportSettingDao(connection, (ReportDetailDao) getDao.apply(DaoType.REPORT_DETAIL));
             case REPORT_DETAIL:
-                return daoMap.computeIfAbsent(daoType, o -> new ReportDetailDao(connection));
+                return new ReportDetailDao(connection);
             case LOAN:
-                final LoanTransactionDao loanTransactionDao = (LoanTransactionDao) getDao(DaoType.LOAN_TRANSACTION);
-                return daoMap.computeIfAbsent(daoType, o -> new LoanDao(connection, loanTransactionDao));
+                return new LoanDao(connection, (LoanTransactionDao) getDao.apply(DaoType.LOAN_TRANSACTION));
             case LOAN_TRANSACTION:
-                return daoMap.computeIfAbsent(daoType, o -> new LoanTransactionDao(connection));
+                return new LoanTransactionDao(connection);
             default:
                 throw new IllegalArgumentException("DaoType " + daoType + " not implemented");
         }
@@ -72,6 +72,7 @@ public class DirectConnectionDao extends Dao<DirectConnection, Integer> {
      */
     public Optional<DirectConnection> get(String name) throws DaoException {
         final String sqlCmd = "SELECT * FROM " + getTableName() + " WHERE NAME = ?";
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
             preparedStatement.setString(1, name);
 
@@ -82,6 +83,8 @@ public class DirectConnectionDao extends Dao<DirectConnection, Integer> {
             }
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "", e);
+        } finally {
+            unlockConnection();
         }
     }
 
@@ -94,12 +97,15 @@ public class DirectConnectionDao extends Dao<DirectConnection, Integer> {
         final String sqlCmd = "MERGE INTO " + getTableName()
                 + "(" + String.join(", ", getColumnNames()) + ") key(NAME) values("
                 + String.join(", ", Collections.nCopies(getColumnNames().length, "?")) + ")";
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
             setPreparedStatement(preparedStatement, directConnection, false);
 
             preparedStatement.executeUpdate();
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_MERGE, "", e);
+        } finally {
+            unlockConnection();
         }
     }
 }
@@ -79,6 +79,7 @@ public class LoanTransactionDao extends Dao<LoanTransaction, Integer> {
 
     List<LoanTransaction> getByLoanAccountId(int loanAccountId) throws DaoException {
         final String sqlCmd = "select * from " + getTableName() + " where LOAN_ACCOUNT_ID = ?";
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
             preparedStatement.setInt(1, loanAccountId);
 
@@ -92,17 +93,22 @@ public class LoanTransactionDao extends Dao<LoanTransaction, Integer> {
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
                     "Failed to get loan transactions for loan " + loanAccountId, e);
+        } finally {
+            unlockConnection();
         }
     }
 
     int deleteByLoanAccountId(int loanAccountId) throws DaoException {
         final String sqlCmd = "delete from " + getTableName() + " where LOAN_ACCOUNT_ID = ?";
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
             preparedStatement.setInt(1, loanAccountId);
             return preparedStatement.executeUpdate();
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_DELETE,
                     "Failed to delete loan transactions for loan " + loanAccountId, e);
+        } finally {
+            unlockConnection();
         }
     }
 }
@@ -25,10 +25,7 @@ import net.taihuapp.pachira.MatchInfo;
 
 import java.math.BigDecimal;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 /**
  * a Dao class for the pair of transaction id and the list of (lot) match info
@@ -79,6 +76,7 @@ public class PairTidMatchInfoListDao extends Dao<Pair<Integer, List<MatchInfo>>,
     public List<Integer> getByMatchId(int matchId) throws DaoException {
         final List<Integer> tidList = new ArrayList<>();
         final String sqlCmd = "select TRANSID from " + getTableName() + " where MATCHID = ?";
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
             preparedStatement.setInt(1, matchId);
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
@@ -88,10 +86,42 @@ public class PairTidMatchInfoListDao extends Dao<Pair<Integer, List<MatchInfo>>,
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
                     "Failed to get tid for match id = " + matchId, e);
+        } finally {
+            unlockConnection();
         }
         return tidList;
     }
 
+    /**
+     * get the match info of all the transactions of an account with one query
+     * @param accountID - the account id
+     * @return - a map of transaction id and its list of match info, ordered by match id.
+     *           transactions without match info are not in the map
+     * @throws DaoException - from database operation
+     */
+    public Map<Integer, List<MatchInfo>> getAccountMatchInfoMap(int accountID) throws DaoException {
+        final Map<Integer, List<MatchInfo>> matchInfoMap = new HashMap<>();
+        final String sqlCmd = "select l.TRANSID, l.MATCHID, l.MATCHQUANTITY from " + getTableName() + " l "
+                + "join TRANSACTIONS t on l.TRANSID = t.ID where t.ACCOUNTID = ? order by l.TRANSID, l.MATCHID";
+        lockConnection();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
+            preparedStatement.setInt(1, accountID);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    final Pair<Integer, List<MatchInfo>> integerListPair = fromResultSet(resultSet);
+                    matchInfoMap.computeIfAbsent(integerListPair.getKey(), k -> new ArrayList<>())
+                            .add(integerListPair.getValue().get(0));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to get Match Info for account " + accountID, e);
+        } finally {
+            unlockConnection();
+        }
+        return matchInfoMap;
+    }
+
     /**
      * this only return one MatchInfo in a singleton list as the value of a pair
      * @param resultSet the resultSet with information
@@ -115,6 +145,7 @@ public class PairTidMatchInfoListDao extends Dao<Pair<Integer, List<MatchInfo>>,
 
     @Override
     public Optional<Pair<Integer, List<MatchInfo>>> get(Integer key) throws DaoException {
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(getSQLString(SQLCommand.GET))) {
             setPreparedStatement(preparedStatement, key);
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
@@ -130,11 +161,14 @@ public class PairTidMatchInfoListDao extends Dao<Pair<Integer, List<MatchInfo>>,
             }
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed to get Match Info for " + key, e);
+        } finally {
+            unlockConnection();
         }
     }
 
     @Override
     public List<Pair<Integer, List<MatchInfo>>> getAll() throws DaoException {
+        lockConnection();
         try (Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(getSQLString(SQLCommand.GET_ALL))) {
             int tid = -1;
@@ -157,6 +191,8 @@ public class PairTidMatchInfoListDao extends Dao<Pair<Integer, List<MatchInfo>>,
             return fullList;
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed to getAll MatchInfo.", e);
+        } finally {
+            unlockConnection();
         }
     }
 
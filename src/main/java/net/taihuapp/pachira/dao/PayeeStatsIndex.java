@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira.dao;
+
+import net.taihuapp.pachira.Transaction;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The usage statistics of the payees.
+ *
+ * For each account, payee, category, and year, PAYEESTATS keeps the number of transactions, so the
+ * usage in a window of recent years can be counted.  The counts are adjusted by deltas inside the
+ * database transaction of a change, an inserted transaction adds one to its row, a deleted one
+ * subtracts one from its old row, and an updated one does both.  Rows counted down to zero are deleted.
+ */
+class PayeeStatsIndex {
+
+    static final String TABLE_NAME = "PAYEESTATS";
+
+    private static final String ADJUST_SQL = "merge into " + TABLE_NAME + " s using (values (cast(? as integer), "
+            + "cast(? as varchar), cast(? as integer), cast(? as integer), cast(? as integer))) "
+            + "v (ACCOUNTID, PAYEE, CATEGORYID, USEYEAR, USECOUNT) "
+            + "on s.ACCOUNTID = v.ACCOUNTID and s.PAYEE = v.PAYEE and s.CATEGORYID = v.CATEGORYID "
+            + "and s.USEYEAR = v.USEYEAR "
+            + "when matched then update set USECOUNT = s.USECOUNT + v.USECOUNT "
+            + "when not matched then insert (ACCOUNTID, PAYEE, CATEGORYID, USEYEAR, USECOUNT) "
+            + "values (v.ACCOUNTID, v.PAYEE, v.CATEGORYID, v.USEYEAR, v.USECOUNT)";
+    private static final String DELETE_EMPTY_SQL = "delete from " + TABLE_NAME
+            + " where ACCOUNTID = ? and PAYEE = ? and CATEGORYID = ? and USEYEAR = ? and USECOUNT <= 0";
+    private static final String GET_KEY_SQL = "select ACCOUNTID, PAYEE, CATEGORYID, DATE from TRANSACTIONS "
+            + "where ID = ?";
+
+    /**
+     * the account, payee, category, and year of a transaction
+     */
+    static class Key {
+        private final int accountID;
+        private final String payee;
+        private final int categoryID;
+        private final int year;
+
+        Key(int accountID, String payee, int categoryID, int year) {
+            this.accountID = accountID;
+            this.payee = payee == null ? "" : payee;
+            this.categoryID = categoryID;
+            this.year = year;
+        }
+
+        Key(Transaction t) { this(t.getAccountID(), t.getPayee(), t.getCategoryID(), t.getTDate().getYear()); }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            final Key key = (Key) o;
+            return accountID == key.accountID && categoryID == key.categoryID && year == key.year
+                    && payee.equals(key.payee);
+        }
+
+        @Override
+        public int hashCode() { return Objects.hash(accountID, payee, categoryID, year); }
+    }
+
+    private final Dao<?, ?> dao; // the owner dao, for prepared statements and batches
+    // incremented on each change, shared by the daos of the write connection and the read sessions
+    private static final AtomicLong VERSION = new AtomicLong(0);
+
+    PayeeStatsIndex(Dao<?, ?> dao) { this.dao = dao; }
+
+    /**
+     * @return a number changed whenever the statistics are changed
+     */
+    long getVersion() { return VERSION.get(); }
+
+    /**
+     * add newly inserted transactions to the statistics, should be called inside a database transaction
+     * @param tList - the inserted transactions
+     * @throws SQLException - from database operations
+     */
+    void add(List<Transaction> tList) throws SQLException {
+        final Map<Key, Integer> deltaMap = new LinkedHashMap<>();
+        for (Transaction t : tList)
+            deltaMap.merge(new Key(t), 1, Integer::sum);
+        adjust(deltaMap);
+    }
+
+    /**
+     * get the key of a transaction in the database, before it is updated or deleted
+     * @param tid - the transaction id
+     * @return the key, or empty if the transaction is not found
+     * @throws SQLException - from database operations
+     */
+    Optional<Key> getKey(int tid) throws SQLException {
+        final PreparedStatement preparedStatement = dao.getPreparedStatement(GET_KEY_SQL, false);
+        preparedStatement.setInt(1, tid);
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            if (resultSet.next())
+                return Optional.of(new Key(resultSet.getInt("ACCOUNTID"), resultSet.getString("PAYEE"),
+                        resultSet.getInt("CATEGORYID"), resultSet.getObject("DATE", LocalDate.class).getYear()));
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * adjust the counts of the keys, should be called inside a database transaction
+     * @param deltaMap - the keys and the changes of their counts
+     * @throws SQLException - from database operations
+     */
+    void adjust(Map<Key, Integer> deltaMap) throws SQLException {
+        final List<Map.Entry<Key, Integer>> entryList = new ArrayList<>();
+        final List<Key> decreasedList = new ArrayList<>();
+        for (Map.Entry<Key, Integer> entry : deltaMap.entrySet()) {
+            if (entry.getValue() != 0)
+                entryList.add(entry);
+            if (entry.getValue() < 0)
+                decreasedList.add(entry.getKey());
+        }
+        if (entryList.isEmpty())
+            return;
+
+        dao.executeBatch(dao.getPreparedStatement(ADJUST_SQL, false), entryList, (ps, entry) -> {
+            setKey(ps, entry.getKey());
+            ps.setInt(5, entry.getValue());
+        }, false);
+        if (!decreasedList.isEmpty())
+            dao.executeBatch(dao.getPreparedStatement(DELETE_EMPTY_SQL, false), decreasedList,
+                    PayeeStatsIndex::setKey, false);
+        VERSION.incrementAndGet();
+    }
+
+    private static void setKey(PreparedStatement preparedStatement, Key key) throws SQLException {
+        preparedStatement.setInt(1, key.accountID);
+        preparedStatement.setString(2, key.payee);
+        preparedStatement.setInt(3, key.categoryID);
+        preparedStatement.setInt(4, key.year);
+    }
+
+    /**
+     * scan all the statistics
+     * @param consumer - receives each row
+     * @throws SQLException - from database operations
+     */
+    void scan(TransactionDao.PayeeStatsConsumer consumer) throws SQLException {
+        final PreparedStatement preparedStatement = dao.getPreparedStatement("select ACCOUNTID, PAYEE, "
+                + "CATEGORYID, USEYEAR, USECOUNT from " + TABLE_NAME, false);
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                consumer.accept(resultSet.getInt("ACCOUNTID"), resultSet.getString("PAYEE"),
+                        resultSet.getInt("CATEGORYID"), resultSet.getInt("USEYEAR"), resultSet.getInt("USECOUNT"));
+            }
+        }
+    }
+
+    /**
+     * build the statistics of all transactions from scratch.  The table should be empty.
+     * @param connection - the database connection
+     * @throws SQLException - from database operations
+     */
+    static void build(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("insert into " + TABLE_NAME
+                    + " (ACCOUNTID, PAYEE, CATEGORYID, USEYEAR, USECOUNT) "
+                    + "select ACCOUNTID, coalesce(PAYEE, ''), CATEGORYID, year(DATE), count(ID) from TRANSACTIONS "
+                    + "group by ACCOUNTID, coalesce(PAYEE, ''), CATEGORYID, year(DATE)");
+        }
+    }
+}
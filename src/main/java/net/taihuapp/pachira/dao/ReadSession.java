@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A read only database connection borrowed from the pool in DaoManager, with its own daos and
+ * prepared statements.  A session is used by one thread at a time, and only for queries, the
+ * writes go through the daos from DaoManager.getDao.  Close the session to return it to the pool.
+ */
+public final class ReadSession implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ReadSession.class);
+
+    private final ReadSessionPool pool;
+    private final Connection connection;
+    private final Map<DaoManager.StatementKey, PreparedStatement> preparedStatementMap = new HashMap<>();
+    private final Map<DaoManager.DaoType, Dao<?,?>> daoMap = new HashMap<>();
+
+    ReadSession(ReadSessionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+    }
+
+    /**
+     * get a dao on the read only connection
+     * @param daoType - the type of the dao
+     * @return the dao
+     */
+    public Dao<?,?> getDao(DaoManager.DaoType daoType) {
+        Dao<?,?> dao = daoMap.get(daoType);
+        if (dao == null) {
+            dao = pool.newDao(daoType, connection, this::getDao);
+            dao.readSession = this;
+            daoMap.put(daoType, dao);
+        }
+        return dao;
+    }
+
+    // same as DaoManager.getPreparedStatement, on the read only connection
+    PreparedStatement getPreparedStatement(Dao<?, ?> dao, String sqlCmd, boolean returnGeneratedKeys)
+            throws SQLException {
+        final DaoManager.StatementKey key = new DaoManager.StatementKey(dao.getClass(), sqlCmd, returnGeneratedKeys);
+        PreparedStatement preparedStatement = preparedStatementMap.get(key);
+        if (preparedStatement != null && !preparedStatement.isClosed()) {
+            preparedStatement.clearParameters();
+            return preparedStatement;
+        }
+        preparedStatement = returnGeneratedKeys ?
+                connection.prepareStatement(sqlCmd, Statement.RETURN_GENERATED_KEYS) :
+                connection.prepareStatement(sqlCmd);
+        preparedStatementMap.put(key, preparedStatement);
+        return preparedStatement;
+    }
+
+    // drop the daos, together with their caches which might be out of date by the next borrower.
+    // the prepared statements are kept.
+    void reset() { daoMap.clear(); }
+
+    // close the prepared statements and the connection
+    void closeConnection() {
+        daoMap.clear();
+        try {
+            for (PreparedStatement preparedStatement : preparedStatementMap.values())
+                preparedStatement.close();
+            preparedStatementMap.clear();
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Failed to close read only connection", e);
+        }
+    }
+
+    /**
+     * return the session to the pool
+     */
+    @Override
+    public void close() { pool.release(this); }
+}
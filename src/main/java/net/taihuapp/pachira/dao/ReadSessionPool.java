@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira.dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Function;
+
+/**
+ * A bounded pool of read only sessions on an H2 database.  The connections are opened when
+ * they are first needed, and kept open until the pool is closed.  H2 takes the read only flag
+ * of a connection as a hint, it is up to the users of the sessions not to write.
+ */
+class ReadSessionPool {
+
+    /**
+     * creates a dao on a connection, the daos it depends on are from getDao
+     */
+    @FunctionalInterface
+    interface DaoFactory {
+        Dao<?,?> newDao(DaoManager.DaoType daoType, Connection connection,
+                        Function<DaoManager.DaoType, Dao<?,?>> getDao);
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSessions;
+    private final DaoFactory daoFactory;
+
+    private final Deque<ReadSession> idleSessions = new ArrayDeque<>();
+    private int numberOfSessions = 0;
+    private boolean closed = false;
+
+    /**
+     * constructor
+     * @param url - the url of the database
+     * @param user - the user name
+     * @param password - the password
+     * @param maxSessions - the maximum number of sessions
+     * @param daoFactory - creates the daos of the sessions
+     */
+    ReadSessionPool(String url, String user, String password, int maxSessions, DaoFactory daoFactory) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSessions = maxSessions;
+        this.daoFactory = daoFactory;
+    }
+
+    int getMaxSessions() { return maxSessions; }
+
+    Dao<?,?> newDao(DaoManager.DaoType daoType, Connection connection,
+                    Function<DaoManager.DaoType, Dao<?,?>> getDao) {
+        return daoFactory.newDao(daoType, connection, getDao);
+    }
+
+    /**
+     * borrow an idle session, open a new one if the pool is not full, otherwise wait for one
+     * @return a session
+     * @throws DaoException - if the pool is closed, interrupted, or failed to open a connection
+     */
+    synchronized ReadSession borrow() throws DaoException {
+        while (true) {
+            if (closed)
+                throw new DaoException(DaoException.ErrorCode.FAIL_TO_OPEN_CONNECTION, "Read session pool is closed");
+            final ReadSession readSession = idleSessions.pollFirst();
+            if (readSession != null)
+                return readSession;
+            if (numberOfSessions < maxSessions) {
+                try {
+                    final Connection connection = DriverManager.getConnection(url, user, password);
+                    connection.setReadOnly(true);
+                    numberOfSessions++;
+                    return new ReadSession(this, connection);
+                } catch (SQLException e) {
+                    throw DaoException.fromSQLException(e);
+                }
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DaoException(DaoException.ErrorCode.FAIL_TO_OPEN_CONNECTION,
+                        "Interrupted while waiting for a read session", e);
+            }
+        }
+    }
+
+    /**
+     * return a session to the pool
+     * @param readSession - the session
+     */
+    synchronized void release(ReadSession readSession) {
+        if (closed) {
+            readSession.closeConnection();
+            numberOfSessions--;
+            return;
+        }
+        readSession.reset();
+        idleSessions.addFirst(readSession); // the most recently used one has warm prepared statements
+        notifyAll();
+    }
+
+    /**
+     * close the idle sessions, the borrowed ones are closed when they are returned
+     */
+    synchronized void close() {
+        closed = true;
+        for (ReadSession readSession : idleSessions) {
+            readSession.closeConnection();
+            numberOfSessions--;
+        }
+        idleSessions.clear();
+        notifyAll();
+    }
+}
@@ -71,11 +71,14 @@ public class ReminderTransactionDao extends Dao<ReminderTransaction, Integer> {
     public void deleteByReminderId(int rId) throws DaoException {
         final String sqlCmd = "DELETE FROM " + getTableName() + " WHERE REMINDERID = ?";
 
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
             preparedStatement.setInt(1, rId);
             preparedStatement.executeUpdate();
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_DELETE, "", e);
+        } finally {
+            unlockConnection();
         }
     }
 }
@@ -79,6 +79,7 @@ public class ReportDetailDao extends Dao<Pair<Integer, Map<String, List<String>>
 
     @Override
     public Optional<Pair<Integer, Map<String, List<String>>>> get(Integer key) throws DaoException {
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(getSQLString(SQLCommand.GET))) {
             setPreparedStatement(preparedStatement, key);
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
@@ -92,11 +93,14 @@ public class ReportDetailDao extends Dao<Pair<Integer, Map<String, List<String>>
             }
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed to get Match Info for " + key, e);
+        } finally {
+            unlockConnection();
         }
     }
 
     @Override
     public List<Pair<Integer, Map<String, List<String>>>> getAll() throws DaoException {
+        lockConnection();
         try (Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(getSQLString(SQLCommand.GET_ALL))) {
             int reportID = -1;
@@ -119,6 +123,8 @@ public class ReportDetailDao extends Dao<Pair<Integer, Map<String, List<String>>
             return fullList;
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed to getAll ReportDetails.", e);
+        } finally {
+            unlockConnection();
         }
     }
 
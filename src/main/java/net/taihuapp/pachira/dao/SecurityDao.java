@@ -69,6 +69,7 @@ public class SecurityDao extends Dao<Security, Integer> {
 
     public Optional<Security> get(String name) throws DaoException {
         final String sqlCmd = "SELECT * FROM " + getTableName() + " WHERE NAME = ?";
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
             preparedStatement.setString(1, name);
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
@@ -78,6 +79,8 @@ public class SecurityDao extends Dao<Security, Integer> {
             }
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed get security '" + name + "'", e);
+        } finally {
+            unlockConnection();
         }
     }
 }
@@ -28,8 +28,10 @@ import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Security prices
@@ -37,7 +39,51 @@ import java.util.Optional;
  */
 public class SecurityIDPriceDao extends Dao<Pair<Integer, Price>, Pair<Integer, LocalDate>> {
 
-    SecurityIDPriceDao(Connection connection) { this.connection = connection; }
+    // maximum number of securities with price history cached in memory
+    static final int MAX_CACHED_SECURITIES = 256;
+
+    private final SecurityPriceCache priceCache;
+
+    /**
+     * constructor
+     * @param connection - the database connection
+     * @param priceCache - the price cache, shared by the daos on the write and the read only connections
+     */
+    SecurityIDPriceDao(Connection connection, SecurityPriceCache priceCache) {
+        this.connection = connection;
+        this.priceCache = priceCache;
+    }
+
+    /**
+     * get the price history of a security, load from the database if it is not in the cache.
+     * The loaded history is not cached in the middle of a database transaction, which could be rolled back.
+     * On a read only connection, it is not cached if the write connection is in a transaction, or any
+     * prices were invalidated while loading.
+     * @param securityID - the id of the security
+     * @return the price history
+     * @throws DaoException - from database operations
+     */
+    private SecurityPriceCache.PriceHistory getPriceHistory(int securityID) throws DaoException {
+        SecurityPriceCache.PriceHistory priceHistory = priceCache.get(securityID);
+        if (priceHistory == null) {
+            final long generation = priceCache.getGeneration();
+            lockConnection();
+            try {
+                priceHistory = new SecurityPriceCache.PriceHistory(get(securityID));
+                if (readSession != null) {
+                    if (!DaoManager.getInstance().hasOpenTransaction())
+                        priceCache.putIfUnchanged(securityID, priceHistory, generation);
+                } else if (connection.getAutoCommit())
+                    priceCache.put(securityID, priceHistory);
+            } catch (SQLException e) {
+                throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                        "Failed to get auto commit status", e);
+            } finally {
+                unlockConnection();
+            }
+        }
+        return priceHistory;
+    }
 
     @Override
     String getTableName() { return "PRICES"; }
@@ -81,24 +127,11 @@ public class SecurityIDPriceDao extends Dao<Pair<Integer, Price>, Pair<Integer,
     public Optional<Pair<Integer, Price>> get(Pair<Integer, LocalDate> securityIDLocalDatePair) throws DaoException {
         final Integer securityID = securityIDLocalDatePair.getKey();
         final LocalDate date = securityIDLocalDatePair.getValue();
-        final String sqlCmd = "SELECT * FROM " + getTableName() + " where SECURITYID = ? AND DATE = ?";
-
-        try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
-            preparedStatement.setInt(1, securityID);
-            preparedStatement.setObject(2, date);
-
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                if (resultSet.next()) {
-                    // found it
-                    Price p = new Price(date, resultSet.getBigDecimal("PRICE"));
-                    return Optional.of(new Pair<>(securityID, p));
-                }
-                return Optional.empty();
-            }
-        } catch (SQLException e) {
-            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
-                    "Failed to get price for (" + securityID + ") on " + date, e);
-        }
+        final SecurityPriceCache.PriceHistory priceHistory = getPriceHistory(securityID);
+        final int index = priceHistory.indexOf(date);
+        if (index < 0)
+            return Optional.empty();
+        return Optional.of(new Pair<>(securityID, new Price(date, priceHistory.getPrice(index))));
     }
 
     @Override
@@ -107,7 +140,12 @@ public class SecurityIDPriceDao extends Dao<Pair<Integer, Price>, Pair<Integer,
         final LocalDate date = securityIDDatePair.getValue();
         final String sqlCmd = "DELETE FROM " + getTableName() + " WHERE SECURITYID = ? AND DATE = ?";
 
-        try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
+        // invalidate before and after the change, so a reader which loaded the old prices in between
+        // does not put them in the cache
+        priceCache.invalidate(id);
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
             preparedStatement.setInt(1, id);
             preparedStatement.setObject(2, date);
 
@@ -115,12 +153,16 @@ public class SecurityIDPriceDao extends Dao<Pair<Integer, Price>, Pair<Integer,
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_DELETE,
                     "Failed to delete prices for (" + id + ") on " + date, e);
+        } finally {
+            unlockConnection();
+            priceCache.invalidate(id);
         }
     }
 
     @Override
     public List<Pair<Integer, Price>> getAll() throws DaoException {
         final String sqlCmd = "SELECT * FROM " + getTableName() + " ORDER BY SECURITYID, DATE";
+        lockConnection();
         try (Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(sqlCmd)) {
             List<Pair<Integer, Price>> fullList = new ArrayList<>();
@@ -133,6 +175,8 @@ public class SecurityIDPriceDao extends Dao<Pair<Integer, Price>, Pair<Integer,
             return fullList;
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed get all prices", e);
+        } finally {
+            unlockConnection();
         }
     }
 
@@ -152,29 +196,34 @@ public class SecurityIDPriceDao extends Dao<Pair<Integer, Price>, Pair<Integer,
         final String sqlCmd = "MERGE INTO " + getTableName()
                 + " (SECURITYID, DATE, PRICE) values (?, ?, ?)";
 
+        // invalidate before and after the change, so a reader which loaded the old prices in between
+        // does not put them in the cache
+        final Set<Integer> securityIDSet = new HashSet<>();
+        for (Pair<Integer, Price> pair : pairList)
+            securityIDSet.add(pair.getKey());
+        securityIDSet.forEach(priceCache::invalidate);
+
         DaoManager daoManager = DaoManager.getInstance();
         try {
             daoManager.beginTransaction();
             try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
-                for (Pair<Integer, Price> pair : pairList) {
-                    final int id = pair.getKey();
-                    final Price price = pair.getValue();
-                    preparedStatement.setInt(1, id);
-                    preparedStatement.setObject(2, price.getDate());
-                    preparedStatement.setBigDecimal(3, price.getPrice());
-
-                    preparedStatement.executeUpdate();
-                }
+                executeBatch(preparedStatement, pairList, (ps, pair) -> {
+                    ps.setInt(1, pair.getKey());
+                    ps.setObject(2, pair.getValue().getDate());
+                    ps.setBigDecimal(3, pair.getValue().getPrice());
+                }, false);
             } catch (SQLException e) {
                 throw new DaoException(DaoException.ErrorCode.FAIL_TO_MERGE, "Merge to prices failed", e);
             }
             daoManager.commit();
+            securityIDSet.forEach(priceCache::invalidate);
         } catch (DaoException e) {
             try {
                 daoManager.rollback();
             } catch (DaoException e1) {
                 e.addSuppressed(e1);
             }
+            securityIDSet.forEach(priceCache::invalidate);
 
             throw e;
         }
@@ -190,7 +239,9 @@ public class SecurityIDPriceDao extends Dao<Pair<Integer, Price>, Pair<Integer,
         final String sqlCmd = "SELECT * FROM " + getTableName() + " WHERE SECURITYID = ? ORDER BY DATE";
 
         List<Price> priceList = new ArrayList<>();
-        try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
             preparedStatement.setInt(1, securityID);
 
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
@@ -204,37 +255,25 @@ public class SecurityIDPriceDao extends Dao<Pair<Integer, Price>, Pair<Integer,
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
                     "Failed to get prices for (" + securityID+ ")", e);
+        } finally {
+            unlockConnection();
         }
     }
 
     /**
-     * get price for the given security on the given date
+     * get the last price for the given security on or before the given date
      * @param securityIDDatePair - input security and date
-     * @return - optional price
+     * @return - optional price, with the date of the price
      * @throws DaoException - from database operations
      */
     public Optional<Pair<Integer, Price>> getLastPrice(Pair<Integer, LocalDate> securityIDDatePair)
             throws DaoException {
         final int id = securityIDDatePair.getKey();
         final LocalDate date = securityIDDatePair.getValue();
-        final String sqlCmd = "SELECT TOP 1 PRICE FROM " + getTableName()
-                    + " WHERE SECURITYID = ? AND DATE <= ? ORDER BY DATE DESC";
-
-        try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
-            preparedStatement.setInt(1, id);
-            preparedStatement.setObject(2, date);
-
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                if (resultSet.next()) {
-                    BigDecimal p = resultSet.getBigDecimal("PRICE");
-                    Price price = new Price(date, p);
-                    return Optional.of(new Pair<>(id, price));
-                }
-                return Optional.empty();
-            }
-        } catch (SQLException e) {
-            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
-                    "Failed to get latest price for (" + id + ") no later than " + date, e);
-        }
+        final SecurityPriceCache.PriceHistory priceHistory = getPriceHistory(id);
+        final int index = priceHistory.floorIndexOf(date);
+        if (index < 0)
+            return Optional.empty();
+        return Optional.of(new Pair<>(id, new Price(priceHistory.getDate(index), priceHistory.getPrice(index))));
     }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira.dao;
+
+import net.taihuapp.pachira.Price;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in memory cache of the price history of securities.
+ * The prices of each security are kept in arrays sorted by date, the date of a price
+ * is looked up with a binary search.  The number of securities in the cache is bounded,
+ * the least recently used one is evicted first.
+ */
+class SecurityPriceCache {
+
+    // price history of one security
+    static class PriceHistory {
+        private final long[] epochDays; // sorted dates in epoch days
+        private final BigDecimal[] prices;
+
+        PriceHistory(List<Price> priceList) {
+            final int n = priceList.size();
+            epochDays = new long[n];
+            prices = new BigDecimal[n];
+            for (int i = 0; i < n; i++) {
+                final Price price = priceList.get(i);
+                epochDays[i] = price.getDate().toEpochDay();
+                prices[i] = price.getPrice();
+            }
+        }
+
+        /**
+         * find the index of the price on the date
+         * @param date - the date
+         * @return the index of the price on the date, or -1 if there is no price on the date
+         */
+        int indexOf(LocalDate date) {
+            final int index = Arrays.binarySearch(epochDays, date.toEpochDay());
+            return Math.max(index, -1);
+        }
+
+        /**
+         * find the index of the price on the latest date on or before the given date
+         * @param date - the date
+         * @return the index of the price, or -1 if there is no price on or before the date
+         */
+        int floorIndexOf(LocalDate date) {
+            final int index = Arrays.binarySearch(epochDays, date.toEpochDay());
+            return index >= 0 ? index : -index - 2; // the insertion point minus one
+        }
+
+        BigDecimal getPrice(int index) { return prices[index]; }
+
+        LocalDate getDate(int index) { return LocalDate.ofEpochDay(epochDays[index]); }
+    }
+
+    private final Map<Integer, PriceHistory> priceHistoryMap;
+    private long generation = 0; // incremented on each invalidation
+
+    /**
+     * constructor
+     * @param maxSecurities - maximum number of securities kept in the cache
+     */
+    SecurityPriceCache(int maxSecurities) {
+        priceHistoryMap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, PriceHistory> eldest) {
+                return size() > maxSecurities;
+            }
+        };
+    }
+
+    synchronized PriceHistory get(int securityID) { return priceHistoryMap.get(securityID); }
+
+    synchronized void put(int securityID, PriceHistory priceHistory) { priceHistoryMap.put(securityID, priceHistory); }
+
+    synchronized long getGeneration() { return generation; }
+
+    /**
+     * put the price history in the cache if nothing was invalidated since the generation was taken.
+     * used by the readers on other connections, which might load the prices while they are being changed.
+     * @param securityID - the security id
+     * @param priceHistory - the price history
+     * @param generation - the generation taken before the price history was loaded
+     */
+    synchronized void putIfUnchanged(int securityID, PriceHistory priceHistory, long generation) {
+        if (this.generation == generation)
+            priceHistoryMap.put(securityID, priceHistory);
+    }
+
+    /**
+     * start a new generation without dropping anything, so the price histories loaded before
+     * are not put in the cache by putIfUnchanged
+     */
+    synchronized void newGeneration() { generation++; }
+
+    synchronized void invalidate(int securityID) {
+        generation++;
+        priceHistoryMap.remove(securityID);
+    }
+
+    synchronized void invalidateAll() {
+        generation++;
+        priceHistoryMap.clear();
+    }
+}
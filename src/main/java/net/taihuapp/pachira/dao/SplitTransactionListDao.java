@@ -123,6 +123,7 @@ public class SplitTransactionListDao extends Dao<Pair<Pair<SplitTransaction.Type
     @Override
     public Optional<Pair<Pair<SplitTransaction.Type, Integer>, List<SplitTransaction>>>
     get(Pair<SplitTransaction.Type, Integer> key) throws DaoException {
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(getSQLString(SQLCommand.GET))) {
             setPreparedStatement(preparedStatement, key);
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
@@ -136,6 +137,8 @@ public class SplitTransactionListDao extends Dao<Pair<Pair<SplitTransaction.Type
             }
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed to get SplitTransactions for " + key, e);
+        } finally {
+            unlockConnection();
         }
     }
 
@@ -152,6 +155,7 @@ public class SplitTransactionListDao extends Dao<Pair<Pair<SplitTransaction.Type
         if (type != null) {
             sqlCmd += " where TYPE = ?";
         }
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
             if (type != null) {
                 preparedStatement.setString(1, type.name());
@@ -180,6 +184,8 @@ public class SplitTransactionListDao extends Dao<Pair<Pair<SplitTransaction.Type
             }
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed to getAll SplitTransaction.", e);
+        } finally {
+            unlockConnection();
         }
     }
 
@@ -194,6 +200,7 @@ public class SplitTransactionListDao extends Dao<Pair<Pair<SplitTransaction.Type
         if (type != null) {
             sqlCmd += " where TYPE = ?";
         }
+        lockConnection();
         try (PreparedStatement preparedStatement = connection.prepareStatement(sqlCmd)) {
             if (type != null)
                 preparedStatement.setString(1, type.name());
@@ -201,6 +208,8 @@ public class SplitTransactionListDao extends Dao<Pair<Pair<SplitTransaction.Type
             preparedStatement.executeUpdate();
         } catch (SQLException e) {
             throw new DaoException(DaoException.ErrorCode.FAIL_TO_DELETE, "Delete all failed", e);
+        } finally {
+            unlockConnection();
         }
     }
 
@@ -216,6 +225,69 @@ public class SplitTransactionListDao extends Dao<Pair<Pair<SplitTransaction.Type
         return 1;
     }
 
+    /**
+     * insert split transactions for keys without any existing rows, in batches.
+     * all the split transactions should be new, the generated ids are set on them.
+     * @param pairList - list of pairs of key and the list of split transactions
+     * @return - list of keys
+     * @throws DaoException - from database operations
+     */
+    @Override
+    public List<Pair<SplitTransaction.Type, Integer>> insertBatch(List<Pair<Pair<SplitTransaction.Type, Integer>,
+            List<SplitTransaction>>> pairList) throws DaoException {
+        final List<Pair<Pair<SplitTransaction.Type, Integer>, SplitTransaction>> rowList = new ArrayList<>();
+        final List<Pair<SplitTransaction.Type, Integer>> keyList = new ArrayList<>();
+        for (Pair<Pair<SplitTransaction.Type, Integer>, List<SplitTransaction>> pair : pairList) {
+            keyList.add(pair.getKey());
+            for (SplitTransaction splitTransaction : pair.getValue()) {
+                if (splitTransaction.getID() > 0)
+                    throw new DaoException(DaoException.ErrorCode.FAIL_TO_INSERT, pair.getKey().getKey()
+                            + " SplitTransaction " + splitTransaction.getID() + " for " + pair.getKey().getValue()
+                            + " is not new", null);
+                rowList.add(new Pair<>(pair.getKey(), splitTransaction));
+            }
+        }
+
+        final String insertCmd = "INSERT INTO SPLITTRANSACTIONS "
+                + "(TYPE, TYPE_ID, CATEGORYID, MEMO, AMOUNT, MATCHTRANSACTIONID, TAGID) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        final DaoManager daoManager = DaoManager.getInstance();
+        daoManager.beginTransaction();
+        try {
+            try (PreparedStatement insertStatement =
+                         connection.prepareStatement(insertCmd, Statement.RETURN_GENERATED_KEYS)) {
+                final List<Object> idList = executeBatch(insertStatement, rowList, (ps, row) -> {
+                    final SplitTransaction splitTransaction = row.getValue();
+                    ps.setString(1, row.getKey().getKey().name());
+                    ps.setInt(2, row.getKey().getValue());
+                    ps.setInt(3, splitTransaction.getCategoryID());
+                    ps.setString(4, splitTransaction.getMemo());
+                    ps.setBigDecimal(5, splitTransaction.getAmount());
+                    ps.setInt(6, splitTransaction.getMatchID());
+                    ps.setInt(7, splitTransaction.getTagID());
+                }, true);
+                if (idList.size() != rowList.size())
+                    throw new DaoException(DaoException.ErrorCode.FAIL_TO_INSERT, "Expect " + rowList.size()
+                            + " generated keys, got " + idList.size(), null);
+                for (int i = 0; i < idList.size(); i++)
+                    rowList.get(i).getValue().setID(((Number) idList.get(i)).intValue());
+            } catch (SQLException e) {
+                throw new DaoException(DaoException.ErrorCode.FAIL_TO_INSERT, "Insert to SplitTransactions failed", e);
+            }
+            daoManager.commit();
+            return keyList;
+        } catch (DaoException e) {
+            for (Pair<Pair<SplitTransaction.Type, Integer>, SplitTransaction> row : rowList)
+                row.getValue().setID(0); // put back the old id
+            try {
+                daoManager.rollback();
+            } catch (DaoException e1) {
+                e.addSuppressed(e1);
+            }
+            throw e;
+        }
+    }
+
     /**
      * first delete all rows with matching tid, then insert.
      * @param pair - the pair of tid and the list of splitTransaction
@@ -242,31 +314,32 @@ public class SplitTransactionListDao extends Dao<Pair<Pair<SplitTransaction.Type
         Set<Integer> oldIDSet = new HashSet<>();
 
         DaoManager daoManager = DaoManager.getInstance();
-        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT ID FROM "
-                + "SPLITTRANSACTIONS WHERE TYPE = ? and TYPE_ID = ?")) {
-            preparedStatement.setString(1, type.name());
-            preparedStatement.setInt(2, tid);
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                while (resultSet.next())
-                    oldIDSet.add(resultSet.getInt(1));
+        daoManager.beginTransaction();
+        try {
+            try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT ID FROM "
+                    + "SPLITTRANSACTIONS WHERE TYPE = ? and TYPE_ID = ?")) {
+                preparedStatement.setString(1, type.name());
+                preparedStatement.setInt(2, tid);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next())
+                        oldIDSet.add(resultSet.getInt(1));
+                }
+            } catch (SQLException e) {
+                throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                        "Failed to select from SPLITTRANSACTIONS", e);
             }
-        } catch (SQLException e) {
-            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed to select from SPLITTRANSACTIONS", e);
-        }
 
-        for (SplitTransaction splitTransaction : pair.getValue()) {
-            final int id = splitTransaction.getID();
-            if (id <= 0)
-                continue;
-            // this split transaction has a valid id, it should exist in the old id set.
-            if (!oldIDSet.remove(id)) {
-                throw new DaoException(DaoException.ErrorCode.FAIL_TO_UPDATE,
-                        type + " SplitTransaction " + id + " for " + tid + " does not exist", null);
+            for (SplitTransaction splitTransaction : pair.getValue()) {
+                final int id = splitTransaction.getID();
+                if (id <= 0)
+                    continue;
+                // this split transaction has a valid id, it should exist in the old id set.
+                if (!oldIDSet.remove(id)) {
+                    throw new DaoException(DaoException.ErrorCode.FAIL_TO_UPDATE,
+                            type + " SplitTransaction " + id + " for " + tid + " does not exist", null);
+                }
             }
-        }
 
-        daoManager.beginTransaction();
-        try {
             final String deleteCmd = "DELETE FROM SPLITTRANSACTIONS WHERE ID = ?";
             try (PreparedStatement deleteStatement = connection.prepareStatement(deleteCmd)) {
                 for (int id : oldIDSet) {
@@ -23,17 +23,29 @@ package net.taihuapp.pachira.dao;
 import javafx.util.Pair;
 import net.taihuapp.pachira.SplitTransaction;
 import net.taihuapp.pachira.Transaction;
+import net.taihuapp.pachira.TransactionRecord;
 
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class TransactionDao extends Dao<Transaction, Integer> {
 
     private final SplitTransactionListDao splitTransactionListDao;
-    private final Map<Integer, List<SplitTransaction>> tidSplitTransactionListMap = new HashMap<>();
+
+    // cache of split transactions, keyed by account id, then by transaction id.
+    // an account is loaded with one query on the first read and dropped when any of its
+    // transactions is inserted, updated, or deleted.  The maps are concurrent, the dao is
+    // shared by all the threads using the write connection.
+    private final Map<Integer, Map<Integer, List<SplitTransaction>>> accountSplitTransactionListMap =
+            new ConcurrentHashMap<>();
+
+    // inverted index of payee and memo for string search
+    private final TransactionSearchIndex searchIndex = new TransactionSearchIndex(this);
+    private final PayeeStatsIndex payeeStatsIndex = new PayeeStatsIndex(this);
 
     TransactionDao(Connection connection, SplitTransactionListDao splitTransactionListDao) {
         this.connection = connection;
@@ -61,6 +73,25 @@ public class TransactionDao extends Dao<Transaction, Integer> {
 
     @Override
     Transaction fromResultSet(ResultSet resultSet) throws SQLException, DaoException {
+        return fromResultSet(resultSet, null);
+    }
+
+    private Transaction fromResultSet(ResultSet resultSet, Map<Integer, List<SplitTransaction>>
+            tidSplitTransactionListMap) throws SQLException, DaoException {
+        return new Transaction(recordFromResultSet(resultSet, tidSplitTransactionListMap));
+    }
+
+    /**
+     * construct a transaction record from the resultSet
+     * @param resultSet the resultSet with information
+     * @param tidSplitTransactionListMap map of transaction id and split transaction list.  If null, the
+     *                                   split transactions are looked up in the cache or the database.
+     * @return the constructed transaction record
+     * @throws SQLException from resultSet operations
+     * @throws DaoException from database operations
+     */
+    private TransactionRecord recordFromResultSet(ResultSet resultSet, Map<Integer, List<SplitTransaction>>
+            tidSplitTransactionListMap) throws SQLException, DaoException {
         final int id = resultSet.getInt("ID");
         final int aid = resultSet.getInt("ACCOUNTID");
         final LocalDate tDate = resultSet.getObject("DATE", LocalDate.class);
@@ -89,9 +120,15 @@ public class TransactionDao extends Dao<Transaction, Integer> {
         final int matchSplitID = resultSet.getInt("MATCHSPLITTRANSACTIONID");
 
         final boolean splitFlag = resultSet.getBoolean("SPLITFLAG");
-        final List<SplitTransaction> stList = splitFlag ? tidSplitTransactionListMap.get(id) : new ArrayList<>();
+        final List<SplitTransaction> stList;
+        if (!splitFlag)
+            stList = new ArrayList<>();
+        else if (tidSplitTransactionListMap != null)
+            stList = tidSplitTransactionListMap.get(id);
+        else
+            stList = getSplitTransactionList(aid, id);
 
-        return new Transaction(id, aid, tDate, aDate, tradeAction, status, sid, reference,
+        return new TransactionRecord(id, aid, tDate, aDate, tradeAction, status, sid, reference,
                 payee, quantity, oldQuantity, memo, commission, accruedInterest, amount,
                 cid, tagID, matchID, matchSplitID, stList, fitid);
     }
@@ -123,36 +160,526 @@ public class TransactionDao extends Dao<Transaction, Integer> {
             preparedStatement.setInt(21, transaction.getID());
     }
 
-    private void refreshTidSplitTransactionListMap() throws DaoException {
-        tidSplitTransactionListMap.clear();
-        List<Pair<Pair<SplitTransaction.Type, Integer>, List<SplitTransaction>>> list =
-                splitTransactionListDao.getAll(SplitTransaction.Type.TXN);
-        for (Pair<Pair<SplitTransaction.Type, Integer>, List<SplitTransaction>> pair : list) {
-            tidSplitTransactionListMap.put(pair.getKey().getValue(), pair.getValue());
+    /**
+     * get the split transaction list for a transaction, from the cache if the account is loaded,
+     * otherwise from the database.
+     * @param accountID the account id of the transaction
+     * @param tid the transaction id
+     * @return the list of split transactions
+     * @throws DaoException from database operations
+     */
+    private List<SplitTransaction> getSplitTransactionList(int accountID, int tid) throws DaoException {
+        final Map<Integer, List<SplitTransaction>> tidSplitTransactionListMap =
+                accountSplitTransactionListMap.get(accountID);
+        if (tidSplitTransactionListMap != null)
+            return tidSplitTransactionListMap.get(tid);
+        return splitTransactionListDao.get(new Pair<>(SplitTransaction.Type.TXN, tid))
+                .map(Pair::getValue).orElse(new ArrayList<>());
+    }
+
+    /**
+     * get the split transactions of all the transactions in an account.
+     * The result is cached unless the connection is in the middle of a database transaction,
+     * which could still be rolled back.
+     * @param accountID the account id
+     * @return map of transaction id and split transaction list
+     * @throws DaoException from database operations
+     */
+    private Map<Integer, List<SplitTransaction>> getAccountSplitTransactionListMap(int accountID)
+            throws DaoException {
+        final Map<Integer, List<SplitTransaction>> cachedMap = accountSplitTransactionListMap.get(accountID);
+        if (cachedMap != null)
+            return cachedMap;
+
+        final String sqlCmd = "select S.* from " + splitTransactionListDao.getTableName() + " S inner join "
+                + getTableName() + " T on S.TYPE_ID = T.ID where S.TYPE = ? and T.ACCOUNTID = ? "
+                + "order by S.TYPE_ID, S.ID";
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
+            preparedStatement.setString(1, SplitTransaction.Type.TXN.name());
+            preparedStatement.setInt(2, accountID);
+            final Map<Integer, List<SplitTransaction>> tidSplitTransactionListMap = new ConcurrentHashMap<>();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    final Pair<Pair<SplitTransaction.Type, Integer>, List<SplitTransaction>> pair =
+                            splitTransactionListDao.fromResultSet(resultSet);
+                    tidSplitTransactionListMap.computeIfAbsent(pair.getKey().getValue(), k -> new ArrayList<>())
+                            .add(pair.getValue().get(0));
+                }
+            }
+            if (connection.getAutoCommit())
+                accountSplitTransactionListMap.put(accountID, tidSplitTransactionListMap);
+            return tidSplitTransactionListMap;
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to get split transactions for account " + accountID, e);
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    /**
+     * drop the cached split transactions for the account, and for the transaction in any other account.
+     * @param accountID the account id
+     * @param tid the transaction id
+     */
+    private void invalidateSplitTransactionCache(int accountID, int tid) {
+        accountSplitTransactionListMap.remove(accountID);
+        accountSplitTransactionListMap.values().forEach(m -> m.remove(tid));
+    }
+
+    /**
+     * get the transactions of an account as records, without constructing any JavaFX properties.
+     * the split transaction lists of the records are shared with the cache and should not be modified.
+     * @param accountID the account id
+     * @return list of transaction records of the account, in no particular order
+     * @throws DaoException from database operations
+     */
+    public List<TransactionRecord> getAccountTransactionRecordList(int accountID) throws DaoException {
+        final String sqlCmd = "select * from " + getTableName() + " where ACCOUNTID = ?";
+        lockConnection();
+        try {
+            final Map<Integer, List<SplitTransaction>> tidSplitTransactionListMap =
+                    getAccountSplitTransactionListMap(accountID);
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
+            preparedStatement.setInt(1, accountID);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                final List<TransactionRecord> rList = new ArrayList<>();
+                while (resultSet.next()) {
+                    rList.add(recordFromResultSet(resultSet, tidSplitTransactionListMap));
+                }
+                return rList;
+            }
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to get transactions for account " + accountID, e);
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    /**
+     * get the transactions of an account dated on or after a date, and the stock splits before it, as records.
+     * the split transaction lists of the records are shared with the cache and should not be modified.
+     * @param accountID the account id
+     * @param fromDate the first date
+     * @return list of transaction records, in no particular order
+     * @throws DaoException from database operations
+     */
+    public List<TransactionRecord> getAccountTransactionRecordList(int accountID, LocalDate fromDate)
+            throws DaoException {
+        final String sqlCmd = "select * from " + getTableName()
+                + " where ACCOUNTID = ? and (DATE >= ? or TRADEACTION = ?)";
+        lockConnection();
+        try {
+            final Map<Integer, List<SplitTransaction>> tidSplitTransactionListMap =
+                    getAccountSplitTransactionListMap(accountID);
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
+            preparedStatement.setInt(1, accountID);
+            preparedStatement.setObject(2, fromDate);
+            preparedStatement.setString(3, Transaction.TradeAction.STKSPLIT.name());
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                final List<TransactionRecord> rList = new ArrayList<>();
+                while (resultSet.next()) {
+                    rList.add(recordFromResultSet(resultSet, tidSplitTransactionListMap));
+                }
+                return rList;
+            }
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to get transactions for account " + accountID + " from " + fromDate, e);
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    /**
+     * a forward only cursor over the transaction records of an account, in the order of date.
+     * the cursor holds an open result set of a cached prepared statement, so no other query of
+     * the same dao should be run before the cursor is closed.  On the write connection, the writer
+     * lock is held from opening the cursor until it is closed, by the same thread.
+     */
+    public class TransactionRecordCursor implements AutoCloseable {
+        private final int accountID;
+        private final ResultSet resultSet;
+        private final Map<Integer, List<SplitTransaction>> tidSplitTransactionListMap;
+        private boolean closed = false;
+
+        private TransactionRecordCursor(int accountID, ResultSet resultSet,
+                                        Map<Integer, List<SplitTransaction>> tidSplitTransactionListMap) {
+            this.accountID = accountID;
+            this.resultSet = resultSet;
+            this.tidSplitTransactionListMap = tidSplitTransactionListMap;
+        }
+
+        /**
+         * @return the next transaction record, or null at the end
+         * @throws DaoException from database operations
+         */
+        public TransactionRecord next() throws DaoException {
+            try {
+                return resultSet.next() ? recordFromResultSet(resultSet, tidSplitTransactionListMap) : null;
+            } catch (SQLException e) {
+                throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                        "Failed to read transactions for account " + accountID, e);
+            }
+        }
+
+        @Override
+        public void close() throws DaoException {
+            if (closed)
+                return;
+            closed = true;
+            try {
+                resultSet.close();
+            } catch (SQLException e) {
+                throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                        "Failed to close transaction cursor for account " + accountID, e);
+            } finally {
+                unlockConnection();
+            }
+        }
+    }
+
+    /**
+     * open a forward only cursor over the transactions of an account, ordered by date.
+     * the split transaction lists of the records are shared with the cache and should not be modified.
+     * @param accountID the account id
+     * @return the cursor, to be closed by the caller
+     * @throws DaoException from database operations
+     */
+    public TransactionRecordCursor openAccountTransactionCursor(int accountID) throws DaoException {
+        final String sqlCmd = "select * from " + getTableName() + " where ACCOUNTID = ? order by DATE";
+        lockConnection();
+        try {
+            final Map<Integer, List<SplitTransaction>> tidSplitTransactionListMap =
+                    getAccountSplitTransactionListMap(accountID);
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
+            preparedStatement.setInt(1, accountID);
+            return new TransactionRecordCursor(accountID, preparedStatement.executeQuery(),
+                    tidSplitTransactionListMap);
+        } catch (SQLException e) {
+            unlockConnection();
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to get transactions for account " + accountID, e);
+        } catch (DaoException | RuntimeException e) {
+            unlockConnection();
+            throw e;
         }
     }
 
     public List<Transaction> getAccountTransactionList(int accountID) throws DaoException {
-        // refresh tidSplitTransactionListMap
-        refreshTidSplitTransactionListMap();
+        final List<Transaction> tList = new ArrayList<>();
+        for (TransactionRecord r : getAccountTransactionRecordList(accountID))
+            tList.add(new Transaction(r));
+        return tList;
+    }
 
-        final String sqlCmd = "select * from " + getTableName() + " where ACCOUNTID = " + accountID;
-        try (Statement statement = connection.createStatement();
-        ResultSet resultSet = statement.executeQuery(sqlCmd)) {
-            final List<Transaction> tList = new ArrayList<>();
+    /**
+     * receives the sort and balance keys of a transaction, see scanAccountTransactionKeys
+     */
+    @FunctionalInterface
+    public interface TransactionKeyConsumer {
+        void accept(int tid, LocalDate tDate, Transaction.Status status, Transaction.TradeAction tradeAction,
+                    int categoryID, BigDecimal amount);
+    }
+
+    /**
+     * scan the keys of the transactions of an account without constructing any transaction objects.
+     * @param accountID the account id
+     * @param consumer receives the keys of each transaction
+     * @throws DaoException from database operations
+     */
+    public void scanAccountTransactionKeys(int accountID, TransactionKeyConsumer consumer) throws DaoException {
+        final String sqlCmd = "select ID, DATE, STATUS, TRADEACTION, CATEGORYID, AMOUNT from "
+                + getTableName() + " where ACCOUNTID = ?";
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
+            preparedStatement.setInt(1, accountID);
+            scanTransactionKeys(preparedStatement, consumer);
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to scan transaction keys for account " + accountID, e);
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    /**
+     * scan the keys of the given transactions of an account, the ids not in the account are skipped.
+     * @param accountID the account id
+     * @param tids the transaction ids
+     * @param consumer receives the keys of each transaction found
+     * @throws DaoException from database operations
+     */
+    public void scanTransactionKeys(int accountID, Collection<Integer> tids, TransactionKeyConsumer consumer)
+            throws DaoException {
+        if (tids.isEmpty())
+            return;
+
+        final String sqlCmd = "select ID, DATE, STATUS, TRADEACTION, CATEGORYID, AMOUNT from "
+                + getTableName() + " where ID = ANY(?) and ACCOUNTID = ?";
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
+            preparedStatement.setObject(1, tids.toArray(new Integer[0]));
+            preparedStatement.setInt(2, accountID);
+            scanTransactionKeys(preparedStatement, consumer);
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to scan " + tids.size() + " transaction keys for account " + accountID, e);
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    private static void scanTransactionKeys(PreparedStatement preparedStatement, TransactionKeyConsumer consumer)
+            throws SQLException {
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
             while (resultSet.next()) {
-                tList.add(fromResultSet(resultSet));
+                final BigDecimal amount = resultSet.getBigDecimal("AMOUNT");
+                consumer.accept(resultSet.getInt("ID"), resultSet.getObject("DATE", LocalDate.class),
+                        Transaction.Status.valueOf(resultSet.getString("STATUS")),
+                        Transaction.TradeAction.valueOf(resultSet.getString("TRADEACTION")),
+                        resultSet.getInt("CATEGORYID"), amount == null ? BigDecimal.ZERO : amount);
             }
+        }
+    }
+
+    /**
+     * @param accountID the account id
+     * @return the number of transactions in the account
+     * @throws DaoException from database operations
+     */
+    public int countAccountTransactions(int accountID) throws DaoException {
+        final String sqlCmd = "select count(ID) from " + getTableName() + " where ACCOUNTID = ?";
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
+            preparedStatement.setInt(1, accountID);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to count transactions for account " + accountID, e);
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    /**
+     * @param accountIDs the account ids
+     * @return the first and the last dates of the transactions in the accounts, empty if there is none
+     * @throws DaoException from database operations
+     */
+    public Optional<Pair<LocalDate, LocalDate>> getTransactionDateRange(Collection<Integer> accountIDs)
+            throws DaoException {
+        if (accountIDs.isEmpty())
+            return Optional.empty();
+
+        final String sqlCmd = "select min(DATE), max(DATE) from " + getTableName() + " where ACCOUNTID = ANY(?)";
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
+            preparedStatement.setObject(1, accountIDs.toArray(new Integer[0]));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (!resultSet.next() || resultSet.getObject(1) == null)
+                    return Optional.empty();
+                return Optional.of(new Pair<>(resultSet.getObject(1, LocalDate.class),
+                        resultSet.getObject(2, LocalDate.class)));
+            }
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to get the transaction dates of " + accountIDs.size() + " accounts", e);
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    /**
+     * receives the duplicate detection key of a transaction, see scanAccountTradeKeys
+     */
+    @FunctionalInterface
+    public interface TradeKeyConsumer {
+        void accept(LocalDate tDate, Transaction.TradeAction tradeAction, BigDecimal amount);
+    }
+
+    /**
+     * scan the date, trade action, and amount of the transactions of an account in a date range,
+     * all from the index on the four columns.
+     * @param accountID the account id
+     * @param fromDate the first date
+     * @param toDate the last date
+     * @param consumer receives the keys of each transaction
+     * @throws DaoException from database operations
+     */
+    public void scanAccountTradeKeys(int accountID, LocalDate fromDate, LocalDate toDate, TradeKeyConsumer consumer)
+            throws DaoException {
+        final String sqlCmd = "select DATE, TRADEACTION, AMOUNT from " + getTableName()
+                + " where ACCOUNTID = ? and DATE between ? and ?";
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
+            preparedStatement.setInt(1, accountID);
+            preparedStatement.setObject(2, fromDate);
+            preparedStatement.setObject(3, toDate);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    final BigDecimal amount = resultSet.getBigDecimal("AMOUNT");
+                    consumer.accept(resultSet.getObject("DATE", LocalDate.class),
+                            Transaction.TradeAction.valueOf(resultSet.getString("TRADEACTION")),
+                            amount == null ? BigDecimal.ZERO : amount);
+                }
+            }
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to scan trade keys for account " + accountID, e);
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    /**
+     * get the transactions with the given ids in one query.
+     * @param tidList list of transaction ids
+     * @return list of transactions found, in no particular order
+     * @throws DaoException from database operations
+     */
+    public List<Transaction> getTransactionList(List<Integer> tidList) throws DaoException {
+        final List<Transaction> tList = new ArrayList<>();
+        if (tidList.isEmpty())
             return tList;
+
+        final String sqlCmd = "select * from " + getTableName() + " where ID = ANY(?)";
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
+            preparedStatement.setObject(1, tidList.toArray(new Integer[0]));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    tList.add(fromResultSet(resultSet));
+                }
+                return tList;
+            }
         } catch (SQLException e) {
-            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "", e);
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to get " + tidList.size() + " transactions", e);
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    /**
+     * get the transactions in a date range which might be transfers not linked to the other side yet,
+     * the transfers without a match, and the split transactions.  The split transaction lists are loaded
+     * for the range with one query, and are not shared with the cache.
+     * @param fromDate the first date
+     * @param toDate the last date
+     * @return list of transactions, in no particular order
+     * @throws DaoException from database operations
+     */
+    public List<Transaction> getUnmatchedTransferList(LocalDate fromDate, LocalDate toDate) throws DaoException {
+        final String splitSqlCmd = "select S.* from " + splitTransactionListDao.getTableName() + " S inner join "
+                + getTableName() + " T on S.TYPE_ID = T.ID where S.TYPE = ? and T.DATE between ? and ? "
+                + "order by S.TYPE_ID, S.ID";
+        final String sqlCmd = "select * from " + getTableName() + " where DATE between ? and ? "
+                + "and (SPLITFLAG or (CATEGORYID < 0 and coalesce(MATCHTRANSACTIONID, 0) <= 0))";
+        lockConnection();
+        try {
+            final Map<Integer, List<SplitTransaction>> tidSplitTransactionListMap = new HashMap<>();
+            final PreparedStatement splitStatement = getPreparedStatement(splitSqlCmd, false);
+            splitStatement.setString(1, SplitTransaction.Type.TXN.name());
+            splitStatement.setObject(2, fromDate);
+            splitStatement.setObject(3, toDate);
+            try (ResultSet resultSet = splitStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    final Pair<Pair<SplitTransaction.Type, Integer>, List<SplitTransaction>> pair =
+                            splitTransactionListDao.fromResultSet(resultSet);
+                    tidSplitTransactionListMap.computeIfAbsent(pair.getKey().getValue(), k -> new ArrayList<>())
+                            .add(pair.getValue().get(0));
+                }
+            }
+
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
+            preparedStatement.setObject(1, fromDate);
+            preparedStatement.setObject(2, toDate);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                final List<Transaction> tList = new ArrayList<>();
+                while (resultSet.next()) {
+                    tList.add(fromResultSet(resultSet, tidSplitTransactionListMap));
+                }
+                return tList;
+            }
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to get unmatched transfers from " + fromDate + " to " + toDate, e);
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    /**
+     * find which of the given FITIDs are already used by the transactions of an account, in one query.
+     * @param accountID the account id
+     * @param fitIDs the FITIDs to look up
+     * @return the subset of fitIDs found in the account
+     * @throws DaoException from database operations
+     */
+    public Set<String> getExistingFITIDSet(int accountID, Collection<String> fitIDs) throws DaoException {
+        final Set<String> fitIDSet = new HashSet<>();
+        if (fitIDs.isEmpty())
+            return fitIDSet;
+
+        final String sqlCmd = "select FITID from " + getTableName() + " where FITID = ANY(?) and ACCOUNTID = ?";
+        lockConnection();
+        try {
+            final PreparedStatement preparedStatement = getPreparedStatement(sqlCmd, false);
+            preparedStatement.setObject(1, fitIDs.toArray(new String[0]));
+            preparedStatement.setInt(2, accountID);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    fitIDSet.add(resultSet.getString("FITID"));
+                }
+                return fitIDSet;
+            }
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to look up " + fitIDs.size() + " FITIDs for account " + accountID, e);
+        } finally {
+            unlockConnection();
         }
     }
 
     @Override
     public List<Transaction> getAll() throws DaoException {
-        refreshTidSplitTransactionListMap();
-        return super.getAll();
+        lockConnection();
+        try {
+            return getAllTransactions();
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    private List<Transaction> getAllTransactions() throws DaoException {
+        final Map<Integer, List<SplitTransaction>> tidSplitTransactionListMap = new HashMap<>();
+        for (Pair<Pair<SplitTransaction.Type, Integer>, List<SplitTransaction>> pair
+                : splitTransactionListDao.getAll(SplitTransaction.Type.TXN)) {
+            tidSplitTransactionListMap.put(pair.getKey().getValue(), pair.getValue());
+        }
+
+        try (PreparedStatement preparedStatement = connection.prepareStatement(getSQLString(SQLCommand.GET_ALL));
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            final List<Transaction> tList = new ArrayList<>();
+            while (resultSet.next()) {
+                tList.add(fromResultSet(resultSet, tidSplitTransactionListMap));
+            }
+            return tList;
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed to get all transactions", e);
+        }
     }
 
     @Override
@@ -161,8 +688,11 @@ public class TransactionDao extends Dao<Transaction, Integer> {
         try {
             daoManager.beginTransaction();
             int n = super.insert(t);
+            invalidateSplitTransactionCache(t.getAccountID(), n);
             splitTransactionListDao.insert(new Pair<>(new Pair<>(SplitTransaction.Type.TXN, n),
                     t.getSplitTransactionList()));
+            indexSearchTexts(Collections.singletonList(n), Collections.singletonList(t), true);
+            addPayeeStats(Collections.singletonList(t));
             daoManager.commit();
             return n;
         } catch (DaoException e) {
@@ -175,14 +705,58 @@ public class TransactionDao extends Dao<Transaction, Integer> {
         }
     }
 
+    /**
+     * insert a list of transactions with their split transactions in batches.
+     * the ids of the transactions are not changed.
+     * @param tList - list of transactions to be inserted
+     * @return - list of ids of the inserted transactions, in the order of tList
+     * @throws DaoException - from database operations
+     */
+    @Override
+    public List<Integer> insertBatch(List<Transaction> tList) throws DaoException {
+        DaoManager daoManager = DaoManager.getInstance();
+        try {
+            daoManager.beginTransaction();
+            final List<Integer> tidList = super.insertBatch(tList);
+            final List<Pair<Pair<SplitTransaction.Type, Integer>, List<SplitTransaction>>> pairList =
+                    new ArrayList<>();
+            for (int i = 0; i < tList.size(); i++) {
+                final Transaction t = tList.get(i);
+                final int tid = tidList.get(i);
+                invalidateSplitTransactionCache(t.getAccountID(), tid);
+                if (t.isSplit())
+                    pairList.add(new Pair<>(new Pair<>(SplitTransaction.Type.TXN, tid),
+                            t.getSplitTransactionList()));
+            }
+            splitTransactionListDao.insertBatch(pairList);
+            indexSearchTexts(tidList, tList, true);
+            addPayeeStats(tList);
+            daoManager.commit();
+            return tidList;
+        } catch (DaoException e) {
+            try {
+                daoManager.rollback();
+            } catch (DaoException e1) {
+                e.addSuppressed(e1);
+            }
+            throw e;
+        }
+    }
+
     @Override
     public int update(Transaction t) throws DaoException {
         DaoManager daoManager = DaoManager.getInstance();
         try {
             daoManager.beginTransaction();
+            invalidateSplitTransactionCache(t.getAccountID(), t.getID());
             splitTransactionListDao.update(new Pair<>(new Pair<>(SplitTransaction.Type.TXN, t.getID()),
                     t.getSplitTransactionList()));
+            final Map<PayeeStatsIndex.Key, Integer> deltaMap = new HashMap<>();
+            getPayeeStatsKey(t.getID()).ifPresent(key -> deltaMap.merge(key, -1, Integer::sum));
             int n = super.update(t);
+            indexSearchTexts(Collections.singletonList(t.getID()), Collections.singletonList(t), false);
+            deltaMap.merge(new PayeeStatsIndex.Key(t), 1, Integer::sum);
+            adjustPayeeStats(deltaMap, DaoException.ErrorCode.FAIL_TO_UPDATE);
             daoManager.commit();
             return n;
         } catch (DaoException e) {
@@ -200,8 +774,18 @@ public class TransactionDao extends Dao<Transaction, Integer> {
         DaoManager daoManager = DaoManager.getInstance();
         try {
             daoManager.beginTransaction();
+            accountSplitTransactionListMap.values().forEach(m -> m.remove(tid));
+            final Optional<PayeeStatsIndex.Key> key = getPayeeStatsKey(tid);
             final int n = super.delete(tid);
             splitTransactionListDao.delete(new Pair<>(SplitTransaction.Type.TXN, tid));
+            try {
+                searchIndex.remove(tid);
+            } catch (SQLException e) {
+                throw new DaoException(DaoException.ErrorCode.FAIL_TO_DELETE,
+                        "Failed to remove transaction " + tid + " from search index", e);
+            }
+            if (key.isPresent())
+                adjustPayeeStats(Map.of(key.get(), -1), DaoException.ErrorCode.FAIL_TO_DELETE);
             daoManager.commit();
             return n;
         } catch (DaoException e) {
@@ -215,17 +799,142 @@ public class TransactionDao extends Dao<Transaction, Integer> {
         }
     }
 
-    public SortedSet<String> getPayeeSet(LocalDate cutoffDate) throws DaoException {
-        final String sqlCmd = "select distinct(PAYEE) from " + getTableName() + " where DATE > '" + cutoffDate + "'";
-        try (Statement statement = connection.createStatement();
-        ResultSet resultSet = statement.executeQuery(sqlCmd)) {
-            final SortedSet<String> payeeSet = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
-            while (resultSet.next()) {
-                payeeSet.add(resultSet.getString(1));
+    /**
+     * update the search index with the payee and memo of the transactions
+     * @param tidList list of transaction ids
+     * @param tList list of transactions, matching tidList
+     * @param isNew true if the transactions are newly inserted
+     * @throws DaoException from database operations
+     */
+    private void indexSearchTexts(List<Integer> tidList, List<Transaction> tList, boolean isNew)
+            throws DaoException {
+        final List<String[]> textsList = new ArrayList<>();
+        for (Transaction t : tList)
+            textsList.add(new String[]{ t.getPayee(), t.getMemo() });
+        try {
+            searchIndex.index(tidList, textsList, isNew);
+        } catch (SQLException e) {
+            throw new DaoException(isNew ?
+                    DaoException.ErrorCode.FAIL_TO_INSERT : DaoException.ErrorCode.FAIL_TO_UPDATE,
+                    "Failed to index " + tidList.size() + " transactions for search", e);
+        }
+    }
+
+    /**
+     * add newly inserted transactions to the payee statistics
+     * @param tList list of inserted transactions
+     * @throws DaoException from database operations
+     */
+    private void addPayeeStats(List<Transaction> tList) throws DaoException {
+        try {
+            payeeStatsIndex.add(tList);
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_INSERT,
+                    "Failed to add " + tList.size() + " transactions to payee statistics", e);
+        }
+    }
+
+    /**
+     * get the payee statistics key of a transaction in the database
+     * @param tid the transaction id
+     * @return the key, or empty if the transaction is not in the database
+     * @throws DaoException from database operations
+     */
+    private Optional<PayeeStatsIndex.Key> getPayeeStatsKey(int tid) throws DaoException {
+        try {
+            return payeeStatsIndex.getKey(tid);
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to get payee statistics key of transaction " + tid, e);
+        }
+    }
+
+    /**
+     * adjust the payee statistics of the keys
+     * @param deltaMap the payee statistics keys and the changes of their counts
+     * @param errorCode the error code for a failure
+     * @throws DaoException from database operations
+     */
+    private void adjustPayeeStats(Map<PayeeStatsIndex.Key, Integer> deltaMap, DaoException.ErrorCode errorCode)
+            throws DaoException {
+        try {
+            payeeStatsIndex.adjust(deltaMap);
+        } catch (SQLException e) {
+            throw new DaoException(errorCode, "Failed to adjust payee statistics", e);
+        }
+    }
+
+    /**
+     * receives a row of the payee statistics, see scanPayeeStats
+     */
+    @FunctionalInterface
+    public interface PayeeStatsConsumer {
+        void accept(int accountID, String payee, int categoryID, int year, int count);
+    }
+
+    /**
+     * scan the usage statistics of the payees, the number of transactions for each account, payee,
+     * category, and year.
+     * @param consumer receives each row of the statistics
+     * @throws DaoException from database operations
+     */
+    public void scanPayeeStats(PayeeStatsConsumer consumer) throws DaoException {
+        lockConnection();
+        try {
+            payeeStatsIndex.scan(consumer);
+        } catch (SQLException e) {
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Failed to get payee statistics", e);
+        } finally {
+            unlockConnection();
+        }
+    }
+
+    /**
+     * @return a number changed whenever the payee statistics are changed, or -1 while a transaction
+     * is open on the write connection, when the statistics might have uncommitted changes
+     */
+    public long getPayeeStatsVersion() {
+        return DaoManager.getInstance().hasOpenTransaction() ? -1 : payeeStatsIndex.getVersion();
+    }
+
+    /**
+     * find the ids of the transactions matching a search string.  A transaction matches if its payee or
+     * memo contains the search string, or its category, tag, security, or trade action is in the given sets.
+     * @param lowerSearchString lower cased search string
+     * @param categoryIDSet category ids, including negative transfer account ids, with matching names
+     * @param tagIDSet tag ids with matching names
+     * @param securityIDSet security ids with matching names
+     * @param tradeActionSet trade actions with matching names
+     * @return set of ids of the matching transactions
+     * @throws DaoException from database operations
+     */
+    public Set<Integer> getStringSearchTransactionIDSet(String lowerSearchString, Set<Integer> categoryIDSet,
+                                                        Set<Integer> tagIDSet, Set<Integer> securityIDSet,
+                                                        Set<Transaction.TradeAction> tradeActionSet)
+            throws DaoException {
+        lockConnection();
+        try {
+            final Set<Integer> tidSet = searchIndex.search(lowerSearchString);
+            if (categoryIDSet.isEmpty() && tagIDSet.isEmpty() && securityIDSet.isEmpty() && tradeActionSet.isEmpty())
+                return tidSet;
+
+            final PreparedStatement preparedStatement = getPreparedStatement("select ID from " + getTableName()
+                    + " where CATEGORYID = ANY(?) or TAGID = ANY(?) or SECURITYID = ANY(?) "
+                    + "or TRADEACTION = ANY(?)", false);
+            preparedStatement.setObject(1, categoryIDSet.toArray(new Integer[0]));
+            preparedStatement.setObject(2, tagIDSet.toArray(new Integer[0]));
+            preparedStatement.setObject(3, securityIDSet.toArray(new Integer[0]));
+            preparedStatement.setObject(4, tradeActionSet.stream().map(Enum::name).toArray(String[]::new));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next())
+                    tidSet.add(resultSet.getInt(1));
             }
-            return payeeSet;
+            return tidSet;
         } catch (SQLException e) {
-            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET, "Fail to get PayeeSet", e);
+            throw new DaoException(DaoException.ErrorCode.FAIL_TO_GET,
+                    "Failed to search transactions for '" + lowerSearchString + "'", e);
+        } finally {
+            unlockConnection();
         }
     }
 }
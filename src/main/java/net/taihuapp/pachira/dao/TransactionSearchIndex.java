@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+/**
+ * An inverted index of the words in the payee and memo of the transactions.
+ *
+ * The text is lower cased and split into tokens of letters and digits.  The distinct tokens are
+ * kept in SEARCHTOKENS, and the (token, transaction id) pairs are kept in TRANSACTIONTOKENS.
+ * Since a run of letters and digits of a search string can only be found inside a token, a
+ * substring search first finds the matching tokens in the much smaller SEARCHTOKENS table,
+ * then the transactions containing them.
+ */
+class TransactionSearchIndex {
+
+    static final String TOKEN_TABLE_NAME = "SEARCHTOKENS";
+    static final String POSTING_TABLE_NAME = "TRANSACTIONTOKENS";
+
+    private static final String MERGE_TOKEN_SQL = "merge into " + TOKEN_TABLE_NAME
+            + " (TOKEN) key (TOKEN) values (?)";
+    private static final String INSERT_POSTING_SQL = "insert into " + POSTING_TABLE_NAME
+            + " (TOKEN, TRANSACTIONID) values (?, ?)";
+    private static final String DELETE_POSTING_SQL = "delete from " + POSTING_TABLE_NAME
+            + " where TRANSACTIONID = ?";
+
+    private final Dao<?, ?> dao; // the owner dao, for prepared statements and batches
+
+    TransactionSearchIndex(Dao<?, ?> dao) { this.dao = dao; }
+
+    /**
+     * split the lower cased texts into tokens of letters and digits
+     * @param texts - input texts, null is allowed
+     * @return set of distinct tokens
+     */
+    static Set<String> tokenize(String... texts) {
+        final Set<String> tokenSet = new HashSet<>();
+        for (String text : texts) {
+            if (text == null)
+                continue;
+            final String lowerText = text.toLowerCase();
+            int start = -1;
+            for (int i = 0; i <= lowerText.length(); i++) {
+                final boolean isLetterOrDigit = i < lowerText.length()
+                        && Character.isLetterOrDigit(lowerText.charAt(i));
+                if (isLetterOrDigit && start < 0) {
+                    start = i;
+                } else if (!isLetterOrDigit && start >= 0) {
+                    tokenSet.add(lowerText.substring(start, i));
+                    start = -1;
+                }
+            }
+        }
+        return tokenSet;
+    }
+
+    // the token and transaction id pairs for a list of transactions
+    private static List<Map.Entry<String, Integer>> postings(List<Integer> tidList, List<String[]> textsList) {
+        final List<Map.Entry<String, Integer>> postingList = new ArrayList<>();
+        for (int i = 0; i < tidList.size(); i++) {
+            final Integer tid = tidList.get(i);
+            for (String token : tokenize(textsList.get(i)))
+                postingList.add(new AbstractMap.SimpleImmutableEntry<>(token, tid));
+        }
+        return postingList;
+    }
+
+    /**
+     * replace the indexed texts of the transactions, should be called inside a database transaction
+     * @param tidList - list of transaction ids
+     * @param textsList - list of payee and memo, matching tidList
+     * @param isNew - true if the transactions are newly inserted and have nothing indexed
+     * @throws SQLException - from database operations
+     */
+    void index(List<Integer> tidList, List<String[]> textsList, boolean isNew) throws SQLException {
+        if (!isNew)
+            dao.executeBatch(dao.getPreparedStatement(DELETE_POSTING_SQL, false), tidList,
+                    (ps, tid) -> ps.setInt(1, tid), false);
+
+        final List<Map.Entry<String, Integer>> postingList = postings(tidList, textsList);
+        final Set<String> tokenSet = new TreeSet<>();
+        postingList.forEach(posting -> tokenSet.add(posting.getKey()));
+        dao.executeBatch(dao.getPreparedStatement(MERGE_TOKEN_SQL, false), new ArrayList<>(tokenSet),
+                (ps, token) -> ps.setString(1, token), false);
+        dao.executeBatch(dao.getPreparedStatement(INSERT_POSTING_SQL, false), postingList,
+                (ps, posting) -> {
+                    ps.setString(1, posting.getKey());
+                    ps.setInt(2, posting.getValue());
+                }, false);
+    }
+
+    /**
+     * remove a transaction from the index.  The tokens are kept in SEARCHTOKENS, they are harmless.
+     * @param tid - the transaction id
+     * @throws SQLException - from database operations
+     */
+    void remove(int tid) throws SQLException {
+        final PreparedStatement preparedStatement = dao.getPreparedStatement(DELETE_POSTING_SQL, false);
+        preparedStatement.setInt(1, tid);
+        preparedStatement.executeUpdate();
+    }
+
+    /**
+     * find the transactions with payee or memo containing the search string, ignoring case
+     * @param lowerSearchString - lower cased search string
+     * @return set of ids of the matching transactions
+     * @throws SQLException - from database operations
+     */
+    Set<Integer> search(String lowerSearchString) throws SQLException {
+        final Set<String> runSet = tokenize(lowerSearchString);
+        if (runSet.isEmpty()) {
+            // nothing to use in the index, check all the texts
+            return verify(null, lowerSearchString);
+        }
+
+        Set<Integer> tidSet = null;
+        for (String run : runSet) {
+            final List<String> tokenList = new ArrayList<>();
+            final PreparedStatement tokenStatement = dao.getPreparedStatement("select TOKEN from "
+                    + TOKEN_TABLE_NAME + " where TOKEN like ?", false);
+            tokenStatement.setString(1, "%" + run + "%"); // a run has no wildcard characters
+            try (ResultSet resultSet = tokenStatement.executeQuery()) {
+                while (resultSet.next())
+                    tokenList.add(resultSet.getString(1));
+            }
+            if (tokenList.isEmpty())
+                return new HashSet<>();
+
+            final Set<Integer> runTidSet = new HashSet<>();
+            final PreparedStatement postingStatement = dao.getPreparedStatement("select TRANSACTIONID from "
+                    + POSTING_TABLE_NAME + " where TOKEN = ANY(?)", false);
+            postingStatement.setObject(1, tokenList.toArray(new String[0]));
+            try (ResultSet resultSet = postingStatement.executeQuery()) {
+                while (resultSet.next())
+                    runTidSet.add(resultSet.getInt(1));
+            }
+            if (tidSet == null)
+                tidSet = runTidSet;
+            else
+                tidSet.retainAll(runTidSet);
+            if (tidSet.isEmpty())
+                return tidSet;
+        }
+
+        // a single run is an exact match, otherwise the candidates need to be checked
+        return (runSet.size() == 1 && runSet.contains(lowerSearchString)) ?
+                tidSet : verify(tidSet, lowerSearchString);
+    }
+
+    // check the payee and memo of the candidate transactions, or all transactions if null
+    private Set<Integer> verify(Set<Integer> candidateSet, String lowerSearchString) throws SQLException {
+        final PreparedStatement preparedStatement;
+        if (candidateSet == null) {
+            preparedStatement = dao.getPreparedStatement("select ID, PAYEE, MEMO from TRANSACTIONS", false);
+        } else {
+            preparedStatement = dao.getPreparedStatement("select ID, PAYEE, MEMO from TRANSACTIONS "
+                    + "where ID = ANY(?)", false);
+            preparedStatement.setObject(1, candidateSet.toArray(new Integer[0]));
+        }
+        final Set<Integer> tidSet = new HashSet<>();
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                final String payee = resultSet.getString("PAYEE");
+                final String memo = resultSet.getString("MEMO");
+                if ((payee != null && payee.toLowerCase().contains(lowerSearchString))
+                        || (memo != null && memo.toLowerCase().contains(lowerSearchString)))
+                    tidSet.add(resultSet.getInt("ID"));
+            }
+        }
+        return tidSet;
+    }
+
+    /**
+     * rebuild the index of all transactions from scratch.  The index tables should be empty.
+     * @param connection - the database connection
+     * @param batchSize - number of statements in a batch
+     * @throws SQLException - from database operations
+     */
+    static void build(Connection connection, int batchSize) throws SQLException {
+        final Set<String> tokenSet = new TreeSet<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select ID, PAYEE, MEMO from TRANSACTIONS");
+             PreparedStatement postingStatement = connection.prepareStatement(INSERT_POSTING_SQL)) {
+            int count = 0;
+            while (resultSet.next()) {
+                final int tid = resultSet.getInt("ID");
+                for (String token : tokenize(resultSet.getString("PAYEE"), resultSet.getString("MEMO"))) {
+                    tokenSet.add(token);
+                    postingStatement.setString(1, token);
+                    postingStatement.setInt(2, tid);
+                    postingStatement.addBatch();
+                    if (++count % batchSize == 0)
+                        postingStatement.executeBatch();
+                }
+            }
+            postingStatement.executeBatch();
+        }
+
+        try (PreparedStatement tokenStatement = connection.prepareStatement(MERGE_TOKEN_SQL)) {
+            int count = 0;
+            for (String token : tokenSet) {
+                tokenStatement.setString(1, token);
+                tokenStatement.addBatch();
+                if (++count % batchSize == 0)
+                    tokenStatement.executeBatch();
+            }
+            tokenStatement.executeBatch();
+        }
+    }
+}
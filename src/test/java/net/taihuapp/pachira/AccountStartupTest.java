@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import net.taihuapp.pachira.dao.DaoException;
+import net.taihuapp.pachira.dao.DaoManager;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AccountStartupTest {
+
+    private static final int N_ACCOUNTS = 40;
+
+    private static Map<Integer, BigDecimal> initAccountBalances(MainModel mainModel, List<Account> accounts,
+                                                                int parallelism) throws ModelException {
+        final AtomicLong lastWorkDone = new AtomicLong(0);
+        mainModel.initAccountBalances(accounts, parallelism, (workDone, max) ->
+                lastWorkDone.accumulateAndGet(workDone, Math::max));
+        assertEquals(accounts.size(), lastWorkDone.get());
+        final Map<Integer, BigDecimal> balanceMap = new HashMap<>();
+        for (Account account : accounts)
+            balanceMap.put(account.getID(), account.getCurrentBalance());
+        return balanceMap;
+    }
+
+    // the balances computed in parallel read sessions should match the serial ones
+    @Test
+    void testAccountStartup() throws IOException, DaoException, ModelException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraStartupTest")) {
+            MainModel mainModel = testDatabase.open(true);
+            TestDatabase.populate(mainModel, new Random(60), N_ACCOUNTS);
+            mainModel.close();
+
+            mainModel = testDatabase.open(false);
+            final List<Account> accounts = new ArrayList<>(mainModel.getAccountList(a -> true));
+            final int parallelism = DaoManager.getInstance().getMaxReadSessions();
+            final Map<Integer, BigDecimal> serialBalanceMap = initAccountBalances(mainModel, accounts, 1);
+            final Map<Integer, BigDecimal> parallelBalanceMap = initAccountBalances(mainModel, accounts, parallelism);
+            mainModel.close();
+
+            assertEquals(serialBalanceMap, parallelBalanceMap);
+        }
+    }
+}
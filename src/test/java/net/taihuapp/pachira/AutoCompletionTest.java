@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AutoCompletionTest {
+
+    private static final int N_ITEMS = 20000;
+
+    // the index suggester should give the best k of the items the per item predicates match, and
+    // follow the changes of the items
+    @Test
+    void testIndexSuggester() {
+        final Random random = new Random(25);
+        final ObservableList<String> items = FXCollections.observableArrayList();
+        for (int i = 0; i < N_ITEMS; i++)
+            items.add("Item " + Integer.toString(random.nextInt(1000000), 36) + " " + i);
+        final AutoCompletion.Suggester<String> indexSuggester = AutoCompletion.indexSuggester(items, s -> s);
+        final AutoCompletion.AutoCompleteComparator<String> comparator =
+                (text, s) -> s.toLowerCase().contains(text.toLowerCase());
+
+        indexSuggester.suggest("", 1); // build the index
+        final List<String> texts = List.of("i", "it", "ite", "item", "item ", "item a", "item ab", "1", "12");
+        for (String text : texts) {
+            // each keystroke evaluates a predicate per item
+            final Set<String> matchSet = new HashSet<>();
+            for (String s : items) {
+                if (comparator.matches(text, s))
+                    matchSet.add(s);
+            }
+            final List<String> suggestions = indexSuggester.suggest(text, AutoCompletion.SUGGESTION_LIMIT);
+
+            assertEquals(Math.min(AutoCompletion.SUGGESTION_LIMIT, matchSet.size()), suggestions.size());
+            assertTrue(matchSet.containsAll(suggestions));
+            assertEquals(AutoCompletion.scanSuggester(items, comparator).suggest(text, 5000).size(),
+                    Math.min(5000, matchSet.size()));
+        }
+
+        items.add("Zebra");
+        assertEquals(List.of("Zebra"), indexSuggester.suggest("zeb", AutoCompletion.SUGGESTION_LIMIT));
+        items.remove("Zebra");
+        assertTrue(indexSuggester.suggest("zeb", AutoCompletion.SUGGESTION_LIMIT).isEmpty());
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import net.taihuapp.pachira.dao.DaoException;
+import net.taihuapp.pachira.dao.DaoManager;
+import net.taihuapp.pachira.dao.TransactionDao;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static net.taihuapp.pachira.Transaction.TradeAction.BUY;
+import static net.taihuapp.pachira.Transaction.TradeAction.DEPOSIT;
+import static net.taihuapp.pachira.Transaction.TradeAction.WITHDRAW;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BalanceIndexTest {
+
+    private static final int N_TRANSACTIONS = 5000;
+
+    // the index should agree with a sorted list after random puts and removes
+    @Test
+    void testMatchesSortedList() {
+        final Random random = new Random(22);
+        final Comparator<int[]> comparator = Comparator.comparingInt((int[] k) -> k[1]).thenComparingInt(k -> k[0]);
+        final BalanceIndex<int[]> index = new BalanceIndex<>(comparator, k -> k[0], 2);
+        final Map<Integer, int[]> keyMap = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            final int id = random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                keyMap.remove(id);
+            } else {
+                final int[] key = new int[] { id, random.nextInt(100), random.nextInt(2001) - 1000 };
+                index.put(key, BigDecimal.valueOf(key[2], 2));
+                keyMap.put(id, key);
+            }
+
+            if (i % 1000 == 0) {
+                final List<int[]> keyList = new ArrayList<>(keyMap.values());
+                keyList.sort(comparator);
+                assertEquals(keyList.size(), index.size());
+                BigDecimal balance = BigDecimal.ZERO.setScale(2);
+                for (int j = 0; j < keyList.size(); j++) {
+                    final int[] key = keyList.get(j);
+                    assertEquals(key[0], index.idAt(j));
+                    assertEquals(j, index.indexOf(key[0]));
+                    assertEquals(balance, index.balanceBefore(j));
+                    balance = balance.add(BigDecimal.valueOf(key[2], 2));
+                }
+                assertEquals(balance, index.balanceBefore(keyList.size()));
+                assertEquals((int) keyList.stream().filter(k -> k[1] < 50).count(),
+                        index.prefixLength(k -> k[1] < 50));
+            }
+        }
+    }
+
+    // ids and running balances of the paged list, and the ids of the current account in the database
+    private static List<String> snapshot(MainModel mainModel) throws ModelException {
+        final List<String> rows = new ArrayList<>();
+        for (Transaction t : mainModel.getCurrentAccountPagedTransactionList())
+            rows.add(t.getID() + " " + t.getBalanceProperty().get());
+        for (TransactionRecord r : mainModel.getAccountTransactionRecordList(mainModel.getCurrentAccount()))
+            rows.add("db " + r.getID());
+        rows.add("balance " + mainModel.getCurrentAccount().getCurrentBalance().stripTrailingZeros());
+        return rows;
+    }
+
+    // the incremental updates after transaction changes should give the same list and balances
+    // as reloading the account
+    @Test
+    void testIncrementalMatchesReload() throws IOException, DaoException, ModelException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraBalanceIndexTest")) {
+            final MainModel mainModel = testDatabase.open(true);
+            final Account account = new Account(-1, Account.Type.CHECKING, "Checking", "", false,
+                    Integer.MAX_VALUE, null, BigDecimal.ZERO);
+            mainModel.insertUpdateAccount(account);
+
+            final Random random = new Random(22);
+            final LocalDate start = LocalDate.now().minusDays(N_TRANSACTIONS / 2);
+            final List<Transaction> tList = new ArrayList<>();
+            for (int i = 0; i < N_TRANSACTIONS; i++) {
+                final Transaction t = new Transaction(account.getID(), start.plusDays(random.nextInt(N_TRANSACTIONS)),
+                        random.nextBoolean() ? DEPOSIT : WITHDRAW, 0);
+                t.setAmount(BigDecimal.valueOf(1 + random.nextInt(100000), 2));
+                tList.add(t);
+            }
+            ((TransactionDao) DaoManager.getInstance().getDao(DaoManager.DaoType.TRANSACTION)).insertBatch(tList);
+            mainModel.setCurrentAccount(account);
+
+            for (int i = 0; i < 20; i++) {
+                final PagedTransactionList pagedList = mainModel.getCurrentAccountPagedTransactionList();
+                final Transaction oldT = pagedList.get(random.nextInt(pagedList.size()));
+                switch (i % 4) {
+                    case 0: { // insert
+                        final Transaction newT = new Transaction(account.getID(),
+                                start.plusDays(random.nextInt(N_TRANSACTIONS)), DEPOSIT, 0);
+                        newT.setAmount(BigDecimal.valueOf(1 + random.nextInt(100000), 2));
+                        mainModel.alterTransaction(null, newT, new ArrayList<>());
+                        break;
+                    }
+                    case 1: { // move and change the amount
+                        final Transaction newT = new Transaction(oldT);
+                        newT.setTDate(start.plusDays(random.nextInt(N_TRANSACTIONS)));
+                        newT.setAmount(BigDecimal.valueOf(1 + random.nextInt(100000), 2));
+                        mainModel.alterTransaction(oldT, newT, new ArrayList<>());
+                        break;
+                    }
+                    case 2: // status change
+                        mainModel.setTransactionStatus(oldT.getID(), oldT.getStatus() == Transaction.Status.CLEARED ?
+                                Transaction.Status.UNCLEARED : Transaction.Status.CLEARED);
+                        break;
+                    default: // delete
+                        mainModel.alterTransaction(oldT, null, new ArrayList<>());
+                        break;
+                }
+                final List<String> incremental = snapshot(mainModel);
+                mainModel.setCurrentAccount(account);
+                assertEquals(snapshot(mainModel), incremental);
+            }
+            assertEquals(N_TRANSACTIONS, mainModel.getCurrentAccountPagedTransactionList().size());
+            mainModel.close();
+        }
+    }
+
+    // the balance of an investing account replayed from a holdings checkpoint after transaction changes
+    // should be the same as replaying all the transactions from scratch
+    @Test
+    void testInvestingIncrementalMatchesReplay() throws IOException, DaoException, ModelException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraBalanceIndexTest")) {
+            final MainModel mainModel = testDatabase.open(true);
+            final Random random = new Random(22);
+            TestDatabase.populate(mainModel, random, 1);
+            final Account account = mainModel.getAccountList(a -> a.getName().equals("Brokerage 0")).get(0);
+            mainModel.setCurrentAccount(account);
+
+            for (int i = 0; i < 20; i++) {
+                final PagedTransactionList pagedList = mainModel.getCurrentAccountPagedTransactionList();
+                final Transaction oldT = pagedList.get(random.nextInt(pagedList.size()));
+                switch (i % 4) {
+                    case 0: { // buy more of a security held at the time
+                        final Transaction newT = new Transaction(oldT);
+                        newT.setID(-1);
+                        newT.setTradeAction(BUY);
+                        mainModel.alterTransaction(null, newT, new ArrayList<>());
+                        break;
+                    }
+                    case 1: { // move
+                        final Transaction newT = new Transaction(oldT);
+                        newT.setTDate(oldT.getTDate().plusDays(random.nextInt(200) - 100));
+                        mainModel.alterTransaction(oldT, newT, new ArrayList<>());
+                        break;
+                    }
+                    case 2: // status change
+                        mainModel.setTransactionStatus(oldT.getID(), oldT.getStatus() == Transaction.Status.CLEARED ?
+                                Transaction.Status.UNCLEARED : Transaction.Status.CLEARED);
+                        break;
+                    default: // delete
+                        mainModel.alterTransaction(oldT, null, new ArrayList<>());
+                        break;
+                }
+                final BigDecimal incremental = account.getCurrentBalance();
+                mainModel.initAccountBalances(List.of(account), 1, (workDone, max) -> {});
+                assertEquals(account.getCurrentBalance(), incremental);
+            }
+            mainModel.close();
+        }
+    }
+}
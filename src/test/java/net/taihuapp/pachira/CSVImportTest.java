@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import com.opencsv.exceptions.CsvException;
+import javafx.util.Pair;
+import net.taihuapp.pachira.dao.DaoException;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CSVImportTest {
+
+    private static final int N_ACCOUNTS = 2;
+    private static final int N_LINES = 5000;
+
+    // a CSV file of deposits, withdraws and dividends in the populated accounts, with a few bad lines
+    private static int writeCSV(Path csvPath, Random random) throws IOException {
+        final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("M/d/yyyy");
+        final String[] actions = { "DEPOSIT", "WITHDRAW", "DIV" };
+        int nGood = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(csvPath)) {
+            writer.write("Account Name,Date,Action,Category,Payee,Security Name,Amount,Quantity");
+            writer.newLine();
+            for (int i = 0; i < N_LINES; i++) {
+                final String account = (i % 101 == 0 ? "No Such Account" : "Brokerage " + random.nextInt(N_ACCOUNTS));
+                final LocalDate date = LocalDate.of(2023, 1, 1).plusDays(random.nextInt(365));
+                final String action = actions[random.nextInt(actions.length)];
+                final String security = action.equals("DIV") ? "Security " + random.nextInt(5) : "";
+                final BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(100000), 2);
+                writer.write(account + "," + date.format(formatter) + "," + action + ",,Payee " + (i % 7) + ","
+                        + security + "," + amount.toPlainString() + ",");
+                writer.newLine();
+                if (i % 101 != 0)
+                    nGood++;
+            }
+        }
+        return nGood;
+    }
+
+    // the lines imported the first time should all be skipped as duplicates the second time
+    @Test
+    void testImportAndReimport() throws IOException, CsvException, DaoException, ModelException {
+        final Path csvPath = TestDatabase.createTempFile("PachiraCSVImportTest", ".csv");
+        try (TestDatabase testDatabase = new TestDatabase("PachiraCSVImportTest")) {
+            final MainModel mainModel = testDatabase.open(true);
+            TestDatabase.populate(mainModel, new Random(18), N_ACCOUNTS);
+            final int nGood = writeCSV(csvPath, new Random(18));
+
+            final Pair<List<String[]>, List<String[]>> first = mainModel.importTransactionsCSV(csvPath.toFile());
+            final Pair<List<String[]>, List<String[]>> second = mainModel.importTransactionsCSV(csvPath.toFile());
+            mainModel.close();
+
+            assertEquals(nGood, first.getKey().size());
+            assertEquals(N_LINES - nGood, first.getValue().size());
+            assertEquals(0, second.getKey().size());
+            assertEquals(N_LINES, second.getValue().size());
+        } finally {
+            Files.deleteIfExists(csvPath);
+        }
+    }
+}
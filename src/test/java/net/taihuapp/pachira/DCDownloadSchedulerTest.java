@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import com.webcohesion.ofx4j.client.FinancialInstitution;
+import com.webcohesion.ofx4j.client.FinancialInstitutionAccount;
+import com.webcohesion.ofx4j.client.impl.BaseFinancialInstitutionData;
+import com.webcohesion.ofx4j.client.impl.FinancialInstitutionImpl;
+import com.webcohesion.ofx4j.domain.data.banking.AccountType;
+import com.webcohesion.ofx4j.domain.data.banking.BankAccountDetails;
+import com.webcohesion.ofx4j.domain.data.common.TransactionType;
+import net.taihuapp.pachira.dao.DaoException;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DCDownloadSchedulerTest {
+
+    private static final int N_FIS = 3;
+    private static final int N_ACCOUNTS_PER_FI = 5;
+    private static final int N_TRANSACTIONS = 4; // per statement
+    private static final int MAX_PER_FI = 2;
+    private static final long LATENCY_MILLIS = 200;
+    private static final int TIMEOUT_MILLIS = 1000;
+    private static final String FAIL_ONCE = "FAILONCE";
+    private static final String SLOW_ONCE = "SLOWONCE";
+    private static final String REJECTED = "REJECTED";
+
+    /**
+     * a stub OFX server, answers a bank statement request for any account after a latency,
+     * fails the first request of FAIL_ONCE accounts with 503, stalls the first request of
+     * SLOW_ONCE accounts past the timeout, and always rejects REJECTED accounts with 400.
+     */
+    private static class StubOFXServer implements Closeable {
+        private static final Pattern ACCTID_PATTERN = Pattern.compile("<ACCTID>([^<\\r\\n]+)");
+        private static final Pattern NEWFILEUID_PATTERN = Pattern.compile("NEWFILEUID:([^\\r\\n]+)");
+        private static final Pattern TRNUID_PATTERN = Pattern.compile("<TRNUID>([^<\\r\\n]+)");
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final ExecutorService executorService = Executors.newCachedThreadPool();
+        private final Map<String, AtomicInteger> activeMap = new ConcurrentHashMap<>();
+        private final Map<String, Integer> maxActiveMap = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> requestCountMap = new ConcurrentHashMap<>();
+        private final AtomicInteger totalActive = new AtomicInteger(0);
+        private final AtomicInteger maxTotalActive = new AtomicInteger(0);
+
+        StubOFXServer() throws IOException {
+            executorService.submit(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        executorService.submit(() -> handle(socket));
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        URL getURL(String path) throws IOException {
+            return new URL("http://localhost:" + serverSocket.getLocalPort() + "/" + path);
+        }
+
+        private void handle(Socket socket) {
+            try (socket) {
+                final InputStream in = new BufferedInputStream(socket.getInputStream());
+                final String path = readLine(in).split(" ")[1].substring(1);
+                int contentLength = 0;
+                for (String header = readLine(in); !header.isEmpty(); header = readLine(in)) {
+                    if (header.toLowerCase().startsWith("content-length:"))
+                        contentLength = Integer.parseInt(header.substring(15).trim());
+                }
+                final String body = new String(in.readNBytes(contentLength), StandardCharsets.UTF_8);
+                final Matcher matcher = ACCTID_PATTERN.matcher(body);
+                final String accountID = matcher.find() ? matcher.group(1).trim() : "";
+                final Matcher uidMatcher = NEWFILEUID_PATTERN.matcher(body);
+                final String uid = uidMatcher.find() ? uidMatcher.group(1).trim() : "NONE";
+                final Matcher trnUIDMatcher = TRNUID_PATTERN.matcher(body);
+                final String trnUID = trnUIDMatcher.find() ? trnUIDMatcher.group(1).trim() : "1";
+                final int nRequests = requestCountMap.computeIfAbsent(accountID, k -> new AtomicInteger(0))
+                        .incrementAndGet();
+
+                final int active = activeMap.computeIfAbsent(path, k -> new AtomicInteger(0)).incrementAndGet();
+                maxActiveMap.merge(path, active, Math::max);
+                maxTotalActive.accumulateAndGet(totalActive.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(LATENCY_MILLIS);
+                    if (accountID.startsWith(SLOW_ONCE) && nRequests == 1)
+                        Thread.sleep(3L * TIMEOUT_MILLIS);
+                } finally {
+                    activeMap.get(path).decrementAndGet();
+                    totalActive.decrementAndGet();
+                }
+
+                final OutputStream out = socket.getOutputStream();
+                if (accountID.startsWith(REJECTED)) {
+                    write(out, 400, "");
+                } else if (accountID.startsWith(FAIL_ONCE) && nRequests == 1) {
+                    write(out, 503, "");
+                } else {
+                    write(out, 200, statement(accountID, uid, trnUID));
+                }
+            } catch (IOException | InterruptedException e) {
+                // the client went away, nothing to do
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            final StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.read()) >= 0 && c != '\n') {
+                if (c != '\r')
+                    sb.append((char) c);
+            }
+            return sb.toString();
+        }
+
+        private static void write(OutputStream out, int code, String body) throws IOException {
+            final byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+            out.write(("HTTP/1.1 " + code + " Stub\r\nContent-Type: application/x-ofx\r\nContent-Length: "
+                    + bytes.length + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(bytes);
+            out.flush();
+        }
+
+        private static String statement(String accountID, String uid, String trnUID) {
+            final StringBuilder sb = new StringBuilder();
+            sb.append("OFXHEADER:100\r\nDATA:OFXSGML\r\nVERSION:102\r\nSECURITY:NONE\r\nENCODING:USASCII\r\n")
+                    .append("CHARSET:1252\r\nCOMPRESSION:NONE\r\nOLDFILEUID:NONE\r\nNEWFILEUID:").append(uid)
+                    .append("\r\n\r\n")
+                    .append("<OFX><SIGNONMSGSRSV1><SONRS><STATUS><CODE>0<SEVERITY>INFO</STATUS>")
+                    .append("<DTSERVER>20240201120000<LANGUAGE>ENG</SONRS></SIGNONMSGSRSV1>")
+                    .append("<BANKMSGSRSV1><STMTTRNRS><TRNUID>").append(trnUID)
+                    .append("<STATUS><CODE>0<SEVERITY>INFO</STATUS>")
+                    .append("<STMTRS><CURDEF>USD<BANKACCTFROM><BANKID>123456789<ACCTID>").append(accountID)
+                    .append("<ACCTTYPE>CHECKING</BANKACCTFROM>")
+                    .append("<BANKTRANLIST><DTSTART>20240101120000<DTEND>20240201120000");
+            for (int i = 0; i < N_TRANSACTIONS; i++) {
+                sb.append("<STMTTRN><TRNTYPE>CREDIT<DTPOSTED>202401").append(String.format("%02d", i + 1))
+                        .append("120000<TRNAMT>25.00<FITID>").append(accountID).append("-").append(i)
+                        .append("<NAME>Payee ").append(i).append("</STMTTRN>");
+            }
+            sb.append("</BANKTRANLIST><LEDGERBAL><BALAMT>").append(25 * N_TRANSACTIONS)
+                    .append(".00<DTASOF>20240201120000</LEDGERBAL></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>");
+            return sb.toString();
+        }
+
+        int getMaxActive(String path) { return maxActiveMap.getOrDefault(path, 0); }
+
+        int getMaxTotalActive() { return maxTotalActive.get(); }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            executorService.shutdownNow();
+        }
+    }
+
+    private static FinancialInstitutionAccount fiAccount(URL url, String accountNumber) {
+        final BaseFinancialInstitutionData fiData = new BaseFinancialInstitutionData();
+        fiData.setFinancialInstitutionId("1234");
+        fiData.setOFXURL(url);
+        fiData.setName("Stub Bank");
+        fiData.setOrganization("Stub");
+        final FinancialInstitution fi = new FinancialInstitutionImpl(fiData,
+                new DCDownloadScheduler.TimeoutOFXV1Connection(TIMEOUT_MILLIS));
+        fi.setLanguage(Locale.US.getISO3Language().toUpperCase());
+        final BankAccountDetails bankAccountDetails = new BankAccountDetails();
+        bankAccountDetails.setAccountType(AccountType.CHECKING);
+        bankAccountDetails.setBankId("123456789");
+        bankAccountDetails.setAccountNumber(accountNumber);
+        return fi.loadBankAccount(bankAccountDetails, "user", "password");
+    }
+
+    // the downloads should run concurrently within the per FI cap, retry failures,
+    // and import each statement on the calling thread
+    @Test
+    void testConcurrentDownloads() throws IOException, DaoException, ModelException, InterruptedException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraDCDownloadTest");
+             StubOFXServer server = new StubOFXServer()) {
+            final MainModel mainModel = testDatabase.open(true);
+            final List<DCDownloadScheduler.Job> jobList = new ArrayList<>();
+            for (int f = 0; f < N_FIS; f++) {
+                for (int a = 0; a < N_ACCOUNTS_PER_FI; a++) {
+                    final String accountNumber;
+                    if (f == 0 && a == 0)
+                        accountNumber = FAIL_ONCE;
+                    else if (f == 1 && a == 0)
+                        accountNumber = SLOW_ONCE;
+                    else if (f == 2 && a == 0)
+                        accountNumber = REJECTED;
+                    else
+                        accountNumber = "ACCT" + f + a;
+                    final Account account = new Account(-1, Account.Type.CHECKING, "Checking " + accountNumber,
+                            "", false, Integer.MAX_VALUE, null, BigDecimal.ZERO);
+                    mainModel.insertUpdateAccount(account);
+                    final FinancialInstitutionAccount fiAccount = fiAccount(server.getURL("fi" + f), accountNumber);
+                    jobList.add(new DCDownloadScheduler.Job(account, "fi" + f, () ->
+                            fiAccount.readStatement(new Date(0), new Date())));
+                }
+            }
+
+            final Thread testThread = Thread.currentThread();
+            final DCDownloadScheduler scheduler = new DCDownloadScheduler(MAX_PER_FI, 16, 3, 50);
+            final List<DCDownloadScheduler.Result<Set<TransactionType>>> resultList =
+                    scheduler.run(jobList, (account, statement) -> {
+                        assertSame(testThread, Thread.currentThread());
+                        return mainModel.importAccountStatement(account, statement);
+                    });
+
+            assertEquals(jobList.size(), resultList.size());
+            for (int i = 0; i < resultList.size(); i++) {
+                final DCDownloadScheduler.Result<Set<TransactionType>> result = resultList.get(i);
+                final Account account = result.getAccount();
+                assertSame(jobList.get(i).getAccount(), account);
+                if (account.getName().endsWith(REJECTED)) {
+                    assertFalse(result.isSuccess());
+                    assertEquals(1, result.getAttempts());
+                    assertEquals(0, mainModel.getAccountTransactionList(account).size());
+                    continue;
+                }
+                assertTrue(result.isSuccess(), account.getName());
+                assertEquals(account.getName().endsWith(FAIL_ONCE) || account.getName().endsWith(SLOW_ONCE)
+                        ? 2 : 1, result.getAttempts());
+                assertEquals(N_TRANSACTIONS, mainModel.getAccountTransactionList(account).size());
+                assertEquals(0, new BigDecimal(25 * N_TRANSACTIONS).compareTo(account.getCurrentBalance()));
+            }
+            for (int f = 0; f < N_FIS; f++)
+                assertTrue(server.getMaxActive("fi" + f) <= MAX_PER_FI);
+            assertTrue(server.getMaxTotalActive() > MAX_PER_FI);
+            mainModel.close();
+        }
+    }
+
+    // an Error in a download should fail the jobs left to its worker instead of hanging, and the
+    // statements should be imported on the import executor
+    @Test
+    void testWorkerErrorAndImportExecutor() throws InterruptedException, ExecutionException {
+        final List<DCDownloadScheduler.Job> jobList = new ArrayList<>();
+        for (int a = 0; a < 3; a++) {
+            final Account account = new Account(-1, Account.Type.CHECKING, "Broken " + a, "", false,
+                    Integer.MAX_VALUE, null, BigDecimal.ZERO);
+            jobList.add(new DCDownloadScheduler.Job(account, "broken", () -> { throw new AssertionError(); }));
+        }
+        for (int a = 0; a < 3; a++) {
+            final Account account = new Account(-1, Account.Type.CHECKING, "Good " + a, "", false,
+                    Integer.MAX_VALUE, null, BigDecimal.ZERO);
+            jobList.add(new DCDownloadScheduler.Job(account, "good", () -> null));
+        }
+
+        final ExecutorService importExecutor = Executors.newSingleThreadExecutor();
+        try {
+            final Thread importThread = importExecutor.submit(Thread::currentThread).get();
+            final List<DCDownloadScheduler.Result<String>> resultList = new DCDownloadScheduler(1, 4, 1, 0)
+                    .run(jobList, (account, statement) -> {
+                        assertSame(importThread, Thread.currentThread());
+                        return account.getName();
+                    }, importExecutor);
+
+            assertEquals(jobList.size(), resultList.size());
+            for (DCDownloadScheduler.Result<String> result : resultList) {
+                final String name = result.getAccount().getName();
+                assertEquals(name.startsWith("Good"), result.isSuccess(), name);
+                if (result.isSuccess())
+                    assertEquals(name, result.getValue());
+                else
+                    assertTrue(result.getException() instanceof ExecutionException, name);
+            }
+        } finally {
+            importExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import net.taihuapp.pachira.dao.DaoException;
+import net.taihuapp.pachira.dao.DaoManager;
+import net.taihuapp.pachira.dao.ReadSession;
+import net.taihuapp.pachira.dao.TransactionDao;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.*;
+
+import static net.taihuapp.pachira.Transaction.TradeAction.WITHDRAW;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DaoManagerTest {
+
+    // a reader on another thread should not see the changes of an open transaction, on a read session
+    // it should not wait, on the write connection it should wait for the transaction to finish
+    @Test
+    void testReaderAgainstOpenTransaction() throws IOException, DaoException, ModelException,
+            InterruptedException, ExecutionException, TimeoutException {
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try (TestDatabase testDatabase = new TestDatabase("PachiraDaoManagerTest")) {
+            final MainModel mainModel = testDatabase.open(true);
+            final DaoManager daoManager = DaoManager.getInstance();
+            final TransactionDao transactionDao = (TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION);
+            final Account account = new Account(-1, Account.Type.CHECKING, "Checking", "", false,
+                    Integer.MAX_VALUE, null, BigDecimal.ZERO);
+            mainModel.insertUpdateAccount(account);
+            final Transaction transaction = new Transaction(account.getID(), LocalDate.now(), WITHDRAW, 1);
+            transaction.setAmount(BigDecimal.TEN);
+
+            daoManager.beginTransaction();
+            try {
+                transactionDao.insert(transaction);
+                assertEquals(1, transactionDao.countAccountTransactions(account.getID()));
+
+                final Future<Integer> sessionCount = executorService.submit(() -> {
+                    try (ReadSession readSession = daoManager.openReadSession()) {
+                        return ((TransactionDao) readSession.getDao(DaoManager.DaoType.TRANSACTION))
+                                .countAccountTransactions(account.getID());
+                    }
+                });
+                assertEquals(0, sessionCount.get(10, TimeUnit.SECONDS));
+
+                // a prepared statement, and a statement
+                final Future<Integer> writerCount = executorService.submit(() ->
+                        transactionDao.countAccountTransactions(account.getID()));
+                final Future<Integer> writerAll = executorService.submit(() -> transactionDao.getAll().size());
+                assertThrows(TimeoutException.class, () -> writerCount.get(500, TimeUnit.MILLISECONDS));
+                assertThrows(TimeoutException.class, () -> writerAll.get(100, TimeUnit.MILLISECONDS));
+                daoManager.rollback();
+                assertEquals(0, writerCount.get(10, TimeUnit.SECONDS));
+                assertEquals(0, writerAll.get(10, TimeUnit.SECONDS));
+            } finally {
+                if (daoManager.isInTransaction())
+                    daoManager.rollback();
+            }
+            mainModel.close();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
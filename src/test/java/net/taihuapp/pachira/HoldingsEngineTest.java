@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static net.taihuapp.pachira.Transaction.TradeAction.*;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class HoldingsEngineTest {
+
+    private static final int ACCOUNT_ID = 1;
+    private static final int SCALE = 2;
+    private static final LocalDate START_DATE = LocalDate.of(2018, 1, 15);
+
+    // build a list of buy, sell, split, and dividend transactions ordered by date
+    private static List<Transaction> buildTransactionList(Random random, int n) {
+        final List<Transaction> tList = new ArrayList<>();
+        final Map<Integer, BigDecimal> quantityMap = new HashMap<>();
+        LocalDate date = START_DATE;
+        for (int tid = 1; tid <= n; tid++) {
+            date = date.plusDays(random.nextInt(6));
+            final int sid = 1 + random.nextInt(4);
+            final BigDecimal q = quantityMap.getOrDefault(sid, BigDecimal.ZERO);
+            final int r = random.nextInt(10);
+            final Transaction t;
+            if (r < 5 || q.signum() == 0) {
+                t = new Transaction(ACCOUNT_ID, date, BUY, 0);
+                final BigDecimal bq = BigDecimal.valueOf(1 + random.nextInt(100));
+                t.setQuantity(bq);
+                t.setAmount(bq.multiply(BigDecimal.valueOf(1000 + random.nextInt(9000), 2)));
+                quantityMap.put(sid, q.add(bq));
+            } else if (r < 8) {
+                t = new Transaction(ACCOUNT_ID, date, SELL, 0);
+                final BigDecimal sq = q.min(BigDecimal.valueOf(1 + random.nextInt(60)));
+                t.setQuantity(sq);
+                t.setAmount(sq.multiply(BigDecimal.valueOf(1000 + random.nextInt(9000), 2)));
+                quantityMap.put(sid, q.subtract(sq));
+            } else if (r < 9) {
+                t = new Transaction(ACCOUNT_ID, date, STKSPLIT, 0);
+                t.setQuantity(BigDecimal.valueOf(3));
+                t.setOldQuantity(BigDecimal.valueOf(2));
+                quantityMap.put(sid, q.multiply(BigDecimal.valueOf(3)).divide(BigDecimal.valueOf(2)));
+            } else {
+                t = new Transaction(ACCOUNT_ID, date, DIV, 0);
+                t.setAmount(BigDecimal.valueOf(random.nextInt(10000), 2));
+            }
+            t.setID(tid);
+            t.setSecurityID(sid);
+            tList.add(t);
+        }
+        return tList;
+    }
+
+    // string representation of holdings, for comparison
+    private static String toString(Map<String, SecurityHolding> shMap) {
+        final StringBuilder sb = new StringBuilder();
+        new TreeMap<>(shMap).forEach((name, sh) -> {
+            sb.append(name).append(':');
+            for (SecurityLot lot : sh.getSecurityLotList()) {
+                sb.append(' ').append(lot.getTransactionID()).append('/').append(lot.getDate())
+                        .append('/').append(lot.getQuantity()).append('/').append(lot.getCostBasis())
+                        .append('/').append(lot.getPrice());
+            }
+            sb.append('\n');
+        });
+        return sb.toString();
+    }
+
+    private static Map<String, SecurityHolding> replay(HoldingsEngine engine, List<Transaction> tList,
+                                                       LocalDate date, int exTid) throws ModelException {
+        final List<TransactionRecord> rList = new ArrayList<>();
+        for (Transaction t : tList)
+            rList.add(new TransactionRecord(t));
+        return engine.replay(rList, date, exTid, SCALE, sid -> sid > 0 ? "S" + sid : "",
+                tid -> new ArrayList<>());
+    }
+
+    private static void check(HoldingsEngine engine, List<Transaction> tList, LocalDate date, int exTid)
+            throws ModelException {
+        final String expected = toString(replay(new HoldingsEngine(), tList, date, exTid));
+        final String actual = toString(replay(engine, tList, date, exTid));
+        if (!expected.equals(actual))
+            fail("Mismatch on " + date + " excluding " + exTid + "\nexpected:\n" + expected + "actual:\n" + actual);
+    }
+
+    @Test
+    void testCheckpointedReplayMatchesFullReplay() throws ModelException {
+        final Random random = new Random(20180115);
+        final List<Transaction> tList = buildTransactionList(random, 600);
+        final LocalDate lastDate = tList.get(tList.size()-1).getTDate();
+        final HoldingsEngine engine = new HoldingsEngine();
+
+        // warm up the checkpoints
+        check(engine, tList, LocalDate.MAX, 0);
+
+        // various dates and excluded transactions
+        for (int i = 0; i < 200; i++) {
+            final LocalDate date = START_DATE.plusDays(random.nextInt((int) (lastDate.toEpochDay()
+                    - START_DATE.toEpochDay()) + 30));
+            final int exTid = random.nextBoolean() ? 0 : 1 + random.nextInt(tList.size());
+            check(engine, tList, date, exTid);
+        }
+
+        // edits without notifying the engine, the fingerprints should catch them
+        for (int i = 0; i < 50; i++) {
+            final Transaction t = tList.get(random.nextInt(tList.size()));
+            if (t.getTradeAction() == BUY)
+                t.setAmount(t.getAmount().add(BigDecimal.ONE));
+            else if (t.getTradeAction() == SELL)
+                t.setQuantity(t.getQuantity().min(BigDecimal.ONE));
+            check(engine, tList, LocalDate.MAX, 0);
+            check(engine, tList, t.getTDate().plusMonths(random.nextInt(12)), 0);
+        }
+
+        // insert and delete transactions with invalidation
+        for (int i = 0; i < 50; i++) {
+            final int index = random.nextInt(tList.size());
+            final Transaction t = tList.get(index);
+            if (random.nextBoolean()) {
+                final Transaction newT = new Transaction(ACCOUNT_ID, t.getTDate(), BUY, 0);
+                newT.setID(1000 + i);
+                newT.setSecurityID(t.getSecurityID());
+                newT.setQuantity(BigDecimal.TEN);
+                newT.setAmount(BigDecimal.valueOf(12345, 2));
+                tList.add(index, newT);
+            } else {
+                tList.remove(index);
+            }
+            engine.invalidate(ACCOUNT_ID, t.getTDate());
+            check(engine, tList, LocalDate.MAX, 0);
+            check(engine, tList, lastDate.minusMonths(random.nextInt(36)), t.getID());
+        }
+
+        // an unordered list should still work, without using checkpoints
+        final List<Transaction> shuffledList = new ArrayList<>(tList);
+        Collections.shuffle(shuffledList, random);
+        check(engine, shuffledList, LocalDate.MAX, 0);
+        check(engine, tList, LocalDate.MAX, 0);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import javafx.util.Pair;
+import net.taihuapp.pachira.dao.DaoException;
+import net.taihuapp.pachira.dao.DaoManager;
+import net.taihuapp.pachira.dao.PairTidMatchInfoListDao;
+import net.taihuapp.pachira.dao.TransactionDao;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+
+import static net.taihuapp.pachira.Transaction.TradeAction.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LotMatchPreloadTest {
+
+    private static final int N_SECURITIES = 10;
+    private static final int N_TRANSACTIONS = 5000;
+
+    // security name and its quantity and cost basis
+    private static Map<String, String> holdings(Map<String, SecurityHolding> shMap) {
+        final Map<String, String> map = new HashMap<>();
+        shMap.forEach((name, sh) -> map.put(name, sh.getQuantity().stripTrailingZeros() + " "
+                + sh.getCostBasis().stripTrailingZeros()));
+        return map;
+    }
+
+    // replaying with the preloaded lot matches should give the same holdings as loading them one by one
+    @Test
+    void testLotMatchPreload() throws IOException, DaoException, ModelException, InterruptedException,
+            ExecutionException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraLotMatchTest")) {
+            final MainModel mainModel = testDatabase.open(true);
+            final DaoManager daoManager = DaoManager.getInstance();
+            final List<Integer> sidList = new ArrayList<>();
+            for (int i = 0; i < N_SECURITIES; i++) {
+                final Security security = new Security(-1, "S" + i, "Security " + i, Security.Type.STOCK);
+                mainModel.mergeSecurity(security);
+                sidList.add(security.getID());
+            }
+            final Account account = new Account(-1, Account.Type.BROKERAGE, "Brokerage", "", false,
+                    Integer.MAX_VALUE, null, BigDecimal.ZERO);
+            mainModel.insertUpdateAccount(account);
+
+            // buys and sells, each sell is matched to a lot bought earlier
+            final Random random = new Random(23);
+            final List<Transaction> tList = new ArrayList<>();
+            final Map<Integer, List<int[]>> openLotMap = new HashMap<>(); // sid to lots of {index, remaining}
+            final Map<Integer, int[]> sellMatchMap = new HashMap<>(); // sell index to {buy index, quantity}
+            LocalDate date = LocalDate.now().minusDays(N_TRANSACTIONS);
+            for (int i = 0; i < N_TRANSACTIONS; i++) {
+                date = date.plusDays(random.nextInt(2));
+                final int sid = sidList.get(random.nextInt(N_SECURITIES));
+                final List<int[]> openLots = openLotMap.computeIfAbsent(sid, k -> new ArrayList<>());
+                final Transaction.TradeAction ta;
+                final int quantity;
+                if (!openLots.isEmpty() && random.nextBoolean()) {
+                    final int[] lot = openLots.get(random.nextInt(openLots.size()));
+                    ta = SELL;
+                    quantity = Math.min(lot[1], 1 + random.nextInt(50));
+                    sellMatchMap.put(i, new int[] { lot[0], quantity });
+                    lot[1] -= quantity;
+                    if (lot[1] == 0)
+                        openLots.remove(lot);
+                } else {
+                    ta = BUY;
+                    quantity = 1 + random.nextInt(100);
+                    openLots.add(new int[] { i, quantity });
+                }
+                tList.add(new Transaction(-1, account.getID(), date, null, ta, Transaction.Status.UNCLEARED,
+                        sid, "", "", BigDecimal.valueOf(quantity), null, "", BigDecimal.ZERO, BigDecimal.ZERO,
+                        BigDecimal.valueOf(quantity).multiply(BigDecimal.valueOf(1000 + random.nextInt(9000), 2)),
+                        0, -1, -1, -1, new ArrayList<>(), ""));
+            }
+            final List<Integer> tidList = ((TransactionDao) daoManager.getDao(DaoManager.DaoType.TRANSACTION))
+                    .insertBatch(tList);
+            final PairTidMatchInfoListDao pairTidMatchInfoListDao =
+                    (PairTidMatchInfoListDao) daoManager.getDao(DaoManager.DaoType.PAIR_TID_MATCH_INFO);
+            daoManager.beginTransaction();
+            for (Map.Entry<Integer, int[]> entry : sellMatchMap.entrySet()) {
+                pairTidMatchInfoListDao.insert(new Pair<>(tidList.get(entry.getKey()), List.of(
+                        new MatchInfo(tidList.get(entry.getValue()[0]), BigDecimal.valueOf(entry.getValue()[1])))));
+            }
+            daoManager.commit();
+
+            final List<TransactionRecord> rList = mainModel.getAccountTransactionRecordList(account);
+            final IntFunction<String> securityNameFunction = sid -> mainModel.getSecurity(sid)
+                    .map(Security::getName).orElse("");
+
+            // one query per transaction with a security
+            final Map<String, SecurityHolding> perTransaction = new HoldingsEngine().replay(rList, LocalDate.now(),
+                    -1, 2, securityNameFunction, mainModel::getMatchInfoList);
+
+            // one query for the account
+            final Map<Integer, List<MatchInfo>> matchInfoMap = mainModel.getAccountMatchInfoMap(account.getID());
+            final Map<String, SecurityHolding> preloaded = new HoldingsEngine().replay(rList, LocalDate.now(),
+                    -1, 2, securityNameFunction, tid -> matchInfoMap.getOrDefault(tid, List.of()));
+
+            assertEquals(sellMatchMap.size(), matchInfoMap.size());
+            assertEquals(holdings(perTransaction), holdings(preloaded));
+
+            // altering a transaction drops the cached lot matches of the account
+            assertTrue(matchInfoMap == mainModel.getAccountMatchInfoMap(account.getID()));
+            final int sellIndex = sellMatchMap.keySet().iterator().next();
+            final Transaction oldT = mainModel.getTransactionByID(tidList.get(sellIndex)).orElseThrow();
+            final Transaction newT = new Transaction(oldT);
+            newT.setMemo("memo");
+            mainModel.alterTransaction(oldT, newT, new ArrayList<>());
+            final Map<Integer, List<MatchInfo>> altered = mainModel.getAccountMatchInfoMap(account.getID());
+            assertEquals(sellMatchMap.size() - 1, altered.size());
+
+            // while a transaction is open on another thread, readers don't cache what they load
+            daoManager.beginTransaction();
+            try {
+                // drops the cached lot matches of the account
+                final Transaction alteredT = mainModel.getTransactionByID(oldT.getID()).orElseThrow();
+                mainModel.alterTransaction(alteredT, new Transaction(alteredT), new ArrayList<>());
+                final ExecutorService executorService = Executors.newSingleThreadExecutor();
+                final Callable<Map<Integer, List<MatchInfo>>> reader = () ->
+                        mainModel.getAccountMatchInfoMap(account.getID());
+                final Map<Integer, List<MatchInfo>> read0 = executorService.submit(reader).get();
+                final Map<Integer, List<MatchInfo>> read1 = executorService.submit(reader).get();
+                executorService.shutdown();
+                assertNotSame(read0, read1);
+            } finally {
+                daoManager.rollback();
+            }
+            final Map<Integer, List<MatchInfo>> committed = mainModel.getAccountMatchInfoMap(account.getID());
+            assertSame(committed, mainModel.getAccountMatchInfoMap(account.getID()));
+            mainModel.close();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import javafx.util.Pair;
+import net.taihuapp.pachira.dao.DaoException;
+import net.taihuapp.pachira.dao.DaoManager;
+import net.taihuapp.pachira.dao.TransactionDao;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static net.taihuapp.pachira.Transaction.TradeAction.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NAVHistoryTest {
+
+    private static final int N_ACCOUNTS = 3;
+
+    @Test
+    void testPeriodEndDates() {
+        final LocalDate start = LocalDate.of(2023, 2, 15);
+        final LocalDate end = LocalDate.of(2024, 5, 10);
+        assertEquals(List.of(LocalDate.of(2023, 3, 31), LocalDate.of(2023, 6, 30), LocalDate.of(2023, 9, 30),
+                LocalDate.of(2023, 12, 31), LocalDate.of(2024, 3, 31), end),
+                ReportDialogController.periodEndDates(start, end, ReportDialogController.Frequency.QUARTERLY));
+        assertEquals(List.of(LocalDate.of(2023, 12, 31), end),
+                ReportDialogController.periodEndDates(start, end, ReportDialogController.Frequency.ANNUAL));
+        assertEquals(16, ReportDialogController.periodEndDates(start, end,
+                ReportDialogController.Frequency.MONTHLY).size());
+        assertEquals(List.of(start, start.plusDays(1)), ReportDialogController.periodEndDates(start,
+                start.plusDays(1), ReportDialogController.Frequency.DAILY));
+        assertEquals(List.of(), ReportDialogController.periodEndDates(end, start,
+                ReportDialogController.Frequency.DAILY));
+    }
+
+    // the single pass history should match the holdings computed for each date
+    @Test
+    void testMonthlyHistoryMatchesHoldings() throws IOException, DaoException, ModelException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraNAVHistoryTest")) {
+            final MainModel mainModel = testDatabase.open(true);
+            TestDatabase.populate(mainModel, new Random(14), N_ACCOUNTS);
+
+            final List<LocalDate> dates = ReportDialogController.periodEndDates(LocalDate.of(2014, 12, 1),
+                    LocalDate.of(2024, 6, 15), ReportDialogController.Frequency.MONTHLY);
+            for (Account account : mainModel.getAccountList(a -> a.getType() == Account.Type.BROKERAGE)) {
+                final List<TransactionRecord> tList = mainModel.getAccountTransactionRecordList(account);
+                final List<BigDecimal> seriesList = new ArrayList<>();
+                final List<String> seriesLabels = new ArrayList<>();
+                mainModel.computeRecordSecurityHoldingsSeries(tList, dates, (date, shList) -> {
+                    seriesList.add(shList.get(shList.size() - 1).getMarketValue());
+                    seriesLabels.add(date + " " + shList.size());
+                });
+                final List<BigDecimal> pointList = new ArrayList<>();
+                final List<String> pointLabels = new ArrayList<>();
+                for (LocalDate date : dates) {
+                    final List<SecurityHolding> shList = mainModel.computeRecordSecurityHoldings(tList, date, -1);
+                    pointList.add(shList.get(shList.size() - 1).getMarketValue());
+                    pointLabels.add(date + " " + shList.size());
+                }
+
+                assertEquals(pointLabels, seriesLabels);
+                assertEquals(pointList, seriesList);
+            }
+            mainModel.close();
+        }
+    }
+
+    private static String holdingLines(List<SecurityHolding> shList) {
+        final StringBuilder sb = new StringBuilder();
+        for (SecurityHolding sh : shList)
+            sb.append(sh.getSecurityName()).append(' ').append(sh.getQuantity()).append(' ')
+                    .append(sh.getPrice()).append(' ').append(sh.getMarketValue()).append('\n');
+        return sb.toString();
+    }
+
+    // prices before a stock split should be split adjusted, and a security without a price should be
+    // the same as in the holdings computed for each date
+    @Test
+    void testSplitHistoryMatchesHoldings() throws IOException, DaoException, ModelException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraNAVSplitTest")) {
+            final MainModel mainModel = testDatabase.open(true);
+            final Security split = new Security(-1, "SPLT", "Split Security", Security.Type.STOCK);
+            final Security noPrice = new Security(-1, "NOPX", "No Price Security", Security.Type.STOCK);
+            mainModel.mergeSecurity(split);
+            mainModel.mergeSecurity(noPrice);
+            mainModel.mergeSecurityPrices(List.of(
+                    new Pair<>(split.getID(), new Price(LocalDate.of(2020, 1, 10), new BigDecimal("100"))),
+                    new Pair<>(split.getID(), new Price(LocalDate.of(2020, 3, 16), new BigDecimal("60")))));
+            final Account account = new Account(-1, Account.Type.BROKERAGE, "Split Brokerage", "", false,
+                    Integer.MAX_VALUE, null, BigDecimal.ZERO);
+            mainModel.insertUpdateAccount(account);
+
+            final List<Transaction> tList = new ArrayList<>();
+            tList.add(new Transaction(-1, account.getID(), LocalDate.of(2020, 1, 2), null, DEPOSIT,
+                    Transaction.Status.UNCLEARED, -1, "", "Deposit", null, null, "", null, null,
+                    new BigDecimal("10000"), 0, -1, -1, -1, new ArrayList<>(), ""));
+            tList.add(new Transaction(-1, account.getID(), LocalDate.of(2020, 1, 5), null, BUY,
+                    Transaction.Status.UNCLEARED, split.getID(), "", "", new BigDecimal("10"), null, "",
+                    BigDecimal.ZERO, BigDecimal.ZERO, new BigDecimal("950"), 0, -1, -1, -1, new ArrayList<>(), ""));
+            tList.add(new Transaction(-1, account.getID(), LocalDate.of(2020, 1, 6), null, BUY,
+                    Transaction.Status.UNCLEARED, noPrice.getID(), "", "", new BigDecimal("5"), null, "",
+                    BigDecimal.ZERO, BigDecimal.ZERO, new BigDecimal("500"), 0, -1, -1, -1, new ArrayList<>(), ""));
+            tList.add(new Transaction(-1, account.getID(), LocalDate.of(2020, 2, 3), null, STKSPLIT,
+                    Transaction.Status.UNCLEARED, split.getID(), "", "", new BigDecimal("2"), new BigDecimal("1"),
+                    "", BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, 0, -1, -1, -1, new ArrayList<>(), ""));
+            ((TransactionDao) DaoManager.getInstance().getDao(DaoManager.DaoType.TRANSACTION)).insertBatch(tList);
+
+            final List<TransactionRecord> recordList = mainModel.getAccountTransactionRecordList(account);
+            final List<LocalDate> dates = List.of(LocalDate.of(2020, 1, 7), LocalDate.of(2020, 1, 31),
+                    LocalDate.of(2020, 2, 29), LocalDate.of(2020, 3, 31));
+            final List<String> seriesLines = new ArrayList<>();
+            final List<BigDecimal> splitPrices = new ArrayList<>();
+            mainModel.computeRecordSecurityHoldingsSeries(recordList, dates, (date, shList) -> {
+                seriesLines.add(date + "\n" + holdingLines(shList));
+                splitPrices.add(shList.stream().filter(sh -> sh.getSecurityName().equals(split.getName())).findFirst()
+                        .map(SecurityHolding::getPrice).orElseThrow());
+            });
+            final List<String> pointLines = new ArrayList<>();
+            for (LocalDate date : dates)
+                pointLines.add(date + "\n" + holdingLines(mainModel.computeRecordSecurityHoldings(recordList,
+                        date, -1)));
+            mainModel.close();
+
+            assertEquals(pointLines, seriesLines);
+            assertEquals(0, new BigDecimal("100").compareTo(splitPrices.get(1)));
+            assertEquals(0, new BigDecimal("50").compareTo(splitPrices.get(2)));
+            assertEquals(0, new BigDecimal("60").compareTo(splitPrices.get(3)));
+        }
+    }
+}
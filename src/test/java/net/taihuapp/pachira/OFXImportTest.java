@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import com.webcohesion.ofx4j.domain.data.banking.BankStatementResponse;
+import com.webcohesion.ofx4j.domain.data.common.TransactionList;
+import com.webcohesion.ofx4j.domain.data.common.TransactionType;
+import net.taihuapp.pachira.dao.DaoException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OFXImportTest {
+
+    private static final int N_TRANSACTIONS = 2000;
+
+    // a statement with the transactions from first to last, inclusive
+    private static BankStatementResponse statement(int first, int last) {
+        final List<com.webcohesion.ofx4j.domain.data.common.Transaction> tList = new ArrayList<>();
+        for (int i = first; i <= last; i++) {
+            final com.webcohesion.ofx4j.domain.data.common.Transaction t =
+                    new com.webcohesion.ofx4j.domain.data.common.Transaction();
+            t.setId("FITID" + i);
+            t.setTransactionType(i % 2 == 0 ? TransactionType.CREDIT : TransactionType.DEBIT);
+            t.setAmount(i % 2 == 0 ? 10.0 : -4.0);
+            t.setDatePosted(Date.from(LocalDate.of(2024, 1, 1).plusDays(i / 10).atTime(12, 0)
+                    .toInstant(ZoneOffset.UTC)));
+            t.setName("Payee " + i % 13);
+            tList.add(t);
+        }
+        final TransactionList transactionList = new TransactionList();
+        transactionList.setTransactions(tList);
+        final BankStatementResponse statement = new BankStatementResponse();
+        statement.setTransactionList(transactionList);
+        return statement;
+    }
+
+    // the transactions imported before should be skipped by FITID
+    @Test
+    void testImportSkipsDownloaded() throws IOException, DaoException, ModelException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraOFXImportTest")) {
+            final MainModel mainModel = testDatabase.open(true);
+            final Account account = new Account(-1, Account.Type.CHECKING, "Checking", "", false,
+                    Integer.MAX_VALUE, null, BigDecimal.ZERO);
+            mainModel.insertUpdateAccount(account);
+
+            mainModel.importAccountStatement(account, statement(0, N_TRANSACTIONS / 2 - 1));
+            mainModel.importAccountStatement(account, statement(0, N_TRANSACTIONS - 1));
+
+            assertEquals(N_TRANSACTIONS, mainModel.getAccountTransactionList(account).size());
+            assertEquals(new BigDecimal("6000.00"), account.getCurrentBalance().setScale(2));
+            mainModel.close();
+        }
+    }
+}
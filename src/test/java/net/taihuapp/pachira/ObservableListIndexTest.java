@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ObservableListIndexTest {
+
+    private static final int N_SECURITIES = 500;
+    private static final int N_TRANSACTIONS = 200000;
+
+    private static ObservableList<Security> buildSecurityList(int n) {
+        final List<Security> securities = new ArrayList<>();
+        for (int sid = 1; sid <= n; sid++)
+            securities.add(new Security(sid, "T" + sid, "Security " + sid, Security.Type.STOCK));
+        return FXCollections.observableArrayList(securities);
+    }
+
+    private static Optional<Security> linearGet(List<Security> securityList, int sid) {
+        return securityList.stream().filter(s -> s.getID() == sid).findAny();
+    }
+
+    @Test
+    void testIndexFollowsListChanges() {
+        final ObservableList<Security> securityList = buildSecurityList(20);
+        final ObservableListIndex<Integer, Security> idIndex =
+                new ObservableListIndex<>(securityList, Security::getID);
+        final ObservableListIndex<String, Security> nameIndex =
+                new ObservableListIndex<>(securityList, Security::getName);
+        assertSame(securityList.get(4), idIndex.get(5).orElse(null));
+
+        final Security added = new Security(21, "T21", "Security 21", Security.Type.BOND);
+        securityList.add(added);
+        assertSame(added, idIndex.get(21).orElse(null));
+        assertSame(added, nameIndex.get("Security 21").orElse(null));
+
+        final Security replacement = new Security(3, "T3", "Renamed 3", Security.Type.STOCK);
+        securityList.set(2, replacement);
+        assertSame(replacement, idIndex.get(3).orElse(null));
+        assertTrue(nameIndex.get("Security 3").isEmpty());
+        assertSame(replacement, nameIndex.get("Renamed 3").orElse(null));
+
+        securityList.remove(added);
+        assertTrue(idIndex.get(21).isEmpty());
+        assertTrue(nameIndex.get("Security 21").isEmpty());
+
+        // rename in place, the stale entry is detected, the new name needs invalidate
+        final Security s7 = idIndex.get(7).orElseThrow();
+        s7.setName("Renamed 7");
+        assertTrue(nameIndex.get("Security 7").isEmpty());
+        nameIndex.invalidate();
+        assertSame(s7, nameIndex.get("Renamed 7").orElse(null));
+
+        securityList.setAll(buildSecurityList(5));
+        assertTrue(idIndex.get(6).isEmpty());
+        assertSame(securityList.get(0), nameIndex.get("Security 1").orElse(null));
+    }
+
+    // resolve the security of each transaction of a synthetic 500-security portfolio,
+    // the index should find the same securities as a linear scan of the list
+    @Test
+    void testSecurityLookup() {
+        final ObservableList<Security> securityList = buildSecurityList(N_SECURITIES);
+        final ObservableListIndex<Integer, Security> idIndex =
+                new ObservableListIndex<>(securityList, Security::getID);
+        final Random random = new Random(500);
+        for (int i = 0; i < N_TRANSACTIONS; i++) {
+            final int sid = 1 + random.nextInt(N_SECURITIES);
+            assertSame(linearGet(securityList, sid).orElse(null), idIndex.get(sid).orElse(null));
+        }
+    }
+}
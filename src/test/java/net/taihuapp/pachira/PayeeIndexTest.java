@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import net.taihuapp.pachira.dao.DaoException;
+import net.taihuapp.pachira.dao.DaoManager;
+import net.taihuapp.pachira.dao.TransactionDao;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static net.taihuapp.pachira.Transaction.TradeAction.WITHDRAW;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PayeeIndexTest {
+
+    private static final int N_TRANSACTIONS = 5000;
+    private static final String[] WORDS = { "Acme", "Grocery", "Market", "Coffee", "Gas", "Station", "Books",
+            "Hardware", "Pharmacy", "Bakery" };
+
+    // true if a word after the first in the text starts with the prefix
+    private static boolean wordStartsWith(String text, String prefix) {
+        for (int j = 1; j < text.length(); j++) {
+            if (Character.isLetterOrDigit(text.charAt(j)) && !Character.isLetterOrDigit(text.charAt(j - 1))
+                    && text.startsWith(prefix, j))
+                return true;
+        }
+        return false;
+    }
+
+    // the completions should be the brute force matches, ranked by where they match, then by rank
+    @Test
+    void testCompletionMatchesScan() {
+        final Random random = new Random(24);
+        final List<String> items = new ArrayList<>();
+        for (int i = 0; i < 2000; i++)
+            items.add(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " #" + i);
+        final CompletionIndex<String> completionIndex = new CompletionIndex<>(items, s -> s);
+        for (String text : List.of("a", "AC", "gro", "cery", "#1", "station #", "y b", "zzz", "")) {
+            final String folded = text.toLowerCase();
+            final List<String> expected = new ArrayList<>();
+            items.stream().filter(s -> s.toLowerCase().startsWith(folded)).forEach(expected::add);
+            items.stream().filter(s -> !expected.contains(s) && wordStartsWith(s.toLowerCase(), folded))
+                    .forEach(expected::add);
+            items.stream().filter(s -> !expected.contains(s) && s.toLowerCase().contains(folded))
+                    .forEach(expected::add);
+            for (int k : new int[] { 1, 10, 5000 })
+                assertEquals(expected.subList(0, Math.min(k, expected.size())), completionIndex.complete(text, k),
+                        "'" + text + "' top " + k);
+        }
+    }
+
+    // payee statistics of the transactions counted from scratch
+    private static Map<String, Integer> countStats(List<Transaction> tList) {
+        final Map<String, Integer> countMap = new HashMap<>();
+        for (Transaction t : tList) {
+            countMap.merge(t.getAccountID() + " " + t.getPayee() + " " + t.getCategoryID() + " "
+                    + t.getTDate().getYear(), 1, Integer::sum);
+        }
+        return countMap;
+    }
+
+    private static Map<String, Integer> scanStats(TransactionDao transactionDao) throws DaoException {
+        final Map<String, Integer> map = new HashMap<>();
+        transactionDao.scanPayeeStats((accountID, payee, categoryID, year, count) ->
+                map.put(accountID + " " + payee + " " + categoryID + " " + year, count));
+        return map;
+    }
+
+    // the default category is the most used one in the window, older usage is not counted
+    @Test
+    void testDefaultCategoryInWindow() {
+        final int year = LocalDate.now().getYear();
+        final PayeeIndex.Builder builder = new PayeeIndex.Builder(LocalDate.now().minusYears(3));
+        builder.add(1, "Grocery", 10, year - 10, 50); // used the most, but long ago
+        builder.add(1, "Grocery", 11, year - 1, 2);
+        builder.add(1, "Grocery", 12, year, 3);
+        builder.add(1, "Grocery", 11, year - 3, 2);
+        builder.add(2, "Grocery", 11, year, 1);
+        builder.add(1, "Bakery", 13, year - 4, 7); // not used in the window
+        final PayeeIndex payeeIndex = builder.build(0);
+
+        assertEquals(11, payeeIndex.getDefaultCategory(1, "Grocery"));
+        assertEquals(11, payeeIndex.getDefaultCategory(2, "Grocery"));
+        assertEquals(0, payeeIndex.getDefaultCategory(1, "Bakery"));
+        assertEquals(List.of("Grocery"), payeeIndex.getPayeeList());
+    }
+
+    // the maintained statistics should match counting from the transactions after inserts, updates,
+    // and deletes, and the payee index should follow the changes
+    @Test
+    void testStatsMatchTransactions() throws IOException, DaoException, ModelException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraPayeeIndexTest")) {
+            final MainModel mainModel = testDatabase.open(true);
+            final TransactionDao transactionDao =
+                    (TransactionDao) DaoManager.getInstance().getDao(DaoManager.DaoType.TRANSACTION);
+            final Account account = new Account(-1, Account.Type.CHECKING, "Checking", "", false,
+                    Integer.MAX_VALUE, null, BigDecimal.ZERO);
+            mainModel.insertUpdateAccount(account);
+
+            final Random random = new Random(24);
+            final List<Transaction> tList = new ArrayList<>();
+            for (int i = 0; i < N_TRANSACTIONS; i++) {
+                final Transaction t = new Transaction(account.getID(),
+                        LocalDate.now().minusDays(random.nextInt(5 * 365)), WITHDRAW, 1 + random.nextInt(3));
+                t.setPayee(WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(50));
+                t.setAmount(BigDecimal.valueOf(1 + random.nextInt(10000), 2));
+                tList.add(t);
+            }
+            transactionDao.insertBatch(tList);
+            assertEquals(countStats(transactionDao.getAll()), scanStats(transactionDao));
+
+            final PayeeIndex payeeIndex = mainModel.getPayeeIndex();
+            assertSame(payeeIndex, mainModel.getPayeeIndex());
+            final List<String> suggestions = payeeIndex.getSuggestions("gro", AutoCompletion.SUGGESTION_LIMIT);
+            assertEquals(AutoCompletion.SUGGESTION_LIMIT, suggestions.size());
+            assertTrue(suggestions.stream().allMatch(s -> s.startsWith("Grocery ")));
+
+            // the payees of the last 3 years, counted by whole years
+            final int cutoffYear = LocalDate.now().minusYears(3).getYear();
+            final Set<String> payeeSet = new HashSet<>();
+            for (Transaction t : transactionDao.getAll()) {
+                if (t.getTDate().getYear() >= cutoffYear)
+                    payeeSet.add(t.getPayee());
+            }
+            assertEquals(payeeSet, new HashSet<>(payeeIndex.getPayeeList()));
+
+            // change the payees and categories, and delete some
+            final List<Transaction> allList = transactionDao.getAll();
+            for (int i = 0; i < 100; i++) {
+                final Transaction oldT = allList.get(random.nextInt(allList.size()));
+                if (mainModel.getTransactionByID(oldT.getID()).isEmpty())
+                    continue;
+                if (i % 3 == 0) {
+                    mainModel.alterTransaction(oldT, null, new ArrayList<>());
+                } else {
+                    final Transaction newT = new Transaction(oldT);
+                    newT.setPayee(i % 3 == 1 ? "New Payee " + random.nextInt(5) : oldT.getPayee());
+                    newT.setCategoryID(1 + random.nextInt(3));
+                    newT.setTDate(LocalDate.now().minusDays(random.nextInt(5 * 365)));
+                    mainModel.alterTransaction(oldT, newT, new ArrayList<>());
+                }
+            }
+            assertEquals(countStats(transactionDao.getAll()), scanStats(transactionDao));
+            final PayeeIndex changedIndex = mainModel.getPayeeIndex();
+            assertNotSame(payeeIndex, changedIndex);
+            assertFalse(changedIndex.getSuggestions("new pay", AutoCompletion.SUGGESTION_LIMIT).isEmpty());
+            mainModel.close();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import net.taihuapp.pachira.dao.DaoException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class QIFImportTest {
+
+    private static final int N_ACCOUNTS = 3;
+    private static final int BATCH_SIZE = 7; // small enough for many batches
+
+    // account name and the transactions in the account
+    private static Map<String, List<String>> transactionLines(MainModel mainModel) throws ModelException {
+        final Map<String, List<String>> map = new TreeMap<>();
+        for (Account account : mainModel.getAccountList(a -> a.getType() == Account.Type.BROKERAGE)) {
+            final List<String> lines = new ArrayList<>();
+            for (TransactionRecord t : mainModel.getAccountTransactionRecordList(account)) {
+                lines.add(t.getTDate() + " " + t.getTradeAction() + " "
+                        + mainModel.getSecurity(t.getSecurityID()).map(Security::getName).orElse("") + " "
+                        + (t.getQuantity() == null ? "" : t.getQuantity().stripTrailingZeros().toPlainString()) + " "
+                        + t.getAmount().stripTrailingZeros().toPlainString());
+            }
+            map.put(account.getName(), lines);
+        }
+        return map;
+    }
+
+    // a file exported from one database should import to the same transactions in batches
+    @Test
+    void testStreamingImportOfExport() throws IOException, ParseException, DaoException, ModelException {
+        final Path qifPath = TestDatabase.createTempFile("PachiraQIFImportTest", ".qif");
+        try (TestDatabase exportDatabase = new TestDatabase("PachiraQIFExportTest");
+             TestDatabase importDatabase = new TestDatabase("PachiraQIFImportTest")) {
+            MainModel mainModel = exportDatabase.open(true);
+            TestDatabase.populate(mainModel, new Random(16), N_ACCOUNTS);
+            final Map<String, List<String>> expected = transactionLines(mainModel);
+            final List<Account> accountList = new ArrayList<>(mainModel.getAccountList(a ->
+                    a.getType() == Account.Type.BROKERAGE));
+            try (Writer writer = Files.newBufferedWriter(qifPath)) {
+                mainModel.exportToQIF(writer, true, true, true, true, LocalDate.MIN, LocalDate.MAX,
+                        accountList, 1);
+            }
+            // the accounts exported in parallel chunks should be the same as the serial export
+            final StringWriter stringWriter = new StringWriter();
+            mainModel.exportToQIF(stringWriter, true, true, true, true, LocalDate.MIN, LocalDate.MAX,
+                    accountList, N_ACCOUNTS);
+            assertEquals(Files.readString(qifPath), stringWriter.toString());
+            mainModel.close();
+
+            mainModel = importDatabase.open(true);
+            final AtomicLong lastWorkDone = new AtomicLong(0);
+            final AtomicLong lastMax = new AtomicLong(0);
+            mainModel.importFromQIF(qifPath.toFile(), "", BATCH_SIZE, (workDone, max) -> {
+                assertFalse(workDone < lastWorkDone.get());
+                lastWorkDone.set(workDone);
+                lastMax.set(max);
+            });
+            final Map<String, List<String>> imported = transactionLines(mainModel);
+            mainModel.close();
+
+            assertEquals(N_ACCOUNTS, imported.size());
+            assertEquals(expected, imported);
+            assertEquals(3 * Files.size(qifPath), lastMax.get());
+            assertEquals(lastMax.get(), lastWorkDone.get());
+        } finally {
+            Files.deleteIfExists(qifPath);
+        }
+    }
+
+    // the two sides of the transfers are linked up, one date window at a time
+    @Test
+    void testTransfersLinked() throws IOException, ParseException, DaoException, ModelException {
+        final Path qifPath = TestDatabase.createTempFile("PachiraQIFTransferTest", ".qif");
+        try (TestDatabase testDatabase = new TestDatabase("PachiraQIFTransferTest")) {
+            Files.writeString(qifPath, String.join("\n",
+                    "!Option:AutoSwitch", "!Account", "NChecking", "TBank", "^", "NSavings", "TBank", "^",
+                    "!Clear:AutoSwitch",
+                    "!Account", "NChecking", "TBank", "^", "!Type:Bank",
+                    "D1/15'20", "T-100.00", "L[Savings]", "^",
+                    "D3/20'20", "T-250.00", "L[Savings]", "^",
+                    "!Account", "NSavings", "TBank", "^", "!Type:Bank",
+                    "D1/15'20", "T100.00", "L[Checking]", "^",
+                    "D3/20'20", "T250.00", "L[Checking]", "^", ""));
+            final MainModel mainModel = testDatabase.open(true);
+            mainModel.importFromQIF(qifPath.toFile(), "", BATCH_SIZE, (workDone, max) -> {});
+            final Map<Integer, Integer> tidMatchIDMap = new HashMap<>();
+            for (Account account : mainModel.getAccountList(a -> a.getType().isGroup(Account.Type.Group.SPENDING)))
+                for (TransactionRecord t : mainModel.getAccountTransactionRecordList(account))
+                    tidMatchIDMap.put(t.getID(), t.getMatchID());
+            mainModel.close();
+
+            assertEquals(4, tidMatchIDMap.size());
+            tidMatchIDMap.forEach((tid, matchID) -> assertEquals(tid, tidMatchIDMap.get(matchID)));
+        } finally {
+            Files.deleteIfExists(qifPath);
+        }
+    }
+}
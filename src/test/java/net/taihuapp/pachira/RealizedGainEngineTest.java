@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import javafx.util.Pair;
+import net.taihuapp.pachira.dao.DaoException;
+import net.taihuapp.pachira.dao.DaoManager;
+import net.taihuapp.pachira.dao.PairTidMatchInfoListDao;
+import net.taihuapp.pachira.dao.TransactionDao;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static net.taihuapp.pachira.Transaction.TradeAction.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class RealizedGainEngineTest {
+
+    private static final int N_ACCOUNTS = 4;
+
+    private static Transaction trade(int accountID, LocalDate tDate, LocalDate aDate, Transaction.TradeAction ta,
+                                     int sid, String quantity, String oldQuantity, String amount) {
+        return new Transaction(-1, accountID, tDate, aDate, ta, Transaction.Status.UNCLEARED, sid, "", "",
+                new BigDecimal(quantity), oldQuantity == null ? null : new BigDecimal(oldQuantity), "",
+                BigDecimal.ZERO, BigDecimal.ZERO, new BigDecimal(amount), 0, -1, -1, -1, new ArrayList<>(), "");
+    }
+
+    // an account with a stock split, short sales, lot matches and several trades on the same dates
+    private static void addMixedAccount(MainModel mainModel) throws DaoException, ModelException {
+        final int s0 = mainModel.getSecurity("Security 0").map(Security::getID).orElseThrow();
+        final int s1 = mainModel.getSecurity("Security 1").map(Security::getID).orElseThrow();
+        final Account account = new Account(-1, Account.Type.BROKERAGE, "Mixed", "", false,
+                Integer.MAX_VALUE, null, BigDecimal.ZERO);
+        mainModel.insertUpdateAccount(account);
+        final int aid = account.getID();
+
+        final LocalDate d = LocalDate.of(2016, 3, 1);
+        final List<Transaction> tList = List.of(
+                trade(aid, d, null, BUY, s0, "100", null, "1000.00"),
+                trade(aid, d.plusDays(10), null, BUY, s0, "50", null, "700.00"),
+                trade(aid, d.plusDays(10), null, SHTSELL, s1, "50", null, "1000.00"),
+                trade(aid, d.plusMonths(2), null, SELL, s0, "30", null, "500.00"),
+                trade(aid, d.plusMonths(2), null, BUY, s0, "20", null, "310.00"),
+                trade(aid, d.plusMonths(2), null, CVTSHRT, s1, "20", null, "300.00"),
+                trade(aid, d.plusMonths(3), d.minusMonths(1), BUY, s0, "7", null, "91.00"),
+                trade(aid, d.plusMonths(5), null, STKSPLIT, s0, "3", "2", "0"),
+                trade(aid, d.plusMonths(14), null, SELL, s0, "10", null, "120.00"),
+                trade(aid, d.plusMonths(14), null, SELL, s0, "5", null, "61.00"),
+                trade(aid, d.plusMonths(15), null, SELL, s0, "60", null, "800.00"),
+                trade(aid, d.plusMonths(16), null, CVTSHRT, s1, "30", null, "660.00"));
+        final List<Integer> tidList = ((TransactionDao) DaoManager.getInstance()
+                .getDao(DaoManager.DaoType.TRANSACTION)).insertBatch(tList);
+
+        // the sale of 60 shares is matched to the lots bought on the first two days
+        ((PairTidMatchInfoListDao) DaoManager.getInstance().getDao(DaoManager.DaoType.PAIR_TID_MATCH_INFO))
+                .insert(new Pair<>(tidList.get(10), List.of(new MatchInfo(tidList.get(1), new BigDecimal("49.5")),
+                        new MatchInfo(tidList.get(0), new BigDecimal("10.5")))));
+    }
+
+    private static String format(TransactionRecord t, RealizedGainEngine.ClosedLot closedLot) {
+        return t.getID() + " " + closedLot.getDate() + " " + closedLot.getSelectedShares() + " "
+                + closedLot.getProceeds() + " " + closedLot.getRealizedPNL() + " "
+                + closedLot.isShortTerm(t.getTDate());
+    }
+
+    private static String format(TransactionRecord t, SpecifyLotInfo sli) {
+        return t.getID() + " " + sli.getDate() + " " + sli.getSelectedShares() + " "
+                + sli.getProceeds() + " " + sli.getRealizedPNL() + " " + sli.isShortTerm(t.getTDate());
+    }
+
+    // the single pass engine should produce the same closed lots as recomputing the holdings for each trade
+    @Test
+    void testRealizedGainsMatchHoldings() throws IOException, DaoException, ModelException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraRealizedGainTest")) {
+            final MainModel mainModel = testDatabase.open(true);
+            TestDatabase.populate(mainModel, new Random(15), N_ACCOUNTS);
+            addMixedAccount(mainModel);
+
+            final LocalDate endDate = LocalDate.of(2030, 1, 1);
+            final Predicate<TransactionRecord> closingTradeFilter = t ->
+                    t.getTradeAction() == SELL || t.getTradeAction() == CVTSHRT;
+            for (Account account : mainModel.getAccountList(a -> a.getType() == Account.Type.BROKERAGE)) {
+                final List<TransactionRecord> tList = mainModel.getAccountTransactionRecordList(account);
+                final List<String> engineLines = new ArrayList<>();
+                mainModel.computeRealizedGains(tList, endDate, closingTradeFilter, (t, sName, closedLotList) -> {
+                    for (RealizedGainEngine.ClosedLot closedLot : closedLotList)
+                        engineLines.add(sName + " " + format(t, closedLot));
+                });
+                final List<String> holdingsLines = new ArrayList<>();
+                for (TransactionRecord t : tList) {
+                    if (!closingTradeFilter.test(t))
+                        continue;
+                    final String sName = mainModel.getSecurity(t.getSecurityID()).map(Security::getName)
+                            .orElse("");
+                    final SecurityHolding securityHolding = mainModel.computeRecordSecurityHoldings(tList,
+                            t.getTDate(), t.getID()).stream().filter(sh -> sh.getSecurityName().equals(sName))
+                            .findAny().orElseThrow();
+                    for (SpecifyLotInfo sli : securityHolding.processTransaction(t,
+                            mainModel.getMatchInfoList(t.getID())))
+                        holdingsLines.add(sName + " " + format(t, sli));
+                }
+
+                assertFalse(holdingsLines.isEmpty());
+                assertEquals(holdingsLines, engineLines);
+            }
+            mainModel.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import javafx.util.Pair;
+import net.taihuapp.pachira.dao.DaoException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class RevaluationTest {
+
+    private static final int N_ACCOUNTS = 20;
+
+    private static Map<Integer, BigDecimal> balances(MainModel mainModel) {
+        final Map<Integer, BigDecimal> map = new HashMap<>();
+        for (Account account : mainModel.getAccountList(a -> a.getType() == Account.Type.BROKERAGE))
+            map.put(account.getID(), account.getCurrentBalance());
+        return map;
+    }
+
+    // revaluing after a price change should give the same balances as recomputing all the accounts
+    @Test
+    void testRevalueMatchesFullUpdate() throws IOException, DaoException, ModelException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraRevaluationTest")) {
+            MainModel mainModel = testDatabase.open(true);
+            TestDatabase.populate(mainModel, new Random(21), N_ACCOUNTS);
+            mainModel.close();
+            mainModel = testDatabase.open(false);
+
+            final Random random = new Random(21);
+            final Map<Integer, BigDecimal> before = balances(mainModel);
+            for (int i = 0; i < 5; i++) {
+                final int sid = mainModel.getSecurity("Security " + random.nextInt(5)).map(Security::getID)
+                        .orElseThrow();
+                mainModel.mergeSecurityPrices(List.of(new Pair<>(sid, new Price(LocalDate.now(),
+                        BigDecimal.valueOf(1000 + random.nextInt(9000), 2)))));
+                mainModel.revalueAccounts(List.of(sid));
+                final Map<Integer, BigDecimal> revalued = balances(mainModel);
+                mainModel.updateAccountBalance(a -> a.getType().isGroup(Account.Type.Group.INVESTING));
+                assertEquals(balances(mainModel), revalued);
+            }
+            assertNotEquals(before, balances(mainModel));
+            mainModel.close();
+        }
+    }
+}
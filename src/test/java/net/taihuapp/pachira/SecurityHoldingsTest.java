@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import javafx.util.Pair;
+import net.taihuapp.pachira.dao.DaoException;
+import net.taihuapp.pachira.dao.DaoManager;
+import net.taihuapp.pachira.dao.TransactionDao;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.taihuapp.pachira.Transaction.TradeAction.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SecurityHoldingsTest {
+
+    private static SecurityHolding getHolding(List<SecurityHolding> shList, String name) {
+        return shList.stream().filter(sh -> sh.getSecurityName().equals(name)).findFirst().orElseThrow();
+    }
+
+    // the last price before a stock split should be adjusted by the split in the holdings on a date
+    @Test
+    void testLastPriceAdjustedBySplit() throws IOException, DaoException, ModelException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraHoldingsSplitTest")) {
+            final MainModel mainModel = testDatabase.open(true);
+            final Security security = new Security(-1, "SPLT", "Split Security", Security.Type.STOCK);
+            mainModel.mergeSecurity(security);
+            mainModel.mergeSecurityPrices(List.of(
+                    new Pair<>(security.getID(), new Price(LocalDate.of(2020, 1, 10), new BigDecimal("100"))),
+                    new Pair<>(security.getID(), new Price(LocalDate.of(2020, 3, 16), new BigDecimal("60")))));
+            final Account account = new Account(-1, Account.Type.BROKERAGE, "Split Brokerage", "", false,
+                    Integer.MAX_VALUE, null, BigDecimal.ZERO);
+            mainModel.insertUpdateAccount(account);
+
+            final List<Transaction> tList = new ArrayList<>();
+            tList.add(new Transaction(-1, account.getID(), LocalDate.of(2020, 1, 2), null, DEPOSIT,
+                    Transaction.Status.UNCLEARED, -1, "", "Deposit", null, null, "", null, null,
+                    new BigDecimal("10000"), 0, -1, -1, -1, new ArrayList<>(), ""));
+            tList.add(new Transaction(-1, account.getID(), LocalDate.of(2020, 1, 5), null, BUY,
+                    Transaction.Status.UNCLEARED, security.getID(), "", "", new BigDecimal("10"), null, "",
+                    BigDecimal.ZERO, BigDecimal.ZERO, new BigDecimal("950"), 0, -1, -1, -1, new ArrayList<>(), ""));
+            tList.add(new Transaction(-1, account.getID(), LocalDate.of(2020, 2, 3), null, STKSPLIT,
+                    Transaction.Status.UNCLEARED, security.getID(), "", "", new BigDecimal("2"), new BigDecimal("1"),
+                    "", BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, 0, -1, -1, -1, new ArrayList<>(), ""));
+            ((TransactionDao) DaoManager.getInstance().getDao(DaoManager.DaoType.TRANSACTION)).insertBatch(tList);
+
+            final List<TransactionRecord> recordList = mainModel.getAccountTransactionRecordList(account);
+            // before the split
+            final List<SecurityHolding> janList = mainModel.computeRecordSecurityHoldings(recordList,
+                    LocalDate.of(2020, 1, 31), -1);
+            // after the split, before the next price
+            final List<SecurityHolding> febList = mainModel.computeRecordSecurityHoldings(recordList,
+                    LocalDate.of(2020, 2, 29), -1);
+            // on the date of the next price
+            final List<SecurityHolding> marList = mainModel.computeRecordSecurityHoldings(recordList,
+                    LocalDate.of(2020, 3, 16), -1);
+            mainModel.close();
+
+            final SecurityHolding jan = getHolding(janList, security.getName());
+            assertEquals(0, new BigDecimal("10").compareTo(jan.getQuantity()));
+            assertEquals(0, new BigDecimal("100").compareTo(jan.getPrice()));
+            assertEquals(0, new BigDecimal("1000").compareTo(jan.getMarketValue()));
+
+            final SecurityHolding feb = getHolding(febList, security.getName());
+            assertEquals(0, new BigDecimal("20").compareTo(feb.getQuantity()));
+            assertEquals(0, new BigDecimal("50").compareTo(feb.getPrice()));
+            assertEquals(0, new BigDecimal("1000").compareTo(feb.getMarketValue()));
+            // cash 10000 - 950, plus the market value
+            assertEquals(0, new BigDecimal("10050").compareTo(febList.get(febList.size() - 1).getMarketValue()));
+
+            final SecurityHolding mar = getHolding(marList, security.getName());
+            assertEquals(0, new BigDecimal("60").compareTo(mar.getPrice()));
+            assertEquals(0, new BigDecimal("1200").compareTo(mar.getMarketValue()));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira;
+
+import javafx.util.Pair;
+import net.taihuapp.pachira.dao.DaoException;
+import net.taihuapp.pachira.dao.DaoManager;
+import net.taihuapp.pachira.dao.TransactionDao;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+import static net.taihuapp.pachira.Transaction.TradeAction.*;
+
+/**
+ * A database in a temporary file for the tests, deleted on close.
+ */
+class TestDatabase implements AutoCloseable {
+
+    static final String PASSWORD = "11111111";
+
+    static final int N_TRANSACTIONS = 400; // per account populated
+
+    private static final int N_SECURITIES = 20;
+    private static final LocalDate START_DATE = LocalDate.of(2015, 1, 2);
+
+    private final Path dbFilePath;
+    private final String dbName;
+
+    /**
+     * constructor
+     * @param prefix - the prefix of the temporary file name
+     * @throws IOException - from creating the temporary file
+     */
+    TestDatabase(String prefix) throws IOException {
+        final String dbPostfix = DaoManager.getDBPostfix();
+        dbFilePath = createTempFile(prefix, dbPostfix);
+        final String dbFileName = dbFilePath.toString();
+        dbName = dbFileName.substring(0, dbFileName.length() - dbPostfix.length());
+    }
+
+    /**
+     * @param prefix - the prefix of the file name
+     * @param suffix - the suffix of the file name
+     * @return the path of a new empty file in the temporary directory
+     * @throws IOException - from creating the file
+     */
+    static Path createTempFile(String prefix, String suffix) throws IOException {
+        return Files.createTempFile(Path.of(System.getProperty("java.io.tmpdir")), prefix, suffix);
+    }
+
+    /**
+     * open the database
+     * @param isNew - true to create the database, false to open the existing one
+     * @return the main model of the database
+     * @throws DaoException - from the database
+     * @throws ModelException - from the main model
+     */
+    MainModel open(boolean isNew) throws DaoException, ModelException {
+        return new MainModel(dbName, PASSWORD, isNew);
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(dbFilePath);
+    }
+
+    /**
+     * populate the database with brokerage accounts trading the securities
+     * @param mainModel - the main model of the database
+     * @param random - the random number generator
+     * @param nAccounts - the number of accounts
+     * @throws DaoException - from the database
+     * @throws ModelException - from the main model
+     */
+    static void populate(MainModel mainModel, Random random, int nAccounts) throws DaoException, ModelException {
+        final List<Integer> sidList = new ArrayList<>();
+        final List<Pair<Integer, Price>> priceList = new ArrayList<>();
+        for (int i = 0; i < N_SECURITIES; i++) {
+            final Security security = new Security(-1, "S" + i, "Security " + i, Security.Type.STOCK);
+            mainModel.mergeSecurity(security);
+            sidList.add(security.getID());
+            for (LocalDate d = START_DATE; d.isBefore(START_DATE.plusYears(8)); d = d.plusMonths(1))
+                priceList.add(new Pair<>(security.getID(), new Price(d, BigDecimal.valueOf(1000 + random.nextInt(9000), 2))));
+        }
+        mainModel.mergeSecurityPrices(priceList);
+
+        final TransactionDao transactionDao = (TransactionDao) DaoManager.getInstance()
+                .getDao(DaoManager.DaoType.TRANSACTION);
+        for (int a = 0; a < nAccounts; a++) {
+            final Account account = new Account(-1, Account.Type.BROKERAGE, "Brokerage " + a, "", false,
+                    Integer.MAX_VALUE, null, BigDecimal.ZERO);
+            mainModel.insertUpdateAccount(account);
+
+            final List<Transaction> tList = new ArrayList<>();
+            final Map<Integer, BigDecimal> quantityMap = new HashMap<>();
+            LocalDate date = START_DATE;
+            tList.add(new Transaction(-1, account.getID(), date, null, DEPOSIT, Transaction.Status.UNCLEARED,
+                    -1, "", "Deposit", null, null, "", null, null, new BigDecimal("1000000"),
+                    0, -1, -1, -1, new ArrayList<>(), ""));
+            for (int i = 1; i < N_TRANSACTIONS; i++) {
+                date = date.plusDays(random.nextInt(8));
+                final int sid = sidList.get(random.nextInt(N_SECURITIES));
+                final BigDecimal q = quantityMap.getOrDefault(sid, BigDecimal.ZERO);
+                final Transaction.TradeAction ta;
+                final BigDecimal quantity;
+                if (q.signum() > 0 && random.nextInt(3) == 0) {
+                    ta = SELL;
+                    quantity = q.min(BigDecimal.valueOf(1 + random.nextInt(50)));
+                    quantityMap.put(sid, q.subtract(quantity));
+                } else {
+                    ta = BUY;
+                    quantity = BigDecimal.valueOf(1 + random.nextInt(100));
+                    quantityMap.put(sid, q.add(quantity));
+                }
+                tList.add(new Transaction(-1, account.getID(), date, null, ta, Transaction.Status.UNCLEARED,
+                        sid, "", "", quantity, null, "", BigDecimal.ZERO, BigDecimal.ZERO,
+                        quantity.multiply(BigDecimal.valueOf(1000 + random.nextInt(9000), 2)),
+                        0, -1, -1, -1, new ArrayList<>(), ""));
+            }
+            transactionDao.insertBatch(tList);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.taihuapp.pachira;
+
+import net.taihuapp.pachira.dao.DaoException;
+import net.taihuapp.pachira.dao.DaoManager;
+import net.taihuapp.pachira.dao.TransactionDao;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static net.taihuapp.pachira.Transaction.TradeAction.WITHDRAW;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionSearchTest {
+
+    private static final int N_TRANSACTIONS = 500;
+    private static final String[] TEXTS = { "ab cd", "AB-CD", "Ab, Cd.", "abcd", "cd ab", "Coffee #12",
+            "coffee shop", "x.y", "x..y", "--", "#", "Café", "rent 2020/01", "a", "b", "" };
+    private static final String[] SEARCHES = { "ab cd", "AB CD", "b c", "ab-cd", "cd.", "ab", "Cd", "bc",
+            "offe", "COFFEE #1", "#", "--", "-", ".", " ", ", ", "x.y", "é", "20/0", "2020 01", "a", "zzz" };
+
+    // the search before the index, a filter of all transactions
+    private static Predicate<Transaction> containsPredicate(MainModel mainModel, String searchString) {
+        final String lowerSearchString = searchString.toLowerCase();
+        final Set<Integer> categoryIDSet = mainModel.getCategoryList().stream()
+                .filter(c -> c.getName().toLowerCase().contains(lowerSearchString))
+                .map(Category::getID).collect(Collectors.toSet());
+        mainModel.getAccountList(a -> a.getName().toLowerCase().contains(lowerSearchString))
+                .forEach(a -> categoryIDSet.add(-a.getID()));
+        final Set<Integer> tagIDSet = mainModel.getTagList().stream()
+                .filter(t -> t.getName().toLowerCase().contains(lowerSearchString))
+                .map(Tag::getID).collect(Collectors.toSet());
+        return t -> {
+            if (categoryIDSet.contains(t.getCategoryID()) || tagIDSet.contains(t.getTagID()))
+                return true;
+            final String payee = t.getPayee();
+            if (payee != null && payee.toLowerCase().contains(lowerSearchString))
+                return true;
+            final String securityName = mainModel.getSecurity(t.getSecurityID())
+                    .map(Security::getName).orElse(null);
+            if (securityName != null && securityName.toLowerCase().contains(lowerSearchString))
+                return true;
+            final String memo = t.getMemo();
+            if (memo != null && memo.toLowerCase().contains(lowerSearchString))
+                return true;
+            return t.getTradeAction().toString().toLowerCase().contains(lowerSearchString);
+        };
+    }
+
+    private static void assertSearchMatches(MainModel mainModel, TransactionDao transactionDao)
+            throws DaoException, ModelException {
+        final List<Transaction> allList = transactionDao.getAll();
+        for (String searchString : SEARCHES) {
+            final Predicate<Transaction> predicate = containsPredicate(mainModel, searchString);
+            final List<Integer> expected = allList.stream().filter(predicate).map(Transaction::getID)
+                    .sorted().collect(Collectors.toList());
+            final List<Integer> actual = mainModel.getStringSearchTransactionList(searchString).stream()
+                    .map(Transaction::getID).collect(Collectors.toList());
+            assertEquals(expected, actual, "'" + searchString + "'");
+        }
+    }
+
+    private static String randomText(Random random) {
+        final String text = TEXTS[random.nextInt(TEXTS.length)];
+        return random.nextBoolean() ? text : text + " " + TEXTS[random.nextInt(TEXTS.length)];
+    }
+
+    // the indexed search should find the same transactions as checking every transaction, before and
+    // after the payees and memos are changed and some transactions are deleted
+    @Test
+    void testSearchMatchesContains() throws IOException, DaoException, ModelException {
+        try (TestDatabase testDatabase = new TestDatabase("PachiraTransactionSearchTest")) {
+            final MainModel mainModel = testDatabase.open(true);
+            final TransactionDao transactionDao =
+                    (TransactionDao) DaoManager.getInstance().getDao(DaoManager.DaoType.TRANSACTION);
+            final Account account = new Account(-1, Account.Type.CHECKING, "Checking", "", false,
+                    Integer.MAX_VALUE, null, BigDecimal.ZERO);
+            mainModel.insertUpdateAccount(account);
+
+            final Random random = new Random(9);
+            final List<Transaction> tList = new ArrayList<>();
+            for (int i = 0; i < N_TRANSACTIONS; i++) {
+                final Transaction t = new Transaction(account.getID(), LocalDate.now().minusDays(random.nextInt(365)),
+                        WITHDRAW, 0);
+                t.setPayee(randomText(random));
+                t.setMemo(randomText(random));
+                t.setAmount(BigDecimal.valueOf(1 + random.nextInt(10000), 2));
+                tList.add(t);
+            }
+            transactionDao.insertBatch(tList);
+            assertSearchMatches(mainModel, transactionDao);
+
+            // a changed text should be found by the new words only
+            final Transaction oldT = transactionDao.getAll().get(0);
+            final Transaction newT = new Transaction(oldT);
+            newT.setPayee("Zzz Top");
+            newT.setMemo("");
+            mainModel.alterTransaction(oldT, newT, new ArrayList<>());
+            assertEquals(List.of(oldT.getID()), mainModel.getStringSearchTransactionList("ZZZ").stream()
+                    .map(Transaction::getID).collect(Collectors.toList()));
+
+            // change and delete some transactions
+            final List<Transaction> allList = transactionDao.getAll();
+            for (int i = 0; i < 100; i++) {
+                final Transaction t = allList.get(random.nextInt(allList.size()));
+                if (mainModel.getTransactionByID(t.getID()).isEmpty())
+                    continue;
+                if (i % 3 == 0) {
+                    mainModel.alterTransaction(t, null, new ArrayList<>());
+                } else {
+                    final Transaction changedT = new Transaction(t);
+                    changedT.setPayee(randomText(random));
+                    changedT.setMemo(i % 3 == 1 ? t.getMemo() : randomText(random));
+                    mainModel.alterTransaction(t, changedT, new ArrayList<>());
+                }
+            }
+            assertSearchMatches(mainModel, transactionDao);
+
+            for (Transaction t : mainModel.getStringSearchTransactionList("zzz"))
+                mainModel.alterTransaction(t, null, new ArrayList<>());
+            assertTrue(mainModel.getStringSearchTransactionList("zzz").isEmpty());
+            mainModel.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2018-2026.  Guangliang He.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This file is part of Pachira.
+ *
+ * Pachira is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any
+ * later version.
+ *
+ * Pachira is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.taihuapp.pachira.dao;
+
+import net.taihuapp.pachira.Price;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecurityPriceCacheTest {
+
+    private static SecurityPriceCache.PriceHistory priceHistory(int... days) {
+        final LocalDate date0 = LocalDate.of(2020, 1, 1);
+        final Price[] prices = new Price[days.length];
+        for (int i = 0; i < days.length; i++)
+            prices[i] = new Price(date0.plusDays(days[i]), BigDecimal.valueOf(days[i]));
+        return new SecurityPriceCache.PriceHistory(List.of(prices));
+    }
+
+    // the floor index is the price on the date, or the latest one before it
+    @Test
+    void testFloorIndexOf() {
+        final LocalDate date0 = LocalDate.of(2020, 1, 1);
+        final SecurityPriceCache.PriceHistory priceHistory = priceHistory(0, 10, 20);
+
+        assertEquals(-1, priceHistory.floorIndexOf(date0.minusDays(1)));
+        assertEquals(0, priceHistory.floorIndexOf(date0));
+        assertEquals(0, priceHistory.floorIndexOf(date0.plusDays(9)));
+        assertEquals(1, priceHistory.floorIndexOf(date0.plusDays(10)));
+        assertEquals(1, priceHistory.floorIndexOf(date0.plusDays(19)));
+        assertEquals(2, priceHistory.floorIndexOf(date0.plusDays(20)));
+        assertEquals(2, priceHistory.floorIndexOf(date0.plusDays(1000)));
+        assertEquals(date0.plusDays(10), priceHistory.getDate(priceHistory.floorIndexOf(date0.plusDays(15))));
+        assertEquals(BigDecimal.valueOf(10), priceHistory.getPrice(priceHistory.floorIndexOf(date0.plusDays(15))));
+
+        assertEquals(-1, priceHistory.indexOf(date0.plusDays(15)));
+        assertEquals(2, priceHistory.indexOf(date0.plusDays(20)));
+        assertEquals(-1, priceHistory(new int[0]).floorIndexOf(date0));
+    }
+
+    // the least recently used security is evicted first
+    @Test
+    void testLRUEviction() {
+        final SecurityPriceCache priceCache = new SecurityPriceCache(2);
+        priceCache.put(1, priceHistory(1));
+        priceCache.put(2, priceHistory(2));
+        assertNotNull(priceCache.get(1)); // 2 is now the least recently used
+        priceCache.put(3, priceHistory(3));
+
+        assertNotNull(priceCache.get(1));
+        assertNull(priceCache.get(2));
+        assertNotNull(priceCache.get(3));
+
+        priceCache.put(4, priceHistory(4)); // 1 is the least recently used
+        assertNull(priceCache.get(1));
+        assertNotNull(priceCache.get(3));
+        assertNotNull(priceCache.get(4));
+    }
+
+    // a history loaded before an invalidation or a new generation is not put in the cache
+    @Test
+    void testPutIfUnchanged() {
+        final SecurityPriceCache priceCache = new SecurityPriceCache(2);
+        long generation = priceCache.getGeneration();
+        priceCache.invalidate(1);
+        priceCache.putIfUnchanged(1, priceHistory(1), generation);
+        assertNull(priceCache.get(1));
+
+        generation = priceCache.getGeneration();
+        priceCache.newGeneration();
+        priceCache.putIfUnchanged(1, priceHistory(1), generation);
+        assertNull(priceCache.get(1));
+
+        priceCache.putIfUnchanged(1, priceHistory(1), priceCache.getGeneration());
+        assertNotNull(priceCache.get(1));
+    }
+}